@@ -30,6 +30,7 @@ import net.moasdawiki.service.handler.SearchHandler;
 import net.moasdawiki.service.handler.ViewPageHandler;
 import net.moasdawiki.service.render.HtmlService;
 import net.moasdawiki.service.repository.RepositoryService;
+import net.moasdawiki.service.repository.RepositoryWatcher;
 import net.moasdawiki.service.search.SearchService;
 import net.moasdawiki.service.sync.SynchronizationService;
 import net.moasdawiki.service.transform.*;
@@ -46,17 +47,20 @@ import java.util.Locale;
  */
 public class MainService {
 	private static final String REPOSITORY_ROOT_PATH_DEFAULT = "repository";
+	private static final int LOG_QUEUE_SIZE = 10000;
 
+	private Logger logger;
 	private Settings settings;
 	private Messages messages;
 	private Webserver webserver;
+	private RepositoryWatcher repositoryWatcher;
 
 	/**
 	 * Load settings and initialize the server.
 	 */
 	public void init(String[] args) {
 		// initialize layers
-		Logger logger = new Logger(System.out);
+		logger = new Logger(System.out, LOG_QUEUE_SIZE);
 		logger.write("MoasdaWiki starting");
 
 		// determine the repository base folder
@@ -81,8 +85,9 @@ public class MainService {
 		// basic services
 		RepositoryService repositoryService = new RepositoryService(logger, repositoryRoot, shadowRepositoryRoot, true);
 		settings = new Settings(logger, repositoryService, Settings.getConfigFileServer());
+		logger.setLevel(settings.getLogLevel());
 		messages = new Messages(logger, settings, repositoryService);
-		WikiService wikiService = new WikiService(logger, repositoryService, true);
+		WikiService wikiService = new WikiService(logger, repositoryService, true, settings.getPageCacheSize());
 		SearchService searchService = new SearchService(logger, repositoryService, wikiService, true);
 		SynchronizationService synchronizationService = new SynchronizationService(logger, settings, repositoryService);
 
@@ -96,6 +101,15 @@ public class MainService {
 		TransformWikiPage[] transformers = {includePageTransformer, kontaktseiteTransformer, terminTransformer, synchronizationPageTransformer, wikiTagsTransformer};
 		TransformerService transformerService = new TransformerService(transformers);
 
+		// rebuild missing indexes in a single pass over all wiki pages
+		wikiService.rebuildIndexes();
+
+		// detect changes made by external editors and sync tools
+		if (settings.isRepositoryWatch()) {
+			repositoryWatcher = new RepositoryWatcher(logger, repositoryService, settings.getRepositoryWatchDelay());
+			repositoryWatcher.start();
+		}
+
 		// more services
 		HtmlService htmlService = new HtmlService(logger, settings, messages, wikiService, transformerService);
 
@@ -109,6 +123,9 @@ public class MainService {
 		RequestDispatcher requestDispatcher = new RequestDispatcher(htmlService, viewPageHandler,
 				searchHandler, editorHandler, fileDownloadHandler, synchronizationService);
 		webserver = new Webserver(logger, settings, htmlService, requestDispatcher);
+		webserver.addCacheStatistics("repository", repositoryService.getCacheStatistics());
+		webserver.addCacheStatistics("wikiservice", wikiService.getCacheStatistics());
+		webserver.addCacheStatistics("searchindex", searchService.getCacheStatistics());
 	}
 
 	/**
@@ -135,6 +152,7 @@ public class MainService {
 	 */
 	public void runBlocking() {
 		webserver.run();
+		logger.flush();
 	}
 
 	/**
@@ -156,13 +174,16 @@ public class MainService {
 	 */
 	public void stop() {
 		webserver.stop();
+		if (repositoryWatcher != null) {
+			repositoryWatcher.stop();
+		}
 	}
 
 	/**
 	 * Free memory. Method is required by Apache Commons Daemon.
 	 */
-	@SuppressWarnings({"unused", "EmptyMethod"})
+	@SuppressWarnings("unused")
 	public void destroy() {
-		// noop
+		logger.close();
 	}
 }
@@ -0,0 +1,57 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.base;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts hits and misses of an internal cache. The counters are exported
+ * by the web server on the <tt>/metrics</tt> page.
+ *
+ * This class is thread-safe. Recording doesn't block, so it can be called
+ * on every cache access.
+ */
+public class CacheStatistics {
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * The requested entry was found in the cache.
+	 */
+	public void recordHit() {
+		hits.increment();
+	}
+
+	/**
+	 * The requested entry had to be loaded or rebuilt.
+	 */
+	public void recordMiss() {
+		misses.increment();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+}
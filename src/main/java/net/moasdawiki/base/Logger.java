@@ -26,55 +26,294 @@ import java.io.PrintStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Simple logger. Writes messages to the standard output.
+ *
+ * In synchronous mode the messages are written immediately by the calling
+ * thread. In asynchronous mode the messages are put into a bounded queue
+ * and written by a background thread, so console I/O doesn't slow down
+ * request processing. If the queue is full, messages are dropped and
+ * counted; the number of dropped messages is written to the log as soon
+ * as the queue has space again.
+ *
+ * Messages below the current log level are ignored. Use
+ * {@link #debug(Supplier)} for frequent messages, the message text is
+ * then only built if the level is enabled.
+ *
+ * This class is thread-safe.
  */
 public class Logger {
 
+	/**
+	 * Log levels in ascending order.
+	 */
+	public enum Level {
+		DEBUG, INFO, WARN, ERROR
+	}
+
 	@Nullable
 	private final PrintStream out;
 
 	/**
-	 * Formatter for log timestamp.
+	 * Formatter for log timestamp. Only used in {@link #print(LogEntry)},
+	 * which is synchronized.
 	 */
 	@NotNull
 	private final DateFormat dateFormat;
 
 	/**
-	 * Constructor.
+	 * Minimum level of messages to be written.
+	 */
+	@NotNull
+	private volatile Level level = Level.INFO;
+
+	/**
+	 * Queue of messages to be written by the background thread.
+	 * null -> synchronous mode.
+	 */
+	@Nullable
+	private final BlockingQueue<LogEntry> queue;
+
+	/**
+	 * Background thread, only in asynchronous mode.
+	 */
+	@Nullable
+	private final Thread writerThread;
+
+	/**
+	 * Number of messages put into the queue.
+	 */
+	private final AtomicLong enqueuedCount = new AtomicLong();
+
+	/**
+	 * Number of messages from the queue that have been written.
+	 * Guarded by {@link #flushLock}.
+	 */
+	private long writtenCount;
+
+	@NotNull
+	private final Object flushLock = new Object();
+
+	/**
+	 * Number of dropped messages that are not yet reported in the log.
+	 */
+	private final AtomicLong pendingDropCount = new AtomicLong();
+
+	/**
+	 * Total number of dropped messages.
+	 */
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * Constructor for a synchronous logger.
 	 */
 	public Logger(@Nullable PrintStream out) {
+		this(out, 0);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out Output stream, null -> discard all messages.
+	 * @param queueSize Maximum number of messages waiting to be written.
+	 *                  0 -> synchronous mode, no background thread.
+	 */
+	public Logger(@Nullable PrintStream out, int queueSize) {
 		this.out = out;
 		this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		if (out != null && queueSize > 0) {
+			this.queue = new ArrayBlockingQueue<>(queueSize);
+			this.writerThread = new Thread(this::runWriter, "Logger");
+			this.writerThread.setDaemon(true);
+			this.writerThread.start();
+		} else {
+			this.queue = null;
+			this.writerThread = null;
+		}
+	}
+
+	/**
+	 * Returns the minimum level of messages to be written.
+	 */
+	@NotNull
+	public Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * Sets the minimum level of messages to be written.
+	 */
+	public void setLevel(@NotNull Level level) {
+		this.level = level;
+	}
+
+	/**
+	 * Are messages of the given level written?
+	 */
+	public boolean isEnabled(@NotNull Level level) {
+		return out != null && level.compareTo(this.level) >= 0;
 	}
 
 	/**
-	 * Writes a message to the log.
+	 * Writes a message to the log with level INFO.
 	 */
 	public void write(@NotNull String message) {
-		if (out == null) {
+		log(Level.INFO, message, null);
+	}
+
+	/**
+	 * Write a message and stack trace to the log with level ERROR.
+	 */
+	public void write(@NotNull String message, @NotNull Throwable e) {
+		log(Level.ERROR, message, e);
+	}
+
+	/**
+	 * Writes a message to the log with level DEBUG. The message text is only
+	 * built if the level is enabled.
+	 */
+	public void debug(@NotNull Supplier<String> messageSupplier) {
+		if (isEnabled(Level.DEBUG)) {
+			log(Level.DEBUG, messageSupplier.get(), null);
+		}
+	}
+
+	/**
+	 * Writes a message to the log with the given level.
+	 */
+	public void write(@NotNull Level level, @NotNull String message) {
+		log(level, message, null);
+	}
+
+	private void log(@NotNull Level level, @NotNull String message, @Nullable Throwable e) {
+		if (!isEnabled(level)) {
 			return;
 		}
-		out.print("Log ");
-		out.print(dateFormat.format(new Date()));
-		out.print(" ");
-		out.print(message);
-		out.println();
+		LogEntry entry = new LogEntry(System.currentTimeMillis(), level, message, e);
+		if (queue == null || closed) {
+			print(entry);
+		} else if (queue.offer(entry)) {
+			enqueuedCount.incrementAndGet();
+		} else {
+			pendingDropCount.incrementAndGet();
+			droppedCount.incrementAndGet();
+		}
 	}
 
 	/**
-	 * Write a message and stack trace to the log.
+	 * Returns the total number of messages dropped because the queue was full.
 	 */
-	public void write(@NotNull String message, @NotNull Throwable e) {
+	public long getDroppedMessages() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Waits until all queued messages have been written.
+	 * Does nothing in synchronous mode.
+	 */
+	public void flush() {
+		if (writerThread == null) {
+			return;
+		}
+		long target = enqueuedCount.get();
+		synchronized (flushLock) {
+			try {
+				while (writtenCount < target && writerThread.isAlive()) {
+					flushLock.wait(100);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Writes all queued messages and stops the background thread.
+	 * Further messages are written synchronously.
+	 */
+	public void close() {
+		closed = true;
+		flush();
+		if (writerThread != null) {
+			writerThread.interrupt();
+		}
+	}
+
+	/**
+	 * Main loop of the background thread.
+	 */
+	private void runWriter() {
+		//noinspection ConstantConditions
+		BlockingQueue<LogEntry> queue = this.queue;
+		try {
+			while (true) {
+				LogEntry entry = queue.poll(1, TimeUnit.SECONDS);
+				if (entry != null) {
+					print(entry);
+					synchronized (flushLock) {
+						writtenCount++;
+						flushLock.notifyAll();
+					}
+				}
+				long dropped = pendingDropCount.getAndSet(0);
+				if (dropped > 0) {
+					print(new LogEntry(System.currentTimeMillis(), Level.WARN, dropped + " log messages dropped, queue was full", null));
+				}
+			}
+		} catch (InterruptedException e) {
+			// logger closed
+		}
+	}
+
+	/**
+	 * Formats and writes a message.
+	 */
+	private synchronized void print(@NotNull LogEntry entry) {
 		if (out == null) {
 			return;
 		}
+		out.print("Log ");
+		out.print(dateFormat.format(new Date(entry.timestamp)));
+		out.print(" ");
+		if (entry.level != Level.INFO) {
+			out.print(entry.level.name());
+			out.print(" ");
+		}
+		out.print(entry.message);
+		if (entry.throwable != null) {
+			out.print(": (" + entry.throwable.getClass().getCanonicalName() + ") " + entry.throwable.getMessage());
+			out.println();
+			entry.throwable.printStackTrace(out);
+		} else {
+			out.println();
+		}
+	}
 
-		// write timestamp and message
-		write(message + ": (" + e.getClass().getCanonicalName() + ") " + e.getMessage());
+	/**
+	 * Message waiting to be written.
+	 */
+	private static class LogEntry {
+		private final long timestamp;
+		@NotNull
+		private final Level level;
+		@NotNull
+		private final String message;
+		@Nullable
+		private final Throwable throwable;
 
-		// write stack trace
-		e.printStackTrace(out);
+		private LogEntry(long timestamp, @NotNull Level level, @NotNull String message, @Nullable Throwable throwable) {
+			this.timestamp = timestamp;
+			this.level = level;
+			this.message = message;
+			this.throwable = throwable;
+		}
 	}
 }
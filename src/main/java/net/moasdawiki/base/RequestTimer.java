@@ -0,0 +1,155 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.base;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures the duration of the processing phases of a single request, e.g.
+ * parsing a wiki page or generating the HTML code. The timer is bound to the
+ * current thread, so the services don't need an additional parameter. If no
+ * timer is active, {@link #stop(String, long)} does nothing.
+ *
+ * Usage in a service:
+ * <pre>
+ * long startTime = RequestTimer.start();
+ * ...
+ * RequestTimer.stop("phase", startTime);
+ * </pre>
+ *
+ * Phases with the same name are summed up, e.g. if several wiki pages are
+ * read for one request. Phases can be nested, the duration of an inner
+ * phase is then also contained in the outer phase.
+ *
+ * An instance is not thread-safe, it must only be used by the thread that
+ * handles the request.
+ */
+public class RequestTimer {
+
+	private static final ThreadLocal<RequestTimer> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * Map: Phase name -> {duration in nanoseconds, number of calls}.
+	 */
+	@NotNull
+	private final Map<String, long[]> phases = new LinkedHashMap<>();
+
+	/**
+	 * Activates a new timer for the current thread.
+	 * Must be followed by {@link #end()}.
+	 */
+	@NotNull
+	public static RequestTimer begin() {
+		RequestTimer requestTimer = new RequestTimer();
+		CURRENT.set(requestTimer);
+		return requestTimer;
+	}
+
+	/**
+	 * Deactivates the timer of the current thread.
+	 */
+	public static void end() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * Returns the start time of a phase.
+	 */
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records a phase in the timer of the current thread, if there is one.
+	 *
+	 * @param name Phase name, must be a token according to RFC 7230,
+	 *             e.g. no spaces.
+	 * @param startTime Start time returned by {@link #start()}.
+	 */
+	public static void stop(@NotNull String name, long startTime) {
+		RequestTimer requestTimer = CURRENT.get();
+		if (requestTimer != null) {
+			requestTimer.add(name, System.nanoTime() - startTime);
+		}
+	}
+
+	/**
+	 * Records a phase with a known duration.
+	 */
+	public void add(@NotNull String name, long durationNanos) {
+		long[] phase = phases.get(name);
+		if (phase == null) {
+			phase = new long[2];
+			phases.put(name, phase);
+		}
+		phase[0] += durationNanos;
+		phase[1]++;
+	}
+
+	/**
+	 * Formats the phases as value of a <tt>Server-Timing</tt> HTTP header,
+	 * see https://www.w3.org/TR/server-timing/.
+	 * Example: <tt>parse;dur=0.12, wikifile;dur=3.40;desc="2x"</tt>
+	 */
+	@NotNull
+	public String toServerTiming() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			long[] phase = entry.getValue();
+			sb.append(entry.getKey()).append(";dur=").append(formatMillis(phase[0]));
+			if (phase[1] > 1) {
+				sb.append(";desc=\"").append(phase[1]).append("x\"");
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Formats the phases for the log output.
+	 * Example: <tt>parse=0.12ms wikifile=3.40ms(2x)</tt>
+	 */
+	@NotNull
+	public String toLogString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			long[] phase = entry.getValue();
+			sb.append(entry.getKey()).append('=').append(formatMillis(phase[0])).append("ms");
+			if (phase[1] > 1) {
+				sb.append('(').append(phase[1]).append("x)");
+			}
+		}
+		return sb.toString();
+	}
+
+	@NotNull
+	private static String formatMillis(long nanos) {
+		return String.format(Locale.US, "%.2f", nanos / 1000000.0);
+	}
+}
@@ -44,6 +44,24 @@ public class Settings {
 
 	private static final String SERVERPORT = "port";
 	private static final int SERVERPORT_DEFAULT = 11080;
+	private static final String SERVER_EXECUTOR = "server.executor";
+	private static final String SERVER_EXECUTOR_DEFAULT = "fixed";
+	private static final String SERVER_EXECUTOR_SIZE = "server.executor.size";
+	private static final int SERVER_EXECUTOR_SIZE_DEFAULT = 5;
+	private static final String SERVER_REQUEST_MAXBODYSIZE = "server.request.maxbodysize";
+	private static final int SERVER_REQUEST_MAXBODYSIZE_DEFAULT = 100 * 1024 * 1024; // 100 MB
+	private static final String SERVER_CACHE_IMG_MAXAGE = "server.cache.img.maxage";
+	private static final int SERVER_CACHE_IMG_MAXAGE_DEFAULT = 7 * 24 * 60 * 60; // 7 days
+	private static final String SERVER_COMPRESSION_CACHESIZE = "server.compression.cachesize";
+	private static final int SERVER_COMPRESSION_CACHESIZE_DEFAULT = 10 * 1024 * 1024; // 10 MB
+	private static final String SERVER_QUEUE_SIZE = "server.queue.size";
+	private static final int SERVER_QUEUE_SIZE_DEFAULT = 50;
+	private static final String SERVER_CLIENT_MAXREQUESTS = "server.client.maxrequests";
+	private static final int SERVER_CLIENT_MAXREQUESTS_DEFAULT = 20;
+	private static final String SERVER_TIMING_HEADER = "server.timing.header";
+	private static final String SERVER_TIMING_LOG = "server.timing.log";
+	private static final String LOG_LEVEL = "log.level";
+	private static final Logger.Level LOG_LEVEL_DEFAULT = Logger.Level.INFO;
 	private static final String MESSAGE_FILE = "messagefile";
 	private static final String MESSAGE_FILE_DEFAULT = "/wiki/messages.txt";
 	private static final String PAGE_STARTPAGE = "page.startpage";
@@ -62,8 +80,13 @@ public class Settings {
 	private static final String PAGE_INDEX_NAME_DEFAULT = "Index";
 	private static final String PAGE_INDEX_GLOBAL = "page.index.default";
 	private static final String PAGE_INDEX_GLOBAL_DEFAULT = "/wiki/IndexStandard";
+	private static final String PAGE_CACHE_SIZE = "page.cache.size";
+	private static final int PAGE_CACHE_SIZE_DEFAULT = 20 * 1024 * 1024; // 20 MB
 	private static final String REPOSITORY_ROOT = "repository.root";
 	private static final String REPOSITORY_ROOT_DEFAULT = "root";
+	private static final String REPOSITORY_WATCH = "repository.watch";
+	private static final String REPOSITORY_WATCH_DELAY = "repository.watch.delay";
+	private static final int REPOSITORY_WATCH_DELAY_DEFAULT = 500; // ms
 	private static final String AUTHENTICATION_ONLYLOCALHOST = "authentication.onlylocalhost";
 
 	@NotNull
@@ -218,7 +241,6 @@ public class Settings {
 	 * @param defaultValue Default value.
 	 * @return Setting value or default value.
 	 */
-	@SuppressWarnings("unused")
 	public int getInt(@NotNull String key, int defaultValue) {
 		return getInteger(key, defaultValue);
 	}
@@ -324,6 +346,101 @@ public class Settings {
 		return getInteger(SERVERPORT, SERVERPORT_DEFAULT);
 	}
 
+	/**
+	 * Returns the type of executor that processes the HTTP requests:
+	 * "fixed", "workstealing" or "virtual".
+	 */
+	@NotNull
+	public String getServerExecutor() {
+		return getString(SERVER_EXECUTOR, SERVER_EXECUTOR_DEFAULT);
+	}
+
+	/**
+	 * Returns the number of threads for processing HTTP requests. Is ignored
+	 * for virtual threads.
+	 */
+	public int getServerExecutorSize() {
+		return getInt(SERVER_EXECUTOR_SIZE, SERVER_EXECUTOR_SIZE_DEFAULT);
+	}
+
+	/**
+	 * Returns the maximum size of an HTTP request body in bytes, e.g. of an
+	 * uploaded file. Larger requests are rejected.
+	 */
+	public int getServerRequestMaxBodySize() {
+		return getInt(SERVER_REQUEST_MAXBODYSIZE, SERVER_REQUEST_MAXBODYSIZE_DEFAULT);
+	}
+
+	/**
+	 * Returns the time in seconds that browsers may cache images (URL path
+	 * "/img/...") without asking the server again.
+	 */
+	public int getServerCacheImgMaxAge() {
+		return getInt(SERVER_CACHE_IMG_MAXAGE, SERVER_CACHE_IMG_MAXAGE_DEFAULT);
+	}
+
+	/**
+	 * Returns the maximum size in bytes of the cache for compressed variants
+	 * of repository files. 0 disables the cache, files are then compressed
+	 * on every request.
+	 */
+	public int getServerCompressionCacheSize() {
+		return getInt(SERVER_COMPRESSION_CACHESIZE, SERVER_COMPRESSION_CACHESIZE_DEFAULT);
+	}
+
+	/**
+	 * Returns the maximum number of requests waiting for a free worker
+	 * thread. If all worker threads are busy and the queue is full, further
+	 * requests are rejected with status 503.
+	 */
+	public int getServerQueueSize() {
+		return getInt(SERVER_QUEUE_SIZE, SERVER_QUEUE_SIZE_DEFAULT);
+	}
+
+	/**
+	 * Returns the maximum number of concurrent requests per client IP
+	 * address, including waiting requests. Further requests of that client
+	 * are rejected with status 503. 0 means unlimited.
+	 */
+	public int getServerClientMaxRequests() {
+		return getInt(SERVER_CLIENT_MAXREQUESTS, SERVER_CLIENT_MAXREQUESTS_DEFAULT);
+	}
+
+	/**
+	 * Should the durations of the processing phases of a request be sent to
+	 * the browser in a Server-Timing header? They are shown in the
+	 * developer tools of the browser.
+	 */
+	public boolean isServerTimingHeader() {
+		return getBoolean(SERVER_TIMING_HEADER, true);
+	}
+
+	/**
+	 * Should the durations of the processing phases of a request be written
+	 * to the log?
+	 */
+	public boolean isServerTimingLog() {
+		return getBoolean(SERVER_TIMING_LOG, false);
+	}
+
+	/**
+	 * Returns the minimum level of log messages to be written:
+	 * DEBUG, INFO, WARN or ERROR.
+	 */
+	@NotNull
+	public Logger.Level getLogLevel() {
+		String strValue = getString(LOG_LEVEL);
+		if (strValue == null) {
+			return LOG_LEVEL_DEFAULT;
+		}
+		try {
+			return Logger.Level.valueOf(strValue.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			logger.write("Setting value for '" + LOG_LEVEL + "' is not a log level: '" + strValue + "'");
+			return LOG_LEVEL_DEFAULT;
+		}
+	}
+
 	/**
 	 * Wiki page to be shown as start page.
 	 */
@@ -395,6 +512,15 @@ public class Settings {
 		return getString(PAGE_INDEX_GLOBAL, PAGE_INDEX_GLOBAL_DEFAULT);
 	}
 
+	/**
+	 * Returns the maximum size in bytes of the cache for parsed wiki pages.
+	 * The size of a page is estimated from the length of its wiki text.
+	 * 0 disables the cache, wiki pages are then parsed on every access.
+	 */
+	public int getPageCacheSize() {
+		return getInt(PAGE_CACHE_SIZE, PAGE_CACHE_SIZE_DEFAULT);
+	}
+
 	/**
 	 * Repository subfolder that contains the files that are accessible via URL
 	 * root path, e.g. favicon.ico.
@@ -404,6 +530,23 @@ public class Settings {
 		return getString(REPOSITORY_ROOT, REPOSITORY_ROOT_DEFAULT);
 	}
 
+	/**
+	 * Should the repository be watched for changes made outside of the wiki
+	 * server, e.g. by an external editor or a sync tool?
+	 */
+	public boolean isRepositoryWatch() {
+		return getBoolean(REPOSITORY_WATCH, true);
+	}
+
+	/**
+	 * Returns the time in ms without further file changes before the
+	 * detected changes are processed. Bursts of changes are thus processed
+	 * together.
+	 */
+	public int getRepositoryWatchDelay() {
+		return getInt(REPOSITORY_WATCH_DELAY, REPOSITORY_WATCH_DELAY_DEFAULT);
+	}
+
 	/**
 	 * Should the wiki server only be accessible for clients running on local
 	 * host?
@@ -0,0 +1,127 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Begrenzt die Anzahl gleichzeitig angenommener Requests, insgesamt und pro
+ * Client-IP. Ein Request gilt als angenommen, sobald er an den Thread-Pool
+ * übergeben wurde, bis die Antwort gesendet ist, d.h. er zählt auch mit,
+ * solange er in der Warteschlange des Thread-Pools steht.
+ *
+ * Ist eine Grenze erreicht, lehnt der {@link Webserver} weitere Requests
+ * sofort mit 503 ab, statt sie unbegrenzt warten zu lassen. Damit bleibt die
+ * Antwortzeit der angenommenen Requests auch bei Überlast begrenzt.
+ */
+class AdmissionController {
+
+	private final int maxRequests;
+	private final int maxRequestsPerClient;
+
+	private int activeRequests;
+	private final Map<InetAddress, Integer> activeRequestsPerClient = new HashMap<>();
+	private long rejectedRequests;
+
+	/**
+	 * Konstruktor.
+	 *
+	 * @param maxRequests Maximale Anzahl angenommener Requests, d.h.
+	 *        Anzahl Worker-Threads plus Länge der Warteschlange.
+	 * @param maxRequestsPerClient Maximale Anzahl angenommener Requests pro
+	 *        Client-IP. 0 -> unbegrenzt.
+	 */
+	AdmissionController(int maxRequests, int maxRequestsPerClient) {
+		this.maxRequests = maxRequests;
+		this.maxRequestsPerClient = maxRequestsPerClient;
+	}
+
+	/**
+	 * Prüft, ob ein weiterer Request des Clients angenommen werden könnte,
+	 * ohne ihn zu reservieren. Damit kann ein Request schon vor dem Parsen
+	 * abgelehnt werden.
+	 */
+	synchronized boolean isAdmissible(@NotNull InetAddress clientIP) {
+		return activeRequests < maxRequests
+				&& (maxRequestsPerClient <= 0 || getActiveRequests(clientIP) < maxRequestsPerClient);
+	}
+
+	/**
+	 * Nimmt einen Request an, wenn keine Grenze überschritten wird. Jeder
+	 * angenommene Request muss mit {@link #release(InetAddress)} wieder
+	 * freigegeben werden.
+	 *
+	 * @return <code>true</code>, wenn der Request angenommen wurde.
+	 */
+	synchronized boolean tryAcquire(@NotNull InetAddress clientIP) {
+		if (!isAdmissible(clientIP)) {
+			rejectedRequests++;
+			return false;
+		}
+		activeRequests++;
+		activeRequestsPerClient.put(clientIP, getActiveRequests(clientIP) + 1);
+		return true;
+	}
+
+	/**
+	 * Zählt einen Request als abgelehnt, der schon durch
+	 * {@link #isAdmissible(InetAddress)} abgewiesen wurde.
+	 */
+	synchronized void reject() {
+		rejectedRequests++;
+	}
+
+	/**
+	 * Gibt einen angenommenen Request nach dem Senden der Antwort wieder
+	 * frei.
+	 */
+	synchronized void release(@NotNull InetAddress clientIP) {
+		activeRequests--;
+		int count = getActiveRequests(clientIP) - 1;
+		if (count > 0) {
+			activeRequestsPerClient.put(clientIP, count);
+		} else {
+			activeRequestsPerClient.remove(clientIP);
+		}
+	}
+
+	private int getActiveRequests(@NotNull InetAddress clientIP) {
+		Integer count = activeRequestsPerClient.get(clientIP);
+		return count != null ? count : 0;
+	}
+
+	/**
+	 * Gibt die Anzahl der aktuell angenommenen Requests zurück.
+	 */
+	synchronized int getActiveRequests() {
+		return activeRequests;
+	}
+
+	/**
+	 * Gibt die Anzahl der seit dem Start abgelehnten Requests zurück.
+	 */
+	synchronized long getRejectedRequests() {
+		return rejectedRequests;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Schreibt Daten im Format <tt>Transfer-Encoding: chunked</tt> gemäß RFC 2616
+ * Abschnitt 3.6.1. Jeder Schreibaufruf erzeugt einen Chunk, daher sollte der
+ * Strom gepuffert beschrieben werden.
+ *
+ * Mit {@link #finish()} wird der abschließende Chunk geschrieben. Der
+ * zugrunde liegende Strom wird nicht geschlossen, da die Verbindung für
+ * weitere Requests offen bleiben kann.
+ */
+class ChunkedOutputStream extends FilterOutputStream {
+
+	private static final byte[] CRLF = { '\r', '\n' };
+	private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+
+	private boolean finished;
+
+	ChunkedOutputStream(@NotNull OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte @NotNull [] b, int off, int len) throws IOException {
+		if (finished) {
+			throw new IOException("Chunked stream already finished");
+		}
+		if (len == 0) {
+			// ein leerer Chunk würde das Ende markieren
+			return;
+		}
+		out.write(Integer.toHexString(len).getBytes(StandardCharsets.US_ASCII));
+		out.write(CRLF);
+		out.write(b, off, len);
+		out.write(CRLF);
+	}
+
+	/**
+	 * Schreibt den abschließenden Chunk. Weitere Schreibaufrufe sind danach
+	 * nicht mehr möglich.
+	 */
+	void finish() throws IOException {
+		if (!finished) {
+			finished = true;
+			out.write(LAST_CHUNK);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Beendet den Strom, ohne den zugrunde liegenden Strom zu schließen.
+	 */
+	@Override
+	public void close() throws IOException {
+		finish();
+	}
+}
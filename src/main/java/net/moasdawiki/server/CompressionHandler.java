@@ -0,0 +1,361 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.service.ContentWriter;
+import net.moasdawiki.service.HttpResponse;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Komprimiert Antworten mit gzip oder deflate, wenn der Client das per
+ * <tt>Accept-Encoding</tt> anbietet.
+ *
+ * Komprimiert werden nur Textformate ab einer Mindestgröße. Dateien aus dem
+ * Repository werden komprimiert in einem LRU-Cache gehalten, Schlüssel sind
+ * URL-Pfad, Zeitstempel und Größe der Datei. Eine geänderte Datei erhält
+ * dadurch automatisch einen neuen Eintrag, der alte wird irgendwann
+ * verdrängt.
+ *
+ * Ein starkes Entity-Tag wird bei Komprimierung in ein schwaches
+ * umgewandelt, da die Bytes nicht mehr mit der unkomprimierten Variante
+ * übereinstimmen. Range-Requests werden nur für die unkomprimierte Variante
+ * unterstützt.
+ */
+class CompressionHandler {
+
+	static final String HTTP_HEADER_ACCEPT_ENCODING = "accept-encoding";
+	static final String ENCODING_GZIP = "gzip";
+	static final String ENCODING_DEFLATE = "deflate";
+
+	/**
+	 * Kleinere Antworten werden nicht komprimiert, da der Gewinn den Aufwand
+	 * nicht lohnt.
+	 */
+	static final int MIN_SIZE = 1024;
+
+	/**
+	 * Größere Dateien werden nicht gecacht, sondern beim Senden komprimiert.
+	 */
+	static final int MAX_CACHED_FILE_SIZE = 1024 * 1024;
+
+	private final long cacheSize;
+
+	/**
+	 * Komprimierte Dateien in LRU-Reihenfolge. Zugriff nur synchronisiert.
+	 */
+	private final Map<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedBytes;
+
+	/**
+	 * Konstruktor.
+	 *
+	 * @param cacheSize Maximale Größe des Caches in Bytes. 0 -> kein Cache.
+	 */
+	CompressionHandler(long cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Komprimiert die Antwort, wenn der Client das unterstützt und es sich
+	 * lohnt. Andernfalls wird die Antwort unverändert zurückgegeben.
+	 *
+	 * @return Antwort. Nicht <code>null</code>.
+	 */
+	@NotNull
+	HttpResponse handleCompression(@NotNull HttpRequest httpRequest, @NotNull HttpResponse response) throws IOException {
+		if ((response.statusCode != 200 && response.statusCode != 304) || !isCompressible(response.contentType)) {
+			return response;
+		}
+		// Caches müssen die Antwort pro Encoding speichern
+		response.httpHeader.put("Vary", "Accept-Encoding");
+		if (response.statusCode != 200) {
+			return response;
+		}
+
+		long length;
+		if (response.contentWriter != null) {
+			length = response.contentLength;
+		} else {
+			length = response.content != null ? response.content.length : 0;
+		}
+		if (length >= 0 && length < MIN_SIZE) {
+			return response;
+		}
+		String encoding = selectEncoding(httpRequest.httpHeader.get(HTTP_HEADER_ACCEPT_ENCODING));
+		if (encoding == null) {
+			return response;
+		}
+
+		if (response.contentWriter == null) {
+			byte[] compressed = compress(response.content, encoding);
+			if (compressed.length >= length) {
+				// nicht komprimierbar, z.B. bereits komprimierte Daten
+				return response;
+			}
+			response.content = compressed;
+		} else if (response.isRangeSupported() && response.lastModified != null && length <= MAX_CACHED_FILE_SIZE) {
+			String cacheKey = encoding + ':' + httpRequest.urlPath + ':' + response.lastModified.getTime() + ':' + length;
+			byte[] compressed = getCachedFile(cacheKey, response.contentWriter, encoding);
+			response.setContent(new ByteArrayContentWriter(compressed), compressed.length);
+		} else {
+			response.setContent(new CompressingContentWriter(response.contentWriter, encoding), -1);
+		}
+
+		response.httpHeader.put("Content-Encoding", encoding);
+		response.httpHeader.remove("Accept-Ranges");
+		if (response.etag != null && !response.etag.startsWith("W/")) {
+			response.etag = "W/" + response.etag;
+		}
+		return response;
+	}
+
+	/**
+	 * Gibt an, ob sich die Komprimierung für den Inhaltstyp lohnt. Das ist
+	 * bei Textformaten der Fall, Bilder und Archive sind in der Regel bereits
+	 * komprimiert.
+	 */
+	static boolean isCompressible(@Nullable String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		return contentType.startsWith("text/") || contentType.contains("xml")
+				|| contentType.contains("json") || contentType.contains("javascript");
+	}
+
+	/**
+	 * Wählt anhand des <tt>Accept-Encoding</tt>-Headers das Encoding mit dem
+	 * höchsten q-Wert aus. Bei Gleichstand wird gzip bevorzugt.
+	 *
+	 * @return Encoding. <code>null</code> -> keine Komprimierung.
+	 */
+	@Nullable
+	static String selectEncoding(@Nullable String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		float gzipQ = -1;
+		float deflateQ = -1;
+		float wildcardQ = -1;
+		for (String token : acceptEncoding.split(",")) {
+			String[] parts = token.split(";");
+			String coding = parts[0].trim().toLowerCase();
+			float q = 1;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						q = Float.parseFloat(param.substring(2));
+					} catch (NumberFormatException e) {
+						q = 0;
+					}
+				}
+			}
+			switch (coding) {
+				case ENCODING_GZIP:
+				case "x-gzip":
+					gzipQ = q;
+					break;
+				case ENCODING_DEFLATE:
+					deflateQ = q;
+					break;
+				case "*":
+					wildcardQ = q;
+					break;
+				default:
+					break;
+			}
+		}
+		if (gzipQ < 0) {
+			gzipQ = wildcardQ;
+		}
+		if (deflateQ < 0) {
+			deflateQ = wildcardQ;
+		}
+		if (gzipQ > 0 && gzipQ >= deflateQ) {
+			return ENCODING_GZIP;
+		} else if (deflateQ > 0) {
+			return ENCODING_DEFLATE;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Liefert eine Datei komprimiert aus dem Cache. Wenn sie noch nicht
+	 * enthalten ist, wird sie gelesen, komprimiert und aufgenommen. Die Datei
+	 * wird in jedem Fall geschlossen.
+	 */
+	@NotNull
+	private byte[] getCachedFile(@NotNull String cacheKey, @NotNull ContentWriter fileContent, @NotNull String encoding) throws IOException {
+		try {
+			synchronized (cache) {
+				byte[] compressed = cache.get(cacheKey);
+				if (compressed != null) {
+					return compressed;
+				}
+			}
+
+			// außerhalb des Locks komprimieren, im Zweifel macht das ein
+			// paralleler Request doppelt
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			try (DeflaterOutputStream out = createCompressingStream(bos, encoding)) {
+				fileContent.writeTo(out);
+			}
+			byte[] compressed = bos.toByteArray();
+			putCachedFile(cacheKey, compressed);
+			return compressed;
+		} finally {
+			fileContent.close();
+		}
+	}
+
+	private void putCachedFile(@NotNull String cacheKey, @NotNull byte[] compressed) {
+		if (compressed.length > cacheSize) {
+			return;
+		}
+		synchronized (cache) {
+			byte[] previous = cache.put(cacheKey, compressed);
+			if (previous != null) {
+				cachedBytes -= previous.length;
+			}
+			cachedBytes += compressed.length;
+			Iterator<byte[]> it = cache.values().iterator();
+			while (cachedBytes > cacheSize && it.hasNext()) {
+				cachedBytes -= it.next().length;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl Bytes im Cache zurück.
+	 */
+	long getCachedBytes() {
+		synchronized (cache) {
+			return cachedBytes;
+		}
+	}
+
+	@NotNull
+	static byte[] compress(@Nullable byte[] content, @NotNull String encoding) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (DeflaterOutputStream out = createCompressingStream(bos, encoding)) {
+			if (content != null) {
+				out.write(content);
+			}
+		}
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Erzeugt einen komprimierenden Strom. <tt>deflate</tt> bezeichnet in
+	 * HTTP das zlib-Format, das entspricht dem Standardverhalten von
+	 * {@link DeflaterOutputStream}.
+	 */
+	@NotNull
+	private static DeflaterOutputStream createCompressingStream(@NotNull OutputStream out, @NotNull String encoding) throws IOException {
+		if (ENCODING_GZIP.equals(encoding)) {
+			return new GZIPOutputStream(out);
+		} else {
+			return new DeflaterOutputStream(out);
+		}
+	}
+
+	/**
+	 * Sendet einen bereits komprimierten Inhalt aus dem Cache.
+	 */
+	private static class ByteArrayContentWriter implements ContentWriter {
+
+		@NotNull
+		private final byte[] content;
+
+		ByteArrayContentWriter(@NotNull byte[] content) {
+			this.content = content;
+		}
+
+		@Override
+		public void writeTo(@NotNull OutputStream out) throws IOException {
+			out.write(content);
+		}
+	}
+
+	/**
+	 * Reicht alle Aufrufe außer <code>close()</code> an den zugrunde liegenden
+	 * Strom weiter.
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream {
+
+		NonClosingOutputStream(@NotNull OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(@NotNull byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Komprimiert einen Streaming-Body beim Senden. Die Länge ist vorab nicht
+	 * bekannt, der Body wird daher in Chunks gesendet.
+	 */
+	private static class CompressingContentWriter implements ContentWriter {
+
+		@NotNull
+		private final ContentWriter contentWriter;
+		@NotNull
+		private final String encoding;
+
+		CompressingContentWriter(@NotNull ContentWriter contentWriter, @NotNull String encoding) {
+			this.contentWriter = contentWriter;
+			this.encoding = encoding;
+		}
+
+		@Override
+		public void writeTo(@NotNull OutputStream out) throws IOException {
+			// Schließen gibt den Deflater frei, darf aber nicht die Verbindung
+			// schließen
+			try (DeflaterOutputStream compressingOut = createCompressingStream(new NonClosingOutputStream(out), encoding)) {
+				contentWriter.writeTo(compressingOut);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			contentWriter.close();
+		}
+	}
+}
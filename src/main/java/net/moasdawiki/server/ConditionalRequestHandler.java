@@ -0,0 +1,213 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.ServiceException;
+import net.moasdawiki.service.HttpResponse;
+import net.moasdawiki.util.DateUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+
+/**
+ * Legt fest, wie lange Browser eine Antwort cachen dürfen, und beantwortet
+ * bedingte Requests gemäß RFC 7232.
+ *
+ * Cachebar sind Wikiseiten und Dateien aus dem Repository. Sie erhalten ein
+ * Entity-Tag, das bei Dateien aus Zeitstempel und Größe gebildet wird, bei
+ * generierten Seiten aus einem Hash des Inhalts. Bilder unter
+ * <tt>/img/</tt> dürfen für eine konfigurierbare Zeit ohne Rückfrage
+ * verwendet werden, alle anderen Antworten muss der Browser vor jeder
+ * Verwendung validieren.
+ *
+ * Stimmt der Validator im Request überein, wird 304 gesendet. Dateien werden
+ * dann gar nicht erst gelesen, sondern nur wieder geschlossen.
+ */
+abstract class ConditionalRequestHandler {
+
+	static final String HTTP_HEADER_IF_NONE_MATCH = "if-none-match";
+	static final String HTTP_HEADER_IF_MODIFIED_SINCE = "if-modified-since";
+
+	/**
+	 * Der Browser darf die Antwort speichern, muss sie aber vor jeder
+	 * Verwendung validieren.
+	 */
+	static final String CACHE_CONTROL_REVALIDATE = "no-cache";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Ergänzt Cache-Policy und Validatoren und beantwortet einen bedingten
+	 * Request ggf. mit 304. Nicht cachebare Antworten werden unverändert
+	 * zurückgegeben.
+	 *
+	 * @param imgMaxAge Cache-Dauer in Sekunden für Bilder unter
+	 *        <tt>/img/</tt>.
+	 * @return Antwort, ggf. mit Status 304. Nicht <code>null</code>.
+	 */
+	@NotNull
+	static HttpResponse handleConditional(@NotNull HttpRequest httpRequest, @NotNull HttpResponse response, int imgMaxAge) {
+		if (response.statusCode != 200 || !"GET".equals(httpRequest.method)) {
+			return response;
+		}
+		String cacheControl = getCacheControl(httpRequest.urlPath, imgMaxAge);
+		if (cacheControl == null) {
+			return response;
+		}
+		response.cacheControl = cacheControl;
+		if (response.etag == null) {
+			response.etag = generateEtag(response);
+		}
+
+		if (isNotModified(httpRequest, response)) {
+			return generateNotModified(response);
+		}
+		return response;
+	}
+
+	/**
+	 * Bestimmt die Cache-Policy anhand des URL-Pfads.
+	 *
+	 * @return Wert für den <tt>Cache-Control</tt>-Header. <code>null</code>
+	 *         -> Antwort darf nicht gecacht werden.
+	 */
+	@Nullable
+	static String getCacheControl(@NotNull String urlPath, int imgMaxAge) {
+		if (urlPath.startsWith("/img/")) {
+			return "public, max-age=" + imgMaxAge;
+		} else if (urlPath.equals("/") || urlPath.startsWith("/view/") || urlPath.startsWith("/file/")) {
+			return CACHE_CONTROL_REVALIDATE;
+		} else if (urlPath.lastIndexOf('/') == 0 && !urlPath.equals("/status") && !urlPath.equals("/shutdown")
+				&& !urlPath.equals("/metrics")
+				&& !urlPath.startsWith("/upload") && !urlPath.startsWith("/sync")) {
+			// statische Dateien im Wurzelordner, z.B. CSS
+			return CACHE_CONTROL_REVALIDATE;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Erzeugt ein Entity-Tag für die Antwort. Bei Dateien wird es aus
+	 * Zeitstempel und Größe gebildet, damit die Datei nicht gelesen werden
+	 * muss, sonst aus einem Hash des Inhalts.
+	 *
+	 * @return Entity-Tag inkl. Anführungszeichen. <code>null</code> -> kein
+	 *         Entity-Tag möglich.
+	 */
+	@Nullable
+	static String generateEtag(@NotNull HttpResponse response) {
+		if (response.contentWriter != null) {
+			if (response.lastModified == null || response.contentLength < 0) {
+				return null;
+			}
+			return '"' + Long.toHexString(response.lastModified.getTime()) + '-' + Long.toHexString(response.contentLength) + '"';
+		}
+
+		byte[] content = response.content != null ? response.content : new byte[0];
+		try {
+			byte[] hash = MessageDigest.getInstance("MD5").digest(content);
+			StringBuilder sb = new StringBuilder(2 + hash.length * 2);
+			sb.append('"');
+			for (byte b : hash) {
+				sb.append(HEX_DIGITS[(b >> 4) & 0xf]);
+				sb.append(HEX_DIGITS[b & 0xf]);
+			}
+			sb.append('"');
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// MD5 ist in jeder JVM vorhanden
+			return null;
+		}
+	}
+
+	/**
+	 * Prüft die Bedingungen im Request. <tt>If-None-Match</tt> hat Vorrang
+	 * vor <tt>If-Modified-Since</tt>.
+	 */
+	private static boolean isNotModified(@NotNull HttpRequest httpRequest, @NotNull HttpResponse response) {
+		String ifNoneMatch = httpRequest.httpHeader.get(HTTP_HEADER_IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			return response.etag != null && matchesEtag(ifNoneMatch, response.etag);
+		}
+
+		String ifModifiedSince = httpRequest.httpHeader.get(HTTP_HEADER_IF_MODIFIED_SINCE);
+		if (ifModifiedSince != null && response.lastModified != null) {
+			try {
+				Date since = DateUtils.parseHttpDate(ifModifiedSince);
+				// Last-Modified wird nur sekundengenau übertragen
+				return response.lastModified.getTime() / 1000 <= since.getTime() / 1000;
+			} catch (ServiceException e) {
+				// ungültiges Datum wird gemäß RFC ignoriert
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Vergleicht die Entity-Tags aus <tt>If-None-Match</tt> mit dem aktuellen
+	 * Entity-Tag. Gemäß RFC wird schwach verglichen, d.h. das Präfix
+	 * <tt>W/</tt> wird ignoriert.
+	 */
+	static boolean matchesEtag(@NotNull String ifNoneMatch, @NotNull String etag) {
+		if (ifNoneMatch.trim().equals("*")) {
+			return true;
+		}
+		String currentTag = stripWeakPrefix(etag);
+		for (String tag : ifNoneMatch.split(",")) {
+			if (stripWeakPrefix(tag.trim()).equals(currentTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@NotNull
+	private static String stripWeakPrefix(@NotNull String etag) {
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
+
+	/**
+	 * Erzeugt die Antwort 304 mit den Validatoren der ursprünglichen
+	 * Antwort. Ein Streaming-Body wird geschlossen, ohne gelesen zu werden.
+	 */
+	@NotNull
+	private static HttpResponse generateNotModified(@NotNull HttpResponse response) {
+		try {
+			if (response.contentWriter != null) {
+				response.contentWriter.close();
+			}
+		} catch (IOException e) {
+			// nichts zu tun, der Inhalt wird nicht mehr benötigt
+		}
+		HttpResponse result = new HttpResponse();
+		result.statusCode = 304;
+		result.contentType = response.contentType;
+		result.lastModified = response.lastModified;
+		result.etag = response.etag;
+		result.cacheControl = response.cacheControl;
+		return result;
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.ServiceException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * Zustand einer offenen Client-Verbindung des {@link Webserver}. Die vom
+ * Client empfangenen Bytes werden gepuffert, bis ein vollständiger Request
+ * inkl. Body vorliegt. Bei Pipelining bleiben bereits empfangene Bytes des
+ * nächsten Requests im Puffer. Der Puffer wird für alle Requests der
+ * Verbindung wiederverwendet.
+ *
+ * Header und Body sind in der Größe beschränkt. Überschreitet ein Request
+ * die Grenzen, wird er als fehlerhaft markiert, ohne dass der Rest
+ * eingelesen wird.
+ *
+ * Nicht thread-safe. Eine Verbindung wird immer entweder vom Selector-Thread
+ * oder von genau einem Worker-Thread bearbeitet.
+ */
+class HttpConnection {
+
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+
+	@NotNull
+	private final SocketChannel channel;
+
+	/**
+	 * Maximale Größe des HTTP-Headers in Bytes.
+	 */
+	private final int maxHeaderSize;
+
+	/**
+	 * Maximale Größe des HTTP-Body in Bytes.
+	 */
+	private final int maxBodySize;
+
+	/**
+	 * Empfangene, noch nicht verarbeitete Bytes. Die Position markiert das
+	 * Ende der Daten.
+	 */
+	@NotNull
+	private ByteBuffer buffer;
+
+	/**
+	 * Ab dieser Position wird nach dem Ende des HTTP-Headers gesucht, damit
+	 * der Puffer nicht bei jedem Lesevorgang komplett durchsucht wird.
+	 */
+	private int scanPosition;
+
+	/**
+	 * Bereits eingelesener Header, solange der Body noch nicht vollständig
+	 * empfangen wurde.
+	 */
+	@Nullable
+	private HttpRequest pendingRequest;
+
+	/**
+	 * Fehler beim Einlesen des Headers, wird an den Worker-Thread
+	 * weitergereicht.
+	 */
+	@Nullable
+	private ServiceException pendingError;
+
+	/**
+	 * HTTP-Statuscode zu {@link #pendingError}.
+	 */
+	private int errorStatusCode;
+
+	private int headerLength;
+	private int contentLength;
+
+	/**
+	 * Dauer des Parsens des aktuellen bzw. des zuletzt abgeholten Requests
+	 * in Nanosekunden.
+	 */
+	private long parseDuration;
+	private long lastParseDuration;
+
+	/**
+	 * Anzahl der bisher eingelesenen Requests.
+	 */
+	private int requestCount;
+
+	/**
+	 * Zeitpunkt der letzten Aktivität, für die Timeouts.
+	 */
+	private long lastActivity;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxHeaderSize Maximale Größe des HTTP-Headers in Bytes.
+	 * @param maxBodySize Maximale Größe des HTTP-Body in Bytes.
+	 */
+	HttpConnection(@NotNull SocketChannel channel, int maxHeaderSize, int maxBodySize) {
+		this.channel = channel;
+		this.maxHeaderSize = maxHeaderSize;
+		this.maxBodySize = maxBodySize;
+		this.buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		this.lastActivity = System.currentTimeMillis();
+	}
+
+	@NotNull
+	SocketChannel getChannel() {
+		return channel;
+	}
+
+	int getRequestCount() {
+		return requestCount;
+	}
+
+	long getLastActivity() {
+		return lastActivity;
+	}
+
+	/**
+	 * Setzt den Zeitpunkt der letzten Aktivität auf jetzt.
+	 */
+	void touch() {
+		lastActivity = System.currentTimeMillis();
+	}
+
+	/**
+	 * Gibt an, ob ein Request erst teilweise empfangen wurde.
+	 */
+	boolean hasBufferedData() {
+		return buffer.position() > 0;
+	}
+
+	/**
+	 * Liest alle ohne Blockieren verfügbaren Bytes vom Client. Der Kanal muss
+	 * im nicht-blockierenden Modus sein.
+	 *
+	 * @return <code>false</code>, wenn der Client die Verbindung geschlossen
+	 *         hat.
+	 */
+	boolean read() throws IOException {
+		while (true) {
+			if (!buffer.hasRemaining()) {
+				int limit = getBufferLimit();
+				if (buffer.capacity() >= limit) {
+					// Puffer voll, Rest wird erst nach Verarbeitung des
+					// aktuellen Requests gelesen
+					return true;
+				}
+				ensureCapacity((int) Math.min((long) buffer.capacity() * 2, limit));
+			}
+			int count = channel.read(buffer);
+			if (count < 0) {
+				return false;
+			} else if (count == 0) {
+				return true;
+			}
+			touch();
+		}
+	}
+
+	/**
+	 * Gibt die maximale Puffergröße für den aktuellen Request zurück.
+	 */
+	private int getBufferLimit() {
+		if (pendingRequest != null) {
+			return headerLength + contentLength;
+		} else {
+			return maxHeaderSize;
+		}
+	}
+
+	/**
+	 * Prüft, ob der nächste Request vollständig empfangen wurde und mit
+	 * {@link #nextRequest()} abgeholt werden kann. Das ist auch der Fall,
+	 * wenn der Header fehlerhaft ist.
+	 */
+	boolean isRequestComplete() {
+		if (pendingError != null) {
+			return true;
+		}
+		if (pendingRequest == null) {
+			int headerEnd = findHeaderEnd();
+			if (headerEnd < 0) {
+				if (buffer.position() >= maxHeaderSize) {
+					setError(400, new ServiceException("HTTP header exceeds " + maxHeaderSize + " bytes"));
+					return true;
+				}
+				return false;
+			}
+			try {
+				long startTime = System.nanoTime();
+				HttpRequest httpRequest = HttpRequestParser.parseHeader(buffer.array(), 0, headerEnd);
+				parseDuration = System.nanoTime() - startTime;
+				long requestContentLength = HttpRequestParser.getContentLength(httpRequest);
+				if (requestContentLength > maxBodySize) {
+					setError(413, new ServiceException("HTTP body of " + requestContentLength + " bytes exceeds " + maxBodySize + " bytes"));
+					return true;
+				}
+				contentLength = (int) requestContentLength;
+				headerLength = headerEnd;
+				pendingRequest = httpRequest;
+				ensureCapacity(headerLength + contentLength);
+			} catch (ServiceException e) {
+				setError(400, e);
+				return true;
+			}
+		}
+		return buffer.position() >= headerLength + contentLength;
+	}
+
+	/**
+	 * Entnimmt den nächsten vollständigen Request aus dem Puffer. Darf nur
+	 * aufgerufen werden, wenn {@link #isRequestComplete()}
+	 * <code>true</code> geliefert hat.
+	 *
+	 * @return HTTP-Anfragedaten. Nicht <code>null</code>.
+	 * @throws ServiceException wenn der Request fehlerhaft ist
+	 */
+	@NotNull
+	HttpRequest nextRequest() throws ServiceException {
+		if (pendingError != null) {
+			throw pendingError;
+		}
+		HttpRequest httpRequest = pendingRequest;
+		if (httpRequest == null) {
+			throw new ServiceException("HTTP request not complete");
+		}
+		long startTime = System.nanoTime();
+		byte[] httpBody = Arrays.copyOfRange(buffer.array(), headerLength, headerLength + contentLength);
+		discard(headerLength + contentLength);
+		HttpRequestParser.parseBody(httpRequest, httpBody);
+		lastParseDuration = parseDuration + System.nanoTime() - startTime;
+		parseDuration = 0;
+		pendingRequest = null;
+		requestCount++;
+		return httpRequest;
+	}
+
+	/**
+	 * Gibt zurück, wie lange das Parsen von Header und Body des zuletzt mit
+	 * {@link #nextRequest()} abgeholten Requests gedauert hat.
+	 *
+	 * @return Dauer in Nanosekunden.
+	 */
+	long getParseDuration() {
+		return lastParseDuration;
+	}
+
+	/**
+	 * Gibt den HTTP-Statuscode für einen fehlerhaften Request zurück, z.B.
+	 * 400 oder 413.
+	 */
+	int getErrorStatusCode() {
+		return errorStatusCode;
+	}
+
+	private void setError(int statusCode, @NotNull ServiceException e) {
+		errorStatusCode = statusCode;
+		pendingError = e;
+	}
+
+	/**
+	 * Sucht das Ende des HTTP-Headers, d.h. die erste Leerzeile. Gemäß RFC
+	 * 2616 werden als Zeilenende \n und \r\n akzeptiert. Leerzeilen vor der
+	 * Request-Line werden ignoriert.
+	 *
+	 * @return Position hinter der Leerzeile, -1 -> Header noch nicht
+	 *         vollständig.
+	 */
+	private int findHeaderEnd() {
+		byte[] data = buffer.array();
+		int end = buffer.position();
+
+		// führende Leerzeilen verwerfen
+		int start = 0;
+		while (start < end && (data[start] == '\r' || data[start] == '\n')) {
+			start++;
+		}
+		if (start > 0) {
+			discard(start);
+			end = buffer.position();
+		}
+
+		// nur neu empfangene Bytes durchsuchen
+		for (int i = Math.max(scanPosition, 1); i < end; i++) {
+			if (data[i] == '\n') {
+				if (data[i - 1] == '\n') {
+					return i + 1;
+				} else if (i >= 2 && data[i - 1] == '\r' && data[i - 2] == '\n') {
+					return i + 1;
+				}
+			}
+		}
+		scanPosition = end;
+		return -1;
+	}
+
+	/**
+	 * Entfernt die angegebene Anzahl Bytes vom Anfang des Puffers.
+	 */
+	private void discard(int count) {
+		buffer.flip();
+		buffer.position(count);
+		if (!buffer.hasRemaining() && buffer.capacity() > INITIAL_BUFFER_SIZE) {
+			// nach einem großen Request wieder verkleinern
+			buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		} else {
+			buffer.compact();
+		}
+		scanPosition = 0;
+	}
+
+	/**
+	 * Vergrößert den Puffer bei Bedarf auf die angegebene Kapazität.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > buffer.capacity()) {
+			ByteBuffer newBuffer = ByteBuffer.allocate(capacity);
+			buffer.flip();
+			newBuffer.put(buffer);
+			buffer = newBuffer;
+		}
+	}
+}
@@ -31,6 +31,10 @@ public class HttpRequest {
 	public static final String HTTP_HEADER_FIRST_LINE = "";
 	public static final String HTTP_HEADER_CONTENT_TYPE = "content-type";
 	public static final String HTTP_HEADER_CONTENT_LENGTH = "content-length";
+	public static final String HTTP_HEADER_CONNECTION = "connection";
+	public static final String HTTP_HEADER_TRANSFER_ENCODING = "transfer-encoding";
+	public static final String HTTP_VERSION_1_0 = "HTTP/1.0";
+	public static final String HTTP_VERSION_1_1 = "HTTP/1.1";
 	public static final String METHOD_GET = "GET";
 	public static final String METHOD_POST = "POST";
 
@@ -52,6 +56,12 @@ public class HttpRequest {
 	 */
 	public String method;
 
+	/**
+	 * Protokollversion aus der ersten Headerzeile, z.B. <tt>HTTP/1.1</tt>.
+	 * Nicht <code>null</code>.
+	 */
+	public String protocolVersion;
+
 	/**
 	 * Komplette URL inkl. Pfad und Parameter. Nicht <code>null</code>.<br>
 	 * <br>
@@ -87,6 +97,7 @@ public class HttpRequest {
 	public HttpRequest() {
 		httpHeader = new HashMap<>();
 		method = "";
+		protocolVersion = HTTP_VERSION_1_1;
 		url = "";
 		urlPath = "";
 		urlParameters = new HashMap<>();
@@ -19,19 +19,20 @@
 
 package net.moasdawiki.server;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import net.moasdawiki.base.ServiceException;
+import org.jetbrains.annotations.NotNull;
 
 /**
- * Liest einen HTTP-Request gemäß RFC 2616 (HTTP/1.1) ein, parst den HTTP-Header
- * und liest den HTTP-Body ein. Als Zeichenkodierung wird UTF-8 vorausgesetzt.
+ * Parst einen HTTP-Request gemäß RFC 2616 (HTTP/1.1), der bereits vollständig
+ * in einem Puffer vorliegt (siehe {@link HttpConnection}). Als
+ * Zeichenkodierung wird UTF-8 vorausgesetzt.
  * <br>
  * <br>
  * Beispiel:
@@ -47,17 +48,22 @@ import net.moasdawiki.base.ServiceException;
 public abstract class HttpRequestParser {
 
 	/**
-	 * Liest den HTTP-Request ein.
-	 * 
-	 * @param inputStream Eingabestrom zum Lesen der Request-Daten. Nicht
+	 * Parst den HTTP-Header. Die Daten müssen den Header vollständig inkl.
+	 * abschließender Leerzeile enthalten, der HTTP-Body wird nicht
+	 * ausgewertet.
+	 *
+	 * @param data Puffer mit den empfangenen Request-Daten. Nicht
 	 *        <code>null</code>.
-	 * @return HTTP-Anfragedaten. Nicht <code>null</code>.
-	 * @throws ServiceException wenn ein Fehler auftrat
+	 * @param offset Beginn des Headers im Puffer.
+	 * @param length Länge des Headers in Bytes.
+	 * @return HTTP-Anfragedaten ohne Body. Nicht <code>null</code>.
+	 * @throws ServiceException wenn der Header ungültig ist
 	 */
-	public static HttpRequest parse(InputStream inputStream) throws ServiceException {
+	@NotNull
+	public static HttpRequest parseHeader(@NotNull byte[] data, int offset, int length) throws ServiceException {
 		HttpRequest http = new HttpRequest();
 
-		Map<String, String> httpHeader = readHttpHeader(inputStream);
+		Map<String, String> httpHeader = readHttpHeader(data, offset, length);
 		http.httpHeader = httpHeader;
 
 		// Request-Line zerlegen
@@ -68,78 +74,101 @@ public abstract class HttpRequestParser {
 		http.url = url;
 		http.urlPath = extractUrlPath(url);
 		http.urlParameters = extractUrlParameters(url);
+		http.protocolVersion = extractProtocolVersion(requestLine);
+		return http;
+	}
 
-		// HTTP-Body einlesen
-		String contentLengthStr = httpHeader.get(HttpRequest.HTTP_HEADER_CONTENT_LENGTH);
-		byte[] httpBody = readHttpBody(contentLengthStr, inputStream);
+	/**
+	 * Übernimmt den HTTP-Body und wertet ggf. die POST-Formulardaten aus.
+	 *
+	 * @param http HTTP-Anfragedaten mit bereits eingelesenem Header.
+	 * @param httpBody HTTP-Body, genau so lang wie im Header angegeben.
+	 * @throws ServiceException wenn ein Fehler auftrat
+	 */
+	public static void parseBody(@NotNull HttpRequest http, @NotNull byte[] httpBody) throws ServiceException {
 		http.httpBody = httpBody;
 
 		// POST-Formulardaten einlesen
-		String contentType = httpHeader.get(HttpRequest.HTTP_HEADER_CONTENT_TYPE);
-		if ("POST".equals(method) && "application/x-www-form-urlencoded".equals(contentType)) {
+		String contentType = http.httpHeader.get(HttpRequest.HTTP_HEADER_CONTENT_TYPE);
+		if ("POST".equals(http.method) && "application/x-www-form-urlencoded".equals(contentType)) {
 			http.urlParameters = extractPostData(httpBody);
 		}
-
-		return http;
 	}
 
 	/**
-	 * Liest den HTTP-Header ein.
+	 * Gibt die im Header angegebene Länge des HTTP-Body zurück.
+	 *
+	 * @return Länge in Bytes, 0 wenn keine Angabe vorhanden ist.
+	 * @throws ServiceException bei ungültiger Längenangabe
 	 */
-	private static Map<String, String> readHttpHeader(InputStream is) throws ServiceException {
-		Map<String, String> result = new HashMap<>();
+	public static long getContentLength(@NotNull HttpRequest http) throws ServiceException {
+		String contentLengthStr = http.httpHeader.get(HttpRequest.HTTP_HEADER_CONTENT_LENGTH);
+		if (contentLengthStr == null) {
+			// kein Body vorhanden
+			return 0;
+		}
+
 		try {
-			while (true) {
-				String line = readLine(is);
-				if (line.isEmpty()) {
-					// Leerzeile beendet HTTP-Header
-					break;
-				} else if (result.isEmpty()) {
-					// Sonderbehandlung für erste Headerzeile
-					result.put(HttpRequest.HTTP_HEADER_FIRST_LINE, line);
-				} else {
-					// Headerzeile hat das Format "Name: Wert"
-					int pos = line.indexOf(':');
-					if (pos > 0) {
-						// case-insensitive --> in Kleinbuchstaben umwandeln
-						String name = line.substring(0, pos).trim().toLowerCase();
-						String value = line.substring(pos + 1).trim();
-						result.put(name, value);
-					} else {
-						// ungültiges Format, ignorieren
-						System.out.println("Invalid HTTP header: " + line);
-					}
-				}
-			}
-			if (result.isEmpty()) {
-				throw new ServiceException("Empty HTTP header");
+			long contentLength = Long.parseLong(contentLengthStr);
+			if (contentLength < 0) {
+				throw new ServiceException("Invalid Content-Length: " + contentLengthStr);
 			}
-			return result;
-		} catch (Exception e) {
-			throw new ServiceException("Error reading HTTP headers", e);
+			return contentLength;
+		} catch (NumberFormatException e) {
+			throw new ServiceException("Invalid Content-Length: " + contentLengthStr, e);
 		}
 	}
 
 	/**
-	 * Liest eine Zeile von Eingabestrom. Gemäß RFC 2616 werden als Zeilenende
-	 * \n und \r\n akzeptiert. Erkennt nicht das Ende des Stroms, darf also nur
-	 * für die Headerzeilen verwendet werden.
+	 * Zerlegt den HTTP-Header in seine Zeilen und gibt die Headerzeilen als
+	 * Map zurück. Die erste Zeile wird unter dem Schlüssel
+	 * {@link HttpRequest#HTTP_HEADER_FIRST_LINE} abgelegt. Gemäß RFC 2616
+	 * werden als Zeilenende \n und \r\n akzeptiert. Die Zeilen werden als
+	 * UTF-8 dekodiert, ein reiner ASCII-Header ist damit ebenfalls abgedeckt.
 	 */
-	private static String readLine(InputStream is) throws IOException {
-		StringBuilder line = new StringBuilder();
-		int b;
-		while ((b = is.read()) >= 0) {
-			//noinspection StatementWithEmptyBody
-			if (b == '\r') {
-				// Zeichen ignorieren
-			} else if (b == '\n') {
-				break; // Zeilenende erreicht
+	private static Map<String, String> readHttpHeader(byte[] data, int offset, int length) throws ServiceException {
+		Map<String, String> result = new HashMap<>();
+		int end = offset + length;
+		int lineStart = offset;
+		while (lineStart < end) {
+			// Zeilenende suchen
+			int lineEnd = lineStart;
+			while (lineEnd < end && data[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			int nextLineStart = lineEnd + 1;
+			if (lineEnd > lineStart && data[lineEnd - 1] == '\r') {
+				lineEnd--;
+			}
+
+			if (lineEnd == lineStart) {
+				// Leerzeile beendet HTTP-Header
+				break;
+			}
+			String line = new String(data, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+			if (result.isEmpty()) {
+				// Sonderbehandlung für erste Headerzeile
+				result.put(HttpRequest.HTTP_HEADER_FIRST_LINE, line);
 			} else {
-				// Zeichen hinzufügen
-				line.append((char) b);
+				// Headerzeile hat das Format "Name: Wert"
+				int pos = line.indexOf(':');
+				if (pos > 0) {
+					// case-insensitive --> in Kleinbuchstaben umwandeln
+					String name = line.substring(0, pos).trim().toLowerCase();
+					String value = line.substring(pos + 1).trim();
+					result.put(name, value);
+				} else {
+					// ungültiges Format, ignorieren
+					System.out.println("Invalid HTTP header: " + line);
+				}
 			}
+			lineStart = nextLineStart;
 		}
-		return line.toString();
+
+		if (result.isEmpty()) {
+			throw new ServiceException("Empty HTTP header");
+		}
+		return result;
 	}
 
 	/**
@@ -178,6 +207,19 @@ public abstract class HttpRequestParser {
 		}
 	}
 
+	/**
+	 * Ermittelt die Protokollversion, z.B. <tt>HTTP/1.1</tt>. Fehlt die
+	 * Angabe, wird <tt>HTTP/1.0</tt> angenommen.
+	 */
+	private static String extractProtocolVersion(String requestLine) {
+		int pos1 = requestLine.indexOf(' ');
+		int pos2 = requestLine.indexOf(' ', pos1 + 1);
+		if (pos2 < 0) {
+			return HttpRequest.HTTP_VERSION_1_0;
+		}
+		return requestLine.substring(pos2 + 1).trim();
+	}
+
 	/**
 	 * Bestimmt den Pfadteil der URL, ohne "?" und nachfolgende Parameter.<br>
 	 * <br>
@@ -252,36 +294,6 @@ public abstract class HttpRequestParser {
 		return result;
 	}
 
-	/**
-	 * Liest den HTTP-Body ein. Der InputStream muss bereits an der richtigen
-	 * Stelle stehen, d.h. der HTTP-Header ist bereits eingelesen.
-	 */
-	private static byte[] readHttpBody(String contentLengthStr, InputStream is) throws ServiceException {
-		if (contentLengthStr == null) {
-			// kein Body vorhanden
-			return new byte[0];
-		}
-
-		int contentLength;
-		try {
-			contentLength = Integer.parseInt(contentLengthStr);
-		} catch (Exception e) {
-			throw new ServiceException("Invalid Content-Length: " + contentLengthStr, e);
-		}
-
-		try {
-			byte[] httpBody = new byte[contentLength];
-			int count = 0;
-			int read;
-			while (count < contentLength && (read = is.read(httpBody, count, contentLength - count)) >= 0) {
-				count += read;
-			}
-			return httpBody;
-		} catch (IOException e) {
-			throw new ServiceException("Error reading HTTP body data", e);
-		}
-	}
-
 	/**
 	 * Wertet die POST-Parameter im HTTP-Body aus.
 	 */
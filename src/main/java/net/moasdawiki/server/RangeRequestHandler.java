@@ -0,0 +1,309 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.ServiceException;
+import net.moasdawiki.service.ContentWriter;
+import net.moasdawiki.service.HttpResponse;
+import net.moasdawiki.util.DateUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Beantwortet Range-Requests gemäß RFC 7233, sodass Clients unterbrochene
+ * Downloads fortsetzen und in Audio-, Video- oder PDF-Dateien springen
+ * können.
+ *
+ * Unterstützt werden nur Antworten, deren Body aus einer Datei stammt (siehe
+ * {@link HttpResponse#isRangeSupported()}). Die angeforderten Bereiche
+ * werden per wahlfreiem Zugriff aus der Datei gelesen, ohne sie vollständig
+ * zu laden. Ein Bereich wird als 206 mit <tt>Content-Range</tt> gesendet,
+ * mehrere Bereiche als <tt>multipart/byteranges</tt>. Nicht erfüllbare
+ * Bereiche werden mit 416 beantwortet.
+ */
+abstract class RangeRequestHandler {
+
+	static final String HTTP_HEADER_RANGE = "range";
+	static final String HTTP_HEADER_IF_RANGE = "if-range";
+
+	/**
+	 * Maximale Anzahl Bereiche pro Request. Bei mehr Bereichen wird die
+	 * Range-Angabe ignoriert und die ganze Datei gesendet, um Missbrauch
+	 * durch sehr viele kleine Bereiche zu verhindern.
+	 */
+	static final int MAX_RANGES = 16;
+
+	private static final String CRLF = "\r\n";
+
+	/**
+	 * Wertet die Range-Angabe des Requests aus und schränkt die Antwort
+	 * entsprechend ein. Bei allen anderen Requests wird die Antwort
+	 * unverändert zurückgegeben.
+	 *
+	 * @return Antwort, ggf. mit Status 206 oder 416. Nicht <code>null</code>.
+	 */
+	@NotNull
+	static HttpResponse handleRange(@NotNull HttpRequest httpRequest, @NotNull HttpResponse response) {
+		if (response.statusCode != 200 || !response.isRangeSupported()) {
+			return response;
+		}
+		response.httpHeader.put("Accept-Ranges", "bytes");
+
+		String rangeHeader = httpRequest.httpHeader.get(HTTP_HEADER_RANGE);
+		if (rangeHeader == null || !"GET".equals(httpRequest.method)) {
+			return response;
+		}
+		String ifRange = httpRequest.httpHeader.get(HTTP_HEADER_IF_RANGE);
+		if (ifRange != null && !isIfRangeSatisfied(ifRange, response)) {
+			// Datei wurde geändert -> vollständig senden
+			return response;
+		}
+
+		long contentLength = response.contentLength;
+		List<long[]> ranges = parseRanges(rangeHeader, contentLength);
+		if (ranges == null) {
+			// ungültige Angabe wird gemäß RFC ignoriert
+			return response;
+		}
+
+		if (ranges.isEmpty()) {
+			return generateNotSatisfiable(response, contentLength);
+		} else if (ranges.size() == 1) {
+			long[] range = ranges.get(0);
+			long length = range[1] - range[0] + 1;
+			response.statusCode = 206;
+			response.httpHeader.put("Content-Range", formatContentRange(range, contentLength));
+			response.setContent(response.getContentRange(range[0], length), length);
+			return response;
+		} else {
+			return generateMultipartResponse(response, ranges, contentLength);
+		}
+	}
+
+	/**
+	 * Prüft, ob die Bedingung in <tt>If-Range</tt> erfüllt ist, d.h. der
+	 * Client dieselbe Version der Datei kennt. Ein Entity-Tag muss stark mit
+	 * <tt>ETag</tt> übereinstimmen, ein Datum exakt mit
+	 * <tt>Last-Modified</tt>.
+	 */
+	private static boolean isIfRangeSatisfied(@NotNull String ifRange, @NotNull HttpResponse response) {
+		if (ifRange.startsWith("\"")) {
+			return ifRange.equals(response.etag);
+		}
+		if (response.lastModified == null || ifRange.startsWith("W/")) {
+			// kein passender Validator vorhanden
+			return false;
+		}
+		try {
+			Date ifRangeDate = DateUtils.parseHttpDate(ifRange);
+			// Last-Modified wird nur sekundengenau übertragen
+			return ifRangeDate.getTime() / 1000 == response.lastModified.getTime() / 1000;
+		} catch (ServiceException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Zerlegt die Range-Angabe, z.B. <tt>bytes=0-499,1000-</tt>. Die
+	 * Bereiche werden auf die Dateigröße begrenzt, nicht erfüllbare Bereiche
+	 * werden verworfen.
+	 *
+	 * @return Liste der Bereiche mit jeweils erstem und letztem Byte
+	 *         (inklusive). Leere Liste -> kein Bereich erfüllbar.
+	 *         <code>null</code> -> ungültige Angabe oder zu viele Bereiche.
+	 */
+	@Nullable
+	static List<long[]> parseRanges(@NotNull String rangeHeader, long contentLength) {
+		String value = rangeHeader.trim();
+		if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+			// andere Einheiten werden nicht unterstützt
+			return null;
+		}
+
+		String[] specs = value.substring(6).split(",");
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+		List<long[]> result = new ArrayList<>();
+		for (String spec : specs) {
+			spec = spec.trim();
+			int pos = spec.indexOf('-');
+			if (pos < 0) {
+				return null;
+			}
+			String firstStr = spec.substring(0, pos).trim();
+			String lastStr = spec.substring(pos + 1).trim();
+			try {
+				long first;
+				long last;
+				if (firstStr.isEmpty()) {
+					// Suffix, z.B. "-500" für die letzten 500 Bytes
+					long suffixLength = Long.parseLong(lastStr);
+					if (suffixLength < 0) {
+						return null;
+					}
+					first = Math.max(contentLength - suffixLength, 0);
+					last = contentLength - 1;
+					if (suffixLength == 0) {
+						continue; // nicht erfüllbar
+					}
+				} else {
+					first = Long.parseLong(firstStr);
+					last = lastStr.isEmpty() ? contentLength - 1 : Long.parseLong(lastStr);
+					if (first < 0 || last < first) {
+						return null;
+					}
+					last = Math.min(last, contentLength - 1);
+				}
+				if (first < contentLength) {
+					result.add(new long[] { first, last });
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return result;
+	}
+
+	@NotNull
+	private static String formatContentRange(long @NotNull [] range, long contentLength) {
+		return "bytes " + range[0] + "-" + range[1] + "/" + contentLength;
+	}
+
+	/**
+	 * Erzeugt die Antwort 416, wenn kein Bereich erfüllbar ist.
+	 */
+	@NotNull
+	private static HttpResponse generateNotSatisfiable(@NotNull HttpResponse response, long contentLength) {
+		closeContent(response);
+		HttpResponse result = new HttpResponse();
+		result.statusCode = 416;
+		result.contentType = HttpResponse.CONTENT_TYPE_TEXT;
+		result.httpHeader.put("Content-Range", "bytes */" + contentLength);
+		return result;
+	}
+
+	/**
+	 * Erzeugt eine Antwort vom Typ <tt>multipart/byteranges</tt> mit einem
+	 * Abschnitt pro Bereich.
+	 */
+	@NotNull
+	private static HttpResponse generateMultipartResponse(@NotNull HttpResponse response, @NotNull List<long[]> ranges, long contentLength) {
+		String boundary = UUID.randomUUID().toString();
+		List<byte[]> partHeaders = new ArrayList<>();
+		List<ContentWriter> partContents = new ArrayList<>();
+		long length = 0;
+		for (long[] range : ranges) {
+			String partHeader = "--" + boundary + CRLF
+					+ "Content-Type: " + response.contentType + CRLF
+					+ "Content-Range: " + formatContentRange(range, contentLength) + CRLF
+					+ CRLF;
+			byte[] partHeaderBytes = partHeader.getBytes(StandardCharsets.US_ASCII);
+			long partLength = range[1] - range[0] + 1;
+			partHeaders.add(partHeaderBytes);
+			partContents.add(response.getContentRange(range[0], partLength));
+			length += partHeaderBytes.length + partLength + CRLF.length();
+		}
+		byte[] trailer = ("--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+		length += trailer.length;
+
+		ContentWriter fileContent = response.contentWriter;
+		response.statusCode = 206;
+		response.contentType = "multipart/byteranges; boundary=" + boundary;
+		response.setContent(new MultipartContentWriter(fileContent, partHeaders, partContents, trailer), length);
+		return response;
+	}
+
+	private static void closeContent(@NotNull HttpResponse response) {
+		try {
+			if (response.contentWriter != null) {
+				response.contentWriter.close();
+			}
+		} catch (IOException e) {
+			// nichts zu tun, die Datei wird nicht mehr benötigt
+		}
+	}
+
+	/**
+	 * Schreibt die Abschnitte einer <tt>multipart/byteranges</tt>-Antwort.
+	 */
+	private static class MultipartContentWriter implements ContentWriter {
+
+		private static final byte[] CRLF_BYTES = CRLF.getBytes(StandardCharsets.US_ASCII);
+
+		@NotNull
+		private final ContentWriter fileContent;
+		@NotNull
+		private final List<byte[]> partHeaders;
+		@NotNull
+		private final List<ContentWriter> partContents;
+		private final byte @NotNull [] trailer;
+
+		MultipartContentWriter(@NotNull ContentWriter fileContent, @NotNull List<byte[]> partHeaders,
+							   @NotNull List<ContentWriter> partContents, byte @NotNull [] trailer) {
+			this.fileContent = fileContent;
+			this.partHeaders = partHeaders;
+			this.partContents = partContents;
+			this.trailer = trailer;
+		}
+
+		@Override
+		public void writeTo(@NotNull OutputStream out) throws IOException {
+			for (int i = 0; i < partHeaders.size(); i++) {
+				out.write(partHeaders.get(i));
+				partContents.get(i).writeTo(out);
+				out.write(CRLF_BYTES);
+			}
+			out.write(trailer);
+		}
+
+		@Override
+		public void writeTo(@NotNull WritableByteChannel channel) throws IOException {
+			for (int i = 0; i < partHeaders.size(); i++) {
+				writeFully(channel, partHeaders.get(i));
+				partContents.get(i).writeTo(channel);
+				writeFully(channel, CRLF_BYTES);
+			}
+			writeFully(channel, trailer);
+		}
+
+		private static void writeFully(@NotNull WritableByteChannel channel, byte @NotNull [] data) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			fileContent.close();
+		}
+	}
+}
@@ -29,6 +29,8 @@ import net.moasdawiki.service.sync.SynchronizationService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+
 /**
  * Forwards incoming HTTP requests to the corresponding service method.
  */
@@ -105,6 +107,75 @@ public class RequestDispatcher {
         return httpResponse;
     }
 
+    /**
+     * Returns the name of the route that handles the given URL path.
+     * Is used to group the request metrics, the names correspond to the
+     * cases in {@link #handleRequest(HttpRequest)}.
+     */
+    @NotNull
+    public static String getRouteName(@NotNull String urlPath) {
+        if (urlPath.equals("/")) {
+            return "root";
+        }
+        else if (urlPath.startsWith("/view/")) {
+            return "view";
+        }
+        else if (urlPath.startsWith("/search/")) {
+            return "search";
+        }
+        else if (urlPath.startsWith("/edit/")) {
+            return "edit";
+        }
+        else if (urlPath.startsWith("/upload")) {
+            return "upload";
+        }
+        else if (urlPath.startsWith("/sync")) {
+            return "sync";
+        }
+        else if (urlPath.startsWith("/img/")) {
+            return "img";
+        }
+        else if (urlPath.startsWith("/file/")) {
+            return "file";
+        }
+        else if (urlPath.startsWith("/") && urlPath.lastIndexOf('/') == 0) {
+            return "rootfile";
+        }
+        return "other";
+    }
+
+    /**
+     * Checks if the request only reads the repository content.
+     * Read-only requests can be handled concurrently, all other requests
+     * must be serialized by the caller as they modify the repository or
+     * internal state, e.g. synchronization sessions.
+     *
+     * Unknown URL paths are not considered read-only.
+     */
+    public boolean isReadOnlyRequest(@NotNull HttpRequest httpRequest) {
+        String urlPath = httpRequest.urlPath;
+        if (urlPath.equals("/") || urlPath.startsWith("/view/") || urlPath.startsWith("/search/")
+                || urlPath.startsWith("/img/") || urlPath.startsWith("/file/")) {
+            return true;
+        }
+        else if (urlPath.startsWith("/edit/")) {
+            // without action parameter only the editor page is shown
+            Map<String, String> urlParameters = httpRequest.urlParameters;
+            return urlParameters.get("cancel") == null && urlParameters.get("delete") == null
+                    && urlParameters.get("save") == null;
+        }
+        else if (urlPath.startsWith("/sync")) {
+            return urlPath.equals("/sync/check-session") || urlPath.equals("/sync/read-file");
+        }
+        else if (urlPath.startsWith("/upload")) {
+            return false;
+        }
+        else {
+            // static files in the repository root folder
+            return urlPath.startsWith("/") && urlPath.lastIndexOf('/') == 0;
+        }
+    }
+
     @Nullable
     private HttpResponse handleSynchronizationService(@NotNull HttpRequest httpRequest) {
         if (synchronizationService == null) {
@@ -0,0 +1,109 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Erzeugt den Executor, der die HTTP-Requests im {@link Webserver}
+ * verarbeitet. Der Typ wird in den Einstellungen festgelegt.
+ *
+ * Virtuelle Threads (ab Java 21) werden per Reflection angesprochen, damit
+ * der Code weiterhin mit Java 8 übersetzt werden kann. Stehen sie nicht zur
+ * Verfügung, wird ein Thread-Pool fester Größe verwendet.
+ */
+public abstract class RequestExecutorFactory {
+
+	/**
+	 * Thread-Pool mit fester Anzahl Threads.
+	 */
+	public static final String EXECUTOR_FIXED = "fixed";
+
+	/**
+	 * Work-Stealing-Pool mit der angegebenen Parallelität.
+	 */
+	public static final String EXECUTOR_WORKSTEALING = "workstealing";
+
+	/**
+	 * Ein neuer virtueller Thread pro Request, erst ab Java 21 verfügbar.
+	 */
+	public static final String EXECUTOR_VIRTUAL = "virtual";
+
+	/**
+	 * Anzahl Threads, wenn keine gültige Größe angegeben ist.
+	 */
+	static final int DEFAULT_SIZE = 5;
+
+	/**
+	 * Erzeugt einen neuen Executor.
+	 *
+	 * @param type Typ des Executors, siehe <code>EXECUTOR_*</code>.
+	 *        <code>null</code> oder unbekannt -> {@link #EXECUTOR_FIXED}.
+	 * @param size Anzahl Threads. Wird bei virtuellen Threads ignoriert. Bei
+	 *        ungültigem Wert wird {@link #DEFAULT_SIZE} verwendet.
+	 * @param log Logger für Hinweise zur Konfiguration.
+	 * @return Executor. Nicht <code>null</code>.
+	 */
+	@NotNull
+	public static ExecutorService createExecutor(@Nullable String type, int size, @NotNull Logger log) {
+		if (size <= 0) {
+			size = DEFAULT_SIZE;
+		}
+
+		if (EXECUTOR_VIRTUAL.equals(type)) {
+			ExecutorService executor = createVirtualThreadExecutor();
+			if (executor != null) {
+				log.write("Processing requests in virtual threads");
+				return executor;
+			}
+			log.write("Virtual threads not supported by this Java version, using " + size + " platform threads instead");
+		} else if (EXECUTOR_WORKSTEALING.equals(type)) {
+			log.write("Processing requests in a work-stealing pool with parallelism " + size);
+			return Executors.newWorkStealingPool(size);
+		} else if (type != null && !EXECUTOR_FIXED.equals(type)) {
+			log.write("Unknown request executor '" + type + "', using " + size + " platform threads instead");
+		}
+		return Executors.newFixedThreadPool(size);
+	}
+
+	/**
+	 * Erzeugt einen Executor, der jeden Request in einem eigenen virtuellen
+	 * Thread ausführt.
+	 *
+	 * @return <code>null</code> -> virtuelle Threads werden nicht
+	 *         unterstützt.
+	 */
+	@Nullable
+	static ExecutorService createVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Java-Version < 21
+			return null;
+		}
+	}
+}
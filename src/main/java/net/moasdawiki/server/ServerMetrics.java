@@ -0,0 +1,251 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.CacheStatistics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sammelt Kennzahlen des Webservers und gibt sie im Textformat von
+ * Prometheus aus, siehe
+ * https://prometheus.io/docs/instrumenting/exposition_formats/.
+ *
+ * Das Erfassen erfolgt ohne Locks über {@link LongAdder} und feste
+ * Bucket-Arrays, damit parallele Worker-Threads nicht aufeinander warten.
+ * Die Routen stehen beim Erzeugen fest, die Map wird danach nur noch
+ * gelesen.
+ */
+class ServerMetrics {
+
+	static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/**
+	 * Alle Routen, siehe {@link RequestDispatcher#getRouteName(String)}.
+	 * Zusätzlich die Routen, die der {@link Webserver} selbst beantwortet.
+	 */
+	static final String[] ROUTES = { "root", "view", "search", "edit", "upload", "sync", "img", "file", "rootfile",
+			"status", "shutdown", "metrics", "invalid", "other" };
+
+	/**
+	 * Obergrenzen der Buckets für die Antwortzeit in Sekunden.
+	 */
+	static final double[] LATENCY_BUCKETS = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+	private static final long[] LATENCY_BUCKETS_NANOS = new long[LATENCY_BUCKETS.length];
+
+	static {
+		for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+			LATENCY_BUCKETS_NANOS[i] = (long) (LATENCY_BUCKETS[i] * TimeUnit.SECONDS.toNanos(1));
+		}
+	}
+
+	@NotNull
+	private final Map<String, RouteMetrics> routeMetrics;
+
+	/**
+	 * Antworten je Statusklasse 1xx bis 5xx.
+	 */
+	@NotNull
+	private final LongAdder[] responsesByStatusClass = new LongAdder[5];
+
+	@NotNull
+	private final LongAdder bytesSent = new LongAdder();
+
+	/**
+	 * Anzahl Requests, die gerade in einem Worker-Thread verarbeitet werden.
+	 */
+	@NotNull
+	private final LongAdder activeWorkers = new LongAdder();
+
+	/**
+	 * Caches der Services, werden beim Start registriert. Zugriff nur
+	 * synchronisiert.
+	 */
+	@NotNull
+	private final Map<String, CacheStatistics> caches = new LinkedHashMap<>();
+
+	ServerMetrics() {
+		Map<String, RouteMetrics> map = new LinkedHashMap<>();
+		for (String route : ROUTES) {
+			map.put(route, new RouteMetrics());
+		}
+		routeMetrics = Collections.unmodifiableMap(map);
+		for (int i = 0; i < responsesByStatusClass.length; i++) {
+			responsesByStatusClass[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Erfasst einen beantworteten Request.
+	 *
+	 * @param route Name der Route, siehe {@link #ROUTES}. Unbekannte Namen
+	 *        werden unter "other" gezählt.
+	 * @param statusCode HTTP-Statuscode der Antwort.
+	 * @param durationNanos Verarbeitungsdauer in Nanosekunden.
+	 */
+	void recordRequest(@NotNull String route, int statusCode, long durationNanos) {
+		RouteMetrics metrics = routeMetrics.get(route);
+		if (metrics == null) {
+			metrics = routeMetrics.get("other");
+		}
+		metrics.record(durationNanos);
+
+		int statusClass = statusCode / 100;
+		if (statusClass >= 1 && statusClass <= 5) {
+			responsesByStatusClass[statusClass - 1].increment();
+		}
+	}
+
+	void recordBytesSent(long bytes) {
+		bytesSent.add(bytes);
+	}
+
+	void workerStarted() {
+		activeWorkers.increment();
+	}
+
+	void workerFinished() {
+		activeWorkers.decrement();
+	}
+
+	/**
+	 * Registriert die Zähler eines Caches für die Ausgabe.
+	 */
+	void addCacheStatistics(@NotNull String name, @NotNull CacheStatistics cacheStatistics) {
+		synchronized (caches) {
+			caches.put(name, cacheStatistics);
+		}
+	}
+
+	/**
+	 * Gibt alle Kennzahlen im Textformat von Prometheus aus.
+	 *
+	 * @param activeRequests Anzahl der angenommenen Requests inkl.
+	 *        Warteschlange, siehe {@link AdmissionController}.
+	 * @param rejectedRequests Anzahl der wegen Überlast abgelehnten Requests.
+	 */
+	@NotNull
+	String export(int activeRequests, long rejectedRequests) {
+		StringBuilder sb = new StringBuilder();
+
+		writeHelp(sb, "moasdawiki_http_requests_total", "counter", "Number of handled HTTP requests per route.");
+		for (Map.Entry<String, RouteMetrics> entry : routeMetrics.entrySet()) {
+			writeSample(sb, "moasdawiki_http_requests_total", "route=\"" + entry.getKey() + "\"", entry.getValue().count.sum());
+		}
+
+		writeHelp(sb, "moasdawiki_http_request_duration_seconds", "histogram", "Processing time of HTTP requests per route.");
+		for (Map.Entry<String, RouteMetrics> entry : routeMetrics.entrySet()) {
+			String routeLabel = "route=\"" + entry.getKey() + "\"";
+			RouteMetrics metrics = entry.getValue();
+			long cumulated = 0;
+			for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+				cumulated += metrics.buckets[i].sum();
+				writeSample(sb, "moasdawiki_http_request_duration_seconds_bucket", routeLabel + ",le=\"" + LATENCY_BUCKETS[i] + "\"", cumulated);
+			}
+			cumulated += metrics.buckets[LATENCY_BUCKETS.length].sum();
+			writeSample(sb, "moasdawiki_http_request_duration_seconds_bucket", routeLabel + ",le=\"+Inf\"", cumulated);
+			writeSample(sb, "moasdawiki_http_request_duration_seconds_sum", routeLabel, metrics.durationNanos.sum() / 1e9);
+			// count passend zu den Buckets, nicht aus count lesen, das
+			// inzwischen weitergezählt haben kann
+			writeSample(sb, "moasdawiki_http_request_duration_seconds_count", routeLabel, cumulated);
+		}
+
+		writeHelp(sb, "moasdawiki_http_responses_total", "counter", "Number of HTTP responses per status class.");
+		for (int i = 0; i < responsesByStatusClass.length; i++) {
+			writeSample(sb, "moasdawiki_http_responses_total", "code=\"" + (i + 1) + "xx\"", responsesByStatusClass[i].sum());
+		}
+
+		long workers = activeWorkers.sum();
+		writeHelp(sb, "moasdawiki_http_requests_in_flight", "gauge", "Number of accepted HTTP requests, including queued requests.");
+		writeSample(sb, "moasdawiki_http_requests_in_flight", null, activeRequests);
+		writeHelp(sb, "moasdawiki_http_requests_queued", "gauge", "Number of accepted HTTP requests waiting for a worker thread.");
+		writeSample(sb, "moasdawiki_http_requests_queued", null, Math.max(activeRequests - workers, 0));
+		writeHelp(sb, "moasdawiki_http_requests_rejected_total", "counter", "Number of HTTP requests rejected due to overload.");
+		writeSample(sb, "moasdawiki_http_requests_rejected_total", null, rejectedRequests);
+		writeHelp(sb, "moasdawiki_http_sent_bytes_total", "counter", "Number of bytes sent in HTTP responses, including headers.");
+		writeSample(sb, "moasdawiki_http_sent_bytes_total", null, bytesSent.sum());
+
+		synchronized (caches) {
+			writeHelp(sb, "moasdawiki_cache_hits_total", "counter", "Number of cache hits.");
+			for (Map.Entry<String, CacheStatistics> entry : caches.entrySet()) {
+				writeSample(sb, "moasdawiki_cache_hits_total", "cache=\"" + entry.getKey() + "\"", entry.getValue().getHits());
+			}
+			writeHelp(sb, "moasdawiki_cache_misses_total", "counter", "Number of cache misses.");
+			for (Map.Entry<String, CacheStatistics> entry : caches.entrySet()) {
+				writeSample(sb, "moasdawiki_cache_misses_total", "cache=\"" + entry.getKey() + "\"", entry.getValue().getMisses());
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void writeHelp(@NotNull StringBuilder sb, @NotNull String name, @NotNull String type, @NotNull String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void writeSample(@NotNull StringBuilder sb, @NotNull String name, @Nullable String labels, @NotNull Object value) {
+		sb.append(name);
+		if (labels != null) {
+			sb.append('{').append(labels).append('}');
+		}
+		sb.append(' ').append(value).append('\n');
+	}
+
+	/**
+	 * Zähler und Histogramm einer Route.
+	 */
+	private static class RouteMetrics {
+
+		@NotNull
+		final LongAdder count = new LongAdder();
+
+		@NotNull
+		final LongAdder durationNanos = new LongAdder();
+
+		/**
+		 * Nicht kumulierte Buckets, der letzte steht für +Inf.
+		 */
+		@NotNull
+		final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS.length + 1];
+
+		RouteMetrics() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos) {
+			count.increment();
+			durationNanos.add(nanos);
+			int i = 0;
+			while (i < LATENCY_BUCKETS_NANOS.length && nanos > LATENCY_BUCKETS_NANOS[i]) {
+				i++;
+			}
+			buckets[i].increment();
+		}
+	}
+}
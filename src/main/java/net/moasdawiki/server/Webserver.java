@@ -19,57 +19,142 @@
 
 package net.moasdawiki.server;
 
+import net.moasdawiki.base.CacheStatistics;
 import net.moasdawiki.base.Logger;
+import net.moasdawiki.base.RequestTimer;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.base.Settings;
 import net.moasdawiki.service.HttpResponse;
 import net.moasdawiki.service.render.HtmlService;
 import net.moasdawiki.service.render.HtmlWriter;
+import net.moasdawiki.util.DateUtils;
 import net.moasdawiki.util.EscapeUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.ServerSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Öffnet einen Webserver und nimmt HTTP-Anfragen entgegen. Der Port wird aus
  * den Einstellungen geholt.
  * 
- * Obwohl der Server single-threaded ist, wird zum Annehmen von HTTP-Requests
- * ein Thread-Pool verwendet, weil z.B. der Firefox mehrere parallele Requests
- * schickt, wovon einige "speculative" sind, d.h. zur Beschleunigung
- * nachfolgender Requests, die u.U. gar nicht benötigt werden. Diese speculative
- * Requests würden sonst die Request-Verarbeitung blockieren, bis es zum
- * jeweiligen Timeout kommt. Siehe dazu
- * https://bugzilla.mozilla.org/show_bug.cgi?id=853423.
+ * Die Verbindungen werden von einem einzigen Thread über einen
+ * nicht-blockierenden {@link Selector} verwaltet. Erst wenn ein Request
+ * vollständig empfangen wurde, wird er an einen Worker-Thread aus dem
+ * Thread-Pool übergeben. Damit blockieren langsame Clients und inaktive
+ * Verbindungen keine Worker-Threads. Z.B. schickt der Firefox mehrere
+ * parallele Requests, wovon einige "speculative" sind, d.h. zur
+ * Beschleunigung nachfolgender Requests, die u.U. gar nicht benötigt werden.
+ * Siehe dazu https://bugzilla.mozilla.org/show_bug.cgi?id=853423.
+ *
+ * Lesende Requests (siehe {@link RequestDispatcher#isReadOnlyRequest}) werden
+ * parallel verarbeitet, alle anderen Requests exklusiv.
  */
 public class Webserver {
 
+	/**
+	 * Maximale Länge der Warteschlange für neue Verbindungen.
+	 */
+	private static final int ACCEPT_BACKLOG = 128;
+
+	/**
+	 * Intervall für die Prüfung der Timeouts offener Verbindungen.
+	 */
+	private static final int SELECT_TIMEOUT = 1000; // 1 Sekunde
+
+	/**
+	 * Maximale Größe des HTTP-Headers eines Requests.
+	 */
+	private static final int MAX_HEADER_SIZE = 16384; // 16 KB
+
 	/**
 	 * Maximale Wartezeit beim Einlesen der HTTP-Header. Der Firefox verwendet 6
 	 * Sekunden bei seinen "speculative requests", daher sollten es mehr sein.
 	 */
 	private static final int REQUEST_READ_TIMEOUT = 10000; // 10 Sekunden
+
+	/**
+	 * Maximale Wartezeit auf den nächsten Request einer offenen Verbindung.
+	 */
+	private static final int KEEP_ALIVE_TIMEOUT = 5000; // 5 Sekunden
+
+	/**
+	 * Maximale Anzahl Requests pro Verbindung.
+	 */
+	private static final int KEEP_ALIVE_MAX_REQUESTS = 100;
 	private static final String CRLF = "\r\n";
 
+	/**
+	 * Maximale Größe eines Chunks bei <tt>Transfer-Encoding: chunked</tt>.
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	/**
+	 * Wartezeit, nach der ein wegen Überlast abgelehnter Client es erneut
+	 * versuchen soll.
+	 */
+	private static final int RETRY_AFTER = 1; // 1 Sekunde
+
+	/**
+	 * Fest vorbereitete Antwort bei Überlast, damit das Ablehnen selbst
+	 * möglichst wenig Last erzeugt.
+	 */
+	private static final byte[] SERVICE_UNAVAILABLE_RESPONSE = createServiceUnavailableResponse();
+
 	private final Logger log;
 	private final Settings settings;
 	private final HtmlService htmlService;
 	private final RequestDispatcher requestDispatcher;
+	private final CompressionHandler compressionHandler;
+	private final AdmissionController admissionController;
+	private final ServerMetrics metrics = new ServerMetrics();
+	private final boolean timingHeader;
+	private final boolean timingLog;
 
 	private boolean shutdownRequestAllowed;
-	private boolean shutdownRequested;
-	private ServerSocket server; // wird von run() gesetzt
-	private ExecutorService threadPool; // wird von run() gesetzt
-	private final Object synchronizationLock = new Object();
+	private volatile boolean shutdownRequested;
+	private volatile ServerSocketChannel server; // wird von run() gesetzt
+	private volatile Selector selector; // wird von run() gesetzt
+	private volatile ExecutorService threadPool; // wird von run() gesetzt
+
+	/**
+	 * Verbindungen, die nach einer Antwort offen bleiben und vom
+	 * Selector-Thread wieder übernommen werden.
+	 */
+	private final Queue<HttpConnection> returnedConnections = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Lesende Requests teilen sich den Read-Lock, ändernde Requests werden
+	 * über den Write-Lock serialisiert.
+	 */
+	private final ReadWriteLock requestLock = new ReentrantReadWriteLock();
 
 	public Webserver(@NotNull Logger log, @NotNull Settings settings,
 					 @NotNull HtmlService htmlService, @NotNull RequestDispatcher requestDispatcher) {
@@ -78,6 +163,22 @@ public class Webserver {
 		this.settings = settings;
 		this.htmlService = htmlService;
 		this.requestDispatcher = requestDispatcher;
+		this.compressionHandler = new CompressionHandler(settings.getServerCompressionCacheSize());
+		int executorSize = settings.getServerExecutorSize() > 0 ? settings.getServerExecutorSize() : RequestExecutorFactory.DEFAULT_SIZE;
+		int maxRequests = executorSize + Math.max(settings.getServerQueueSize(), 0);
+		this.admissionController = new AdmissionController(maxRequests, settings.getServerClientMaxRequests());
+		this.timingHeader = settings.isServerTimingHeader();
+		this.timingLog = settings.isServerTimingLog();
+	}
+
+	/**
+	 * Registriert die Zähler eines Caches, damit sie unter
+	 * <tt>/metrics</tt> ausgegeben werden.
+	 *
+	 * @param name Name des Caches, wird als Label ausgegeben.
+	 */
+	public void addCacheStatistics(@NotNull String name, @NotNull CacheStatistics cacheStatistics) {
+		metrics.addCacheStatistics(name, cacheStatistics);
 	}
 
 	/**
@@ -97,38 +198,81 @@ public class Webserver {
 	public void run() {
 		// Server starten
 		int port = settings.getServerPort();
-		try (ServerSocket server = new ServerSocket(port)) {
-			this.server = server; // wird von stop() benötigt
-			log.write("Wiki server listening on port " + server.getLocalPort());
+		try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			this.selector = selector; // wird von stop() benötigt
+			this.server = server;
+			log.write("Wiki server listening on port " + server.socket().getLocalPort());
 
 			// Aufträge abarbeiten
-			threadPool = Executors.newFixedThreadPool(5);
+			threadPool = RequestExecutorFactory.createExecutor(settings.getServerExecutor(), settings.getServerExecutorSize(), log);
+			List<HttpConnection> completeConnections = new ArrayList<>();
+			long lastTimeoutCheck = System.currentTimeMillis();
 			while (!shutdownRequested) {
-				// auf Anfrage eines Clients warten und Verbindung aufnehmen
-				final Socket client = server.accept();
-				threadPool.execute(() -> handleConnection(client));
+				// auf Verbindungen und eingehende Daten warten
+				if (selector.selectedKeys().isEmpty()) {
+					selector.select(SELECT_TIMEOUT);
+				} else {
+					selector.selectNow();
+				}
+				registerReturnedConnections(selector, completeConnections);
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						acceptConnections(server, selector);
+					} else if (key.isReadable()) {
+						readConnection(key, completeConnections);
+					}
+				}
+
+				long now = System.currentTimeMillis();
+				if (now - lastTimeoutCheck >= SELECT_TIMEOUT) {
+					closeTimedOutConnections(selector, now);
+					lastTimeoutCheck = now;
+				}
+				dispatchConnections(selector, completeConnections);
 			}
 			threadPool.shutdown();
-		} catch (IOException e) {
+			closeAllConnections(selector);
+		} catch (IOException | ClosedSelectorException e) {
 			log.write("Error running server on port " + settings.getServerPort(), e);
 		}
 		log.write("Server stopped");
 	}
 
+	/**
+	 * Gibt den Port zurück, auf dem der Server lauscht.
+	 *
+	 * @return -1 -> Server läuft noch nicht.
+	 */
+	int getLocalPort() {
+		ServerSocketChannel server = this.server;
+		if (server == null) {
+			return -1;
+		}
+		return server.socket().getLocalPort();
+	}
+
 	/**
 	 * Beendet den Server. Muss beim Herunterfahren aufgerufen werden, egal ob
 	 * das Herunterfahren von außen oder vom Wikiserver selbst initiiert wurde.
 	 */
 	public void stop() {
 		log.write("Server received stop signal");
+		shutdownRequested = true;
 
-		// blockierenden accept()-Aufruf abbrechen
-		try {
-			if (server != null) {
-				server.close();
-			}
-		} catch (IOException e) {
-			log.write("Error closing server", e);
+		// blockierenden select()-Aufruf abbrechen
+		Selector selector = this.selector;
+		if (selector != null) {
+			selector.wakeup();
 		}
 
 		if (threadPool != null) {
@@ -136,49 +280,401 @@ public class Webserver {
 		}
 	}
 
-	private void handleConnection(Socket client) {
-		long ts1 = System.currentTimeMillis();
+	/**
+	 * Nimmt alle wartenden Verbindungen an und meldet sie zum Lesen beim
+	 * Selector an.
+	 */
+	private void acceptConnections(@NotNull ServerSocketChannel server, @NotNull Selector selector) throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ, new HttpConnection(channel, MAX_HEADER_SIZE, settings.getServerRequestMaxBodySize()));
+		}
+	}
+
+	/**
+	 * Liest die verfügbaren Daten einer Verbindung ein. Liegt ein
+	 * vollständiger Request vor, wird die Verbindung beim Selector abgemeldet
+	 * und zur Verarbeitung vorgemerkt.
+	 */
+	private void readConnection(@NotNull SelectionKey key, @NotNull List<HttpConnection> completeConnections) {
+		HttpConnection connection = (HttpConnection) key.attachment();
+		boolean newRequest = !connection.hasBufferedData();
 		try {
-			HttpResponse response = null;
+			if (!connection.read()) {
+				// Client hat die Verbindung geschlossen
+				closeConnection(connection);
+				return;
+			}
+		} catch (IOException e) {
+			log.write("Error reading from socket connection", e);
+			closeConnection(connection);
+			return;
+		}
+
+		// bei Überlast ablehnen, bevor der Request geparst wird; nur zu Beginn
+		// eines Requests, damit ein bereits teilweise empfangener Body nicht
+		// verworfen wird, die endgültige Entscheidung fällt in tryAcquire
+		if (newRequest && !admissionController.isAdmissible(getClientIP(connection))) {
+			admissionController.reject();
+			rejectConnection(connection);
+			return;
+		}
+
+		if (connection.isRequestComplete()) {
+			key.cancel();
+			completeConnections.add(connection);
+		}
+	}
+
+	/**
+	 * Übergibt die Verbindungen mit vollständigem Request an den Thread-Pool.
+	 * Die Verarbeitung und das Senden der Antwort erfolgen blockierend im
+	 * Worker-Thread. Requests, die die Grenzen des
+	 * {@link AdmissionController} überschreiten, werden sofort abgelehnt.
+	 */
+	private void dispatchConnections(@NotNull Selector selector, @NotNull List<HttpConnection> completeConnections) throws IOException {
+		if (completeConnections.isEmpty()) {
+			return;
+		}
+
+		// abgemeldete Keys endgültig entfernen, vorher kann ein Kanal nicht
+		// in den blockierenden Modus geschaltet werden
+		selector.selectNow();
+
+		for (HttpConnection connection : completeConnections) {
+			InetAddress clientIP = getClientIP(connection);
+			if (!admissionController.tryAcquire(clientIP)) {
+				rejectConnection(connection);
+				continue;
+			}
 			try {
-				// wichtig, damit der Request nicht ewig blockieren kann
-				client.setSoTimeout(REQUEST_READ_TIMEOUT);
-
-				// Anfragedaten einlesen
-				HttpRequest httpRequest = HttpRequestParser.parse(client.getInputStream());
-				httpRequest.clientIP = client.getInetAddress();
-				log.write("Incoming request from " + client.getRemoteSocketAddress() + ": " + httpRequest.method + " " + httpRequest.urlPath);
-
-				// Antwort generieren
-				synchronized (synchronizationLock) {
-					// ab hier nur noch single-threaded
-					response = generateResponse(httpRequest, client);
-				}
-			} catch (Exception e) {
-				// bei geschlossener Verbindung nichts loggen --> speculative
-				// requests
-				if (!client.isClosed()) {
-					long ts2 = System.currentTimeMillis();
-					log.write("Error handling a request after " + (ts2 - ts1) + " ms", e);
-					response = htmlService.generateErrorPage(500, e, "wiki.server.handler.error");
-				}
+				connection.getChannel().configureBlocking(true);
+				threadPool.execute(() -> handleConnection(connection, clientIP));
+			} catch (IOException | RejectedExecutionException e) {
+				log.write("Error dispatching a request", e);
+				admissionController.release(clientIP);
+				closeConnection(connection);
 			}
+		}
+		completeConnections.clear();
+	}
 
+	/**
+	 * Meldet die Verbindungen, die nach einer Antwort offen bleiben, wieder
+	 * beim Selector an. Liegt bereits der nächste Request vollständig im
+	 * Puffer (Pipelining), wird dieser direkt verarbeitet.
+	 */
+	private void registerReturnedConnections(@NotNull Selector selector, @NotNull List<HttpConnection> completeConnections) {
+		HttpConnection connection;
+		while ((connection = returnedConnections.poll()) != null) {
+			connection.touch();
+			if (connection.isRequestComplete()) {
+				completeConnections.add(connection);
+				continue;
+			}
 			try {
-				// Antwort an Client zurücksenden
-				if (response != null && !client.isClosed() && !client.isOutputShutdown()) {
-					writeResponse(response, client.getOutputStream());
-				}
-			} catch (Exception e) {
-				log.write("Error sending the response of a request", e);
+				connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+			} catch (IOException e) {
+				log.write("Error registering socket connection", e);
+				closeConnection(connection);
 			}
+		}
+	}
+
+	/**
+	 * Schließt Verbindungen, über die zu lange nichts empfangen wurde. Das
+	 * betrifft sowohl unvollständige Requests als auch inaktive
+	 * keep-alive-Verbindungen.
+	 */
+	private void closeTimedOutConnections(@NotNull Selector selector, long now) {
+		for (SelectionKey key : selector.keys()) {
+			if (!(key.attachment() instanceof HttpConnection)) {
+				continue;
+			}
+			HttpConnection connection = (HttpConnection) key.attachment();
+			int timeout;
+			if (connection.getRequestCount() == 0 || connection.hasBufferedData()) {
+				timeout = REQUEST_READ_TIMEOUT;
+			} else {
+				timeout = KEEP_ALIVE_TIMEOUT;
+			}
+			if (now - connection.getLastActivity() > timeout) {
+				key.cancel();
+				closeConnection(connection);
+			}
+		}
+	}
+
+	/**
+	 * Schließt beim Beenden des Servers alle noch offenen Verbindungen.
+	 */
+	private void closeAllConnections(@NotNull Selector selector) {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof HttpConnection) {
+				closeConnection((HttpConnection) key.attachment());
+			}
+		}
+		HttpConnection connection;
+		while ((connection = returnedConnections.poll()) != null) {
+			closeConnection(connection);
+		}
+	}
+
+	/**
+	 * Verarbeitet den nächsten Request einer Verbindung im Worker-Thread.
+	 * Gemäß HTTP/1.1 bleibt die Verbindung nach einer Antwort offen
+	 * (keep-alive), sodass der Client weitere Requests, auch per Pipelining,
+	 * über dieselbe Verbindung schicken kann. Die Verbindung wird dann wieder
+	 * an den Selector zurückgegeben. Sie wird geschlossen, wenn der Client es
+	 * verlangt, innerhalb von {@link #KEEP_ALIVE_TIMEOUT} kein neuer Request
+	 * eintrifft oder {@link #KEEP_ALIVE_MAX_REQUESTS} Requests beantwortet
+	 * wurden.
+	 */
+	private void handleConnection(@NotNull HttpConnection connection, @NotNull InetAddress clientIP) {
+		boolean keepAlive;
+		metrics.workerStarted();
+		try {
+			keepAlive = handleRequest(connection);
 		} finally {
+			metrics.workerFinished();
+			admissionController.release(clientIP);
+		}
+		if (keepAlive && !shutdownRequested) {
 			try {
-				// Verbindung zum Client schließen
-				client.close();
+				connection.getChannel().configureBlocking(false);
+				returnedConnections.add(connection);
 			} catch (IOException e) {
-				log.write("Error closing socket connection", e);
+				log.write("Error reusing socket connection", e);
+				closeConnection(connection);
+			}
+		} else {
+			closeConnection(connection);
+		}
+
+		// Selector-Thread aufwecken, damit er die Verbindung wieder
+		// übernimmt bzw. einen Shutdown bemerkt
+		Selector selector = this.selector;
+		if (selector != null) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Verarbeitet einen einzelnen, vollständig empfangenen Request und sendet
+	 * die Antwort.
+	 *
+	 * @return <code>true</code>, wenn die Verbindung für weitere Requests
+	 *         offen bleiben soll.
+	 */
+	private boolean handleRequest(@NotNull HttpConnection connection) {
+		long ts1 = System.currentTimeMillis();
+		long startTime = System.nanoTime();
+		Socket client = connection.getChannel().socket();
+		HttpRequest httpRequest;
+		try {
+			// Anfragedaten übernehmen
+			httpRequest = connection.nextRequest();
+		} catch (ServiceException e) {
+			// fehlerhafter oder zu großer Request
+			log.write("Invalid request from " + client.getRemoteSocketAddress(), e);
+			int statusCode = connection.getErrorStatusCode();
+			String messageKey = (statusCode == 413 ? "wiki.server.request.toolarge" : "wiki.server.request.invalid");
+			sendResponse(client, htmlService.generateErrorPage(statusCode, e, messageKey), false, false);
+			metrics.recordRequest("invalid", statusCode, System.nanoTime() - startTime);
+			return false;
+		}
+
+		HttpResponse response = null;
+		boolean keepAlive = false;
+		boolean chunkedAllowed = !HttpRequest.HTTP_VERSION_1_0.equals(httpRequest.protocolVersion);
+		RequestTimer requestTimer = null;
+		if (timingHeader || timingLog) {
+			requestTimer = RequestTimer.begin();
+			requestTimer.add("parse", connection.getParseDuration());
+		}
+		try {
+			httpRequest.clientIP = client.getInetAddress();
+			log.debug(() -> "Incoming request from " + client.getRemoteSocketAddress() + ": " + httpRequest.method + " " + httpRequest.urlPath);
+			keepAlive = connection.getRequestCount() < KEEP_ALIVE_MAX_REQUESTS && isKeepAliveRequested(httpRequest);
+
+			// Antwort generieren
+			Lock lock;
+			if (requestDispatcher.isReadOnlyRequest(httpRequest)) {
+				lock = requestLock.readLock();
+			} else {
+				lock = requestLock.writeLock();
+			}
+			long lockStartTime = RequestTimer.start();
+			lock.lock();
+			RequestTimer.stop("lock", lockStartTime);
+			try {
+				response = generateResponse(httpRequest, client);
+			} finally {
+				lock.unlock();
+			}
+			response = ConditionalRequestHandler.handleConditional(httpRequest, response, settings.getServerCacheImgMaxAge());
+			response = RangeRequestHandler.handleRange(httpRequest, response);
+			long compressionStartTime = RequestTimer.start();
+			response = compressionHandler.handleCompression(httpRequest, response);
+			RequestTimer.stop("compress", compressionStartTime);
+		} catch (Exception e) {
+			// bei geschlossener Verbindung nichts loggen --> speculative
+			// requests
+			if (!client.isClosed()) {
+				long ts2 = System.currentTimeMillis();
+				log.write("Error handling a request after " + (ts2 - ts1) + " ms", e);
+				response = htmlService.generateErrorPage(500, e, "wiki.server.handler.error");
 			}
+			keepAlive = false;
+		} finally {
+			if (requestTimer != null) {
+				RequestTimer.end();
+			}
+		}
+
+		if (requestTimer != null && response != null) {
+			requestTimer.add("total", System.nanoTime() - startTime);
+			if (timingHeader) {
+				response.httpHeader.put("Server-Timing", requestTimer.toServerTiming());
+			}
+			if (timingLog) {
+				log.write("Request timing " + httpRequest.urlPath + ": " + requestTimer.toLogString());
+			}
+		}
+
+		keepAlive = sendResponse(client, response, keepAlive, chunkedAllowed);
+		if (response != null) {
+			metrics.recordRequest(getRouteName(httpRequest.urlPath), response.statusCode, System.nanoTime() - startTime);
+		}
+		return keepAlive;
+	}
+
+	/**
+	 * Bestimmt den Namen der Route für die Kennzahlen.
+	 */
+	@NotNull
+	private static String getRouteName(@NotNull String urlPath) {
+		switch (urlPath) {
+			case "/status":
+				return "status";
+			case "/shutdown":
+				return "shutdown";
+			case "/metrics":
+				return "metrics";
+			default:
+				return RequestDispatcher.getRouteName(urlPath);
+		}
+	}
+
+	/**
+	 * Sendet die Antwort an den Client zurück. Ein Streaming-Body unbekannter
+	 * Länge wird in Chunks gesendet. Unterstützt der Client das nicht
+	 * (HTTP/1.0), wird das Ende des Body durch Schließen der Verbindung
+	 * markiert.
+	 *
+	 * @param chunkedAllowed <code>true</code>, wenn der Client
+	 *        <tt>Transfer-Encoding: chunked</tt> versteht.
+	 * @return <code>true</code>, wenn die Verbindung für weitere Requests
+	 *         offen bleiben soll.
+	 */
+	private boolean sendResponse(@NotNull Socket client, @Nullable HttpResponse response, boolean keepAlive, boolean chunkedAllowed) {
+		if (response == null) {
+			return false;
+		}
+		try {
+			if (!client.isClosed() && !client.isOutputShutdown()) {
+				boolean chunked = response.contentWriter != null && response.contentLength < 0;
+				if (chunked && !chunkedAllowed) {
+					chunked = false;
+					keepAlive = false;
+				}
+				keepAlive = keepAlive && !shutdownRequested;
+				metrics.recordBytesSent(writeResponse(response, client.getChannel(), keepAlive, chunked));
+				return keepAlive;
+			}
+		} catch (Exception e) {
+			log.write("Error sending the response of a request", e);
+		} finally {
+			if (response.contentWriter != null) {
+				try {
+					response.contentWriter.close();
+				} catch (IOException e) {
+					log.write("Error closing the response content", e);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Lehnt einen Request wegen Überlast ab. Die vorbereitete Antwort wird
+	 * nicht-blockierend im Selector-Thread gesendet, danach wird die
+	 * Verbindung geschlossen.
+	 */
+	private void rejectConnection(@NotNull HttpConnection connection) {
+		log.write("Server busy, rejecting request from " + connection.getChannel().socket().getRemoteSocketAddress());
+		try {
+			// passt in den Sendepuffer, ein unvollständiges Senden wird
+			// ignoriert
+			connection.getChannel().write(ByteBuffer.wrap(SERVICE_UNAVAILABLE_RESPONSE));
+		} catch (IOException e) {
+			// Client hat die Verbindung bereits geschlossen
+		}
+		closeConnection(connection);
+	}
+
+	@NotNull
+	private static InetAddress getClientIP(@NotNull HttpConnection connection) {
+		return connection.getChannel().socket().getInetAddress();
+	}
+
+	@NotNull
+	@SuppressWarnings("CharsetObjectCanBeUsed")
+	private static byte[] createServiceUnavailableResponse() {
+		String body = "Server busy, please retry later.";
+		String response = "HTTP/1.1 503 " + statusCode2Reason(503) + CRLF
+				+ "Content-Type: " + HttpResponse.CONTENT_TYPE_TEXT + CRLF
+				+ "Content-Length: " + body.length() + CRLF
+				+ "Retry-After: " + RETRY_AFTER + CRLF
+				+ "Cache-Control: no-cache" + CRLF
+				+ "Connection: close" + CRLF
+				+ CRLF
+				+ body;
+		try {
+			return response.getBytes("US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			// ASCII wird immer unterstützt
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Schließt die Verbindung zum Client.
+	 */
+	private void closeConnection(@NotNull HttpConnection connection) {
+		try {
+			connection.getChannel().close();
+		} catch (IOException e) {
+			log.write("Error closing socket connection", e);
+		}
+	}
+
+	/**
+	 * Prüft, ob der Client die Verbindung nach dem Request offen halten
+	 * möchte. Bei HTTP/1.1 ist das der Standard, bei HTTP/1.0 muss es explizit
+	 * angefordert werden. Requests mit <tt>Transfer-Encoding</tt> im Body
+	 * werden nicht unterstützt, daher wird die Verbindung danach geschlossen.
+	 */
+	private static boolean isKeepAliveRequested(@NotNull HttpRequest httpRequest) {
+		if (httpRequest.httpHeader.containsKey(HttpRequest.HTTP_HEADER_TRANSFER_ENCODING)) {
+			return false;
+		}
+		String connection = httpRequest.httpHeader.get(HttpRequest.HTTP_HEADER_CONNECTION);
+		if (HttpRequest.HTTP_VERSION_1_0.equals(httpRequest.protocolVersion)) {
+			return "keep-alive".equalsIgnoreCase(connection);
+		} else {
+			return !"close".equalsIgnoreCase(connection);
 		}
 	}
 
@@ -207,10 +703,25 @@ public class Webserver {
 			return generateStatusPage();
 		}
 
+		// Kennzahlen ausgeben
+		if ("/metrics".equals(httpRequest.urlPath)) {
+			return generateMetricsPage();
+		}
+
 		// dispatch request to corresponding service
 		return requestDispatcher.handleRequest(httpRequest);
 	}
 
+	/**
+	 * Gibt die Kennzahlen im Textformat von Prometheus aus.
+	 */
+	private HttpResponse generateMetricsPage() {
+		HttpResponse response = new HttpResponse();
+		response.contentType = ServerMetrics.CONTENT_TYPE;
+		response.setContent(metrics.export(admissionController.getActiveRequests(), admissionController.getRejectedRequests()));
+		return response;
+	}
+
 	private HttpResponse generateStatusPage() {
 		HtmlWriter writer;
 		writer = new HtmlWriter();
@@ -231,6 +742,46 @@ public class Webserver {
 		writer.closeTag();
 		writer.setContinueInNewLine();
 		writer.openTag("li");
+		writer.htmlText("<b>server.executor</b> = " + EscapeUtils.escapeHtml(settings.getServerExecutor()));
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>server.executor.size</b> = " + settings.getServerExecutorSize());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>server.request.maxbodysize</b> = " + settings.getServerRequestMaxBodySize());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>server.cache.img.maxage</b> = " + settings.getServerCacheImgMaxAge());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>server.compression.cachesize</b> = " + settings.getServerCompressionCacheSize());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>server.queue.size</b> = " + settings.getServerQueueSize());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>server.client.maxrequests</b> = " + settings.getServerClientMaxRequests());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>server.timing.header</b> = " + settings.isServerTimingHeader());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>server.timing.log</b> = " + settings.isServerTimingLog());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>log.level</b> = " + settings.getLogLevel());
+		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
 		writer.htmlText("<b>repository.root</b> = " + EscapeUtils.escapeHtml(settings.getRootPath()));
 		writer.closeTag();
 		writer.setContinueInNewLine();
@@ -257,6 +808,11 @@ public class Webserver {
 		writer.openTag("li");
 		writer.htmlText("<b>page.templates</b> = " + EscapeUtils.escapeHtml(settings.getTemplatesPagePath()));
 		writer.closeTag();
+		writer.setContinueInNewLine();
+		writer.openTag("li");
+		writer.htmlText("<b>page.cache.size</b> = " + settings.getPageCacheSize());
+		writer.closeTag();
+		writer.setContinueInNewLine();
 		writer.openTag("li");
 		writer.htmlText("<b>authentication.onlylocalhost</b> = " + settings.isOnlyLocalhostAccess());
 		writer.closeTag();
@@ -289,16 +845,27 @@ public class Webserver {
 	}
 
 	/**
-	 * Schreibt die HTTP-Antwort in den angegebenen Strom. Die Ausgabe erfolgt
+	 * Schreibt die HTTP-Antwort in den angegebenen Kanal. Die Ausgabe erfolgt
 	 * gemäß RFC 2616.
+	 *
+	 * @param keepAlive <code>true</code>, wenn die Verbindung nach der Antwort
+	 *        offen bleibt.
+	 * @param chunked <code>true</code>, wenn der Body mit
+	 *        <tt>Transfer-Encoding: chunked</tt> gesendet wird.
+	 * @return Anzahl gesendeter Bytes inkl. Header.
 	 */
 	@SuppressWarnings("CharsetObjectCanBeUsed")
-	private void writeResponse(@NotNull HttpResponse httpResponse, @NotNull OutputStream out) throws ServiceException {
+	private long writeResponse(@NotNull HttpResponse httpResponse, @NotNull WritableByteChannel channel, boolean keepAlive, boolean chunked) throws ServiceException {
+		CountingOutputStream countingOut = new CountingOutputStream(Channels.newOutputStream(channel));
+		OutputStream out = new BufferedOutputStream(countingOut);
+		long directBytes = 0; // am Zähler vorbei direkt in den Kanal geschrieben
 		try {
 			StringBuilder header = new StringBuilder();
 
-			int contentLength;
-			if (httpResponse.content != null) {
+			long contentLength;
+			if (httpResponse.contentWriter != null) {
+				contentLength = httpResponse.contentLength;
+			} else if (httpResponse.content != null) {
 				contentLength = httpResponse.content.length;
 			} else {
 				contentLength = 0;
@@ -310,9 +877,11 @@ public class Webserver {
 			header.append(statusCode2Reason(httpResponse.statusCode));
 			header.append(CRLF);
 
-			header.append("Content-Type: ");
-			header.append(httpResponse.contentType);
-			header.append(CRLF);
+			if (httpResponse.statusCode != 304) {
+				header.append("Content-Type: ");
+				header.append(httpResponse.contentType);
+				header.append(CRLF);
+			}
 
 			if (httpResponse.redirectUrl != null) {
 				header.append("Location: ");
@@ -320,17 +889,57 @@ public class Webserver {
 				header.append(CRLF);
 			}
 
-			header.append("Content-Length: ");
-			header.append(contentLength);
-			header.append(CRLF);
+			if (chunked) {
+				header.append("Transfer-Encoding: chunked");
+				header.append(CRLF);
+			} else if (contentLength >= 0 && httpResponse.statusCode != 304) {
+				header.append("Content-Length: ");
+				header.append(contentLength);
+				header.append(CRLF);
+			}
 
-			header.append("Cache-Control: no-cache");
-			header.append(CRLF);
-			header.append("Pragma: no-cache");
-			header.append(CRLF);
+			if (httpResponse.lastModified != null) {
+				header.append("Last-Modified: ");
+				header.append(DateUtils.formatHttpDate(httpResponse.lastModified));
+				header.append(CRLF);
+			}
 
-			header.append("Connection: close");
-			header.append(CRLF);
+			for (Map.Entry<String, String> entry : httpResponse.httpHeader.entrySet()) {
+				header.append(entry.getKey());
+				header.append(": ");
+				header.append(entry.getValue());
+				header.append(CRLF);
+			}
+
+			if (httpResponse.etag != null) {
+				header.append("ETag: ");
+				header.append(httpResponse.etag);
+				header.append(CRLF);
+			}
+
+			if (httpResponse.cacheControl != null) {
+				header.append("Cache-Control: ");
+				header.append(httpResponse.cacheControl);
+				header.append(CRLF);
+			} else {
+				header.append("Cache-Control: no-cache");
+				header.append(CRLF);
+				header.append("Pragma: no-cache");
+				header.append(CRLF);
+			}
+
+			if (keepAlive) {
+				header.append("Connection: keep-alive");
+				header.append(CRLF);
+				header.append("Keep-Alive: timeout=");
+				header.append(KEEP_ALIVE_TIMEOUT / 1000);
+				header.append(", max=");
+				header.append(KEEP_ALIVE_MAX_REQUESTS);
+				header.append(CRLF);
+			} else {
+				header.append("Connection: close");
+				header.append(CRLF);
+			}
 
 			// header beenden durch zweiten Zeilenwechsel
 			header.append(CRLF);
@@ -340,10 +949,27 @@ public class Webserver {
 			out.write(headerData);
 
 			// body schreiben
-			if (httpResponse.content != null) {
+			if (httpResponse.contentWriter != null && chunked) {
+				ChunkedOutputStream chunkedOut = new ChunkedOutputStream(out);
+				OutputStream bodyOut = new BufferedOutputStream(chunkedOut, CHUNK_SIZE);
+				httpResponse.contentWriter.writeTo(bodyOut);
+				bodyOut.flush();
+				chunkedOut.finish();
+			} else if (httpResponse.contentWriter != null && contentLength >= 0) {
+				// direkt in den Kanal schreiben, Dateien werden dabei
+				// ohne Umweg über den Java-Heap übertragen
+				out.flush();
+				httpResponse.contentWriter.writeTo(channel);
+				directBytes = contentLength;
+			} else if (httpResponse.contentWriter != null) {
+				// unbekannte Länge ohne Chunks, Ende durch Schließen der
+				// Verbindung
+				httpResponse.contentWriter.writeTo(out);
+			} else if (httpResponse.content != null) {
 				out.write(httpResponse.content);
 			}
 			out.flush();
+			return countingOut.getCount() + directBytes;
 		} catch (UnsupportedEncodingException e) {
 			throw new ServiceException("Error converting HTTP header into UTF-8", e);
 		} catch (IOException e) {
@@ -0,0 +1,66 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Erzeugt den HTTP-Body einer Antwort erst beim Senden, sodass große
+ * Antworten nicht vollständig im Speicher gehalten werden müssen. Siehe
+ * {@link HttpResponse#setContent(ContentWriter, long)}.
+ *
+ * Der Webserver ruft nach dem Senden immer {@link #close()} auf, auch wenn
+ * die Antwort nicht gesendet werden konnte.
+ */
+@FunctionalInterface
+public interface ContentWriter extends Closeable {
+
+	/**
+	 * Schreibt den HTTP-Body in den Ausgabestrom. Der Strom darf nicht
+	 * geschlossen werden.
+	 */
+	void writeTo(@NotNull OutputStream out) throws IOException;
+
+	/**
+	 * Schreibt den HTTP-Body direkt in den Kanal der Verbindung.
+	 * Implementierungen können das überschreiben, um Kopien im Java-Heap zu
+	 * vermeiden, siehe {@link java.nio.channels.FileChannel#transferTo}.
+	 * Standardmäßig wird an {@link #writeTo(OutputStream)} delegiert.
+	 */
+	default void writeTo(@NotNull WritableByteChannel channel) throws IOException {
+		OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+		writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Gibt die Ressourcen frei, z.B. eine geöffnete Datei.
+	 */
+	@Override
+	default void close() throws IOException {
+	}
+}
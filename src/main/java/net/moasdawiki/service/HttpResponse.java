@@ -21,11 +21,23 @@ package net.moasdawiki.service;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Erzeugt eine HTTP-Antwort. Diese besteht aus einem HTTP-Header und ggf. dem
  * Body-Abschnitt.
+ *
+ * Der Body liegt entweder vollständig als Byte-Array vor oder wird erst beim
+ * Senden von einem {@link ContentWriter} erzeugt (Streaming).
  */
 @SuppressWarnings("unused")
 public class HttpResponse {
@@ -35,10 +47,21 @@ public class HttpResponse {
 	public static final String CONTENT_TYPE_BINARY = "application/octet-stream";
 	public static final String CONTENT_TYPE_JSON_UTF8 = "application/json; charset=utf-8";
 
+	/**
+	 * Puffergröße beim Kopieren eines Streaming-Body.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
 	public int statusCode;
 	public String redirectUrl;
 	public String contentType;
 	public byte[] content; // HTTP-Body in Maschinendarstellung; null = leer
+	public ContentWriter contentWriter; // HTTP-Body per Streaming; hat Vorrang vor content
+	public long contentLength = -1; // Länge des Streaming-Body; -1 = unbekannt
+	public Date lastModified; // letzte Änderung des Inhalts; null = unbekannt
+	public String etag; // Entity-Tag inkl. Anführungszeichen; null = keins
+	public String cacheControl; // Cache-Control-Header; null = nicht cachen
+	public Map<String, String> httpHeader; // zusätzliche Header, z.B. Content-Range
 
 	/**
 	 * Konstruktor.
@@ -46,6 +69,7 @@ public class HttpResponse {
 	public HttpResponse() {
 		this.statusCode = 200;
 		this.contentType = CONTENT_TYPE_HTML;
+		this.httpHeader = new LinkedHashMap<>();
 	}
 
 	/**
@@ -63,10 +87,116 @@ public class HttpResponse {
 	 */
 	@SuppressWarnings("CharsetObjectCanBeUsed")
 	public void setContent(@NotNull String content) {
+		this.contentWriter = null;
 		try {
 			this.content = content.getBytes("UTF-8");
 		} catch (UnsupportedEncodingException e) {
 			this.content = null; // leer
 		}
 	}
+
+	/**
+	 * Setzt einen Streaming-Body, der erst beim Senden erzeugt wird.
+	 *
+	 * @param contentWriter Erzeugt den Body.
+	 * @param contentLength Länge des Body in Bytes. -1 -> unbekannt, der Body
+	 *        wird dann in Chunks gesendet.
+	 */
+	public void setContent(@NotNull ContentWriter contentWriter, long contentLength) {
+		this.content = null;
+		this.contentWriter = contentWriter;
+		this.contentLength = contentLength;
+	}
+
+	/**
+	 * Setzt einen Streaming-Body, der beim Senden aus der Datei gelesen wird.
+	 * Gesendet wird der Inhalt ab der aktuellen Position bis zum Dateiende,
+	 * soweit er beim Aufruf vorhanden ist. Die Datei wird danach geschlossen.
+	 */
+	public void setContent(@NotNull FileChannel fileChannel) throws IOException {
+		long position = fileChannel.position();
+		long length = Math.max(fileChannel.size() - position, 0);
+		setContent(new FileChannelContentWriter(fileChannel, position, length), length);
+	}
+
+	/**
+	 * Gibt an, ob einzelne Bereiche des Body gesendet werden können, siehe
+	 * {@link #getContentRange(long, long)}. Das ist bei Dateien der Fall.
+	 */
+	public boolean isRangeSupported() {
+		return contentWriter instanceof FileChannelContentWriter;
+	}
+
+	/**
+	 * Gibt einen Bereich des Body zurück, der per wahlfreiem Zugriff aus der
+	 * Datei gelesen wird. Nur erlaubt, wenn {@link #isRangeSupported()}
+	 * <code>true</code> liefert. Schließen des Bereichs schließt die Datei.
+	 *
+	 * @param offset Beginn des Bereichs relativ zum Body.
+	 * @param length Länge des Bereichs in Bytes.
+	 */
+	@NotNull
+	public ContentWriter getContentRange(long offset, long length) {
+		if (!(contentWriter instanceof FileChannelContentWriter)) {
+			throw new IllegalStateException("Content doesn't support ranges");
+		}
+		FileChannelContentWriter fileContentWriter = (FileChannelContentWriter) contentWriter;
+		if (offset < 0 || length < 0 || offset + length > fileContentWriter.length) {
+			throw new IllegalArgumentException("Range " + offset + "+" + length + " exceeds content length " + fileContentWriter.length);
+		}
+		return new FileChannelContentWriter(fileContentWriter.fileChannel, fileContentWriter.position + offset, length);
+	}
+
+	/**
+	 * Kopiert einen Abschnitt einer Datei in den HTTP-Body. Beim Schreiben in
+	 * einen Kanal werden die Daten per {@link FileChannel#transferTo}
+	 * übertragen, ohne den Java-Heap zu durchlaufen.
+	 */
+	private static class FileChannelContentWriter implements ContentWriter {
+
+		@NotNull
+		private final FileChannel fileChannel;
+		private final long position;
+		private final long length;
+
+		FileChannelContentWriter(@NotNull FileChannel fileChannel, long position, long length) {
+			this.fileChannel = fileChannel;
+			this.position = position;
+			this.length = length;
+		}
+
+		@Override
+		public void writeTo(@NotNull OutputStream out) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long offset = 0;
+			while (offset < length) {
+				buffer.clear();
+				buffer.limit((int) Math.min(BUFFER_SIZE, length - offset));
+				int count = fileChannel.read(buffer, position + offset);
+				if (count < 0) {
+					throw new EOFException("File is shorter than announced content length");
+				}
+				out.write(buffer.array(), 0, count);
+				offset += count;
+			}
+		}
+
+		@Override
+		public void writeTo(@NotNull WritableByteChannel channel) throws IOException {
+			long offset = 0;
+			while (offset < length) {
+				long count = fileChannel.transferTo(position + offset, length - offset, channel);
+				if (count <= 0) {
+					// nichts übertragen -> Datei wurde zwischenzeitlich gekürzt
+					throw new EOFException("File is shorter than announced content length");
+				}
+				offset += count;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			fileChannel.close();
+		}
+	}
 }
@@ -29,6 +29,9 @@ import net.moasdawiki.service.repository.RepositoryService;
 import net.moasdawiki.util.PathUtils;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
 /**
  * Bearbeitet Anfragen zum Download von statischen Dateien. Anhand der
  * Dateiendung wird automatisch ein passender Content-Type ermittelt. Diese
@@ -112,23 +115,36 @@ public class FileDownloadHandler {
 			return htmlService.generateErrorPage(403, REVERSE_NAVIGATION_KEY, filePath);
 		}
 
-		// Datei einlesen
-		byte[] fileContent;
+		// Datei öffnen, der Inhalt wird erst beim Senden gelesen
+		HttpResponse response = new HttpResponse();
+		response.contentType = getContentType(filePath);
+		FileChannel fileChannel = null;
 		try {
 			AnyFile anyFile = new AnyFile(filePath);
-			fileContent = repositoryService.readBinaryFile(anyFile);
-		} catch (ServiceException e) {
+			fileChannel = repositoryService.openBinaryFile(anyFile);
+			response.setContent(fileChannel);
+			AnyFile repositoryFile = repositoryService.getFile(filePath);
+			if (repositoryFile != null) {
+				response.lastModified = repositoryFile.getContentTimestamp();
+			}
+		} catch (ServiceException | IOException e) {
+			if (fileChannel != null) {
+				closeQuietly(fileChannel);
+			}
 			logger.write("File '" + filePath + "' not found, sending response 404", e);
 			return htmlService.generateErrorPage(404, FILE_NOT_FOUND_KEY, filePath);
 		}
-
-		// Datei in Antwort verpacken
-		HttpResponse response = new HttpResponse();
-		response.contentType = getContentType(filePath);
-		response.content = fileContent;
 		return response;
 	}
 
+	private void closeQuietly(@NotNull FileChannel fileChannel) {
+		try {
+			fileChannel.close();
+		} catch (IOException e) {
+			logger.write("Error closing file", e);
+		}
+	}
+
 	/**
 	 * Bestimmt den Dateityp anhand der Dateiendung.
 	 */
@@ -152,6 +168,8 @@ public class FileDownloadHandler {
 			return "text/html";
 		} else if (filename.endsWith(".css")) {
 			return "text/css";
+		} else if (filename.endsWith(".js")) {
+			return "application/javascript";
 		} else if (filename.endsWith(".txt")) {
 			return "text/plain";
 		} else {
@@ -21,6 +21,7 @@ package net.moasdawiki.service.render;
 
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.Messages;
+import net.moasdawiki.base.RequestTimer;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.base.Settings;
 import net.moasdawiki.service.HttpResponse;
@@ -66,6 +67,8 @@ public class HtmlService {
 	 */
 	@NotNull
 	public HttpResponse convertHtml(@NotNull HtmlWriter htmlWriter) {
+		long startTime = RequestTimer.start();
+
 		// close open tags
 		htmlWriter.closeAllTags();
 
@@ -120,6 +123,7 @@ public class HtmlService {
 
 		HttpResponse response = new HttpResponse();
 		response.setContent(sb.toString());
+		RequestTimer.stop("converthtml", startTime);
 		return response;
 	}
 
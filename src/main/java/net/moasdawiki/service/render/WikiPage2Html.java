@@ -22,8 +22,10 @@ package net.moasdawiki.service.render;
 import java.util.Map;
 
 import net.moasdawiki.base.Messages;
+import net.moasdawiki.base.RequestTimer;
 import net.moasdawiki.base.Settings;
 import net.moasdawiki.service.render.HtmlWriter.Method;
+import net.moasdawiki.service.wiki.PageContext;
 import net.moasdawiki.service.wiki.WikiHelper;
 import net.moasdawiki.service.wiki.WikiService;
 import net.moasdawiki.service.wiki.structure.*;
@@ -57,6 +59,11 @@ public class WikiPage2Html {
 	private HtmlWriter writer;
 	private PageElement previousElement;
 
+	/**
+	 * Wikiseiten auf dem Pfad zum aktuellen Seitenelement.
+	 */
+	private PageContext pageContext;
+
 	/**
 	 * Constructor.
 	 */
@@ -72,13 +79,16 @@ public class WikiPage2Html {
 	 */
 	@NotNull
 	public HtmlWriter generate(@NotNull PageElement contentPage) {
+		long startTime = RequestTimer.start();
 		writer = new HtmlWriter();
+		pageContext = new PageContext();
 		convertGeneric(contentPage);
+		RequestTimer.stop("wikipage2html", startTime);
 		return writer;
 	}
 
 	private void convertGeneric(@Nullable PageElement element) {
-		convertGeneric(element, null);
+		convertGeneric(element, null, null);
 	}
 
 	/**
@@ -86,8 +96,10 @@ public class WikiPage2Html {
 	 * Dispatches to the corresponding typed converter method.
 	 *
 	 * Wiki-internal elements are ignored as they have to be transformed in advance.
+	 *
+	 * @param parentList List that contains the element; null -> other parent.
 	 */
-	private void convertGeneric(@Nullable PageElement element, int @Nullable [] listItemSequence) {
+	private void convertGeneric(@Nullable PageElement element, int @Nullable [] listItemSequence, @Nullable PageElementList parentList) {
 		if (element == null) {
 			return;
 		}
@@ -103,7 +115,7 @@ public class WikiPage2Html {
 		} else if (element instanceof WikiPage) {
 			convertPageElement((WikiPage) element);
 		} else if (element instanceof Heading) {
-			convertPageElement((Heading) element);
+			convertPageElement((Heading) element, parentList);
 		} else if (element instanceof Separator) {
 			convertPageElement((Separator) element);
 		} else if (element instanceof VerticalSpace) {
@@ -180,15 +192,20 @@ public class WikiPage2Html {
 			if (!(pe instanceof ListItem)) {
 				listItemSequence = new int[] { 0, 0, 0, 0, 0 };
 			}
-			convertGeneric(pe, listItemSequence);
+			convertGeneric(pe, listItemSequence, pageElementList);
 		}
 	}
 
 	private void convertPageElement(@NotNull WikiPage wikiPage) {
-		convertGeneric(wikiPage.getChild());
+		pageContext.enter(wikiPage);
+		try {
+			convertGeneric(wikiPage.getChild());
+		} finally {
+			pageContext.leave();
+		}
 	}
 
-	private void convertPageElement(@NotNull Heading heading) {
+	private void convertPageElement(@NotNull Heading heading, @Nullable PageElementList parentList) {
 		String tagName;
 		switch (heading.getLevel()) {
 		case 1:
@@ -214,8 +231,8 @@ public class WikiPage2Html {
 		int depth = writer.openTag(tagName, param);
 
 		// generate edit icon for the section
-		WikiPage wikiPage = WikiHelper.getContextWikiPage(heading, false);
-		Integer toPos = getSectionToPos(heading);
+		WikiPage wikiPage = pageContext.getContextWikiPage(false);
+		Integer toPos = getSectionToPos(heading, parentList);
 		if (wikiPage != null && wikiPage.getPagePath() != null && heading.getFromPos() != null && toPos != null && generateEditLinks) {
 			String url = PathUtils.concatWebPaths("/edit/", wikiPage.getPagePath());
 			url = EscapeUtils.pagePath2Url(url) + "?fromPos=" + heading.getFromPos() + "&toPos=" + toPos;
@@ -236,15 +253,14 @@ public class WikiPage2Html {
 	 * the end of the table cell or the end of the wiki page.
 	 *
 	 * @param heading Heading the current section starts with.
+	 * @param pel List that contains the heading.
 	 * @return end position of the section; null -> unknown.
 	 */
 	@Nullable
-	private Integer getSectionToPos(@NotNull Heading heading) {
-		PageElement parent = heading.getParent();
-		if (!(parent instanceof PageElementList)) {
+	private Integer getSectionToPos(@NotNull Heading heading, @Nullable PageElementList pel) {
+		if (pel == null) {
 			return null;
 		}
-		PageElementList pel = (PageElementList) parent;
 
 		// find current heading
 		int index = 0;
@@ -338,7 +354,7 @@ public class WikiPage2Html {
 	private void convertPageElement(@NotNull Table table) {
 		int depth = writer.openDivTag("table");
 		if (generateEditLinks && table.getFromPos() != null && table.getToPos() != null) {
-			WikiPage wikiPage = WikiHelper.getContextWikiPage(table, false);
+			WikiPage wikiPage = pageContext.getContextWikiPage(false);
 			if (wikiPage != null && wikiPage.getPagePath() != null) {
 				String url = PathUtils.concatWebPaths("/edit/", wikiPage.getPagePath());
 				url = EscapeUtils.pagePath2Url(url) + "?fromPos=" + table.getFromPos() + "&toPos=" + table.getToPos();
@@ -377,7 +393,7 @@ public class WikiPage2Html {
 				PageElement cellContent = cell.getContent();
 				if (generateEditLinks && cellContent != null && cellContent.getFromPos() != null && cellContent.getToPos() != null) {
 					writer.openDivTag("tablecell");
-					WikiPage wikiPage = WikiHelper.getContextWikiPage(table, false);
+					WikiPage wikiPage = pageContext.getContextWikiPage(false);
 					if (wikiPage != null && wikiPage.getPagePath() != null) {
 						String url = PathUtils.concatWebPaths("/edit/", wikiPage.getPagePath());
 						url += "?fromPos=" + cellContent.getFromPos() + "&toPos=" + cellContent.getToPos();
@@ -434,7 +450,7 @@ public class WikiPage2Html {
 
 		// edit icon for section editing
 		if (generateEditLinks && code.getFromPos() != null && code.getToPos() != null) {
-			WikiPage wikiPage = WikiHelper.getContextWikiPage(code, false);
+			WikiPage wikiPage = pageContext.getContextWikiPage(false);
 			if (wikiPage != null && wikiPage.getPagePath() != null) {
 				String url = PathUtils.concatWebPaths("/edit/", wikiPage.getPagePath());
 				url = EscapeUtils.pagePath2Url(url) + "?fromPos=" + code.getFromPos() + "&toPos=" + code.getToPos();
@@ -573,7 +589,7 @@ public class WikiPage2Html {
 
 	private void convertPageElement(@NotNull LinkPage link) {
 		// Kontext bestimmen
-		WikiPage wikiPage = WikiHelper.getContextWikiPage(link, false);
+		WikiPage wikiPage = pageContext.getContextWikiPage(false);
 
 		// show edit icon only if the target page doesn't exist
 		boolean showEditorPen = false;
@@ -641,7 +657,7 @@ public class WikiPage2Html {
 				break;
 			case "editpage": {
 				// determine global page context as the tag refers to the whole page
-				WikiPage wikiPage = WikiHelper.getContextWikiPage(link, true);
+				WikiPage wikiPage = pageContext.getContextWikiPage(true);
 				if (wikiPage != null && wikiPage.getPagePath() != null) {
 					url = PathUtils.concatWebPaths("/edit/", wikiPage.getPagePath());
 				} else {
@@ -652,7 +668,7 @@ public class WikiPage2Html {
 			}
 			case "newpage": {
 				// determine global page context to get the path to the whole page
-				WikiPage wikiPage = WikiHelper.getContextWikiPage(link, true);
+				WikiPage wikiPage = pageContext.getContextWikiPage(true);
 				if (wikiPage != null && wikiPage.getPagePath() != null) {
 					url = PathUtils.concatWebPaths("/edit/", PathUtils.extractWebFolder(wikiPage.getPagePath()));
 				} else {
@@ -690,7 +706,7 @@ public class WikiPage2Html {
 	}
 
 	private void convertPageElement(@NotNull LinkLocalFile link) {
-		WikiPage wikiPage = WikiHelper.getContextWikiPage(link, false);
+		WikiPage wikiPage = pageContext.getContextWikiPage(false);
 
 		// URL
 		String linkFilePath = link.getFilePath();
@@ -754,7 +770,7 @@ public class WikiPage2Html {
 	}
 
 	private void convertPageElement(@NotNull Image image) {
-		WikiPage wikiPage = WikiHelper.getContextWikiPage(image, false);
+		WikiPage wikiPage = pageContext.getContextWikiPage(false);
 
 		String url = image.getUrl();
 		if (!url.startsWith("http")) {
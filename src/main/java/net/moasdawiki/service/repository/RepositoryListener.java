@@ -0,0 +1,43 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.repository;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Is notified about changes of files in the repository, so that caches can
+ * be updated per file instead of scanning the whole repository.
+ *
+ * The methods may be called concurrently by different threads.
+ * Implementations must be thread-safe and return quickly, usually they only
+ * remember the file path.
+ */
+public interface RepositoryListener {
+
+	/**
+	 * A file was written or a new file was detected in the file system.
+	 */
+	void fileModified(@NotNull AnyFile anyFile);
+
+	/**
+	 * A file was deleted.
+	 */
+	void fileDeleted(@NotNull AnyFile anyFile);
+}
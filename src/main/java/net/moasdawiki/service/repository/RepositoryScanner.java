@@ -0,0 +1,140 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.repository;
+
+import net.moasdawiki.base.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans folders of the file system for repository files. Every folder is
+ * listed by its own task on a ForkJoin pool, so sub-folders and several root
+ * folders are scanned in parallel. The file attributes are read together
+ * with the folder entries, which needs only one file system access per
+ * entry.
+ */
+class RepositoryScanner {
+
+	@NotNull
+	private final Logger logger;
+
+	@NotNull
+	private final RepositoryService repositoryService;
+
+	/**
+	 * Constructor.
+	 */
+	RepositoryScanner(@NotNull Logger logger, @NotNull RepositoryService repositoryService) {
+		this.logger = logger;
+		this.repositoryService = repositoryService;
+	}
+
+	/**
+	 * Scans the given root folders including all sub-folders and blocks
+	 * until all of them are scanned. If a file path exists in several root
+	 * folders, the file of the last root folder wins.
+	 *
+	 * @param parallelism Number of worker threads.
+	 * @return Map: File path in repository -> {@link AnyFile}.
+	 */
+	@NotNull
+	Map<String, AnyFile> scan(@NotNull List<File> rootFolders, int parallelism) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<List<AnyFile>>> tasks = new ArrayList<>();
+			for (File rootFolder : rootFolders) {
+				tasks.add(pool.submit(new FolderTask(rootFolder.getAbsoluteFile().toPath())));
+			}
+			Map<String, AnyFile> result = new HashMap<>();
+			for (ForkJoinTask<List<AnyFile>> task : tasks) {
+				for (AnyFile anyFile : task.join()) {
+					result.put(anyFile.getFilePath(), anyFile);
+				}
+			}
+			return result;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Lists the files of a single folder and forks a new task for each
+	 * sub-folder.
+	 */
+	private class FolderTask extends RecursiveTask<List<AnyFile>> {
+
+		private static final long serialVersionUID = 1L;
+
+		@NotNull
+		private final Path folder;
+
+		FolderTask(@NotNull Path folder) {
+			this.folder = folder;
+		}
+
+		@Override
+		protected List<AnyFile> compute() {
+			List<AnyFile> files = new ArrayList<>();
+			List<FolderTask> subTasks = new ArrayList<>();
+			try {
+				// depth 1: the entries of the folder are visited with their attributes
+				Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+						if (attrs.isDirectory()) {
+							FolderTask subTask = new FolderTask(file);
+							subTask.fork();
+							subTasks.add(subTask);
+						} else if (!RepositoryService.isTemporaryFile(file.getFileName().toString())) {
+							String filePath = repositoryService.filesystem2RepositoryPath(file.toString());
+							if (filePath != null) {
+								// ignore invalid file name
+								files.add(new AnyFile(filePath, new Date(attrs.lastModifiedTime().toMillis())));
+							}
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException exc) {
+						if (!file.equals(folder) || !(exc instanceof NoSuchFileException)) {
+							logger.write("Error scanning '" + file + "', ignoring it", exc);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} catch (IOException e) {
+				logger.write("Error scanning folder '" + folder + "'", e);
+			}
+			for (FolderTask subTask : subTasks) {
+				files.addAll(subTask.join());
+			}
+			return files;
+		}
+	}
+}
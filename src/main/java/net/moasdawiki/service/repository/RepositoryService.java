@@ -19,6 +19,7 @@
 
 package net.moasdawiki.service.repository;
 
+import net.moasdawiki.base.CacheStatistics;
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.util.DateUtils;
@@ -28,8 +29,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Predicate;
 
 /**
@@ -42,9 +51,39 @@ public class RepositoryService {
 	 *
 	 * Row format:
 	 * File path in repository '\t' modification timestamp in ISO 8601 format "yyyy-MM-dd'T'HH:mm:ss.SSSZ"
+	 *
+	 * The rows of the snapshot are followed by journal rows, which are
+	 * appended on every change. A journal row has the same format and
+	 * replaces the entry of the file, a deleted file is marked by the
+	 * row format '-' File path in repository.
 	 */
 	public static final String FILELIST_CACHE_FILEPATH = "/filelist.cache";
 
+	/**
+	 * Prefix of a journal row that removes a file.
+	 */
+	private static final char CACHE_JOURNAL_REMOVE_PREFIX = '-';
+
+	/**
+	 * Minimum number of journal rows in the cache file before it is
+	 * compacted into a new snapshot. Above this limit the cache file is
+	 * compacted as soon as the journal has as many rows as the snapshot.
+	 */
+	private static final int MIN_CACHE_JOURNAL_ROWS_BEFORE_COMPACTION = 100;
+
+	/**
+	 * Suffix of the temporary files used to replace a file atomically.
+	 * The file name also starts with a '.'.
+	 */
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	/**
+	 * Number of threads to scan the repository. Scanning mostly waits for
+	 * the file system, especially on network drives, so more threads than
+	 * processors are used.
+	 */
+	private static final int SCAN_PARALLELISM = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
 	@NotNull
 	protected final Logger logger;
 
@@ -65,7 +104,7 @@ public class RepositoryService {
 	 * null -> none.
 	 */
 	@Nullable
-	private final File shadowRepositoryBase;
+	protected final File shadowRepositoryBase;
 
 	/**
 	 * Shadow repository base folder path.
@@ -77,16 +116,82 @@ public class RepositoryService {
 	/**
 	 * Metadata cache for all files in the repository.
 	 * Map: File path in repository -> {@link AnyFile}.
+	 * Can be read without lock, updates of a file path are done while
+	 * holding its path lock, see {@link #getPathLock(String)}.
 	 */
 	@NotNull
 	protected final Map<String, AnyFile> fileMap;
 
+	/**
+	 * Same entries as {@link #fileMap}, ordered by content timestamp and
+	 * file path. Allows range and top-k queries by modification time
+	 * without scanning all files. Is updated together with
+	 * {@link #fileMap}, readers may see a change of a file path in one
+	 * collection slightly before the other.
+	 */
+	@NotNull
+	private final NavigableSet<AnyFile> modificationIndex = new ConcurrentSkipListSet<>(
+			Comparator.comparing(AnyFile::getContentTimestamp).thenComparing(AnyFile::getFilePath));
+
+	/**
+	 * Hits and misses of the metadata cache when accessing a file.
+	 * A miss means that a new file was detected in the file system.
+	 */
+	@NotNull
+	private final CacheStatistics cacheStatistics = new CacheStatistics();
+
 	/**
 	 * Is repository scanning allowed to update the cache content?
 	 * Is set to false for the App as the cache file is updates by synchronization.
 	 */
 	private final boolean scanRepository;
 
+	/**
+	 * Number of locks to serialize write access per file path.
+	 */
+	private static final int PATH_LOCK_STRIPES = 64;
+
+	/**
+	 * Locks to serialize write access per file path, the file path is mapped
+	 * by its hash code. Read access doesn't need a lock as files are
+	 * replaced atomically.
+	 */
+	@NotNull
+	private final Object[] pathLocks = createPathLocks();
+
+	/**
+	 * File system modification timestamps of the files written by this
+	 * service. Used to ignore change notifications for own writes.
+	 * Map: File path in repository -> modification timestamp in ms.
+	 */
+	@NotNull
+	private final Map<String, Long> writtenFileTimestamps = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of journal rows in the cache file since the last snapshot.
+	 * Guarded by the path lock of the cache file.
+	 */
+	private int cacheJournalLength;
+
+	/**
+	 * Journal rows not written to the cache file yet.
+	 * Guarded by the path lock of the cache file.
+	 */
+	@NotNull
+	private final StringBuilder pendingCacheJournal = new StringBuilder();
+
+	/**
+	 * Number of running group commits, see {@link #startGroupCommit()}.
+	 * Guarded by the path lock of the cache file.
+	 */
+	private int groupCommitDepth;
+
+	/**
+	 * Listeners to be notified about file changes.
+	 */
+	@NotNull
+	private final List<RepositoryListener> listeners = new CopyOnWriteArrayList<>();
+
 	/**
 	 * Constructor.
 	 */
@@ -102,18 +207,36 @@ public class RepositoryService {
 		} else {
 			this.shadowRepositoryBasePath = null;
 		}
-		this.fileMap = new HashMap<>();
+		this.fileMap = new ConcurrentHashMap<>();
 		this.scanRepository = scanRepository;
 		logger.write("Repository base path: " + this.repositoryBasePath);
 		logger.write("Shadow repository base path: " + this.shadowRepositoryBasePath);
 		reset();
 	}
 
+	@NotNull
+	private static Object[] createPathLocks() {
+		Object[] locks = new Object[PATH_LOCK_STRIPES];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+		return locks;
+	}
+
+	/**
+	 * Returns the lock that serializes write access to a file path.
+	 */
+	@NotNull
+	private Object getPathLock(@NotNull String filePath) {
+		return pathLocks[(filePath.hashCode() & 0x7fffffff) % pathLocks.length];
+	}
+
 	/**
 	 * Rereads the cache file.
 	 * Is called in App environment after synchronization with server.
+	 * Must not be called concurrently with other file operations.
 	 */
-	public void reset() {
+	public synchronized void reset() {
 		if (!readCacheFile()) {
 			rebuildCache();
 		}
@@ -136,9 +259,16 @@ public class RepositoryService {
 
 		try {
 			Map<String, AnyFile> newFileMap = parseCacheContent(cacheContent);
-			fileMap.clear();
-			fileMap.putAll(newFileMap);
+			replaceFileEntries(newFileMap);
 			logger.write("Repository cache filled from cache file, " + newFileMap.size() + " files known");
+			if (!cacheContent.isEmpty() && !cacheContent.endsWith("\n")) {
+				// incomplete journal row after a crash, further rows must not be appended to it
+				writeCacheFile();
+			} else {
+				synchronized (getPathLock(FILELIST_CACHE_FILEPATH)) {
+					cacheJournalLength = Math.max(countRows(cacheContent) - newFileMap.size(), 0);
+				}
+			}
 			return true;
 		} catch (Exception e) {
 			logger.write("Error parsing cache file " + FILELIST_CACHE_FILEPATH, e);
@@ -147,33 +277,29 @@ public class RepositoryService {
 	}
 
 	/**
-	 * Parse the cache file content.
+	 * Parse the cache file content, i.e. the snapshot and the following
+	 * journal rows. If the last row is incomplete because of a crash while
+	 * appending it, it is ignored.
 	 */
 	@Contract(value = "_ -> new", pure = true)
 	@NotNull
 	protected Map<String, AnyFile> parseCacheContent(@NotNull String cacheContent) throws ServiceException {
 		try {
 			Map<String, AnyFile> result = new HashMap<>();
-			BufferedReader reader = new BufferedReader(new StringReader(cacheContent));
+			int completeLength = cacheContent.lastIndexOf('\n') + 1;
+			BufferedReader reader = new BufferedReader(new StringReader(cacheContent.substring(0, completeLength)));
 			String line;
 			while ((line = reader.readLine()) != null) {
-				if (line.isEmpty()) {
-					// ignore empty line at end of file
-					continue;
-				}
-				int pos1 = line.indexOf('\t');
-				if (pos1 < 0) {
-					throw new ServiceException("Invalid file format, cancel parsing");
-				}
-
-				String filePath = line.substring(0, pos1).trim();
-				String contentTimestampStr = line.substring(pos1).trim();
-				Date contentTimestamp = DateUtils.parseUtcDate(contentTimestampStr);
-
-				AnyFile newAnyFile = new AnyFile(filePath, contentTimestamp);
-				result.put(filePath, newAnyFile);
+				parseCacheRow(line, result);
 			}
 			reader.close();
+
+			String incompleteLine = cacheContent.substring(completeLength);
+			try {
+				parseCacheRow(incompleteLine, result);
+			} catch (ServiceException e) {
+				logger.write("Ignoring incomplete last row in cache file " + FILELIST_CACHE_FILEPATH);
+			}
 			return result;
 		} catch (IOException e) {
 			throw new ServiceException("Error parsing cache file content", e);
@@ -181,35 +307,158 @@ public class RepositoryService {
 	}
 
 	/**
-	 * Write the file list cache file.
+	 * Parse a snapshot or journal row of the cache file and apply it to the
+	 * file map.
+	 */
+	private void parseCacheRow(@NotNull String line, @NotNull Map<String, AnyFile> fileMap) throws ServiceException {
+		if (line.isEmpty()) {
+			// ignore empty line at end of file
+			return;
+		}
+		if (line.charAt(0) == CACHE_JOURNAL_REMOVE_PREFIX) {
+			fileMap.remove(line.substring(1).trim());
+			return;
+		}
+		int pos1 = line.indexOf('\t');
+		if (pos1 < 0) {
+			throw new ServiceException("Invalid file format, cancel parsing");
+		}
+
+		String filePath = line.substring(0, pos1).trim();
+		String contentTimestampStr = line.substring(pos1).trim();
+		Date contentTimestamp = DateUtils.parseUtcDate(contentTimestampStr);
+
+		AnyFile newAnyFile = new AnyFile(filePath, contentTimestamp);
+		fileMap.put(filePath, newAnyFile);
+	}
+
+	/**
+	 * Returns the number of rows in the cache file content.
+	 */
+	private static int countRows(@NotNull String cacheContent) {
+		int count = 0;
+		for (int i = 0; i < cacheContent.length(); i++) {
+			if (cacheContent.charAt(i) == '\n') {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Format a row of the cache file.
+	 */
+	private static void appendCacheRow(@NotNull StringBuilder sb, @NotNull AnyFile anyFile) {
+		sb.append(anyFile.getFilePath());
+
+		sb.append('\t');
+
+		String contentTimestampStr = DateUtils.formatUtcDate(anyFile.getContentTimestamp());
+		sb.append(contentTimestampStr);
+
+		sb.append('\n');
+	}
+
+	/**
+	 * Write a new snapshot of the file list cache file, this also discards
+	 * the journal.
+	 * The snapshot is taken while holding the lock of the cache file, so the
+	 * last writer always persists the latest state.
 	 */
 	protected void writeCacheFile() {
-		List<String> filePathList = new ArrayList<>(fileMap.keySet());
-		Collections.sort(filePathList);
+		synchronized (getPathLock(FILELIST_CACHE_FILEPATH)) {
+			Map<String, AnyFile> snapshot = new HashMap<>(fileMap);
+			List<String> filePathList = new ArrayList<>(snapshot.keySet());
+			Collections.sort(filePathList);
 
-		StringBuilder sb = new StringBuilder();
-		for (String filePath : filePathList) {
-			AnyFile anyFile = fileMap.get(filePath);
-			sb.append(filePath);
+			StringBuilder sb = new StringBuilder();
+			for (String filePath : filePathList) {
+				appendCacheRow(sb, snapshot.get(filePath));
+			}
+			String cacheContent = sb.toString();
 
-			sb.append('\t');
+			pendingCacheJournal.setLength(0);
+			cacheJournalLength = 0;
+			AnyFile fileListCacheFile = new AnyFile(FILELIST_CACHE_FILEPATH);
+			try {
+				writeTextFile(fileListCacheFile, cacheContent);
+			} catch (ServiceException e) {
+				// only log error, do not escalate
+				logger.write("Error writing cache file " + FILELIST_CACHE_FILEPATH, e);
+			}
+		}
+	}
 
-			String contentTimestampStr = DateUtils.formatUtcDate(anyFile.getContentTimestamp());
-			sb.append(contentTimestampStr);
+	/**
+	 * Add a journal row with the current state of a file to the cache file.
+	 * While a group commit is running the row is only collected.
+	 */
+	protected void writeCacheJournal(@NotNull String filePath) {
+		synchronized (getPathLock(FILELIST_CACHE_FILEPATH)) {
+			AnyFile anyFile = fileMap.get(filePath);
+			if (anyFile != null) {
+				appendCacheRow(pendingCacheJournal, anyFile);
+			} else {
+				pendingCacheJournal.append(CACHE_JOURNAL_REMOVE_PREFIX).append(filePath).append('\n');
+			}
+			if (groupCommitDepth == 0) {
+				flushCacheJournal();
+			}
+		}
+	}
 
-			sb.append('\n');
+	/**
+	 * Append the collected journal rows to the cache file.
+	 * Writes a new snapshot instead if the journal has become too long.
+	 * Must be called while holding the path lock of the cache file.
+	 */
+	private void flushCacheJournal() {
+		if (pendingCacheJournal.length() == 0) {
+			return;
+		}
+		String journalContent = pendingCacheJournal.toString();
+		int journalRows = countRows(journalContent);
+		if (cacheJournalLength + journalRows >= Math.max(MIN_CACHE_JOURNAL_ROWS_BEFORE_COMPACTION, fileMap.size())) {
+			writeCacheFile();
+			return;
 		}
-		String cacheContent = sb.toString();
 
-		AnyFile fileListCacheFile = new AnyFile(FILELIST_CACHE_FILEPATH);
+		pendingCacheJournal.setLength(0);
 		try {
-			writeTextFile(fileListCacheFile, cacheContent);
+			appendTextFile(new AnyFile(FILELIST_CACHE_FILEPATH), journalContent);
+			cacheJournalLength += journalRows;
 		} catch (ServiceException e) {
 			// only log error, do not escalate
 			logger.write("Error writing cache file " + FILELIST_CACHE_FILEPATH, e);
 		}
 	}
 
+	/**
+	 * Start a group commit. Until the corresponding call of
+	 * {@link #finishGroupCommit()} changes of the file list are only
+	 * collected and then written to the cache file at once.
+	 * Group commits can be nested.
+	 */
+	public void startGroupCommit() {
+		synchronized (getPathLock(FILELIST_CACHE_FILEPATH)) {
+			groupCommitDepth++;
+		}
+	}
+
+	/**
+	 * Finish a group commit, see {@link #startGroupCommit()}.
+	 */
+	public void finishGroupCommit() {
+		synchronized (getPathLock(FILELIST_CACHE_FILEPATH)) {
+			if (groupCommitDepth > 0) {
+				groupCommitDepth--;
+			}
+			if (groupCommitDepth == 0) {
+				flushCacheJournal();
+			}
+		}
+	}
+
 	/**
 	 * Rebuild internal cache.
 	 */
@@ -218,49 +467,96 @@ public class RepositoryService {
 			return;
 		}
 
-		List<File> files = new ArrayList<>();
-		if (shadowRepositoryBase != null) {
-			// scan shadow repository before the user repository
-			// to give user file higher priority in case of duplicate paths
-			listFilesInFilesystem(shadowRepositoryBase, files);
-		}
-		listFilesInFilesystem(repositoryBase, files);
-		logger.write("Rebuilding repository cache, found " + files.size() + " files in repository");
+		Map<String, AnyFile> newFileMap = scanFilesystem();
+		logger.write("Rebuilding repository cache, found " + newFileMap.size() + " files in repository");
+
+		replaceFileEntries(newFileMap);
 
-		Map<String, AnyFile> newFileMap = new HashMap<>();
-		for (File file : files) {
-			String filesystemFilePath = file.getAbsolutePath();
+		writeCacheFile();
+	}
 
-			String filePath = filesystem2RepositoryPath(filesystemFilePath);
-			if (filePath == null) {
-				// ignore invalid file name
-				continue;
+	/**
+	 * Reconcile the cache with the file system after changes were made
+	 * outside of this service and couldn't be tracked per file.
+	 * Only the differences are written to the cache file and notified to
+	 * the listeners.
+	 */
+	public void reconcile() {
+		if (!scanRepository) {
+			return;
+		}
+
+		Map<String, AnyFile> scannedFileMap = scanFilesystem();
+		Set<String> filePaths = new HashSet<>(scannedFileMap.keySet());
+		filePaths.addAll(fileMap.keySet());
+		logger.write("Reconciling repository cache, found " + scannedFileMap.size() + " files in repository");
+		startGroupCommit();
+		try {
+			for (String filePath : filePaths) {
+				refreshFile(filePath);
 			}
-			Date fileTimestamp = new Date(file.lastModified());
-			AnyFile newAnyFile = new AnyFile(filePath, fileTimestamp);
-			newFileMap.put(filePath, newAnyFile);
+		} finally {
+			finishGroupCommit();
 		}
+	}
 
-		fileMap.clear();
-		fileMap.putAll(newFileMap);
+	/**
+	 * Scan all files in the repository and the shadow repository.
+	 * Both are scanned concurrently, temporary files are ignored.
+	 *
+	 * @return Map: File path in repository -> {@link AnyFile}.
+	 */
+	@NotNull
+	protected Map<String, AnyFile> scanFilesystem() {
+		List<File> rootFolders = new ArrayList<>();
+		if (shadowRepositoryBase != null) {
+			// shadow repository before the user repository
+			// to give user file higher priority in case of duplicate paths
+			rootFolders.add(shadowRepositoryBase);
+		}
+		rootFolders.add(repositoryBase);
+		RepositoryScanner scanner = new RepositoryScanner(logger, this);
+		return scanner.scan(rootFolders, SCAN_PARALLELISM);
+	}
 
-		writeCacheFile();
+	/**
+	 * Is the file a temporary file written by {@link #replaceFile(File, byte[])}?
+	 */
+	static boolean isTemporaryFile(@NotNull String filename) {
+		return filename.startsWith(".") && filename.endsWith(TEMP_FILE_SUFFIX);
 	}
 
 	/**
-	 * List all files in the repository, also scans sub-folders.
+	 * Return the hit and miss counters of the metadata cache.
 	 */
-	protected synchronized void listFilesInFilesystem(@NotNull File folder, @NotNull List<File> fileList) {
-		File[] files = folder.listFiles();
-		if (files == null) {
-			return;
+	@NotNull
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	/**
+	 * Registers a listener that is notified about file changes.
+	 */
+	public void addListener(@NotNull RepositoryListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregisters a listener.
+	 */
+	public void removeListener(@NotNull RepositoryListener listener) {
+		listeners.remove(listener);
+	}
+
+	private void fireFileModified(@NotNull AnyFile anyFile) {
+		for (RepositoryListener listener : listeners) {
+			listener.fileModified(anyFile);
 		}
-		for (File file : files) {
-			if (file.isDirectory()) {
-				listFilesInFilesystem(file, fileList);
-			} else {
-				fileList.add(file);
-			}
+	}
+
+	private void fireFileDeleted(@NotNull AnyFile anyFile) {
+		for (RepositoryListener listener : listeners) {
+			listener.fileDeleted(anyFile);
 		}
 	}
 
@@ -271,7 +567,7 @@ public class RepositoryService {
 	 */
 	@Contract(pure = true)
 	@Nullable
-	public synchronized AnyFile getFile(@NotNull String filePath) {
+	public AnyFile getFile(@NotNull String filePath) {
 		return fileMap.get(filePath);
 	}
 
@@ -280,7 +576,7 @@ public class RepositoryService {
 	 */
 	@Contract(value = "-> new", pure = true)
 	@NotNull
-	public synchronized Set<AnyFile> getFiles() {
+	public Set<AnyFile> getFiles() {
 		return new HashSet<>(fileMap.values());
 	}
 
@@ -292,14 +588,13 @@ public class RepositoryService {
 	 */
 	@Contract(value = "_ -> new", pure = true)
 	@NotNull
-	public synchronized Set<AnyFile> getModifiedAfter(Date modifiedAfter) {
-		Set<AnyFile> result = new HashSet<>();
-		for (AnyFile anyFile : fileMap.values()) {
-			if (modifiedAfter == null || modifiedAfter.before(anyFile.getContentTimestamp())) {
-				result.add(anyFile);
-			}
+	public Set<AnyFile> getModifiedAfter(Date modifiedAfter) {
+		if (modifiedAfter == null) {
+			return new HashSet<>(fileMap.values());
 		}
-		return result;
+		// dates have a precision of milliseconds, the empty path is ordered first
+		AnyFile lowerBound = new AnyFile("", new Date(modifiedAfter.getTime() + 1));
+		return new HashSet<>(modificationIndex.tailSet(lowerBound, true));
 	}
 
 	/**
@@ -312,39 +607,85 @@ public class RepositoryService {
 	@Contract(pure = true)
 	@NotNull
 	public List<AnyFile> getLastModifiedFiles(int count, @NotNull Predicate<AnyFile> filter) {
-		List<AnyFile> fileList = new ArrayList<>(fileMap.values());
-		fileList.removeIf(filter.negate());
-		fileList.sort((anyFile1, anyFile2) -> {
-			Date timestamp1 = anyFile1.getContentTimestamp();
-			Date timestamp2 = anyFile2.getContentTimestamp();
-			return timestamp2.compareTo(timestamp1);
-		});
-		return fileList.subList(0, Math.min(fileList.size(), count));
+		List<AnyFile> fileList = new ArrayList<>();
+		Iterator<AnyFile> it = modificationIndex.descendingIterator();
+		while (it.hasNext() && (count < 0 || fileList.size() < count)) {
+			AnyFile anyFile = it.next();
+			if (filter.test(anyFile)) {
+				fileList.add(anyFile);
+			}
+		}
+		return fileList;
+	}
+
+	/**
+	 * Add or replace the cache entry of a file.
+	 * Must be called while holding the path lock of the file.
+	 */
+	private void putFileEntry(@NotNull AnyFile anyFile) {
+		AnyFile oldAnyFile = fileMap.put(anyFile.getFilePath(), anyFile);
+		if (oldAnyFile != null) {
+			modificationIndex.remove(oldAnyFile);
+		}
+		modificationIndex.add(anyFile);
+	}
+
+	/**
+	 * Remove the cache entry of a file.
+	 * Must be called while holding the path lock of the file.
+	 *
+	 * @return the removed entry, <code>null</code> if the file was unknown.
+	 */
+	@Nullable
+	private AnyFile removeFileEntry(@NotNull String filePath) {
+		AnyFile oldAnyFile = fileMap.remove(filePath);
+		if (oldAnyFile != null) {
+			modificationIndex.remove(oldAnyFile);
+		}
+		return oldAnyFile;
+	}
+
+	/**
+	 * Replace all cache entries.
+	 * Must not be called concurrently with other file operations.
+	 */
+	private void replaceFileEntries(@NotNull Map<String, AnyFile> newFileMap) {
+		fileMap.clear();
+		modificationIndex.clear();
+		fileMap.putAll(newFileMap);
+		modificationIndex.addAll(newFileMap.values());
 	}
 
 	/**
 	 * Deletes a file from the repository.
 	 */
-	public synchronized void deleteFile(@NotNull AnyFile anyFile) throws ServiceException {
+	public void deleteFile(@NotNull AnyFile anyFile) throws ServiceException {
 		String filePath = anyFile.getFilePath();
-		try {
-			String filename = repository2FilesystemPath(filePath, false);
-			File file = new File(filename);
-			if (!file.delete()) {
-				String message = "Error deleting file '" + filePath + "', because the file system denied the action";
-				logger.write(message);
-				throw new ServiceException(message);
+		AnyFile deletedFile;
+		synchronized (getPathLock(filePath)) {
+			try {
+				String filename = repository2FilesystemPath(filePath, false);
+				File file = new File(filename);
+				if (!file.delete()) {
+					String message = "Error deleting file '" + filePath + "', because the file system denied the action";
+					logger.write(message);
+					throw new ServiceException(message);
+				}
+			} catch (SecurityException e) {
+				String message = "Error deleting file '" + filePath + "', because of a security violation";
+				logger.write(message, e);
+				throw new ServiceException(message, e);
 			}
-		} catch (SecurityException e) {
-			String message = "Error deleting file '" + filePath + "', because of a security violation";
-			logger.write(message, e);
-			throw new ServiceException(message, e);
-		}
 
-		// update cache
-		fileMap.remove(filePath);
-		writeCacheFile();
+			// update cache
+			deletedFile = removeFileEntry(filePath);
+		}
+		writtenFileTimestamps.remove(filePath);
+		if (!FILELIST_CACHE_FILEPATH.equals(filePath)) {
+			writeCacheJournal(filePath);
+		}
 		logger.write("File '" + filePath + "' deleted");
+		fireFileDeleted(deletedFile != null ? deletedFile : anyFile);
 	}
 
 	/**
@@ -352,7 +693,7 @@ public class RepositoryService {
 	 * Throws an exception if the file doesn't exist.
 	 */
 	@NotNull
-	public synchronized String readTextFile(@NotNull AnyFile anyFile) throws ServiceException {
+	public String readTextFile(@NotNull AnyFile anyFile) throws ServiceException {
 		byte[] contentBytes = readBinaryFile(anyFile);
 		return new String(contentBytes, StandardCharsets.UTF_8);
 	}
@@ -361,18 +702,67 @@ public class RepositoryService {
 	 * Write the content of a text file.
 	 */
 	@NotNull
-	public synchronized AnyFile writeTextFile(@NotNull AnyFile anyFile, @NotNull String content) throws ServiceException {
+	public AnyFile writeTextFile(@NotNull AnyFile anyFile, @NotNull String content) throws ServiceException {
 		byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
 		return writeBinaryFile(anyFile, contentBytes, null);
 	}
 
+	/**
+	 * Append text to the end of a text file in the user repository.
+	 * If the file doesn't exist it will be created.
+	 */
+	@NotNull
+	public AnyFile appendTextFile(@NotNull AnyFile anyFile, @NotNull String content) throws ServiceException {
+		byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+		return writeFile(anyFile, contentBytes, null, true);
+	}
+
 	/**
 	 * Read the content of a binary file from the user or the shadow repository.
 	 * Throws an exception if the file doesn't exist.
 	 */
-	public synchronized byte @NotNull [] readBinaryFile(@NotNull AnyFile anyFile) throws ServiceException {
-		String filePath = anyFile.getFilePath();
-		filePath = PathUtils.makeWebPathAbsolute(filePath, null);
+	public byte @NotNull [] readBinaryFile(@NotNull AnyFile anyFile) throws ServiceException {
+		String filePath = PathUtils.makeWebPathAbsolute(anyFile.getFilePath(), null);
+		File file = findFile(filePath);
+		logger.debug(() -> "Reading file '" + filePath + "' from repository");
+		try {
+			return Files.readAllBytes(file.toPath());
+		} catch (IOException e) {
+			String message = "Error reading file '" + filePath + "'";
+			logger.write(message, e);
+			throw new ServiceException(message, e);
+		}
+	}
+
+	/**
+	 * Open a binary file from the user or the shadow repository for reading,
+	 * without loading its content into memory.
+	 * Throws an exception if the file doesn't exist.
+	 *
+	 * @return Read-only channel positioned at the beginning of the file.
+	 *         The caller has to close it.
+	 */
+	@NotNull
+	public FileChannel openBinaryFile(@NotNull AnyFile anyFile) throws ServiceException {
+		String filePath = PathUtils.makeWebPathAbsolute(anyFile.getFilePath(), null);
+		File file = findFile(filePath);
+		logger.debug(() -> "Opening file '" + filePath + "' from repository");
+		try {
+			return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		} catch (IOException e) {
+			String message = "Error opening file '" + filePath + "'";
+			logger.write(message, e);
+			throw new ServiceException(message, e);
+		}
+	}
+
+	/**
+	 * Look up a file in the user repository, with the shadow repository as
+	 * fallback. New files are added to the cache.
+	 * Throws an exception if the file doesn't exist.
+	 */
+	@NotNull
+	private File findFile(@NotNull String filePath) throws ServiceException {
 		String filename1 = repository2FilesystemPath(filePath, false);
 		String filename2 = null;
 		if (shadowRepositoryBase != null) {
@@ -396,29 +786,83 @@ public class RepositoryService {
 		}
 
 		// update cache
-		if (!fileMap.containsKey(filePath)) {
+		if (fileMap.containsKey(filePath)) {
+			cacheStatistics.recordHit();
+		} else {
+			AnyFile newAnyFile = null;
+			synchronized (getPathLock(filePath)) {
+				// check again, the file may have been written or deleted concurrently
+				if (file.exists() && !fileMap.containsKey(filePath)) {
+					Date fileTimestamp = new Date(file.lastModified());
+					newAnyFile = new AnyFile(filePath, fileTimestamp);
+					putFileEntry(newAnyFile);
+				}
+			}
+			if (newAnyFile == null) {
+				cacheStatistics.recordHit();
+				return file;
+			}
+			cacheStatistics.recordMiss();
 			logger.write("Detected new file '" + filePath + "' in repository, adding to cache");
-			Date fileTimestamp = new Date(file.lastModified());
-			AnyFile newAnyFile = new AnyFile(filePath, fileTimestamp);
-			fileMap.put(filePath, newAnyFile);
 
 			if (!FILELIST_CACHE_FILEPATH.equals(filePath)) {
 				// Don't write cache file while it is read,
 				// otherwise it will be overwritten with empty content.
-				writeCacheFile();
+				writeCacheJournal(filePath);
 			}
+			fireFileModified(newAnyFile);
 		}
+		return file;
+	}
 
-		logger.write("Reading file '" + filePath + "' from repository");
-		try (FileInputStream is = new FileInputStream(file)) {
-			byte[] fileContent = new byte[is.available()];
-			//noinspection ResultOfMethodCallIgnored
-			is.read(fileContent);
-			return fileContent;
-		} catch (IOException e) {
-			String message = "Error reading file '" + filePath + "'";
-			logger.write(message, e);
-			throw new ServiceException(message, e);
+	/**
+	 * Update the cache entry of a file after it was changed outside of this
+	 * service, e.g. by an external editor or a sync tool. Notifies the
+	 * listeners if the file was added, modified or deleted.
+	 * Files written by this service itself are ignored.
+	 */
+	public void refreshFile(@NotNull String filePath) {
+		if (isTemporaryFile(PathUtils.extractWebName(filePath))) {
+			return;
+		}
+
+		AnyFile oldAnyFile;
+		AnyFile newAnyFile = null;
+		synchronized (getPathLock(filePath)) {
+			File file = new File(repository2FilesystemPath(filePath, false));
+			if (!file.isFile() && shadowRepositoryBase != null) {
+				file = new File(repository2FilesystemPath(filePath, true));
+			}
+			oldAnyFile = fileMap.get(filePath);
+			if (file.isFile()) {
+				long fileTimestamp = file.lastModified();
+				Long writtenFileTimestamp = writtenFileTimestamps.get(filePath);
+				if (oldAnyFile != null && (oldAnyFile.getContentTimestamp().getTime() == fileTimestamp
+						|| writtenFileTimestamp != null && writtenFileTimestamp == fileTimestamp)) {
+					// not modified or own write
+					return;
+				}
+				writtenFileTimestamps.remove(filePath);
+				newAnyFile = new AnyFile(filePath, new Date(fileTimestamp));
+				putFileEntry(newAnyFile);
+			} else {
+				if (oldAnyFile == null) {
+					return;
+				}
+				writtenFileTimestamps.remove(filePath);
+				removeFileEntry(filePath);
+			}
+		}
+
+		if (!FILELIST_CACHE_FILEPATH.equals(filePath)) {
+			writeCacheJournal(filePath);
+		}
+		if (newAnyFile != null) {
+			logger.write("Detected modified file '" + filePath + "' in repository");
+			fireFileModified(newAnyFile);
+		} else {
+			logger.write("Detected deleted file '" + filePath + "' in repository");
+			fireFileDeleted(oldAnyFile);
 		}
 	}
 
@@ -427,39 +871,80 @@ public class RepositoryService {
 	 * If the file already exists it will be overwritten.
 	 */
 	@NotNull
-	public synchronized AnyFile writeBinaryFile(@NotNull AnyFile anyFile, byte @NotNull [] content, @Nullable Date contentTimestamp) throws ServiceException {
+	public AnyFile writeBinaryFile(@NotNull AnyFile anyFile, byte @NotNull [] content, @Nullable Date contentTimestamp) throws ServiceException {
+		return writeFile(anyFile, content, contentTimestamp, false);
+	}
+
+	/**
+	 * Write or append content to a file in the user repository.
+	 */
+	@NotNull
+	private AnyFile writeFile(@NotNull AnyFile anyFile, byte @NotNull [] content, @Nullable Date contentTimestamp, boolean append) throws ServiceException {
 		String filePath = anyFile.getFilePath();
 		filePath = PathUtils.makeWebPathAbsolute(filePath, null);
 		String filename = repository2FilesystemPath(filePath, false);
 		File file = new File(filename);
 
 		createFolders(file);
-		try (FileOutputStream out = new FileOutputStream(file)) {
-			out.write(content);
-		} catch (SecurityException e) {
-			String message = "Error saving file '" + filePath + "', because of a security violation";
-			logger.write(message, e);
-			throw new ServiceException(message, e);
-		} catch (IOException e) {
-			String message = "Error saving file '" + filePath + "'";
-			logger.write(message, e);
-			throw new ServiceException(message, e);
-		}
+		AnyFile newAnyFile;
+		synchronized (getPathLock(filePath)) {
+			try {
+				if (append) {
+					try (FileOutputStream out = new FileOutputStream(file, true)) {
+						out.write(content);
+					}
+				} else {
+					replaceFile(file, content);
+				}
+			} catch (SecurityException e) {
+				String message = "Error saving file '" + filePath + "', because of a security violation";
+				logger.write(message, e);
+				throw new ServiceException(message, e);
+			} catch (IOException e) {
+				String message = "Error saving file '" + filePath + "'";
+				logger.write(message, e);
+				throw new ServiceException(message, e);
+			}
 
-		if (contentTimestamp == null) {
-			contentTimestamp = new Date(file.lastModified());
+			long fileTimestamp = file.lastModified();
+			writtenFileTimestamps.put(filePath, fileTimestamp);
+			if (contentTimestamp == null) {
+				contentTimestamp = new Date(fileTimestamp);
+			}
+			newAnyFile = new AnyFile(filePath, contentTimestamp);
+			putFileEntry(newAnyFile);
 		}
-		AnyFile newAnyFile = new AnyFile(filePath, contentTimestamp);
-		fileMap.put(filePath, newAnyFile);
 		logger.write("Content for file '" + filePath + "' successfully written");
 
 		if (!FILELIST_CACHE_FILEPATH.equals(filePath)) {
 			// avoid endless loop
-			writeCacheFile();
+			writeCacheJournal(filePath);
 		}
+		fireFileModified(newAnyFile);
 		return newAnyFile;
 	}
 
+	/**
+	 * Write the content into a temporary file and replace the file
+	 * afterwards. This way concurrent readers either see the old or the new
+	 * content, but never a partially written file.
+	 */
+	private void replaceFile(@NotNull File file, byte @NotNull [] content) throws IOException {
+		File tempFile = new File(file.getParentFile(), "." + file.getName() + "." + UUID.randomUUID() + TEMP_FILE_SUFFIX);
+		try {
+			try (FileOutputStream out = new FileOutputStream(tempFile)) {
+				out.write(content);
+			}
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
 	/**
 	 * Create all sub-folders required to write a file.
 	 */
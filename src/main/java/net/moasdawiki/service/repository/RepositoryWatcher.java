@@ -0,0 +1,285 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.repository;
+
+import net.moasdawiki.base.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the repository and the shadow repository for changes made outside
+ * of the {@link RepositoryService}, e.g. by an external editor or a sync
+ * tool like git or Syncthing. Changed files are passed to
+ * {@link RepositoryService#refreshFile(String)}, which updates the cache
+ * and notifies the listeners.
+ *
+ * Events are coalesced until no new event arrives for the coalescing delay,
+ * so a burst of changes is processed in a single group commit. If the
+ * operating system drops events, the whole cache is reconciled with the
+ * file system.
+ */
+public class RepositoryWatcher {
+
+	/**
+	 * Events are coalesced for at most this multiple of the coalescing delay,
+	 * so that a continuous stream of events is still processed.
+	 */
+	private static final int MAX_COALESCING_FACTOR = 10;
+
+	@NotNull
+	private final Logger logger;
+
+	@NotNull
+	private final RepositoryService repositoryService;
+
+	/**
+	 * Time in ms without new events before the collected events are processed.
+	 */
+	private final long coalescingDelay;
+
+	/**
+	 * Watched folders.
+	 * Map: Watch key -> folder in the file system.
+	 */
+	@NotNull
+	private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+
+	@Nullable
+	private WatchService watchService;
+
+	@Nullable
+	private Thread thread;
+
+	private volatile boolean running;
+
+	/**
+	 * Constructor.
+	 */
+	public RepositoryWatcher(@NotNull Logger logger, @NotNull RepositoryService repositoryService, long coalescingDelay) {
+		super();
+		this.logger = logger;
+		this.repositoryService = repositoryService;
+		this.coalescingDelay = coalescingDelay;
+	}
+
+	/**
+	 * Starts watching the repository in a background thread.
+	 * Changes made before this call aren't detected.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			if (repositoryService.shadowRepositoryBase != null) {
+				registerFolderTree(repositoryService.shadowRepositoryBase.toPath(), null);
+			}
+			registerFolderTree(repositoryService.repositoryBase.toPath(), null);
+		} catch (IOException e) {
+			logger.write("Error starting repository watcher, external changes aren't detected", e);
+			stop();
+			return;
+		}
+		running = true;
+		thread = new Thread(this::run, "RepositoryWatcher");
+		thread.setDaemon(true);
+		thread.start();
+		logger.write("Repository watcher started, watching " + watchedFolders.size() + " folders");
+	}
+
+	/**
+	 * Stops watching the repository and waits for the background thread to
+	 * finish.
+	 */
+	public void stop() {
+		Thread watcherThread;
+		synchronized (this) {
+			running = false;
+			if (watchService != null) {
+				try {
+					watchService.close();
+				} catch (IOException e) {
+					logger.write("Error closing repository watcher", e);
+				}
+			}
+			watcherThread = thread;
+			thread = null;
+		}
+		if (watcherThread != null && watcherThread != Thread.currentThread()) {
+			try {
+				watcherThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Main loop of the background thread.
+	 */
+	private void run() {
+		WatchService service = watchService;
+		if (service == null) {
+			return;
+		}
+		try {
+			while (running) {
+				Set<String> changedFilePaths = new LinkedHashSet<>();
+				boolean overflow = processEvents(service.take(), changedFilePaths);
+
+				// coalesce following events
+				long deadline = System.currentTimeMillis() + MAX_COALESCING_FACTOR * coalescingDelay;
+				WatchKey key;
+				while (System.currentTimeMillis() < deadline
+						&& (key = service.poll(coalescingDelay, TimeUnit.MILLISECONDS)) != null) {
+					overflow |= processEvents(key, changedFilePaths);
+				}
+
+				applyChanges(changedFilePaths, overflow);
+			}
+		} catch (ClosedWatchServiceException e) {
+			// watcher was stopped
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			logger.write("Repository watcher stopped because of an unexpected error", e);
+		}
+	}
+
+	/**
+	 * Collects the repository paths of all files affected by the events of a
+	 * watch key.
+	 *
+	 * @return true if events were lost and the cache has to be reconciled.
+	 */
+	boolean processEvents(@NotNull WatchKey key, @NotNull Set<String> changedFilePaths) {
+		boolean overflow = false;
+		Path folder = watchedFolders.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+				continue;
+			}
+			if (folder == null) {
+				continue;
+			}
+			Path path = folder.resolve((Path) event.context());
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+				// watch the new folder, files created before registration are collected
+				try {
+					registerFolderTree(path, changedFilePaths);
+				} catch (IOException e) {
+					logger.write("Error watching new folder '" + path + "'", e);
+					overflow = true;
+				}
+			} else {
+				addFilePath(path, changedFilePaths);
+			}
+		}
+		if (!key.reset()) {
+			// folder was deleted, check all files that were inside
+			watchedFolders.remove(key);
+			if (folder != null) {
+				String folderPath = repositoryService.filesystem2RepositoryPath(folder.toAbsolutePath().toString());
+				if (folderPath != null) {
+					String prefix = folderPath.endsWith("/") ? folderPath : folderPath + '/';
+					for (AnyFile anyFile : repositoryService.getFiles()) {
+						if (anyFile.getFilePath().startsWith(prefix)) {
+							changedFilePaths.add(anyFile.getFilePath());
+						}
+					}
+				}
+			}
+		}
+		return overflow;
+	}
+
+	/**
+	 * Updates the repository cache.
+	 */
+	void applyChanges(@NotNull Set<String> changedFilePaths, boolean overflow) {
+		if (overflow) {
+			logger.write("Repository watcher lost events, reconciling repository cache");
+			repositoryService.reconcile();
+			return;
+		}
+		repositoryService.startGroupCommit();
+		try {
+			for (String filePath : changedFilePaths) {
+				repositoryService.refreshFile(filePath);
+			}
+		} finally {
+			repositoryService.finishGroupCommit();
+		}
+	}
+
+	/**
+	 * Registers a folder and all sub-folders at the watch service.
+	 *
+	 * @param changedFilePaths if not <code>null</code> the files found in the
+	 *                         folders are added.
+	 */
+	private void registerFolderTree(@NotNull Path root, @Nullable Set<String> changedFilePaths) throws IOException {
+		WatchService service = watchService;
+		if (service == null) {
+			return;
+		}
+		Deque<File> folders = new ArrayDeque<>();
+		folders.add(root.toFile());
+		while (!folders.isEmpty()) {
+			File folder = folders.poll();
+			Path folderPath = folder.toPath();
+			WatchKey key = folderPath.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			watchedFolders.put(key, folderPath);
+			File[] files = folder.listFiles();
+			if (files == null) {
+				continue;
+			}
+			for (File file : files) {
+				if (file.isDirectory()) {
+					folders.add(file);
+				} else if (changedFilePaths != null) {
+					addFilePath(file.toPath(), changedFilePaths);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the repository path of a file.
+	 */
+	private void addFilePath(@NotNull Path path, @NotNull Set<String> changedFilePaths) {
+		if (RepositoryService.isTemporaryFile(path.getFileName().toString())) {
+			return;
+		}
+		String filePath = repositoryService.filesystem2RepositoryPath(path.toAbsolutePath().toString());
+		if (filePath != null) {
+			changedFilePaths.add(filePath);
+		}
+	}
+}
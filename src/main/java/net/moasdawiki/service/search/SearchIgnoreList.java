@@ -65,7 +65,7 @@ public class SearchIgnoreList {
      * Drop the cache content and reread the ignore list on next access.
      * Is called in App environment after synchronization with server.
      */
-    public void reset() {
+    public synchronized void reset() {
         ignoreList.clear();
     }
 
@@ -74,7 +74,7 @@ public class SearchIgnoreList {
      * The word is not normalized.
      */
     @Contract(pure = true)
-    public boolean isValidWord(@NotNull String word) {
+    public synchronized boolean isValidWord(@NotNull String word) {
         if (word.length() <= 1) {
             return false;
         }
@@ -19,11 +19,14 @@
 
 package net.moasdawiki.service.search;
 
+import net.moasdawiki.base.CacheStatistics;
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.service.repository.AnyFile;
 import net.moasdawiki.service.repository.RepositoryService;
 import net.moasdawiki.service.wiki.WikiFile;
+import net.moasdawiki.service.wiki.WikiFileChangeTracker;
+import net.moasdawiki.service.wiki.WikiFileIndexer;
 import net.moasdawiki.service.wiki.WikiService;
 import net.moasdawiki.util.DateUtils;
 import net.moasdawiki.util.StringUtils;
@@ -45,8 +48,10 @@ import java.util.stream.IntStream;
  *     <li>No support for regular expressions.</li>
  *     <li>No support for non-letter or non-digit characters.</li>
  * </ul>
+ *
+ * The public methods are thread-safe.
  */
-public class SearchIndex {
+public class SearchIndex implements WikiFileIndexer {
 
     static final String SEARCH_INDEX_FILEPATH = "/search-index.cache";
 
@@ -75,6 +80,14 @@ public class SearchIndex {
     @NotNull
     private final Map<String, Set<String>> word2WikiFilePathMap;
 
+    /**
+     * Map: Wiki file path -> Set of words.
+     * Reverse mapping of {@link #word2WikiFilePathMap}, required to update
+     * the search index per wiki page. Isn't stored in the cache file.
+     */
+    @NotNull
+    private final Map<String, Set<String>> wikiFilePath2WordMap;
+
     /**
      * Last update of the search index in {@link #word2WikiFilePathMap}.
      * null -> cache not loaded yet.
@@ -82,12 +95,41 @@ public class SearchIndex {
     @Nullable
     private Date lastUpdate;
 
+    /**
+     * Newest content timestamp of the wiki pages added while the search
+     * index is rebuilt.
+     */
+    @Nullable
+    private Date rebuildLastUpdate;
+
+    /**
+     * Does the search index have to be compared with the whole repository
+     * on next access? This is necessary after loading the cache file as
+     * wiki pages may have been changed while the server was not running.
+     * Afterwards only the wiki pages reported by the change tracker are
+     * updated.
+     */
+    private boolean fullUpdateRequired;
+
+    /**
+     * Wiki pages that were changed in the repository since the last update.
+     */
+    @NotNull
+    private final WikiFileChangeTracker changeTracker;
+
     /**
      * Is repository scanning allowed to update the cache content?
      * Is set to false for the App as the cache file is updated by synchronization.
      */
     private final boolean repositoryScanAllowed;
 
+    /**
+     * Hits and misses when searching. A miss means that the index had to be
+     * loaded from the cache file or updated with modified wiki pages.
+     */
+    @NotNull
+    private final CacheStatistics cacheStatistics = new CacheStatistics();
+
     /**
      * Constructor.
      */
@@ -99,16 +141,64 @@ public class SearchIndex {
         this.wikiService = wikiService;
         this.searchIgnoreList = searchIgnoreList;
         this.word2WikiFilePathMap = new HashMap<>();
+        this.wikiFilePath2WordMap = new HashMap<>();
         this.repositoryScanAllowed = repositoryScanAllowed;
+        this.fullUpdateRequired = true;
+        this.changeTracker = new WikiFileChangeTracker();
+        if (repositoryScanAllowed) {
+            repositoryService.addListener(changeTracker);
+        }
     }
 
     /**
      * Drop the cache content and reread/rebuild the search index on next access.
      * Is called in App environment after synchronization with server.
      */
-    public void reset() {
+    public synchronized void reset() {
         word2WikiFilePathMap.clear();
+        wikiFilePath2WordMap.clear();
         lastUpdate = null;
+        rebuildLastUpdate = null;
+        fullUpdateRequired = true;
+    }
+
+    /**
+     * The search index has to be rebuilt if the cache file cannot be read.
+     */
+    @Override
+    public synchronized boolean isRebuildRequired() {
+        if (!repositoryScanAllowed) {
+            return false;
+        }
+        if (lastUpdate == null) {
+            readCacheFile();
+        }
+        return lastUpdate == null;
+    }
+
+    @Override
+    public synchronized void indexWikiFile(@NotNull WikiFile wikiFile) {
+        String text = wikiFile.getWikiFilePath() + " " + wikiFile.getWikiText();
+        removeWordMappings(wikiFile.getWikiFilePath());
+        addNormalizedWordMappings(text, wikiFile.getWikiFilePath());
+        Date contentTimestamp = wikiFile.getRepositoryFile().getContentTimestamp();
+        if (rebuildLastUpdate == null || rebuildLastUpdate.before(contentTimestamp)) {
+            rebuildLastUpdate = contentTimestamp;
+        }
+    }
+
+    @Override
+    public synchronized void finishRebuild(@NotNull Date rebuildTimestamp) {
+        if (rebuildLastUpdate != null) {
+            lastUpdate = rebuildLastUpdate;
+        } else {
+            lastUpdate = rebuildTimestamp;
+        }
+        rebuildLastUpdate = null;
+        // later changes are reported by the change tracker
+        fullUpdateRequired = false;
+        logger.write("Search index rebuilt, contains " + word2WikiFilePathMap.size() + " words");
+        writeCacheFile();
     }
 
     /**
@@ -119,7 +209,7 @@ public class SearchIndex {
      */
     @Contract("_ -> new")
     @NotNull
-    public Set<String> searchWikiFilePaths(@NotNull Set<String> words) {
+    public synchronized Set<String> searchWikiFilePaths(@NotNull Set<String> words) {
         ensureCacheUpdated();
 
         Set<String> result = new HashSet<>();
@@ -145,58 +235,82 @@ public class SearchIndex {
      * Lazy loads and updates the cache content.
      */
     private void ensureCacheUpdated() {
+        boolean upToDate = true;
         if (lastUpdate == null) {
             readCacheFile();
+            upToDate = false;
         }
         if (repositoryScanAllowed) {
-            cleanOldEntries();
-            updateIndex();
+            if (fullUpdateRequired) {
+                // the full update includes all tracked changes
+                changeTracker.clear();
+                cleanOldEntries();
+                updateIndex();
+                fullUpdateRequired = false;
+                upToDate = false;
+            } else if (updateChangedWikiFiles() > 0) {
+                upToDate = false;
+            }
+        }
+        if (upToDate) {
+            cacheStatistics.recordHit();
+        } else {
+            cacheStatistics.recordMiss();
         }
     }
 
+    /**
+     * Returns the hit and miss counters of the search index.
+     */
+    @NotNull
+    public CacheStatistics getCacheStatistics() {
+        return cacheStatistics;
+    }
+
     /**
      * Removes all dangling wiki file references.
      */
     void cleanOldEntries() {
-        Iterator<String> keyIt = word2WikiFilePathMap.keySet().iterator();
-        while (keyIt.hasNext()) {
-            // remove dangling references
-            String key = keyIt.next();
-            Set<String> wikiFilePaths = word2WikiFilePathMap.get(key);
-            Iterator<String> it = wikiFilePaths.iterator();
-            while (it.hasNext()) {
-                String wikiFilePath = it.next();
-                if (!wikiService.existsWikiFile(wikiFilePath)) {
-                    it.remove();
-                    logger.write("Removed old wiki page '" + wikiFilePath + "' from search index");
-                }
+        for (String wikiFilePath : new ArrayList<>(wikiFilePath2WordMap.keySet())) {
+            if (!wikiService.existsWikiFile(wikiFilePath)) {
+                removeWordMappings(wikiFilePath);
+                logger.write("Removed old wiki page '" + wikiFilePath + "' from search index");
             }
+        }
+    }
 
-            // remove keys with no reference
-            if (wikiFilePaths.isEmpty()) {
-                keyIt.remove();
+    /**
+     * Updates the search index with the wiki pages reported by the change
+     * tracker.
+     *
+     * @return Number of wiki pages that were changed since the last update.
+     */
+    int updateChangedWikiFiles() {
+        Set<String> wikiFilePaths = changeTracker.fetchChanges();
+        for (String wikiFilePath : wikiFilePaths) {
+            removeWordMappings(wikiFilePath);
+            if (wikiService.existsWikiFile(wikiFilePath)) {
+                addWikiFile(wikiFilePath);
             }
         }
+        if (!wikiFilePaths.isEmpty()) {
+            logger.write("Updated " + wikiFilePaths.size() + " wiki pages in search index, contains now " + word2WikiFilePathMap.size() + " words");
+            writeCacheFile();
+        }
+        return wikiFilePaths.size();
     }
 
     /**
      * Updates the search index.
+     *
+     * @return Number of wiki pages that were modified since the last update.
      */
-    void updateIndex() {
+    int updateIndex() {
         Set<String> wikiFilePaths = wikiService.getModifiedAfter(lastUpdate);
         logger.write("Scanning " + wikiFilePaths.size() + " files to rebuild search index");
         for (String wikiFilePath : wikiFilePaths) {
-            try {
-                WikiFile wikiFile = wikiService.getWikiFile(wikiFilePath);
-                String text = wikiFile.getWikiFilePath() + " " + wikiFile.getWikiText();
-                addNormalizedWordMappings(text, wikiFile.getWikiFilePath());
-                if (lastUpdate == null || lastUpdate.before(wikiFile.getRepositoryFile().getContentTimestamp())) {
-                    lastUpdate = wikiFile.getRepositoryFile().getContentTimestamp();
-                }
-            }
-            catch (ServiceException e) {
-                // ignore file not found error
-            }
+            removeWordMappings(wikiFilePath);
+            addWikiFile(wikiFilePath);
         }
         if (lastUpdate == null) {
             // ensure that lastUpdate is not null when calling writeCacheFile()
@@ -206,6 +320,24 @@ public class SearchIndex {
             logger.write("Added " + wikiFilePaths.size() + " wiki pages to search index, contains now " + word2WikiFilePathMap.size() + " words");
             writeCacheFile();
         }
+        return wikiFilePaths.size();
+    }
+
+    /**
+     * Reads a wiki page and adds its words to the search index.
+     */
+    private void addWikiFile(@NotNull String wikiFilePath) {
+        try {
+            WikiFile wikiFile = wikiService.getWikiFile(wikiFilePath);
+            String text = wikiFile.getWikiFilePath() + " " + wikiFile.getWikiText();
+            addNormalizedWordMappings(text, wikiFile.getWikiFilePath());
+            if (lastUpdate == null || lastUpdate.before(wikiFile.getRepositoryFile().getContentTimestamp())) {
+                lastUpdate = wikiFile.getRepositoryFile().getContentTimestamp();
+            }
+        }
+        catch (ServiceException e) {
+            // ignore file not found error
+        }
     }
 
     /**
@@ -228,6 +360,27 @@ public class SearchIndex {
     void addWordMapping(@NotNull String word, @NotNull String wikiFilePath) {
         Set<String> wikiFilePaths = word2WikiFilePathMap.computeIfAbsent(word, k -> new HashSet<>());
         wikiFilePaths.add(wikiFilePath);
+        wikiFilePath2WordMap.computeIfAbsent(wikiFilePath, k -> new HashSet<>()).add(word);
+    }
+
+    /**
+     * Removes all word mappings of a wiki page.
+     */
+    void removeWordMappings(@NotNull String wikiFilePath) {
+        Set<String> words = wikiFilePath2WordMap.remove(wikiFilePath);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            Set<String> wikiFilePaths = word2WikiFilePathMap.get(word);
+            if (wikiFilePaths != null) {
+                wikiFilePaths.remove(wikiFilePath);
+                // remove keys with no reference
+                if (wikiFilePaths.isEmpty()) {
+                    word2WikiFilePathMap.remove(word);
+                }
+            }
+        }
     }
 
     /**
@@ -339,7 +492,11 @@ public class SearchIndex {
                 // Parse search index from cache file
                 Map<String, Set<String>> parsedMap = StringUtils.parseMap(reader);
 
-                word2WikiFilePathMap.putAll(parsedMap);
+                for (Map.Entry<String, Set<String>> entry : parsedMap.entrySet()) {
+                    for (String wikiFilePath : entry.getValue()) {
+                        addWordMapping(entry.getKey(), wikiFilePath);
+                    }
+                }
                 lastUpdate = cacheFileTimestamp;
                 logger.write(parsedMap.size() + " keys read from search index cache file");
             }
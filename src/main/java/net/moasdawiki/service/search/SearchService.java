@@ -19,6 +19,7 @@
 
 package net.moasdawiki.service.search;
 
+import net.moasdawiki.base.CacheStatistics;
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.service.repository.RepositoryService;
@@ -71,6 +72,9 @@ public class SearchService {
 		this.searchIgnoreList = new SearchIgnoreList(logger, repositoryService);
 		this.searchIndex = new SearchIndex(logger, repositoryService, wikiService, searchIgnoreList, repositoryScanAllowed);
 		this.repositoryScanAllowed = repositoryScanAllowed;
+		if (repositoryScanAllowed) {
+			wikiService.addIndexer(searchIndex);
+		}
 	}
 
 	/**
@@ -82,6 +86,14 @@ public class SearchService {
 		searchIndex.reset();
 	}
 
+	/**
+	 * Returns the hit and miss counters of the search index.
+	 */
+	@NotNull
+	public CacheStatistics getCacheStatistics() {
+		return searchIndex.getCacheStatistics();
+	}
+
 	/**
 	 * Parses a query string. Supported use cases:
 	 *
@@ -168,7 +180,7 @@ public class SearchService {
 				return String.CASE_INSENSITIVE_ORDER.compare(p1.getPagePath(), p2.getPagePath());
 			}
 		});
-		logger.write("Search result contains " + pageDetailsList.size() + " wiki pages");
+		logger.debug(() -> "Search result contains " + pageDetailsList.size() + " wiki pages");
 		return pageDetailsList;
 	}
 
@@ -22,6 +22,7 @@ package net.moasdawiki.service.sync;
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.base.Settings;
+import net.moasdawiki.service.ContentWriter;
 import net.moasdawiki.service.HttpResponse;
 import net.moasdawiki.service.repository.AnyFile;
 import net.moasdawiki.service.repository.RepositoryService;
@@ -35,8 +36,12 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.*;
@@ -65,6 +70,18 @@ public class SynchronizationService {
 	 */
 	private static final int MAX_READ_FILE_SIZE = 10 * 1000 * 1000; // 10 MB
 
+	/**
+	 * Platzhalter für den Dateiinhalt im XML der Antwort auf
+	 * <code>read-file</code>, siehe {@link #handleReadFile(byte[])}.
+	 */
+	private static final String CONTENT_PLACEHOLDER = "CONTENT_PLACEHOLDER";
+
+	/**
+	 * Blockgröße beim base64-Kodieren einer Datei. Muss ein Vielfaches von 3
+	 * sein, damit nur der letzte Block aufgefüllt wird.
+	 */
+	private static final int BASE64_BLOCK_SIZE = 3 * 2730;
+
 	/**
 	 * File paths to be excluded from synchronization.
 	 */
@@ -489,23 +506,39 @@ public class SynchronizationService {
 			if (anyFile == null) {
 				return generateErrorResponse("File not found: " + readFileXml.filePath);
 			}
-			byte[] fileContent = repositoryService.readBinaryFile(anyFile);
+			FileChannel fileChannel = repositoryService.openBinaryFile(anyFile);
 
 			// Zu große Dateien lassen die App abstürzen
-			if (fileContent.length > MAX_READ_FILE_SIZE) {
-				return generateErrorResponse("File size too big for synchronization: " + readFileXml.filePath);
+			try {
+				if (fileChannel.size() > MAX_READ_FILE_SIZE) {
+					fileChannel.close();
+					return generateErrorResponse("File size too big for synchronization: " + readFileXml.filePath);
+				}
+			} catch (IOException e) {
+				closeQuietly(fileChannel);
+				throw new ServiceException("Error reading file size", e);
 			}
 
-			// Antwort generieren
+			// Antwort generieren, der Dateiinhalt wird erst beim Senden
+			// gelesen und base64-kodiert anstelle des Platzhalters eingefügt
 			ReadFileResponseXml xmlResponse = new ReadFileResponseXml();
 			xmlResponse.version = PROTOCOL_VERSION;
 			xmlResponse.timestamp = DateUtils.formatUtcDate(anyFile.getContentTimestamp());
-			xmlResponse.content = EscapeUtils.encodeBase64(fileContent);
-			String responseXml = generateXml(xmlResponse);
+			xmlResponse.content = CONTENT_PLACEHOLDER;
+			String responseXml;
+			try {
+				responseXml = generateXml(xmlResponse);
+			} catch (ServiceException e) {
+				closeQuietly(fileChannel);
+				throw e;
+			}
 			logger.write("Sending XML: " + truncateLogText(responseXml));
+			int placeholderPos = responseXml.indexOf(CONTENT_PLACEHOLDER);
+			byte[] xmlPrefix = responseXml.substring(0, placeholderPos).getBytes(StandardCharsets.UTF_8);
+			byte[] xmlSuffix = responseXml.substring(placeholderPos + CONTENT_PLACEHOLDER.length()).getBytes(StandardCharsets.UTF_8);
 			HttpResponse response = new HttpResponse();
 			response.contentType = HttpResponse.CONTENT_TYPE_XML;
-			response.setContent(responseXml);
+			response.setContent(new Base64FileContentWriter(xmlPrefix, fileChannel, xmlSuffix), -1);
 			return response;
 		} catch (ServiceException e) {
 			String msg = "Error reading file content";
@@ -547,6 +580,14 @@ public class SynchronizationService {
 		}
 	}
 
+	private void closeQuietly(@NotNull FileChannel fileChannel) {
+		try {
+			fileChannel.close();
+		} catch (IOException e) {
+			logger.write("Error closing file", e);
+		}
+	}
+
 	@Nullable
 	private static Date parseUtcDateOrNull(String dateStr) {
 		try {
@@ -651,4 +692,50 @@ public class SynchronizationService {
 			logger.write("Error writing session list file " + SESSION_LIST_FILEPATH, e);
 		}
 	}
+
+	/**
+	 * Schreibt das XML der Antwort auf <code>read-file</code> in den HTTP-Body.
+	 * Der Dateiinhalt wird blockweise gelesen und base64-kodiert, sodass die
+	 * Datei nie vollständig im Speicher liegt.
+	 */
+	private static class Base64FileContentWriter implements ContentWriter {
+
+		private final byte @NotNull [] xmlPrefix;
+		@NotNull
+		private final FileChannel fileChannel;
+		private final byte @NotNull [] xmlSuffix;
+
+		Base64FileContentWriter(byte @NotNull [] xmlPrefix, @NotNull FileChannel fileChannel, byte @NotNull [] xmlSuffix) {
+			this.xmlPrefix = xmlPrefix;
+			this.fileChannel = fileChannel;
+			this.xmlSuffix = xmlSuffix;
+		}
+
+		@Override
+		public void writeTo(@NotNull OutputStream out) throws IOException {
+			out.write(xmlPrefix);
+			ByteBuffer buffer = ByteBuffer.allocate(BASE64_BLOCK_SIZE);
+			boolean eof = false;
+			while (!eof) {
+				// Block vollständig füllen, nur der letzte darf kürzer sein
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					if (fileChannel.read(buffer) < 0) {
+						eof = true;
+						break;
+					}
+				}
+				if (buffer.position() > 0) {
+					byte[] block = Arrays.copyOf(buffer.array(), buffer.position());
+					out.write(EscapeUtils.encodeBase64(block).getBytes(StandardCharsets.US_ASCII));
+				}
+			}
+			out.write(xmlSuffix);
+		}
+
+		@Override
+		public void close() throws IOException {
+			fileChannel.close();
+		}
+	}
 }
@@ -21,6 +21,7 @@ package net.moasdawiki.service.transform;
 
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.ServiceException;
+import net.moasdawiki.service.wiki.PageContext;
 import net.moasdawiki.service.wiki.WikiFile;
 import net.moasdawiki.service.wiki.WikiHelper;
 import net.moasdawiki.service.wiki.WikiService;
@@ -56,10 +57,10 @@ public class IncludePageTransformer implements TransformWikiPage {
     }
 
     @Nullable
-    private PageElement transformPageElement(@NotNull PageElement pageElement) {
+    private PageElement transformPageElement(@NotNull PageElement pageElement, @NotNull PageContext context) {
         if (pageElement instanceof IncludePage) {
             // Read sub page
-            WikiPage wikiPage = WikiHelper.getContextWikiPage(pageElement, false);
+            WikiPage wikiPage = context.getContextWikiPage(false);
             IncludePage includePage = (IncludePage) pageElement;
             String pagePath = WikiHelper.getAbsolutePagePath(includePage.getPagePath(), wikiPage);
             if (pagePath == null) {
@@ -19,6 +19,7 @@
 
 package net.moasdawiki.service.transform;
 
+import net.moasdawiki.service.wiki.PageContext;
 import net.moasdawiki.service.wiki.WikiHelper;
 import net.moasdawiki.service.wiki.structure.*;
 import net.moasdawiki.util.StringUtils;
@@ -46,7 +47,7 @@ public class KontaktseiteTransformer implements TransformWikiPage {
 	}
 
 	@NotNull
-	private PageElement transformPageElement(@NotNull PageElement pageElement) {
+	private PageElement transformPageElement(@NotNull PageElement pageElement, @SuppressWarnings("unused") @NotNull PageContext context) {
 		if (pageElement instanceof XmlTag) {
 			XmlTag xmlTag = (XmlTag) pageElement;
 
@@ -22,6 +22,7 @@ package net.moasdawiki.service.transform;
 import net.moasdawiki.base.Messages;
 import net.moasdawiki.service.sync.SessionData;
 import net.moasdawiki.service.sync.SynchronizationService;
+import net.moasdawiki.service.wiki.PageContext;
 import net.moasdawiki.service.wiki.structure.*;
 import org.jetbrains.annotations.NotNull;
 
@@ -67,7 +68,7 @@ public class SynchronizationPageTransformer implements TransformWikiPage {
     /**
      * Replaces the <code>{{sync-status}}</code> tag by a list of sessions and attributes.
      */
-    private PageElement transformPageElement(@NotNull PageElement pageElement) {
+    private PageElement transformPageElement(@NotNull PageElement pageElement, @SuppressWarnings("unused") @NotNull PageContext context) {
         if (pageElement instanceof WikiTag) {
             WikiTag wikiTag = (WikiTag) pageElement;
             if ("sync-status".equals(wikiTag.getTagname())) {
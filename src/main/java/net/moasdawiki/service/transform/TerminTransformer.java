@@ -24,8 +24,11 @@ import net.moasdawiki.base.Messages;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.service.repository.AnyFile;
 import net.moasdawiki.service.repository.RepositoryService;
+import net.moasdawiki.service.wiki.PageContext;
 import net.moasdawiki.service.wiki.PageElementConsumer;
 import net.moasdawiki.service.wiki.WikiFile;
+import net.moasdawiki.service.wiki.WikiFileChangeTracker;
+import net.moasdawiki.service.wiki.WikiFileIndexer;
 import net.moasdawiki.service.wiki.WikiHelper;
 import net.moasdawiki.service.wiki.WikiService;
 import net.moasdawiki.service.wiki.structure.*;
@@ -55,7 +58,7 @@ import java.util.*;
  * <li><tt>&lt;terminliste jahr="2016" /&gt;</tt> &nbsp; Jahresübersicht</li>
  * </ul>
  */
-public class TerminTransformer implements TransformWikiPage {
+public class TerminTransformer implements TransformWikiPage, WikiFileIndexer {
 
 	private static final String TABLE_AGE_KEY = "TerminTransformer.table.age";
 	private static final String TABLE_DATE_KEY = "TerminTransformer.table.date";
@@ -92,6 +95,21 @@ public class TerminTransformer implements TransformWikiPage {
 	@Nullable
 	private Date cacheTimestamp;
 
+	/**
+	 * Muss der Cache beim nächsten Zugriff mit dem ganzen Repository
+	 * abgeglichen werden? Das ist nach dem Einlesen der Cachedatei nötig, da
+	 * Wikiseiten geändert worden sein können, während der Server nicht lief.
+	 * Danach werden nur noch die vom Change-Tracker gemeldeten Wikiseiten
+	 * aktualisiert.
+	 */
+	private boolean fullUpdateRequired;
+
+	/**
+	 * Geänderte Wikiseiten seit der letzten Cache-Aktualisierung.
+	 */
+	@NotNull
+	private final WikiFileChangeTracker changeTracker;
+
 	/**
 	 * Konstruktor.
 	 */
@@ -104,17 +122,49 @@ public class TerminTransformer implements TransformWikiPage {
 		this.repositoryService = repositoryService;
 		this.scanRepository = scanRepository;
 		this.eventCache = new ArrayList<>();
+		this.changeTracker = new WikiFileChangeTracker();
 		reset();
+		if (scanRepository) {
+			repositoryService.addListener(changeTracker);
+			wikiService.addIndexer(this);
+		}
 	}
 
 	/**
 	 * Rereads the cache file.
 	 * Is called in App environment after synchronization with server.
+	 * If the cache file is missing, the cache is rebuilt by
+	 * {@link WikiService#rebuildIndexes()} or on the next access.
 	 */
-	public void reset() {
-		if (!readEventsFromCacheFile()) {
-			updateCache();
-		}
+	public synchronized void reset() {
+		readEventsFromCacheFile();
+		fullUpdateRequired = true;
+	}
+
+	/**
+	 * Der Cache muss neu aufgebaut werden, wenn die Cachedatei nicht gelesen
+	 * werden konnte.
+	 */
+	@Override
+	public synchronized boolean isRebuildRequired() {
+		return scanRepository && cacheTimestamp == null;
+	}
+
+	@Override
+	public synchronized void indexWikiFile(@NotNull WikiFile wikiFile) {
+		removeEvents(wikiFile.getWikiFilePath(), eventCache);
+		readBirthday(wikiFile, eventCache);
+		readTasks(wikiFile, eventCache);
+	}
+
+	@Override
+	public synchronized void finishRebuild(@NotNull Date rebuildTimestamp) {
+		cacheTimestamp = rebuildTimestamp;
+		// spätere Änderungen meldet der Change-Tracker
+		fullUpdateRequired = false;
+		eventCache.removeIf(event -> !wikiService.existsWikiFile(event.pagePath));
+		writeEventsToCacheFile();
+		logger.write("Event cache rebuilt, contains " + eventCache.size() + " events");
 	}
 
 	/**
@@ -206,7 +256,7 @@ public class TerminTransformer implements TransformWikiPage {
 	}
 
 	@NotNull
-	private PageElement transformPageElement(@NotNull PageElement pageElement) {
+	private PageElement transformPageElement(@NotNull PageElement pageElement, @SuppressWarnings("unused") @NotNull PageContext context) {
 		if (pageElement instanceof XmlTag) {
 			XmlTag xmlTag = (XmlTag) pageElement;
 
@@ -258,8 +308,19 @@ public class TerminTransformer implements TransformWikiPage {
 	 */
 	@SuppressWarnings("unused")
 	@NotNull
-	public List<Event> getEvents() {
-		return Collections.unmodifiableList(eventCache);
+	public synchronized List<Event> getEvents() {
+		return Collections.unmodifiableList(new ArrayList<>(eventCache));
+	}
+
+	/**
+	 * Update the cache content and return a copy of it.
+	 * Wiki pages can be rendered concurrently, so the cache must not be
+	 * iterated while another thread updates it.
+	 */
+	@NotNull
+	private synchronized List<Event> getUpdatedEvents() {
+		updateCache();
+		return new ArrayList<>(eventCache);
 	}
 
 	/**
@@ -270,28 +331,55 @@ public class TerminTransformer implements TransformWikiPage {
 			return;
 		}
 
-		Set<String> modifiedWikiFilePaths = wikiService.getModifiedAfter(cacheTimestamp);
-		if (modifiedWikiFilePaths.isEmpty()) {
-			// no changes in repository, cache is still up to date
-			return;
-		}
-		logger.write("Scanning " + modifiedWikiFilePaths.size() + " new wiki files for events");
-
-		// scan changed files
-		cacheTimestamp = new Date();
-		for (String wikiFilePath : modifiedWikiFilePaths) {
-			removeEvents(wikiFilePath, eventCache);
-			readBirthday(wikiFilePath, eventCache);
-			readTasks(wikiFilePath, eventCache);
-		}
+		if (fullUpdateRequired) {
+			fullUpdateRequired = false;
+			// the full update includes all tracked changes
+			changeTracker.clear();
+			Date newCacheTimestamp = new Date();
+			Set<String> modifiedWikiFilePaths = wikiService.getModifiedAfter(cacheTimestamp);
+			logger.write("Scanning " + modifiedWikiFilePaths.size() + " new wiki files for events");
+			cacheTimestamp = newCacheTimestamp;
+			for (String wikiFilePath : modifiedWikiFilePaths) {
+				updateEvents(wikiFilePath);
+			}
 
-		// remove events from deleted files
-		eventCache.removeIf(event -> !wikiService.existsWikiFile(event.pagePath));
+			// remove events from deleted files
+			eventCache.removeIf(event -> !wikiService.existsWikiFile(event.pagePath));
+		} else {
+			Set<String> changedWikiFilePaths = changeTracker.fetchChanges();
+			if (changedWikiFilePaths.isEmpty()) {
+				// no changes in repository, cache is still up to date
+				return;
+			}
+			logger.write("Scanning " + changedWikiFilePaths.size() + " changed wiki files for events");
+			cacheTimestamp = new Date();
+			for (String wikiFilePath : changedWikiFilePaths) {
+				if (wikiService.existsWikiFile(wikiFilePath)) {
+					updateEvents(wikiFilePath);
+				} else {
+					removeEvents(wikiFilePath, eventCache);
+				}
+			}
+		}
 
 		writeEventsToCacheFile();
 		logger.write("Event cache updated, contains " + eventCache.size() + " events");
 	}
 
+	/**
+	 * Replace the events of a single wiki page.
+	 */
+	private void updateEvents(@NotNull String wikiFilePath) {
+		removeEvents(wikiFilePath, eventCache);
+		try {
+			WikiFile wikiFile = wikiService.getWikiFile(wikiFilePath);
+			readBirthday(wikiFile, eventCache);
+			readTasks(wikiFile, eventCache);
+		} catch (ServiceException e) {
+			logger.write("Error reading wiki page to scan for events, ignoring it");
+		}
+	}
+
 	/**
 	 * Write all events to the cache file.
 	 */
@@ -332,10 +420,10 @@ public class TerminTransformer implements TransformWikiPage {
 	 * @return Tabelle mit der Terminliste. Nicht <code>null</code>.
 	 */
 	private PageElement generateYearList(int jahr) {
-		updateCache();
+		List<Event> events = getUpdatedEvents();
 
 		List<ResultEntry> entryList = new ArrayList<>();
-		for (Event event : eventCache) {
+		for (Event event : events) {
 			// Alter berechnen, wenn das Geburtsjahr bekannt ist
 			Integer age = null;
 			if (event.dateFields.year != null) {
@@ -370,7 +458,7 @@ public class TerminTransformer implements TransformWikiPage {
 	 */
 	@NotNull
 	private PageElement generateCurrentDaysList(int tagedanach, int tagedavor) {
-		updateCache();
+		List<Event> events = getUpdatedEvents();
 
 		Calendar todayCal = Calendar.getInstance();
 		DateFields today = new DateFields(todayCal);
@@ -384,7 +472,7 @@ public class TerminTransformer implements TransformWikiPage {
 		DateFields to = new DateFields(toCal);
 
 		List<ResultEntry> entryList = new ArrayList<>();
-		for (Event event : eventCache) {
+		for (Event event : events) {
 			// Liegt der Termin im gesuchten Tage-Intervall?
 			// [heute - tagedavor, heute + tagedanach]
 			DateFields date1 = new DateFields();
@@ -463,16 +551,7 @@ public class TerminTransformer implements TransformWikiPage {
 	 * Durchsucht die angegebene Wikiseite nach einem Geburtstag. Kontakte mit
 	 * fehlenden oder ungültigen Angaben werden ignoriert.
 	 */
-	private void readBirthday(@NotNull String wikiFilePath, @NotNull List<Event> eventList) {
-		WikiFile wikiFile;
-		try {
-			wikiFile = wikiService.getWikiFile(wikiFilePath);
-		}
-		catch (ServiceException e) {
-			logger.write("Error reading wiki page to scan for events, ignoring it");
-			return;
-		}
-
+	private void readBirthday(@NotNull WikiFile wikiFile, @NotNull List<Event> eventList) {
 		BirthdayData birthdayData = new BirthdayData();
 		PageElementConsumer<XmlTag, BirthdayData> consumer = (xmlTag, context) -> {
 			if (xmlTag.getPrefix() == null && "kontakt".equals(xmlTag.getName())) {
@@ -511,16 +590,7 @@ public class TerminTransformer implements TransformWikiPage {
 	 * Durchsucht die angegebene Wikiseite nach offenen Aufgaben mit Terminen.
 	 * Aufgaben mit fehlenden oder ungültigen Angaben werden ignoriert.
 	 */
-	private void readTasks(@NotNull String wikiFilePath, @NotNull List<Event> eventList) {
-		WikiFile wikiFile;
-		try {
-			wikiFile = wikiService.getWikiFile(wikiFilePath);
-		}
-		catch (ServiceException e) {
-			logger.write("Error reading wiki file to scan it for tasks, ignoring it");
-			return;
-		}
-
+	private void readTasks(@NotNull WikiFile wikiFile, @NotNull List<Event> eventList) {
 		// Aufgaben suchen
 		List<Task> taskList = new ArrayList<>();
 		WikiHelper.traversePageElements(wikiFile.getWikiPage(), (task, context) -> context.add(task), Task.class, taskList, true);
@@ -19,6 +19,7 @@
 
 package net.moasdawiki.service.transform;
 
+import net.moasdawiki.service.wiki.PageContext;
 import net.moasdawiki.service.wiki.PageElementTransformer;
 import net.moasdawiki.service.wiki.structure.*;
 import org.jetbrains.annotations.NotNull;
@@ -31,8 +32,13 @@ public class TransformerHelper {
     /**
      * Durchläuft den kompletten Wikibaum einer Wikiseite.
      * <p>
-     * Für jedes Seitenelement wird die angegebene Callbackmethode {@link PageElementTransformer#transformPageElement(PageElement)} aufgerufen,
+     * Für jedes Seitenelement wird die angegebene Callbackmethode {@link PageElementTransformer#transformPageElement(PageElement, PageContext)} aufgerufen,
      * die die Möglichkeit hat, das Seitenelement durch ein neues zu ersetzen.
+     * <p>
+     * Der ursprüngliche Wikibaum wird nicht verändert. Neue Knoten werden nur
+     * auf dem Pfad von der Wurzel zu einem ersetzten Seitenelement erzeugt,
+     * unveränderte Teilbäume werden übernommen. Wird nichts ersetzt, wird die
+     * ursprüngliche Wikiseite zurückgegeben.
      *
      * @param wikiPage Wikiseite, die transformiert werden soll.
      * @param callback Objekt mit Callbackmethode, die für jeden Knoten aufgerufen wird.
@@ -41,7 +47,7 @@ public class TransformerHelper {
     @NotNull
     public static WikiPage transformPageElements(@NotNull WikiPage wikiPage, @NotNull PageElementTransformer callback) {
         // Wiki-Baum traversieren
-        PageElement pe = transformPageElement(wikiPage, callback);
+        PageElement pe = transformPageElement(wikiPage, callback, new PageContext());
 
         if (pe instanceof WikiPage) {
             return (WikiPage) pe;
@@ -54,22 +60,29 @@ public class TransformerHelper {
      * Zerlegt das angegebene Seitenelement.
      */
     @Nullable
-    private static PageElement transformPageElement(@Nullable PageElement pageElement, @NotNull PageElementTransformer callback) {
+    private static PageElement transformPageElement(@Nullable PageElement pageElement, @NotNull PageElementTransformer callback, @NotNull PageContext context) {
         if (pageElement == null) {
             return null;
         }
         // Seitenelement durch Callbackmethode transformieren
         if (!(pageElement instanceof PageElementList)) {
-            pageElement = callback.transformPageElement(pageElement);
+            pageElement = callback.transformPageElement(pageElement, context);
         }
 
         // transformiertes Seitenelement weiter zerlegen
-        if (pageElement instanceof PageElementWithChild) {
-            return transformPageElementWithChild(((PageElementWithChild) pageElement), callback);
+        if (pageElement instanceof WikiPage) {
+            context.enter((WikiPage) pageElement);
+            try {
+                return transformPageElementWithChild(((WikiPage) pageElement), callback, context);
+            } finally {
+                context.leave();
+            }
+        } else if (pageElement instanceof PageElementWithChild) {
+            return transformPageElementWithChild(((PageElementWithChild) pageElement), callback, context);
         } else if (pageElement instanceof PageElementList) {
-            return transformPageElementList((PageElementList) pageElement, callback);
+            return transformPageElementList((PageElementList) pageElement, callback, context);
         } else if (pageElement instanceof Table) {
-            return transformTable((Table) pageElement, callback);
+            return transformTable((Table) pageElement, callback, context);
         } else {
             // null / ohne Kindelemente / unbekannter Typ
             return pageElement;
@@ -79,51 +92,69 @@ public class TransformerHelper {
     /**
      * Transformiert eine Liste von Seitenelementen.
      * <p>
-     * Veränderte Listeneinträge werden ausgetauscht. Wenn ein Listenelement zu <code>null</code> transformiert wird, wird es aus der Liste gelöscht.
+     * Wenn ein Listenelement zu <code>null</code> transformiert wird, wird es aus der Liste gelöscht.
+     * Eine neue Liste wird nur erzeugt, wenn sich ein Listeneintrag geändert hat.
      */
     @NotNull
-    private static PageElementList transformPageElementList(@NotNull PageElementList pageElementList, @NotNull PageElementTransformer callback) {
-        int i = 0;
-        while (i < pageElementList.size()) {
+    private static PageElementList transformPageElementList(@NotNull PageElementList pageElementList, @NotNull PageElementTransformer callback, @NotNull PageContext context) {
+        PageElementList newList = null;
+        for (int i = 0; i < pageElementList.size(); i++) {
             // Listeneintrag transformieren
             PageElement pe = pageElementList.get(i);
-            pe = transformPageElement(pe, callback);
+            PageElement newPe = transformPageElement(pe, callback, context);
 
-            // geänderten Eintrag in Liste austauschen bzw. löschen
-            if (pe != null) {
-                pageElementList.set(i, pe);
-                i++;
-            } else {
-                pageElementList.remove(i);
+            // bei der ersten Änderung neue Liste mit den bisherigen Einträgen anlegen
+            if (newList == null && newPe != pe) {
+                newList = new PageElementList(pageElementList.getFromPos(), pageElementList.getToPos());
+                for (int j = 0; j < i; j++) {
+                    newList.add(pageElementList.get(j));
+                }
+            }
+            if (newList != null && newPe != null) {
+                newList.add(newPe);
             }
         }
-        return pageElementList;
+        return newList != null ? newList : pageElementList;
     }
 
     /**
      * Transformiert das Kind-Element eines Seitenelements.
      * <p>
-     * Wenn das Kind-Element ersetzt wird, wird die Parent-Referenz automatisch aktualisiert.
+     * Wenn das Kind-Element ersetzt wird, wird eine Kopie des Seitenelements mit dem neuen Kind-Element erzeugt.
      */
     @NotNull
-    private static PageElement transformPageElementWithChild(@NotNull PageElementWithChild pageElement, @NotNull PageElementTransformer callback) {
+    private static PageElement transformPageElementWithChild(@NotNull PageElementWithChild pageElement, @NotNull PageElementTransformer callback, @NotNull PageContext context) {
         PageElement child = pageElement.getChild();
-        child = transformPageElement(child, callback);
-        pageElement.setChild(child);
-        return pageElement;
+        PageElement newChild = transformPageElement(child, callback, context);
+        if (newChild == child) {
+            return pageElement;
+        }
+        return pageElement.cloneWithChild(newChild);
     }
 
     /**
      * Transformiert die Zelleninhalte einer Tabelle.
+     * <p>
+     * Eine neue Tabelle wird nur erzeugt, wenn sich ein Zelleninhalt geändert hat.
      */
     @NotNull
-    private static Table transformTable(@NotNull Table table, @NotNull PageElementTransformer callback) {
+    private static Table transformTable(@NotNull Table table, @NotNull PageElementTransformer callback, @NotNull PageContext context) {
+        Table newTable = new Table(table.getParams(), table.getFromPos(), table.getToPos());
+        boolean modified = false;
         for (TableRow tableRow : table.getRows()) {
+            TableRow newRow = new TableRow(tableRow.getParams());
             for (TableCell tableCell : tableRow.getCells()) {
-                PageElement pe = transformPageElement(tableCell.getContent(), callback);
-                tableCell.setContent(pe);
+                PageElement content = tableCell.getContent();
+                PageElement newContent = transformPageElement(content, callback, context);
+                if (newContent != content) {
+                    newRow.addCell(tableCell.cloneWithContent(newContent));
+                    modified = true;
+                } else {
+                    newRow.addCell(tableCell);
+                }
             }
+            newTable.addRow(newRow);
         }
-        return table;
+        return modified ? newTable : table;
     }
 }
@@ -19,6 +19,7 @@
 
 package net.moasdawiki.service.transform;
 
+import net.moasdawiki.base.RequestTimer;
 import net.moasdawiki.service.wiki.structure.WikiPage;
 import org.jetbrains.annotations.NotNull;
 
@@ -26,11 +27,20 @@ public class TransformerService {
 
     private final TransformWikiPage[] transformers;
 
+    /**
+     * Phase names for {@link RequestTimer}, one per transformer.
+     */
+    private final String[] timerPhaseNames;
+
     /**
      * Constructor.
      */
     public TransformerService(@NotNull TransformWikiPage[] transformers) {
         this.transformers = transformers;
+        this.timerPhaseNames = new String[transformers.length];
+        for (int i = 0; i < transformers.length; i++) {
+            timerPhaseNames[i] = "transform-" + transformers[i].getClass().getSimpleName();
+        }
     }
 
     /**
@@ -40,9 +50,13 @@ public class TransformerService {
      */
     @NotNull
     public WikiPage applyTransformations(@NotNull WikiPage wikiPage) {
-        for (TransformWikiPage transformer : transformers) {
-            wikiPage = transformer.transformWikiPage(wikiPage);
+        long startTime = RequestTimer.start();
+        for (int i = 0; i < transformers.length; i++) {
+            long transformerStartTime = RequestTimer.start();
+            wikiPage = transformers[i].transformWikiPage(wikiPage);
+            RequestTimer.stop(timerPhaseNames[i], transformerStartTime);
         }
+        RequestTimer.stop("transform", startTime);
         return wikiPage;
     }
 }
@@ -23,7 +23,7 @@ import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.Messages;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.base.Settings;
-import net.moasdawiki.service.wiki.PageElementConsumer;
+import net.moasdawiki.service.wiki.PageContext;
 import net.moasdawiki.service.wiki.WikiFile;
 import net.moasdawiki.service.wiki.WikiHelper;
 import net.moasdawiki.service.wiki.WikiService;
@@ -68,9 +68,9 @@ public class WikiTagsTransformer implements TransformWikiPage {
         return TransformerHelper.transformPageElements(wikiPage, this::transformPageElement);
     }
 
-    private PageElement transformPageElement(@NotNull PageElement pageElement) {
+    private PageElement transformPageElement(@NotNull PageElement pageElement, @NotNull PageContext context) {
         if (pageElement instanceof TableOfContents) {
-            return transform((TableOfContents) pageElement);
+            return transform((TableOfContents) pageElement, context);
         } else if (pageElement instanceof Parent) {
             return transform((Parent) pageElement);
         } else if (pageElement instanceof WikiVersion) {
@@ -78,19 +78,19 @@ public class WikiTagsTransformer implements TransformWikiPage {
         } else if (pageElement instanceof DateTime) {
             return transform((DateTime) pageElement);
         } else if (pageElement instanceof PageName) {
-            return transform((PageName) pageElement);
+            return transform((PageName) pageElement, context);
         } else if (pageElement instanceof PageTimestamp) {
-            return transform((PageTimestamp) pageElement);
+            return transform((PageTimestamp) pageElement, context);
         } else if (pageElement instanceof ListViewHistory) {
             return transform((ListViewHistory) pageElement);
         } else if (pageElement instanceof ListEditHistory) {
             return transform((ListEditHistory) pageElement);
         } else if (pageElement instanceof ListParents) {
-            return transform((ListParents) pageElement);
+            return transform((ListParents) pageElement, context);
         } else if (pageElement instanceof ListChildren) {
-            return transform((ListChildren) pageElement);
+            return transform((ListChildren) pageElement, context);
         } else if (pageElement instanceof ListPages) {
-            return transform((ListPages) pageElement);
+            return transform((ListPages) pageElement, context);
         } else if (pageElement instanceof ListWantedPages) {
             return transform((ListWantedPages) pageElement);
         } else if (pageElement instanceof ListUnlinkedPages) {
@@ -106,15 +106,15 @@ public class WikiTagsTransformer implements TransformWikiPage {
      * Only scans for headings of level 1 to 3.
      */
     @NotNull
-    private PageElement transform(@NotNull TableOfContents tableOfContents) {
-        WikiPage wikiPage = WikiHelper.getContextWikiPage(tableOfContents, false);
+    private PageElement transform(@NotNull TableOfContents tableOfContents, @NotNull PageContext context) {
+        WikiPage wikiPage = context.getContextWikiPage(false);
         if (wikiPage == null) {
             return new PageElementList();
         }
 
         // scan for headings
         List<Heading> headingList = new ArrayList<>();
-        WikiHelper.traversePageElements(wikiPage, (heading, context) -> context.add(heading), Heading.class, headingList, false);
+        WikiHelper.traversePageElements(wikiPage, (heading, list) -> list.add(heading), Heading.class, headingList, false);
 
         // generate TOC
         PageElementList pageElementList = new PageElementList();
@@ -183,8 +183,8 @@ public class WikiTagsTransformer implements TransformWikiPage {
     }
 
     @Nullable
-    private PageElement transform(@NotNull PageName pageName) {
-        WikiPage wikiPage = WikiHelper.getContextWikiPage(pageName, pageName.isGlobalContext());
+    private PageElement transform(@NotNull PageName pageName, @NotNull PageContext context) {
+        WikiPage wikiPage = context.getContextWikiPage(pageName.isGlobalContext());
         if (wikiPage == null) {
             return null;
         }
@@ -251,8 +251,8 @@ public class WikiTagsTransformer implements TransformWikiPage {
     }
 
     @Nullable
-    private PageElement transform(@NotNull PageTimestamp pageTimestamp) {
-        WikiPage wikiPage = WikiHelper.getContextWikiPage(pageTimestamp, pageTimestamp.isGlobalContext());
+    private PageElement transform(@NotNull PageTimestamp pageTimestamp, @NotNull PageContext context) {
+        WikiPage wikiPage = context.getContextWikiPage(pageTimestamp.isGlobalContext());
         if (wikiPage == null || wikiPage.getPagePath() == null) {
             return null;
         }
@@ -280,8 +280,8 @@ public class WikiTagsTransformer implements TransformWikiPage {
     }
 
     @Nullable
-    private PageElement transform(@NotNull ListParents listParents) {
-        WikiPage wikiPage = WikiHelper.getContextWikiPage(listParents, listParents.isGlobalContext());
+    private PageElement transform(@NotNull ListParents listParents, @NotNull PageContext context) {
+        WikiPage wikiPage = context.getContextWikiPage(listParents.isGlobalContext());
 
         // determine absolute path
         String pagePath = listParents.getPagePath();
@@ -304,8 +304,8 @@ public class WikiTagsTransformer implements TransformWikiPage {
     }
 
     @Nullable
-    private PageElement transform(@NotNull ListChildren listChildren) {
-        WikiPage wikiPage = WikiHelper.getContextWikiPage(listChildren, listChildren.isGlobalContext());
+    private PageElement transform(@NotNull ListChildren listChildren, @NotNull PageContext context) {
+        WikiPage wikiPage = context.getContextWikiPage(listChildren.isGlobalContext());
 
         // determine absolute path
         String pagePath = listChildren.getPagePath();
@@ -328,8 +328,8 @@ public class WikiTagsTransformer implements TransformWikiPage {
     }
 
     @Nullable
-    private PageElement transform(@NotNull ListPages listPages) {
-        WikiPage wikiPage = WikiHelper.getContextWikiPage(listPages, listPages.isGlobalContext());
+    private PageElement transform(@NotNull ListPages listPages, @NotNull PageContext context) {
+        WikiPage wikiPage = context.getContextWikiPage(listPages.isGlobalContext());
         if (wikiPage == null) {
             return null;
         }
@@ -357,52 +357,32 @@ public class WikiTagsTransformer implements TransformWikiPage {
 
     @Nullable
     private PageElement transform(@NotNull ListWantedPages listWantedPages) {
-        Set<String> allPagePaths = wikiService.getWikiFilePaths();
-
-        // remove working links
-        Set<String> allPageLinks = extractAllPageLinks(allPagePaths);
-        allPageLinks.removeAll(allPagePaths);
-
-        // remove links to index pages
-        allPageLinks.removeIf(pagePath -> pagePath.endsWith("/"));
-
-        // sort list
-        List<String> wantedPagePathsList = new ArrayList<>(allPageLinks);
+        List<String> wantedPagePathsList = new ArrayList<>(wikiService.getWantedPages());
         wantedPagePathsList.sort(Collator.getInstance(Locale.GERMAN));
-
         return generateListOfPageLinks(wantedPagePathsList, listWantedPages);
     }
 
     @Nullable
     private PageElement transform(@NotNull ListUnlinkedPages listUnlinkedPages) {
+        Set<String> result = wikiService.getOrphans();
+
+        // the indexes can contain wiki pages that were deleted directly in
+        // the file system, only relations to existing pages are considered
         Set<String> allPagePaths = wikiService.getWikiFilePaths();
 
-        // remove linked pages
-        Set<String> result = new HashSet<>(allPagePaths);
-        Set<String> allPageLinks = extractAllPageLinks(allPagePaths);
+        // index pages can be linked implicitly -> resolve them
         String indexPageName = settings.getIndexPageName();
-        for (String pagePath : allPageLinks) {
-            // index pages can be linked implicitly -> resolve them
-            if (pagePath.endsWith("/") && indexPageName != null) {
-                result.remove(pagePath + indexPageName);
-            } else {
-                result.remove(pagePath);
-            }
+        if (indexPageName != null) {
+            result.removeIf(pagePath -> pagePath.endsWith("/" + indexPageName)
+                    && containsAny(wikiService.getBacklinks(pagePath.substring(0, pagePath.length() - indexPageName.length())), allPagePaths));
         }
 
         // remove parent and child pages as they are considered to be linked
-        for (String pagePath : allPagePaths) {
-            try {
-                WikiFile wikiFile = wikiService.getWikiFile(pagePath);
-                if (listUnlinkedPages.isHideParents()) {
-                    result.removeAll(wikiFile.getParents());
-                }
-                if (listUnlinkedPages.isHideChildren()) {
-                    result.removeAll(wikiFile.getChildren());
-                }
-            } catch (ServiceException e) {
-                logger.write("Error reading wiki file to get parents and children, ignoring it", e);
-            }
+        if (listUnlinkedPages.isHideParents()) {
+            result.removeIf(pagePath -> containsAny(wikiService.getChildren(pagePath), allPagePaths));
+        }
+        if (listUnlinkedPages.isHideChildren()) {
+            result.removeIf(pagePath -> containsAny(wikiService.getParents(pagePath), allPagePaths));
         }
 
         // remove start page as it is considered to be linked
@@ -415,28 +395,8 @@ public class WikiTagsTransformer implements TransformWikiPage {
         return generateListOfPageLinks(unlinkedPagePathsList, listUnlinkedPages);
     }
 
-    /**
-     * Scans the listed wiki pages and collects the links to wiki pages.
-     */
-    @NotNull
-    private Set<String> extractAllPageLinks(@NotNull Set<String> pagePaths) {
-        Set<String> linkedPagePaths = new HashSet<>();
-        PageElementConsumer<LinkPage, Set<String>> consumer = (linkPage, context) -> {
-            WikiPage contextWikiPage = WikiHelper.getContextWikiPage(linkPage, false);
-            if (contextWikiPage != null) {
-                String absolutePagePath = WikiHelper.getAbsolutePagePath(linkPage.getPagePath(), contextWikiPage);
-                context.add(absolutePagePath);
-            }
-        };
-        for (String pagePath : pagePaths) {
-            try {
-                WikiFile wikiFile = wikiService.getWikiFile(pagePath);
-                WikiHelper.traversePageElements(wikiFile.getWikiPage(), consumer, LinkPage.class, linkedPagePaths, true);
-            } catch (ServiceException e) {
-                logger.write("Error reading wiki page to scan for links, ignoring it", e);
-            }
-        }
-        return linkedPagePaths;
+    private static boolean containsAny(@NotNull Set<String> pagePaths, @NotNull Set<String> allPagePaths) {
+        return !Collections.disjoint(pagePaths, allPagePaths);
     }
 
     /**
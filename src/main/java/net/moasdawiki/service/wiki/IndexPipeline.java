@@ -0,0 +1,118 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import net.moasdawiki.base.Logger;
+import net.moasdawiki.base.ServiceException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads and parses a list of wiki pages and feeds each wiki page to all
+ * given indexers. Reading, parsing and indexing run in parallel on a
+ * ForkJoin pool.
+ */
+class IndexPipeline {
+
+	/**
+	 * A task with up to this number of wiki pages isn't split any further.
+	 */
+	private static final int MAX_PAGES_PER_TASK = 16;
+
+	@NotNull
+	private final Logger logger;
+
+	@NotNull
+	private final WikiService wikiService;
+
+	@NotNull
+	private final List<WikiFileIndexer> indexers;
+
+	/**
+	 * Constructor.
+	 */
+	IndexPipeline(@NotNull Logger logger, @NotNull WikiService wikiService, @NotNull List<WikiFileIndexer> indexers) {
+		this.logger = logger;
+		this.wikiService = wikiService;
+		this.indexers = indexers;
+	}
+
+	/**
+	 * Processes all wiki pages and blocks until all of them are indexed.
+	 *
+	 * @param parallelism Number of worker threads.
+	 */
+	void run(@NotNull List<String> wikiFilePaths, int parallelism) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new IndexTask(wikiFilePaths));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Reads, parses and indexes a single wiki page.
+	 */
+	private void indexWikiFile(@NotNull String wikiFilePath) {
+		WikiFile wikiFile;
+		try {
+			wikiFile = wikiService.getWikiFile(wikiFilePath);
+		} catch (ServiceException e) {
+			logger.write("Error reading wiki file '" + wikiFilePath + "', ignoring it");
+			return;
+		}
+		for (WikiFileIndexer indexer : indexers) {
+			indexer.indexWikiFile(wikiFile);
+		}
+	}
+
+	/**
+	 * Splits the list of wiki pages until it is small enough to be
+	 * processed by a single worker.
+	 */
+	private class IndexTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		@NotNull
+		private final List<String> wikiFilePaths;
+
+		IndexTask(@NotNull List<String> wikiFilePaths) {
+			this.wikiFilePaths = wikiFilePaths;
+		}
+
+		@Override
+		protected void compute() {
+			if (wikiFilePaths.size() <= MAX_PAGES_PER_TASK) {
+				for (String wikiFilePath : wikiFilePaths) {
+					indexWikiFile(wikiFilePath);
+				}
+			} else {
+				int middle = wikiFilePaths.size() / 2;
+				invokeAll(new IndexTask(wikiFilePaths.subList(0, middle)),
+						new IndexTask(wikiFilePaths.subList(middle, wikiFilePaths.size())));
+			}
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import net.moasdawiki.service.wiki.structure.WikiPage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Kontext eines Knotens beim Traversieren eines Wikibaums. Enthält die
+ * Wikiseiten auf dem Pfad von der Wurzel bis zum aktuellen Knoten.
+ * <p>
+ * Der lokale Kontext ist die innerste Wikiseite, die den Knoten enthält.
+ * Der globale Kontext ist die äußerste Wikiseite. Der globale und lokale
+ * Kontext unterscheiden sich nur, wenn eine Wikiseite in eine andere
+ * eingebettet ist, z.B. per <tt>includepage</tt> oder als Navigation.
+ * <p>
+ * Da Seitenelemente keine Vater-Referenz haben, muss der Kontext bei der
+ * Traversierung mitgeführt werden. Nicht thread-safe, jede Traversierung
+ * verwendet eine eigene Instanz.
+ */
+public class PageContext {
+
+	@NotNull
+	private final Deque<WikiPage> wikiPages = new ArrayDeque<>();
+
+	/**
+	 * Erzeugt einen leeren Kontext.
+	 */
+	public PageContext() {
+	}
+
+	/**
+	 * Erzeugt einen Kontext mit der angegebenen Wikiseite.
+	 */
+	public PageContext(@NotNull WikiPage wikiPage) {
+		wikiPages.push(wikiPage);
+	}
+
+	/**
+	 * Wird beim Betreten einer Wikiseite aufgerufen.
+	 */
+	public void enter(@NotNull WikiPage wikiPage) {
+		wikiPages.push(wikiPage);
+	}
+
+	/**
+	 * Wird beim Verlassen einer Wikiseite aufgerufen.
+	 */
+	public void leave() {
+		wikiPages.pop();
+	}
+
+	/**
+	 * Gibt den lokalen bzw. globalen Kontext zurück.
+	 *
+	 * @param globalContext <code>true</code> -> globalen Kontext,
+	 *                      <code>false</code> -> lokalen Kontext.
+	 * @return Der Kontext. <code>null</code> -> außerhalb einer Wikiseite.
+	 */
+	@Nullable
+	public WikiPage getContextWikiPage(boolean globalContext) {
+		if (globalContext) {
+			return wikiPages.peekLast();
+		} else {
+			return wikiPages.peekFirst();
+		}
+	}
+}
@@ -37,13 +37,16 @@ public interface PageElementTransformer {
 	 * PageElementList-Typen. Wenn die Methode null zurückgibt, wird das
 	 * Seitenelement samt Unterbaum ersatzlos gelöscht.<br>
 	 * <br>
-	 * Der Parameter <tt>pageElement</tt> darf dabei auch modifiziert werden.
+	 * Der Parameter <tt>pageElement</tt> darf nicht modifiziert werden, da
+	 * der Wikibaum auch anderweitig verwendet werden kann, z.B. im Cache.
+	 * Stattdessen ist ein neues Seitenelement zurückzugeben.
 	 * 
 	 * @param pageElement Ein Knoten im Wikibaum.
+	 * @param context Kontext des Knotens, d.h. die umgebenden Wikiseiten.
 	 * @return Transformiertes Seitenelement, das das ursprüngliche ersetzen
 	 *         soll. null -> Der Knoten samt Unterbaum wird ersatzlos aus dem
 	 *         Wikibaum entfernt.
 	 */
 	@Nullable
-	PageElement transformPageElement(@NotNull PageElement pageElement);
+	PageElement transformPageElement(@NotNull PageElement pageElement, @NotNull PageContext context);
 }
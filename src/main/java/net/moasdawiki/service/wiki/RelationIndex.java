@@ -0,0 +1,249 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import net.moasdawiki.util.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+
+/**
+ * Bidirectional index of relations between wiki pages, e.g. child page to
+ * parent pages or page to linked pages.
+ * Both directions are updated incrementally, the effort of a change only
+ * depends on the number of changed relations.
+ *
+ * The serialized form is a snapshot as written by
+ * {@link StringUtils#serializeMap(Map)}, optionally followed by journal
+ * lines. A journal line has the same format as a snapshot line and replaces
+ * the previous entry of the source page, a source page prefixed with
+ * {@link #REMOVED_MARKER} removes it.
+ *
+ * Not thread-safe, access has to be synchronized by the caller.
+ */
+class RelationIndex {
+
+	/**
+	 * Prefix of a journal line that removes a source page.
+	 */
+	static final char REMOVED_MARKER = '-';
+
+	/**
+	 * Map: source page path -> target page paths.
+	 */
+	@NotNull
+	private final Map<String, Set<String>> sourceTargetMap = new HashMap<>();
+
+	/**
+	 * Map: target page path -> source page paths.
+	 */
+	@NotNull
+	private final Map<String, Set<String>> targetSourceMap = new HashMap<>();
+
+	/**
+	 * Number of journal lines since the last snapshot.
+	 */
+	private int journalLength;
+
+	/**
+	 * Number of source pages with known relations.
+	 */
+	int size() {
+		return sourceTargetMap.size();
+	}
+
+	/**
+	 * Are the relations of the given source page known?
+	 */
+	boolean containsSource(@NotNull String sourcePath) {
+		return sourceTargetMap.containsKey(sourcePath);
+	}
+
+	/**
+	 * Returns all target pages that are referenced by at least one source page.
+	 */
+	@NotNull
+	Set<String> getAllTargets() {
+		return Collections.unmodifiableSet(targetSourceMap.keySet());
+	}
+
+	/**
+	 * Returns the target pages of a source page.
+	 *
+	 * @return <code>null</code> -> source page unknown.
+	 */
+	@Nullable
+	Set<String> getTargets(@NotNull String sourcePath) {
+		Set<String> targets = sourceTargetMap.get(sourcePath);
+		if (targets == null) {
+			return null;
+		}
+		return Collections.unmodifiableSet(targets);
+	}
+
+	/**
+	 * Returns the source pages that reference a target page.
+	 */
+	@NotNull
+	Set<String> getSources(@NotNull String targetPath) {
+		Set<String> sources = targetSourceMap.get(targetPath);
+		if (sources == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(sources);
+	}
+
+	/**
+	 * Sets the target pages of a source page.
+	 *
+	 * @return true if the index was changed.
+	 */
+	boolean setTargets(@NotNull String sourcePath, @NotNull Set<String> targetPaths) {
+		Set<String> oldTargets = sourceTargetMap.get(sourcePath);
+		if (targetPaths.equals(oldTargets)) {
+			return false;
+		}
+		Set<String> newTargets = new HashSet<>(targetPaths);
+		sourceTargetMap.put(sourcePath, newTargets);
+		if (oldTargets != null) {
+			for (String targetPath : oldTargets) {
+				if (!newTargets.contains(targetPath)) {
+					removeSourceLink(targetPath, sourcePath);
+				}
+			}
+		}
+		for (String targetPath : newTargets) {
+			if (oldTargets == null || !oldTargets.contains(targetPath)) {
+				targetSourceMap.computeIfAbsent(targetPath, key -> new HashSet<>()).add(sourcePath);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a source page and its relations.
+	 *
+	 * @return true if the index was changed.
+	 */
+	boolean removeSource(@NotNull String sourcePath) {
+		Set<String> oldTargets = sourceTargetMap.remove(sourcePath);
+		if (oldTargets == null) {
+			return false;
+		}
+		for (String targetPath : oldTargets) {
+			removeSourceLink(targetPath, sourcePath);
+		}
+		return true;
+	}
+
+	private void removeSourceLink(@NotNull String targetPath, @NotNull String sourcePath) {
+		Set<String> sources = targetSourceMap.get(targetPath);
+		if (sources != null) {
+			sources.remove(sourcePath);
+			if (sources.isEmpty()) {
+				targetSourceMap.remove(targetPath);
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	void clear() {
+		sourceTargetMap.clear();
+		targetSourceMap.clear();
+		journalLength = 0;
+	}
+
+	/**
+	 * Reads a snapshot including the following journal lines and applies
+	 * them to the index. If the last line is incomplete because of a crash
+	 * while appending it, it is ignored.
+	 *
+	 * @return false if an incomplete last line was ignored, in this case
+	 *         the caller has to write a new snapshot, as further journal
+	 *         lines must not be appended to the incomplete line.
+	 */
+	boolean read(@NotNull String content) throws IOException {
+		int completeLength = content.lastIndexOf('\n') + 1;
+		int lineCount = 0;
+		try (BufferedReader reader = new BufferedReader(new StringReader(content.substring(0, completeLength)))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] token = line.split("\\t");
+				String sourcePath = token[0].trim();
+				if (sourcePath.isEmpty()) {
+					// Ignore empty line (e.g. at end of file)
+					continue;
+				}
+				lineCount++;
+				if (sourcePath.charAt(0) == REMOVED_MARKER) {
+					removeSource(sourcePath.substring(1));
+				} else {
+					setTargets(sourcePath, new HashSet<>(Arrays.asList(token).subList(1, token.length)));
+				}
+			}
+		}
+		journalLength = Math.max(lineCount - sourceTargetMap.size(), 0);
+		return completeLength == content.length();
+	}
+
+	/**
+	 * Returns a snapshot of the whole index, sorted alphabetically.
+	 * Resets the journal length.
+	 */
+	@NotNull
+	String serialize() {
+		journalLength = 0;
+		return StringUtils.serializeMap(sourceTargetMap);
+	}
+
+	/**
+	 * Returns the journal line that describes the current state of a source
+	 * page. Call {@link #journalEntryAppended()} after it was written.
+	 */
+	@NotNull
+	String serializeJournalEntry(@NotNull String sourcePath) {
+		Set<String> targets = sourceTargetMap.get(sourcePath);
+		if (targets == null) {
+			return REMOVED_MARKER + sourcePath + '\n';
+		}
+		return StringUtils.serializeMap(Collections.singletonMap(sourcePath, targets));
+	}
+
+	/**
+	 * Increments the journal length after a journal line was written
+	 * successfully.
+	 */
+	void journalEntryAppended() {
+		journalLength++;
+	}
+
+	/**
+	 * Number of journal lines since the last snapshot.
+	 */
+	int getJournalLength() {
+		return journalLength;
+	}
+}
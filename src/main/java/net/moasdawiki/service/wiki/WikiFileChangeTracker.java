@@ -0,0 +1,81 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import net.moasdawiki.service.repository.AnyFile;
+import net.moasdawiki.service.repository.RepositoryListener;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the paths of wiki pages that were written, detected or deleted
+ * in the repository until they are fetched by a cache that has to be
+ * updated.
+ *
+ * This class is thread-safe.
+ */
+public class WikiFileChangeTracker implements RepositoryListener {
+
+	@NotNull
+	private final Set<String> changedWikiFilePaths = ConcurrentHashMap.newKeySet();
+
+	@Override
+	public void fileModified(@NotNull AnyFile anyFile) {
+		addFile(anyFile);
+	}
+
+	@Override
+	public void fileDeleted(@NotNull AnyFile anyFile) {
+		addFile(anyFile);
+	}
+
+	private void addFile(@NotNull AnyFile anyFile) {
+		String repositoryPath = anyFile.getFilePath();
+		if (WikiService.isWikiFilePath(repositoryPath)) {
+			changedWikiFilePaths.add(WikiService.repositoryPath2WikiFilePath(repositoryPath));
+		}
+	}
+
+	/**
+	 * Returns the changed wiki pages and removes them from the tracker.
+	 * Use {@link WikiService#existsWikiFile(String)} to distinguish between
+	 * modified and deleted wiki pages.
+	 */
+	@NotNull
+	public Set<String> fetchChanges() {
+		Set<String> result = new HashSet<>();
+		for (String wikiFilePath : changedWikiFilePaths) {
+			if (changedWikiFilePaths.remove(wikiFilePath)) {
+				result.add(wikiFilePath);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets all changes, e.g. if the cache is rebuilt anyway.
+	 */
+	public void clear() {
+		changedWikiFilePaths.clear();
+	}
+}
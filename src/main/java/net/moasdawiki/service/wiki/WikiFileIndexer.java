@@ -0,0 +1,52 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Date;
+
+/**
+ * An index over all wiki pages that can be rebuilt together with the other
+ * indexes, see {@link WikiService#rebuildIndexes()}. This way every wiki
+ * page is read and parsed only once, even if several indexes are missing.
+ */
+public interface WikiFileIndexer {
+
+	/**
+	 * Does the index have to be rebuilt from all wiki pages, e.g. because
+	 * its cache file is missing?
+	 */
+	boolean isRebuildRequired();
+
+	/**
+	 * Adds a wiki page to the index. Is called concurrently from several
+	 * threads, the implementation has to be thread-safe.
+	 */
+	void indexWikiFile(@NotNull WikiFile wikiFile);
+
+	/**
+	 * Is called after all wiki pages were added to the index.
+	 *
+	 * @param rebuildTimestamp Start time of the rebuild, all changes after
+	 *                         this time are not considered yet.
+	 */
+	void finishRebuild(@NotNull Date rebuildTimestamp);
+}
@@ -124,33 +124,6 @@ public abstract class WikiHelper {
         }
     }
 
-    /**
-     * Sucht den lokalen bzw. globalen Kontext zu einem Knoten im Wikibaum.
-     * <p>
-     * Der lokale Kontext ist die Wikiseite, die das Seitenelement enthält.
-     * Der globale Kontext ist die Wurzel des Baums.
-     * Der globale und lokale Kontext zu einem Knoten unterscheiden sich nur,
-     * wenn eine Wikiseite per <tt>includepage</tt> in eine andere eingebettet wird.
-     *
-     * @param pageElement   Der Knoten im Wikibaum, zu dem der globale/lokale Kontext gesucht werden soll.
-     * @param globalContext <code>true</code> -> globalen Kontext suchen, <code>false</code> -> lokalen Kontext suchen.
-     * @return Der Kontext zum Knoten. <code>null</code> -> keinen Kontext gefunden. Sollte eigentlich nicht passieren, da jeder Wikibaum ein WikiPage-Element als Wurzel haben sollte.
-     */
-    @Nullable
-    public static WikiPage getContextWikiPage(@Nullable PageElement pageElement, boolean globalContext) {
-        while (pageElement != null) {
-            // Kontext gefunden?
-            if (pageElement instanceof WikiPage && (!globalContext || pageElement.getParent() == null)) {
-                return (WikiPage) pageElement;
-            }
-
-            pageElement = pageElement.getParent();
-        }
-
-        // Keinen gültigen Kontext gefunden.
-        return null;
-    }
-
     /**
      * Wandelt den angegebenen Pfad einer Wikiseite in einen absoluten Pfad um.
      *
@@ -19,18 +19,18 @@
 
 package net.moasdawiki.service.wiki;
 
+import net.moasdawiki.base.CacheStatistics;
 import net.moasdawiki.base.Logger;
+import net.moasdawiki.base.RequestTimer;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.service.repository.AnyFile;
 import net.moasdawiki.service.repository.RepositoryService;
 import net.moasdawiki.service.wiki.parser.WikiParser;
 import net.moasdawiki.service.wiki.structure.*;
 import net.moasdawiki.util.DateUtils;
-import net.moasdawiki.util.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.*;
@@ -42,6 +42,12 @@ public class WikiService {
 
 	private static final String PAGE_SUFFIX = ".txt";
 
+	/**
+	 * Rough estimate of the memory consumption of a parsed wiki page per
+	 * character of wiki text: the text itself and the syntax tree.
+	 */
+	private static final int ESTIMATED_BYTES_PER_CHAR = 10;
+
 	@NotNull
 	private final Logger logger;
 
@@ -51,22 +57,57 @@ public class WikiService {
 	/**
 	 * Path of the parent-child cache file.
 	 *
-	 * Row format: file path in repository '\t' file path of child page 1 '\t' file path of child page 2 etc.
+	 * Row format: file path in repository '\t' file path of parent page 1 '\t' file path of parent page 2 etc.
+	 * Changes are appended as journal lines, see {@link RelationIndex}.
 	 */
 	public static final String CHILD_PARENT_CACHE_FILEPATH = "/parentrelations.cache";
 
 	/**
-	 * Child-parent relation of all wiki pages in the repository.
-	 * Is loaded on application start and is kept up to date after every change of a wiki page.
+	 * Path of the page link cache file.
+	 *
+	 * Row format: file path in repository '\t' file path of linked page 1 '\t' file path of linked page 2 etc.
+	 * Changes are appended as journal lines, see {@link RelationIndex}.
+	 */
+	public static final String PAGE_LINKS_CACHE_FILEPATH = "/pagelinks.cache";
+
+	/**
+	 * Minimum number of journal lines in a cache file before it is
+	 * compacted to a snapshot.
+	 */
+	private static final int MIN_JOURNAL_LINES_BEFORE_COMPACTION = 100;
+
+	/**
+	 * Child-parent and parent-child relations of all wiki pages in the repository.
+	 * Is loaded on application start and is kept up to date after every change of a wiki page,
+	 * external changes are applied lazily, see {@link #changeTracker}.
 	 */
 	@NotNull
-	final Map<String, Set<String>> childParentMap;
+	final RelationIndex parentRelationIndex;
 
 	/**
-	 * Controls if changes to the child-parent cache should be persisted immediately.
-	 * Can be turned off temporarily for bulk wiki page loading.
+	 * Outgoing links and backlinks of all wiki pages in the repository.
+	 * Is loaded on application start and is kept up to date after every change of a wiki page,
+	 * external changes are applied lazily, see {@link #changeTracker}.
 	 */
-	private boolean persistChildParentCache;
+	@NotNull
+	final RelationIndex pageLinkIndex;
+
+	/**
+	 * Controls if changes to the relation caches should be persisted immediately.
+	 * Is turned off while the relation indexes are rebuilt.
+	 */
+	private boolean persistRelationCaches;
+
+	/**
+	 * Have the relation indexes to be rebuilt as a cache file is missing?
+	 */
+	private boolean relationRebuildRequired;
+
+	/**
+	 * Indexes that are rebuilt together with the relation indexes.
+	 */
+	@NotNull
+	private final List<WikiFileIndexer> indexers;
 
 	/**
 	 * List of last visited wiki pages since application start.
@@ -81,65 +122,200 @@ public class WikiService {
 	private final boolean scanRepository;
 
 	/**
-	 * Constructor.
+	 * Maximum estimated size of the parsed wiki page cache in bytes.
+	 * 0 -> no cache.
+	 */
+	private final long wikiFileCacheSize;
+
+	/**
+	 * Parsed wiki pages in LRU order, key is the wiki file path.
+	 * An entry is only valid if its content timestamp matches the file in
+	 * the repository. The syntax tree is immutable and shared with the
+	 * callers, only the WikiFile object with its parent and child links is
+	 * created per access.
+	 * Access only synchronized on the map.
+	 */
+	@NotNull
+	private final Map<String, WikiFile> wikiFileCache = new LinkedHashMap<>(16, 0.75f, true);
+	private long wikiFileCacheBytes;
+
+	/**
+	 * Wiki pages that were changed in the repository, e.g. by an external
+	 * editor, and have to be updated in the relation indexes before the
+	 * next lookup.
+	 */
+	@NotNull
+	private final WikiFileChangeTracker changeTracker;
+
+	/**
+	 * Hits and misses when accessing a parsed wiki page.
+	 */
+	@NotNull
+	private final CacheStatistics cacheStatistics = new CacheStatistics();
+
+	/**
+	 * Constructor without cache for parsed wiki pages.
 	 */
 	public WikiService(@NotNull Logger logger, @NotNull RepositoryService repositoryService, boolean scanRepository) {
+		this(logger, repositoryService, scanRepository, 0);
+	}
+
+	/**
+	 * Constructor. Missing relation indexes are not rebuilt before
+	 * {@link #rebuildIndexes()} is called.
+	 *
+	 * @param wikiFileCacheSize Maximum estimated size of the parsed wiki page
+	 *                          cache in bytes. 0 -> no cache.
+	 */
+	public WikiService(@NotNull Logger logger, @NotNull RepositoryService repositoryService, boolean scanRepository, long wikiFileCacheSize) {
 		this.logger = logger;
 		this.repositoryService = repositoryService;
-		this.childParentMap = new HashMap<>();
-		this.persistChildParentCache = true;
+		this.parentRelationIndex = new RelationIndex();
+		this.pageLinkIndex = new RelationIndex();
+		this.indexers = new ArrayList<>();
 		this.viewHistory = new LinkedList<>();
 		this.scanRepository = scanRepository;
-		reset();
+		this.wikiFileCacheSize = wikiFileCacheSize;
+		this.changeTracker = new WikiFileChangeTracker();
+		if (scanRepository) {
+			repositoryService.addListener(changeTracker);
+		}
+		readCacheFiles();
 	}
 
 	/**
-	 * Rereads the cache file.
+	 * Rereads the cache files and rebuilds missing indexes.
 	 * Is called in App environment after synchronization with server.
 	 */
 	public void reset() {
-		childParentMap.clear();
+		readCacheFiles();
+		rebuildIndexes();
+	}
+
+	/**
+	 * Rereads the cache files. If a cache file is missing the relation
+	 * indexes are marked to be rebuilt by {@link #rebuildIndexes()}.
+	 */
+	private synchronized void readCacheFiles() {
+		parentRelationIndex.clear();
+		pageLinkIndex.clear();
 		viewHistory.clear();
-		if (!readChildParentCacheFile()) {
-			rebuildCache();
+		clearWikiFileCache();
+		boolean parentRelationsRead = readRelationCacheFile(parentRelationIndex, CHILD_PARENT_CACHE_FILEPATH);
+		boolean pageLinksRead = readRelationCacheFile(pageLinkIndex, PAGE_LINKS_CACHE_FILEPATH);
+		relationRebuildRequired = scanRepository && (!parentRelationsRead || !pageLinksRead);
+		// the cache files are written completely after rebuilding
+		persistRelationCaches = !relationRebuildRequired;
+	}
+
+	/**
+	 * Registers an index that is rebuilt together with the relation indexes
+	 * in {@link #rebuildIndexes()}.
+	 */
+	public synchronized void addIndexer(@NotNull WikiFileIndexer indexer) {
+		indexers.add(indexer);
+	}
+
+	/**
+	 * Rebuilds all indexes that are missing, e.g. on the first start with a
+	 * repository. Every wiki page is read and parsed only once and handed
+	 * over to all registered indexers that require a rebuild. Parsing runs
+	 * in parallel.
+	 *
+	 * Should be called after all indexers have been registered.
+	 */
+	public void rebuildIndexes() {
+		if (!scanRepository) {
+			return;
 		}
+
+		// don't call the indexers while holding the lock, they call back into this class
+		boolean rebuildRelations;
+		List<WikiFileIndexer> registeredIndexers;
+		synchronized (this) {
+			rebuildRelations = relationRebuildRequired;
+			registeredIndexers = new ArrayList<>(indexers);
+		}
+		List<WikiFileIndexer> rebuildIndexers = new ArrayList<>();
+		for (WikiFileIndexer indexer : registeredIndexers) {
+			if (indexer.isRebuildRequired()) {
+				rebuildIndexers.add(indexer);
+			}
+		}
+		if (!rebuildRelations && rebuildIndexers.isEmpty()) {
+			return;
+		}
+
+		Date rebuildTimestamp = new Date();
+		List<String> wikiFilePaths = new ArrayList<>(getWikiFilePaths());
+		int indexCount = rebuildIndexers.size() + (rebuildRelations ? 1 : 0);
+		logger.write("Scanning " + wikiFilePaths.size() + " wiki files to rebuild " + indexCount + " indexes");
+		// the relation indexes are updated by getWikiFile() as a side effect
+		IndexPipeline indexPipeline = new IndexPipeline(logger, this, rebuildIndexers);
+		indexPipeline.run(wikiFilePaths, Runtime.getRuntime().availableProcessors());
+
+		// write all index cache files with a single update of the file list
+		repositoryService.startGroupCommit();
+		try {
+			if (rebuildRelations) {
+				synchronized (this) {
+					relationRebuildRequired = false;
+					persistRelationCaches = true;
+					writeRelationCacheFile(parentRelationIndex, CHILD_PARENT_CACHE_FILEPATH);
+					writeRelationCacheFile(pageLinkIndex, PAGE_LINKS_CACHE_FILEPATH);
+				}
+			}
+			for (WikiFileIndexer indexer : rebuildIndexers) {
+				indexer.finishRebuild(rebuildTimestamp);
+			}
+		} finally {
+			repositoryService.finishGroupCommit();
+		}
+		logger.write("Finished rebuilding indexes in " + (System.currentTimeMillis() - rebuildTimestamp.getTime()) + " ms");
 	}
 
 	/**
-	 * Read the cache file and update the wikiFileMap.
+	 * Read a relation cache file into the given index.
 	 */
-	private boolean readChildParentCacheFile() {
+	private boolean readRelationCacheFile(@NotNull RelationIndex index, @NotNull String cacheFilePath) {
 		// Read cache file content
-		AnyFile parentRelationsCacheFile = new AnyFile(CHILD_PARENT_CACHE_FILEPATH);
+		AnyFile cacheFile = new AnyFile(cacheFilePath);
 		String cacheContent;
 		try {
-			cacheContent = repositoryService.readTextFile(parentRelationsCacheFile);
+			cacheContent = repositoryService.readTextFile(cacheFile);
 		} catch (ServiceException e) {
-			logger.write("Error reading cache file " + parentRelationsCacheFile.getFilePath());
+			logger.write("Error reading cache file " + cacheFilePath);
 			return false;
 		}
 
 		// Parse cache content
-		try (BufferedReader reader = new BufferedReader(new StringReader(cacheContent))) {
-			// Read timestamp from first line, for backwards compatibility only
-			reader.readLine();
-
-			// Parse parent mappings
-			Map<String, Set<String>> parsedMap = StringUtils.parseMap(reader);
-			childParentMap.putAll(parsedMap);
-			logger.write(parsedMap.size() + " keys read from parent relations cache file");
+		boolean complete;
+		try {
+			// Skip timestamp in first line, for backwards compatibility only
+			int timestampEnd = cacheContent.indexOf('\n');
+			String relationContent = timestampEnd >= 0 ? cacheContent.substring(timestampEnd + 1) : cacheContent;
+
+			// Parse relations including journal
+			complete = index.read(relationContent);
+			logger.write(index.size() + " keys read from cache file " + cacheFilePath);
 		} catch (Exception e) {
-			logger.write("Error reading cache file " + parentRelationsCacheFile.getFilePath(), e);
+			logger.write("Error reading cache file " + cacheFilePath, e);
+			index.clear();
 			return false;
 		}
+		if (!complete) {
+			// incomplete journal line after a crash, further lines must not be appended to it
+			logger.write("Ignoring incomplete last line in cache file " + cacheFilePath);
+			writeRelationCacheFile(index, cacheFilePath);
+		}
 		return true;
 	}
 
 	/**
-	 * Write the content in wikiFileMap into the cache file.
+	 * Write a snapshot of a relation index into its cache file.
 	 */
-	private void writeChildParentCacheFile() {
-		if (!persistChildParentCache) {
+	private void writeRelationCacheFile(@NotNull RelationIndex index, @NotNull String cacheFilePath) {
+		if (!persistRelationCaches) {
 			return;
 		}
 
@@ -149,55 +325,44 @@ public class WikiService {
 		sb.append(timestampStr).append('\n');
 
 		// write list sorted alphabetically
-		String mapStr = StringUtils.serializeMap(childParentMap);
-		sb.append(mapStr);
+		sb.append(index.serialize());
 
 		// write file
-		AnyFile parentRelationsCacheFile = new AnyFile(CHILD_PARENT_CACHE_FILEPATH);
 		try {
-			repositoryService.writeTextFile(parentRelationsCacheFile, sb.toString());
+			repositoryService.writeTextFile(new AnyFile(cacheFilePath), sb.toString());
 		} catch (ServiceException e) {
 			// in case of error only log error
-			logger.write("Error writing cache file " + parentRelationsCacheFile.getFilePath(), e);
+			logger.write("Error writing cache file " + cacheFilePath, e);
 		}
 	}
 
-	private synchronized void rebuildCache() {
-		if (!scanRepository) {
+	/**
+	 * Append the changed relations of a wiki page to the cache file.
+	 * Writes a new snapshot instead if the journal has become too long.
+	 */
+	private void writeRelationCacheJournal(@NotNull RelationIndex index, @NotNull String cacheFilePath, @NotNull String wikiFilePath) {
+		if (!persistRelationCaches) {
+			return;
+		}
+		if (index.getJournalLength() >= Math.max(MIN_JOURNAL_LINES_BEFORE_COMPACTION, index.size())) {
+			writeRelationCacheFile(index, cacheFilePath);
 			return;
 		}
 
 		try {
-			persistChildParentCache = false;
-			Set<AnyFile> repositoryFiles = repositoryService.getFiles();
-			logger.write("Scanning " + repositoryFiles.size() + " files to rebuild parent-child cache");
-			for (AnyFile repositoryFile : repositoryFiles) {
-				String repositoryPath = repositoryFile.getFilePath();
-				if (!isWikiFilePath(repositoryPath)) {
-					// no Wiki file, to be ignored
-					continue;
-				}
-
-				String wikiFilePath = repositoryPath2WikiFilePath(repositoryPath);
-				try {
-					getWikiFile(wikiFilePath);
-				} catch (ServiceException e) {
-					logger.write("Error reading wiki file '" + wikiFilePath + "', ignoring it");
-				}
-			}
-		}
-		finally {
-			persistChildParentCache = true;
+			repositoryService.appendTextFile(new AnyFile(cacheFilePath), index.serializeJournalEntry(wikiFilePath));
+			index.journalEntryAppended();
+		} catch (ServiceException e) {
+			// in case of error only log error
+			logger.write("Error writing cache file " + cacheFilePath, e);
 		}
-		writeChildParentCacheFile();
-		logger.write("Finished rebuilding parent-child cache");
 	}
 
 	/**
 	 * List of all wiki pages.
 	 */
 	@NotNull
-	public synchronized Set<String> getWikiFilePaths() {
+	public Set<String> getWikiFilePaths() {
         Set<String> result = new HashSet<>();
 	    Set<AnyFile> files = repositoryService.getFiles();
 	    for (AnyFile anyFile : files) {
@@ -212,7 +377,7 @@ public class WikiService {
 	/**
 	 * Check if the wiki page exists.
 	 */
-	public synchronized boolean existsWikiFile(@NotNull String wikiFilePath) {
+	public boolean existsWikiFile(@NotNull String wikiFilePath) {
 		String filePath = wikiFilePath2RepositoryPath(wikiFilePath);
 		return repositoryService.getFile(filePath) != null;
 	}
@@ -220,33 +385,215 @@ public class WikiService {
 	/**
 	 * Return the parsed wiki page.
 	 * Throws an Exception if the wiki page doesn't exist.
+	 *
+	 * The wiki page is read and parsed without holding the monitor,
+	 * so concurrent readers don't block each other. Parsed wiki pages are
+	 * cached as long as the file in the repository is unchanged.
 	 */
 	@NotNull
-	public synchronized WikiFile getWikiFile(@NotNull String wikiFilePath) throws ServiceException {
-		WikiFile newWikiFile = getWikiFileFromRepository(wikiFilePath);
+	public WikiFile getWikiFile(@NotNull String wikiFilePath) throws ServiceException {
+		updateChangedWikiFiles();
+		return loadWikiFile(wikiFilePath);
+	}
+
+	/**
+	 * Return the parsed wiki page without updating other changed wiki pages
+	 * first.
+	 */
+	@NotNull
+	private WikiFile loadWikiFile(@NotNull String wikiFilePath) throws ServiceException {
+		long startTime = RequestTimer.start();
+		String filePath = wikiFilePath2RepositoryPath(wikiFilePath);
+		AnyFile anyFile = repositoryService.getFile(filePath);
+		if (anyFile == null) {
+			throw new ServiceException("File '" + filePath + "' does not exist");
+		}
 
-		if (installParentAndChildLinks(newWikiFile)) {
-			writeChildParentCacheFile();
+		WikiFile newWikiFile = getCachedWikiFile(wikiFilePath, anyFile.getContentTimestamp());
+		if (newWikiFile != null) {
+			cacheStatistics.recordHit();
+			synchronized (this) {
+				// wiki page unchanged -> take relations from the index
+				// instead of traversing the page again
+				if (!addRelationsFromIndex(newWikiFile)) {
+					updateRelationIndexes(newWikiFile);
+				}
+			}
+		} else {
+			cacheStatistics.recordMiss();
+			newWikiFile = getWikiFileFromRepository(wikiFilePath, anyFile);
+			putCachedWikiFile(newWikiFile);
+			synchronized (this) {
+				updateRelationIndexes(newWikiFile);
+			}
 		}
 
+		RequestTimer.stop("wikifile", startTime);
 		return newWikiFile;
 	}
 
+	/**
+	 * Return the hit and miss counters when accessing parsed wiki pages.
+	 */
+	@NotNull
+	public CacheStatistics getCacheStatistics() {
+		return cacheStatistics;
+	}
+
+	/**
+	 * Returns the parent pages of a wiki page as stored in the parent
+	 * relation index, without reading the wiki page.
+	 */
+	@NotNull
+	public Set<String> getParents(@NotNull String wikiFilePath) {
+		updateChangedWikiFiles();
+		synchronized (this) {
+			Set<String> parents = parentRelationIndex.getTargets(wikiFilePath);
+			if (parents == null) {
+				return Collections.emptySet();
+			}
+			return new HashSet<>(parents);
+		}
+	}
+
+	/**
+	 * Returns the child pages of a wiki page as stored in the parent
+	 * relation index, without reading the wiki page.
+	 */
+	@NotNull
+	public Set<String> getChildren(@NotNull String wikiFilePath) {
+		updateChangedWikiFiles();
+		synchronized (this) {
+			return new HashSet<>(parentRelationIndex.getSources(wikiFilePath));
+		}
+	}
+
+	/**
+	 * Returns the wiki pages that contain a link to the given wiki page.
+	 */
+	@NotNull
+	public Set<String> getBacklinks(@NotNull String wikiFilePath) {
+		updateChangedWikiFiles();
+		synchronized (this) {
+			return new HashSet<>(pageLinkIndex.getSources(wikiFilePath));
+		}
+	}
+
+	/**
+	 * Returns the link targets of all wiki pages that don't exist.
+	 * Links to index pages (path ending with '/') are ignored as they are
+	 * resolved when the link is clicked.
+	 */
+	@NotNull
+	public Set<String> getWantedPages() {
+		updateChangedWikiFiles();
+		synchronized (this) {
+			Set<String> allPagePaths = getWikiFilePaths();
+			Set<String> result = new HashSet<>();
+			for (String targetPath : pageLinkIndex.getAllTargets()) {
+				if (!targetPath.endsWith("/") && !allPagePaths.contains(targetPath)
+						&& hasExistingSource(pageLinkIndex.getSources(targetPath), allPagePaths)) {
+					result.add(targetPath);
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Returns all wiki pages that aren't linked by any wiki page.
+	 * Parent relations are not considered as links.
+	 */
+	@NotNull
+	public Set<String> getOrphans() {
+		updateChangedWikiFiles();
+		synchronized (this) {
+			Set<String> allPagePaths = getWikiFilePaths();
+			Set<String> result = new HashSet<>();
+			for (String pagePath : allPagePaths) {
+				if (!hasExistingSource(pageLinkIndex.getSources(pagePath), allPagePaths)) {
+					result.add(pagePath);
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Updates the relation indexes for the wiki pages reported by the change
+	 * tracker, e.g. after an external edit or a synchronization. Is called
+	 * lazily before the relation indexes are accessed.
+	 */
+	private void updateChangedWikiFiles() {
+		Set<String> wikiFilePaths = changeTracker.fetchChanges();
+		for (String wikiFilePath : wikiFilePaths) {
+			if (existsWikiFile(wikiFilePath)) {
+				try {
+					loadWikiFile(wikiFilePath);
+				} catch (ServiceException e) {
+					logger.write("Error reading changed wiki file '" + wikiFilePath + "', ignoring it", e);
+				}
+			} else {
+				synchronized (this) {
+					removeRelations(wikiFilePath);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes a deleted wiki page from the relation indexes and persists the
+	 * changes.
+	 */
+	private void removeRelations(@NotNull String wikiFilePath) {
+		if (parentRelationIndex.removeSource(wikiFilePath)) {
+			writeRelationCacheJournal(parentRelationIndex, CHILD_PARENT_CACHE_FILEPATH, wikiFilePath);
+		}
+		if (pageLinkIndex.removeSource(wikiFilePath)) {
+			writeRelationCacheJournal(pageLinkIndex, PAGE_LINKS_CACHE_FILEPATH, wikiFilePath);
+		}
+	}
+
+	/**
+	 * Checks if one of the source pages exists. The index can contain
+	 * wiki pages that were deleted directly in the file system.
+	 */
+	private static boolean hasExistingSource(@NotNull Set<String> sourcePaths, @NotNull Set<String> allPagePaths) {
+		for (String sourcePath : sourcePaths) {
+			if (allPagePaths.contains(sourcePath)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Delete a wiki page.
 	 */
 	public synchronized void deleteWikiFile(@NotNull String wikiFilePath) throws ServiceException {
 		// Remove from internal cache
-		childParentMap.remove(wikiFilePath);
+		boolean parentRelationsModified = parentRelationIndex.removeSource(wikiFilePath);
+		boolean pageLinksModified = pageLinkIndex.removeSource(wikiFilePath);
 		viewHistory.remove(wikiFilePath);
+		removeCachedWikiFile(wikiFilePath);
 
 		// Delete from repository
-		String filePath = wikiFilePath2RepositoryPath(wikiFilePath);
-		AnyFile anyFile = new AnyFile(filePath);
-		repositoryService.deleteFile(anyFile);
+		repositoryService.startGroupCommit();
+		try {
+			String filePath = wikiFilePath2RepositoryPath(wikiFilePath);
+			AnyFile anyFile = new AnyFile(filePath);
+			repositoryService.deleteFile(anyFile);
 
-		// Persist cache
-		writeChildParentCacheFile();
+			// Persist cache
+			if (parentRelationsModified) {
+				writeRelationCacheJournal(parentRelationIndex, CHILD_PARENT_CACHE_FILEPATH, wikiFilePath);
+			}
+			if (pageLinksModified) {
+				writeRelationCacheJournal(pageLinkIndex, PAGE_LINKS_CACHE_FILEPATH, wikiFilePath);
+			}
+		} finally {
+			repositoryService.finishGroupCommit();
+		}
 	}
 
 	/**
@@ -260,7 +607,7 @@ public class WikiService {
 	 *              <code>null</code> --> return whole page.
 	 */
 	@NotNull
-	public synchronized WikiText readWikiText(@NotNull String wikiFilePath, @Nullable Integer fromPos, @Nullable Integer toPos) throws ServiceException {
+	public WikiText readWikiText(@NotNull String wikiFilePath, @Nullable Integer fromPos, @Nullable Integer toPos) throws ServiceException {
 		WikiFile wikiFile = getWikiFile(wikiFilePath);
 		if (fromPos != null && toPos != null) {
 			// reduce to section
@@ -283,7 +630,7 @@ public class WikiService {
 	 */
 	@NotNull
 	public synchronized WikiFile writeWikiText(@NotNull String wikiFilePath, @NotNull WikiText wikiText) throws ServiceException {
-		childParentMap.remove(wikiFilePath);
+		removeCachedWikiFile(wikiFilePath);
 
 		// replace section
 		String newText;
@@ -296,25 +643,29 @@ public class WikiService {
 			newText = wikiText.getText();
 		}
 
-		// write file
-		AnyFile newRepositoryFile;
+		// write file and relation journals with a single update of the file list
+		repositoryService.startGroupCommit();
+		WikiFile newWikiFile;
 		try {
-			String repositoryPath = wikiFilePath2RepositoryPath(wikiFilePath);
-			AnyFile oldRepositoryFile = new AnyFile(repositoryPath);
-			newRepositoryFile = repositoryService.writeTextFile(oldRepositoryFile, newText);
-		} catch (ServiceException e) {
-			String message = "Error saving wiki file '" + wikiFilePath + "'";
-			logger.write(message, e);
-			throw new ServiceException(message, e);
-		}
+			AnyFile newRepositoryFile;
+			try {
+				String repositoryPath = wikiFilePath2RepositoryPath(wikiFilePath);
+				AnyFile oldRepositoryFile = new AnyFile(repositoryPath);
+				newRepositoryFile = repositoryService.writeTextFile(oldRepositoryFile, newText);
+			} catch (ServiceException e) {
+				String message = "Error saving wiki file '" + wikiFilePath + "'";
+				logger.write(message, e);
+				throw new ServiceException(message, e);
+			}
 
-		// parse wiki text
-		PageElement pageContent = parseWikiText(newText);
-		WikiPage wikiPage = new WikiPage(wikiFilePath, pageContent, 0, newText.length());
-		WikiFile newWikiFile = new WikiFile(wikiFilePath, newText, wikiPage, newRepositoryFile);
+			// parse wiki text
+			PageElement pageContent = parseWikiText(newText);
+			WikiPage wikiPage = new WikiPage(wikiFilePath, pageContent, 0, newText.length());
+			newWikiFile = new WikiFile(wikiFilePath, newText, wikiPage, newRepositoryFile);
 
-		if (installParentAndChildLinks(newWikiFile)) {
-			writeChildParentCacheFile();
+			updateRelationIndexes(newWikiFile);
+		} finally {
+			repositoryService.finishGroupCommit();
 		}
 
 		logger.write("Wiki file '" + wikiFilePath + "' successfully written, " + newText.length() + " characters");
@@ -354,7 +705,7 @@ public class WikiService {
 	 *              -1 -> no filter, list all pages
 	 */
 	@NotNull
-	public synchronized List<String> getLastModified(int count) {
+	public List<String> getLastModified(int count) {
 		List<AnyFile> fileList = repositoryService.getLastModifiedFiles(count, anyFile -> isWikiFilePath(anyFile.getFilePath()));
 		ArrayList<String> result = new ArrayList<>();
 		for (int i = 0; i < fileList.size() && (count == -1 || i < count); i++) {
@@ -404,21 +755,89 @@ public class WikiService {
 	 * Reads the wiki file from repository and parses it. The method doesn't use or modify the internal cache.
 	 */
 	@NotNull
-	private WikiFile getWikiFileFromRepository(@NotNull String wikiFilePath) throws ServiceException {
-		String filePath = wikiFilePath2RepositoryPath(wikiFilePath);
-		AnyFile anyFile = repositoryService.getFile(filePath);
-		if (anyFile == null) {
-			throw new ServiceException("File '" + filePath + "' does not exist");
-		}
-
+	private WikiFile getWikiFileFromRepository(@NotNull String wikiFilePath, @NotNull AnyFile anyFile) throws ServiceException {
 		String wikiText = repositoryService.readTextFile(anyFile);
 		PageElement pageContent = parseWikiText(wikiText);
-		logger.write("Wiki file '" + anyFile.getFilePath() + "' parsed");
+		logger.debug(() -> "Wiki file '" + anyFile.getFilePath() + "' parsed");
 
 		WikiPage wikiPage = new WikiPage(wikiFilePath, pageContent, 0, wikiText.length());
 		return new WikiFile(wikiFilePath, wikiText, wikiPage, anyFile);
 	}
 
+	/**
+	 * Returns a parsed wiki page from the cache.
+	 *
+	 * @return null -> not in cache or file in repository has changed.
+	 */
+	@Nullable
+	private WikiFile getCachedWikiFile(@NotNull String wikiFilePath, @NotNull Date contentTimestamp) {
+		WikiFile cachedWikiFile;
+		synchronized (wikiFileCache) {
+			cachedWikiFile = wikiFileCache.get(wikiFilePath);
+			if (cachedWikiFile == null) {
+				return null;
+			}
+			if (!contentTimestamp.equals(cachedWikiFile.getRepositoryFile().getContentTimestamp())) {
+				removeCachedWikiFile(wikiFilePath);
+				return null;
+			}
+		}
+		return new WikiFile(wikiFilePath, cachedWikiFile.getWikiText(), cachedWikiFile.getWikiPage(), cachedWikiFile.getRepositoryFile());
+	}
+
+	/**
+	 * Puts a parsed wiki page into the cache. Removes the least
+	 * recently used wiki pages if the cache gets too large.
+	 */
+	private void putCachedWikiFile(@NotNull WikiFile wikiFile) {
+		long size = estimateSize(wikiFile);
+		if (size > wikiFileCacheSize) {
+			return;
+		}
+		WikiFile cachedWikiFile = new WikiFile(wikiFile.getWikiFilePath(), wikiFile.getWikiText(), wikiFile.getWikiPage(), wikiFile.getRepositoryFile());
+		synchronized (wikiFileCache) {
+			WikiFile previous = wikiFileCache.put(wikiFile.getWikiFilePath(), cachedWikiFile);
+			if (previous != null) {
+				wikiFileCacheBytes -= estimateSize(previous);
+			}
+			wikiFileCacheBytes += size;
+			Iterator<WikiFile> it = wikiFileCache.values().iterator();
+			while (wikiFileCacheBytes > wikiFileCacheSize && it.hasNext()) {
+				wikiFileCacheBytes -= estimateSize(it.next());
+				it.remove();
+			}
+		}
+	}
+
+	private void removeCachedWikiFile(@NotNull String wikiFilePath) {
+		synchronized (wikiFileCache) {
+			WikiFile previous = wikiFileCache.remove(wikiFilePath);
+			if (previous != null) {
+				wikiFileCacheBytes -= estimateSize(previous);
+			}
+		}
+	}
+
+	private void clearWikiFileCache() {
+		synchronized (wikiFileCache) {
+			wikiFileCache.clear();
+			wikiFileCacheBytes = 0;
+		}
+	}
+
+	/**
+	 * Returns the estimated size of the parsed wiki page cache in bytes.
+	 */
+	long getWikiFileCacheBytes() {
+		synchronized (wikiFileCache) {
+			return wikiFileCacheBytes;
+		}
+	}
+
+	private static long estimateSize(@NotNull WikiFile wikiFile) {
+		return (long) wikiFile.getWikiText().length() * ESTIMATED_BYTES_PER_CHAR;
+	}
+
 	/**
 	 * Check if the given file path refers to a wiki page.
 	 */
@@ -453,43 +872,58 @@ public class WikiService {
 	}
 
 	/**
-	 * Scan a wiki file for parent relations (<code>{{parent:...}}</code>)
-	 * and add them to the parent link list and the child-parent cache.
+	 * Add the parent and child links to the wiki file as stored in the
+	 * relation index, without traversing the wiki page.
 	 *
-	 * @return true if the childParentMap cache was changed.
+	 * @return false if the wiki page is missing in the relation indexes.
+	 */
+	private boolean addRelationsFromIndex(@NotNull WikiFile wikiFile) {
+		String wikiFilePath = wikiFile.getWikiFilePath();
+		Set<String> parentFilePaths = parentRelationIndex.getTargets(wikiFilePath);
+		if (parentFilePaths == null || !pageLinkIndex.containsSource(wikiFilePath)) {
+			return false;
+		}
+		wikiFile.getParents().clear();
+		wikiFile.getParents().addAll(parentFilePaths);
+		wikiFile.getChildren().clear();
+		wikiFile.getChildren().addAll(parentRelationIndex.getSources(wikiFilePath));
+		return true;
+	}
+
+	/**
+	 * Scan a wiki file for parent relations (<code>{{parent:...}}</code>)
+	 * and links to other wiki pages, update the relation indexes and
+	 * add the parent and child links to the wiki file.
+	 * Changes of the relation indexes are persisted.
 	 */
-	private boolean installParentAndChildLinks(@NotNull WikiFile wikiFile) {
+	private void updateRelationIndexes(@NotNull WikiFile wikiFile) {
+		String wikiFilePath = wikiFile.getWikiFilePath();
+		WikiPage wikiPage = wikiFile.getWikiPage();
+
 		// extract parent relations from wiki page
 		Set<String> parentFilePaths = new HashSet<>();
-		PageElementConsumer<Parent, Set<String>> consumer = (parent, context) -> {
-			WikiPage wikiPage = WikiHelper.getContextWikiPage(parent, false);
-			if (wikiPage != null) {
-				String wikiFilePath = WikiHelper.getAbsolutePagePath(parent.getParentPagePath(), wikiPage);
-				context.add(wikiFilePath);
-			}
-		};
-		WikiHelper.traversePageElements(wikiFile.getWikiPage(), consumer, Parent.class, parentFilePaths, false);
+		PageElementConsumer<Parent, Set<String>> parentConsumer = (parent, context) -> context.add(WikiHelper.getAbsolutePagePath(parent.getParentPagePath(), wikiPage));
+		WikiHelper.traversePageElements(wikiPage, parentConsumer, Parent.class, parentFilePaths, false);
 
 		// add to parent list
 		wikiFile.getParents().clear();
 		wikiFile.getParents().addAll(parentFilePaths);
 
-		// add to child-parent cache
-		String wikiFilePath = wikiFile.getWikiFilePath();
-		boolean cacheModified = !childParentMap.containsKey(wikiFilePath) || !parentFilePaths.containsAll(childParentMap.get(wikiFilePath));
-		if (cacheModified) {
-			childParentMap.put(wikiFilePath, parentFilePaths);
+		// add to parent relation index
+		if (parentRelationIndex.setTargets(wikiFilePath, parentFilePaths)) {
+			writeRelationCacheJournal(parentRelationIndex, CHILD_PARENT_CACHE_FILEPATH, wikiFilePath);
 		}
 
 		// add child links to this wiki page
 		wikiFile.getChildren().clear();
-		for (String childFilePath : childParentMap.keySet()) {
-			Set<String> parents = childParentMap.get(childFilePath);
-			if (parents.contains(wikiFilePath)) {
-				wikiFile.getChildren().add(childFilePath);
-			}
+		wikiFile.getChildren().addAll(parentRelationIndex.getSources(wikiFilePath));
+
+		// extract links to other wiki pages
+		Set<String> linkedFilePaths = new HashSet<>();
+		PageElementConsumer<LinkPage, Set<String>> linkConsumer = (linkPage, context) -> context.add(WikiHelper.getAbsolutePagePath(linkPage.getPagePath(), wikiPage));
+		WikiHelper.traversePageElements(wikiPage, linkConsumer, LinkPage.class, linkedFilePaths, true);
+		if (pageLinkIndex.setTargets(wikiFilePath, linkedFilePaths)) {
+			writeRelationCacheJournal(pageLinkIndex, PAGE_LINKS_CACHE_FILEPATH, wikiFilePath);
 		}
-
-		return cacheModified;
 	}
 }
@@ -43,4 +43,9 @@ public class Bold extends PageElementWithChild {
 			return new Bold(null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Bold(child, fromPos, toPos);
+	}
 }
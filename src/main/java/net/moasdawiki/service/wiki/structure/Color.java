@@ -62,4 +62,9 @@ public class Color extends PageElementWithChild {
 			return new Color(colorName, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Color(colorName, child, fromPos, toPos);
+	}
 }
@@ -67,4 +67,9 @@ public class Heading extends PageElementWithChild {
 			return new Heading(level, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Heading(level, child, fromPos, toPos);
+	}
 }
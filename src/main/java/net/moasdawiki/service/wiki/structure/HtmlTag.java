@@ -70,4 +70,9 @@ public class HtmlTag extends PageElementWithChild {
 			return new HtmlTag(tagName, tagAttributes, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new HtmlTag(tagName, tagAttributes, child, fromPos, toPos);
+	}
 }
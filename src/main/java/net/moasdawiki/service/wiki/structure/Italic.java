@@ -43,4 +43,9 @@ public class Italic extends PageElementWithChild {
 			return new Italic(null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Italic(child, fromPos, toPos);
+	}
 }
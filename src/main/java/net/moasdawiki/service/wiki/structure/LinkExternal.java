@@ -69,4 +69,9 @@ public class LinkExternal extends PageElementWithChild {
 			return new LinkExternal(url, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new LinkExternal(url, child, fromPos, toPos);
+	}
 }
@@ -68,4 +68,9 @@ public class LinkLocalFile extends PageElementWithChild {
 			return new LinkLocalFile(filePath, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new LinkLocalFile(filePath, child, fromPos, toPos);
+	}
 }
@@ -93,4 +93,9 @@ public class LinkPage extends PageElementWithChild {
 			return new LinkPage(pagePath, anchor, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new LinkPage(pagePath, anchor, child, fromPos, toPos);
+	}
 }
@@ -68,4 +68,9 @@ public class LinkWiki extends PageElementWithChild {
 			return new LinkWiki(command, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new LinkWiki(command, child, fromPos, toPos);
+	}
 }
@@ -60,4 +60,9 @@ public class ListItem extends PageElementWithChild {
 			return new ListItem(level, ordered, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new ListItem(level, ordered, child, fromPos, toPos);
+	}
 }
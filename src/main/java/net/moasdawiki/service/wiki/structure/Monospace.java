@@ -44,4 +44,9 @@ public class Monospace extends PageElementWithChild {
 			return new Monospace(null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Monospace(child, fromPos, toPos);
+	}
 }
@@ -33,16 +33,17 @@ import org.jetbrains.annotations.Nullable;
  * <li>Aufeinanderfolgende Element mit isInline() == true werden in dieselbe
  * Zeile gepackt.</li>
  * </ul>
+ * <br>
+ * Ein Wikibaum wird nach dem Aufbau (Parser, Transformation) nicht mehr
+ * verändert und darf daher von mehreren Threads gleichzeitig gelesen und
+ * zwischengespeichert werden. Seitenelemente haben keine Referenz auf den
+ * Vater-Knoten, damit unveränderte Teilbäume in mehreren Bäumen verwendet
+ * werden können. Den Kontext eines Seitenelements, d.h. die Wikiseite, in
+ * der es enthalten ist, liefert die Traversierung, siehe
+ * {@link net.moasdawiki.service.wiki.PageContext}.
  */
 public abstract class PageElement {
 
-	/**
-	 * Verweis auf den Vater-Knoten, der das Seitenelement enthält. null -> es
-	 * gibt keinen Vater-Knoten, d.h. es handelt sich um die Wurzel.
-	 */
-	@Nullable
-	protected PageElement parent;
-
 	/**
 	 * Geben den Ausschnitt in der Wikidatei an, aus dem dieses Seitenelement
 	 * entstanden ist. <code>fromPos</code> gibt die Position des ersten
@@ -62,24 +63,6 @@ public abstract class PageElement {
 	 */
 	public abstract boolean isInline();
 
-	/**
-	 * Gibt den Vater-Knoten zurück.
-	 * 
-	 * @return Der Vater-Knoten. null -> es gibt keinen Vater-Knoten, d.h. es
-	 *         handelt sich um die Wurzel.
-	 */
-	@Nullable
-	public PageElement getParent() {
-		return parent;
-	}
-
-	/**
-	 * Setzt den Vater-Knoten des Seitenelements.
-	 */
-	public void setParent(@Nullable PageElement parent) {
-		this.parent = parent;
-	}
-
 	/**
 	 * Gibt die Position des ersten Zeichens innerhalb der gesamten Wikiseite
 	 * an, aus dem dieses Seitenelement entstanden ist.<br>
@@ -108,7 +91,7 @@ public abstract class PageElement {
 
 	/**
 	 * Setzt den Ausschnitt in der Wikidatei, aus dem dieses Seitenelement
-	 * entstanden ist.
+	 * entstanden ist. Darf nur beim Aufbau des Baums aufgerufen werden.
 	 * 
 	 * @param fromPos Position des ersten Zeichens
 	 * @param toPos Position hinter dem letzten Zeichen
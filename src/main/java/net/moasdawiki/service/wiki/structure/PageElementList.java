@@ -30,7 +30,9 @@ import java.util.Iterator;
  * <br>
  * Diese Liste kann selbst wieder als Seitenelement verwendet werden. Der
  * Listeninhalt wird dann so behandelt, als ob er direkt in der übergeordneten
- * Liste enthalten wäre, stellt also eine Teilliste dar.
+ * Liste enthalten wäre, stellt also eine Teilliste dar.<br>
+ * <br>
+ * Einträge dürfen nur beim Aufbau der Liste hinzugefügt werden.
  */
 public class PageElementList extends PageElement implements Iterable<PageElement> {
 
@@ -58,29 +60,17 @@ public class PageElementList extends PageElement implements Iterable<PageElement
 	}
 
 	/**
-	 * Übernimmt das angegebene Seitenelement. Die Parent-Referenz wird dabei
-	 * automatisch gesetzt.
+	 * Übernimmt das angegebene Seitenelement.
 	 */
 	public void add(@NotNull PageElement pageElement) {
 		elementList.add(pageElement);
-		pageElement.setParent(this);
 	}
 
 	/**
-	 * Übernimmt alle Seitenelemente in die eigene Liste. Die Parent-Referenzen
-	 * werden dabei umgehängt.
+	 * Übernimmt alle Seitenelemente in die eigene Liste.
 	 */
 	public void addAll(@NotNull PageElementList pageElementList) {
-		for (PageElement pe : pageElementList.elementList) {
-			add(pe);
-		}
-	}
-
-	/**
-	 * Entfernt das Listenelement mit dem angegebenen Index.
-	 */
-	public void remove(int index) {
-		elementList.remove(index);
+		elementList.addAll(pageElementList.elementList);
 	}
 
 	/**
@@ -91,11 +81,6 @@ public class PageElementList extends PageElement implements Iterable<PageElement
 		return elementList.get(index);
 	}
 
-	public void set(int index, @NotNull PageElement pageElement) {
-		elementList.set(index, pageElement);
-		pageElement.setParent(this);
-	}
-
 	/**
 	 * Gibt die Anzahl der Listeneinträge zurück.
 	 */
@@ -19,6 +19,7 @@
 
 package net.moasdawiki.service.wiki.structure;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -34,7 +35,7 @@ public abstract class PageElementWithChild extends PageElement {
 	 * unterschiedliche Bedeutung haben. Kann auch null sein.
 	 */
 	@Nullable
-	protected PageElement child;
+	protected final PageElement child;
 
 	/**
 	 * Initialisiert den Kind-Knoten gleich mit.
@@ -43,14 +44,13 @@ public abstract class PageElementWithChild extends PageElement {
 	 */
 	protected PageElementWithChild(@Nullable PageElement child, @Nullable Integer fromPos, @Nullable Integer toPos) {
 		super();
-		setChild(child);
+		this.child = child;
 		this.fromPos = fromPos;
 		this.toPos = toPos;
 	}
 
 	/**
-	 * Gibt den Kindknoten zurück. Dieser darf für Baumtransformationen
-	 * verändert werden.
+	 * Gibt den Kindknoten zurück.
 	 * 
 	 * @return Der Kindknoten. Kann auch null sein.
 	 */
@@ -60,16 +60,12 @@ public abstract class PageElementWithChild extends PageElement {
 	}
 
 	/**
-	 * Ersetzt den bisherigen Kindknoten durch einen neuen. Diese Methode wird
-	 * bei Baumtransformationen aufgerufen. Dabei wird die Parent-Referenz
-	 * automatisch aktualisiert.
+	 * Erstellt eine flache Kopie des Seitenelements mit einem anderen
+	 * Kindknoten. Wird bei Baumtransformationen aufgerufen, der bisherige
+	 * Knoten bleibt unverändert.
 	 * 
 	 * @param child Neuer Kindknoten. Kann auch null sein.
 	 */
-	public void setChild(@Nullable PageElement child) {
-		this.child = child;
-		if (child != null) {
-			child.setParent(this);
-		}
-	}
+	@NotNull
+	public abstract PageElementWithChild cloneWithChild(@Nullable PageElement child);
 }
@@ -65,4 +65,9 @@ public class Paragraph extends PageElementWithChild {
 			return new Paragraph(centered, indention, verticalSpacing, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Paragraph(centered, indention, verticalSpacing, child, fromPos, toPos);
+	}
 }
@@ -44,4 +44,9 @@ public class Small extends PageElementWithChild {
 			return new Small(null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Small(child, fromPos, toPos);
+	}
 }
@@ -43,4 +43,9 @@ public class Strikethrough extends PageElementWithChild {
 			return new Strikethrough(null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Strikethrough(child, fromPos, toPos);
+	}
 }
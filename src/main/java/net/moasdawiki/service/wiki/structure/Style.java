@@ -59,4 +59,9 @@ public class Style extends PageElementWithChild {
 			return new Style(cssClasses, null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Style(cssClasses, child, fromPos, toPos);
+	}
 }
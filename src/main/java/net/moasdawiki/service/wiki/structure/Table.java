@@ -57,7 +57,6 @@ public class Table extends PageElement {
 	 */
 	public void addRow(@NotNull TableRow row) {
 		rows.add(row);
-		row.setParent(this);
 	}
 
 	/**
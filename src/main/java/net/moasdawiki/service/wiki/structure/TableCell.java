@@ -31,7 +31,7 @@ public class TableCell {
 	 * Inhalt der Zelle.
 	 */
 	@Nullable
-	private PageElement content;
+	private final PageElement content;
 
 	/**
 	 * true -> th anstatt td verwenden.
@@ -46,19 +46,11 @@ public class TableCell {
 	@Nullable
 	private final String params;
 
-	/**
-	 * Tabellenzeile, in der die Zelle enthalten ist.
-	 */
-	@Nullable
-	private TableRow parentRow;
-
 	public TableCell(@Nullable PageElement content, boolean header, @Nullable String params) {
 		super();
 		this.content = content;
 		this.header = header;
 		this.params = params;
-		// Hinweis der Vaterknoten von "content" wird später gesetzt,
-		// da er noch nicht bekannt ist.
 	}
 
 	/**
@@ -69,17 +61,6 @@ public class TableCell {
 		return content;
 	}
 
-	/**
-	 * Setzt einen neuen Inhalt der Zelle.
-	 */
-	public void setContent(@Nullable PageElement content) {
-		this.content = content;
-
-		if (content != null && parentRow != null) {
-			content.setParent(parentRow.getParentTable());
-		}
-	}
-
 	public boolean isHeader() {
 		return header;
 	}
@@ -95,17 +76,12 @@ public class TableCell {
 		return params;
 	}
 
-	@Nullable
-	public TableRow getParentRow() {
-		return parentRow;
-	}
-
-	public void setParentRow(@Nullable TableRow parentRow) {
-		this.parentRow = parentRow;
-
-		if (content != null && parentRow != null) {
-			content.setParent(parentRow.getParentTable());
-		}
+	/**
+	 * Erstellt eine flache Kopie der Zelle mit einem anderen Inhalt.
+	 */
+	@NotNull
+	public TableCell cloneWithContent(@Nullable PageElement content) {
+		return new TableCell(content, header, params);
 	}
 
 	@NotNull
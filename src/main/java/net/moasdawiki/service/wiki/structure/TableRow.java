@@ -44,12 +44,6 @@ public class TableRow {
 	@Nullable
 	private final String params;
 
-	/**
-	 * Tabelle, in der die Zeile enthalten ist.
-	 */
-	@Nullable
-	private Table parentTable;
-
 	public TableRow(@Nullable String params) {
 		super();
 		cells = new ArrayList<>();
@@ -63,7 +57,6 @@ public class TableRow {
 	 */
 	public void addCell(@NotNull TableCell cell) {
 		cells.add(cell);
-		cell.setParentRow(this);
 	}
 
 	@NotNull
@@ -82,23 +75,6 @@ public class TableRow {
 		return params;
 	}
 
-	@Nullable
-	public Table getParentTable() {
-		return parentTable;
-	}
-
-	/**
-	 * Setzt eine Tabelle als Vater-Knoten.
-	 */
-	void setParent(@NotNull Table parentTable) {
-		this.parentTable = parentTable;
-
-		// Vaterknoten der Zellinhalte aktualisieren
-		for (TableCell cell : cells) {
-			cell.setParentRow(this);
-		}
-	}
-
 	@NotNull
 	public TableRow cloneTyped() {
 		TableRow newRow = new TableRow(params);
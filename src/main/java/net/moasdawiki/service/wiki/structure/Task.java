@@ -31,7 +31,7 @@ public class Task extends PageElement {
 	 * Status der Aufgabe.
 	 */
 	@Nullable
-	private State state;
+	private final State state;
 
 	/**
 	 * Terminhinweis zur Aufgabe. null -> kein Termin.
@@ -62,14 +62,6 @@ public class Task extends PageElement {
 		return state;
 	}
 
-	/**
-	 * Setzt den Status der Aufgabe.
-	 */
-	@SuppressWarnings("unused")
-	public void setState(@Nullable State state) {
-		this.state = state;
-	}
-
 	/**
 	 * Gibt den Terminhinweis zur Aufgabe zurück.
 	 * 
@@ -43,4 +43,9 @@ public class Underlined extends PageElementWithChild {
 			return new Underlined(null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new Underlined(child, fromPos, toPos);
+	}
 }
@@ -81,4 +81,9 @@ public class WikiPage extends PageElementWithChild {
 	public PageElement clonePageElement() {
 		return cloneTyped();
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new WikiPage(pagePath, child, fromPos, toPos);
+	}
 }
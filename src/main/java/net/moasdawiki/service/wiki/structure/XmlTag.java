@@ -111,4 +111,9 @@ public class XmlTag extends PageElementWithChild {
 			return new XmlTag(prefix, name, new HashMap<>(options), null, fromPos, toPos);
 		}
 	}
+
+	@NotNull
+	public PageElementWithChild cloneWithChild(@Nullable PageElement child) {
+		return new XmlTag(prefix, name, options, child, fromPos, toPos);
+	}
 }
@@ -23,6 +23,7 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
 
 import net.moasdawiki.base.ServiceException;
@@ -40,6 +41,11 @@ public abstract class DateUtils {
 		UTC_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
 	}
 
+	private static final DateFormat HTTP_FORMAT = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+	static {
+		HTTP_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT"));
+	}
+
 	/**
 	 * Parses a string in ISO 8601 date format: "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"
 	 * 
@@ -84,6 +90,38 @@ public abstract class DateUtils {
 		}
 	}
 
+	/**
+	 * Parses a date in HTTP format (RFC 1123): "EEE, dd MMM yyyy HH:mm:ss 'GMT'"
+	 *
+	 * @param dateStr String to parse
+	 * @return Date object
+	 * @throws ServiceException if string has invalid format
+	 */
+	@NotNull
+	public static Date parseHttpDate(@NotNull String dateStr) throws ServiceException {
+		try {
+			synchronized (HTTP_FORMAT) {
+				return HTTP_FORMAT.parse(dateStr);
+			}
+		} catch (ParseException e) {
+			throw new ServiceException("Invalid HTTP date format", e);
+		}
+	}
+
+	/**
+	 * Formats a date in HTTP format (RFC 1123): "EEE, dd MMM yyyy HH:mm:ss 'GMT'".
+	 * Milliseconds are truncated.
+	 *
+	 * @param date Date to format
+	 * @return String representation
+	 */
+	@NotNull
+	public static String formatHttpDate(@NotNull Date date) {
+		synchronized (HTTP_FORMAT) {
+			return HTTP_FORMAT.format(date);
+		}
+	}
+
 	/**
 	 * Formats a date with the given format using {@link SimpleDateFormat}.
 	 * This is just a convenience method.
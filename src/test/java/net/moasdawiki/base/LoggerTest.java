@@ -23,10 +23,12 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
 
 import static net.moasdawiki.AssertHelper.assertContains;
 import static net.moasdawiki.AssertHelper.assertEndsWith;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 
 public class LoggerTest {
 
@@ -60,4 +62,72 @@ public class LoggerTest {
         Logger logger = new Logger(null);
         logger.write("message", new Exception());
     }
+
+    @Test
+    public void testLevel() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Logger logger = new Logger(new PrintStream(out));
+        logger.debug(() -> {
+            throw new AssertionError("supplier must not be called");
+        });
+        assertEquals(out.size(), 0);
+
+        logger.setLevel(Logger.Level.DEBUG);
+        logger.debug(() -> "debug message");
+        assertEndsWith(out.toString(), " DEBUG debug message\n");
+
+        logger.setLevel(Logger.Level.WARN);
+        out.reset();
+        logger.write("info message");
+        assertEquals(out.size(), 0);
+        logger.write(Logger.Level.WARN, "warn message");
+        assertEndsWith(out.toString(), " WARN warn message\n");
+    }
+
+    @Test(timeOut = 10000)
+    public void testAsynchronous() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Logger logger = new Logger(new PrintStream(out), 100);
+        for (int i = 0; i < 50; i++) {
+            logger.write("message " + i);
+        }
+        logger.flush();
+        assertContains(out.toString(), "message 0\n");
+        assertEndsWith(out.toString(), "message 49\n");
+        assertEquals(logger.getDroppedMessages(), 0);
+        logger.close();
+    }
+
+    @Test(timeOut = 10000)
+    public void testAsynchronousQueueFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream blockingOut = new PrintStream(out) {
+            @Override
+            public void print(String s) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.print(s);
+            }
+        };
+        Logger logger = new Logger(blockingOut, 2);
+        logger.write("first");
+        blocked.await();
+        // writer thread is blocked, queue takes 2 more messages
+        for (int i = 0; i < 5; i++) {
+            logger.write("message " + i);
+        }
+        assertEquals(logger.getDroppedMessages(), 3);
+        release.countDown();
+        logger.flush();
+        logger.close();
+        assertContains(out.toString(), "message 1\n");
+        assertContains(out.toString(), "WARN 3 log messages dropped");
+        assertFalse(out.toString().contains("message 2"));
+    }
 }
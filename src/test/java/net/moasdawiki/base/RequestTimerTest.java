@@ -0,0 +1,59 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.base;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static net.moasdawiki.AssertHelper.assertContains;
+import static org.testng.Assert.assertEquals;
+
+public class RequestTimerTest {
+
+    @AfterMethod
+    public void afterMethod() {
+        RequestTimer.end();
+    }
+
+    @Test
+    public void testFormat() {
+        RequestTimer requestTimer = new RequestTimer();
+        requestTimer.add("parse", 120000);
+        requestTimer.add("wikifile", 1000000);
+        requestTimer.add("wikifile", 2400000);
+        assertEquals(requestTimer.toServerTiming(), "parse;dur=0.12, wikifile;dur=3.40;desc=\"2x\"");
+        assertEquals(requestTimer.toLogString(), "parse=0.12ms wikifile=3.40ms(2x)");
+    }
+
+    @Test
+    public void testStop() {
+        RequestTimer requestTimer = RequestTimer.begin();
+        RequestTimer.stop("phase", RequestTimer.start());
+        assertContains(requestTimer.toServerTiming(), "phase;dur=");
+    }
+
+    @Test
+    public void testStopWithoutTimer() {
+        RequestTimer requestTimer = RequestTimer.begin();
+        RequestTimer.end();
+        RequestTimer.stop("phase", RequestTimer.start());
+        assertEquals(requestTimer.toServerTiming(), "");
+    }
+}
@@ -99,6 +99,50 @@ public class SettingsTest {
         assertFalse(settings.getBoolean("unknownKey", false));
     }
 
+    @Test
+    public void testGetServerExecutor() {
+        assertEquals(settings.getServerExecutor(), "fixed");
+        assertEquals(settings.getServerExecutorSize(), 5);
+    }
+
+    @Test
+    public void testGetServerCacheImgMaxAge() {
+        assertEquals(settings.getServerCacheImgMaxAge(), 604800);
+    }
+
+    @Test
+    public void testGetServerCompressionCacheSize() {
+        assertEquals(settings.getServerCompressionCacheSize(), 10485760);
+    }
+
+    @Test
+    public void testGetServerAdmissionLimits() {
+        assertEquals(settings.getServerQueueSize(), 50);
+        assertEquals(settings.getServerClientMaxRequests(), 20);
+    }
+
+    @Test
+    public void testIsServerTiming() {
+        assertTrue(settings.isServerTimingHeader());
+        assertFalse(settings.isServerTimingLog());
+    }
+
+    @Test
+    public void testGetPageCacheSize() {
+        assertEquals(settings.getPageCacheSize(), 20971520);
+    }
+
+    @Test
+    public void testRepositoryWatch() {
+        assertTrue(settings.isRepositoryWatch());
+        assertEquals(settings.getRepositoryWatchDelay(), 500);
+    }
+
+    @Test
+    public void testGetLogLevel() {
+        assertEquals(settings.getLogLevel(), Logger.Level.INFO);
+    }
+
     @Test
     public void testGetProgramName() {
         assertNotNull(settings.getProgramName());
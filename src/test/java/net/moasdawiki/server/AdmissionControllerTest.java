@@ -0,0 +1,66 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+
+import static org.testng.Assert.*;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void testGlobalLimit() throws Exception {
+        AdmissionController admissionController = new AdmissionController(2, 0);
+        InetAddress client = InetAddress.getByName("192.168.1.1");
+        assertTrue(admissionController.tryAcquire(client));
+        assertTrue(admissionController.tryAcquire(client));
+        assertFalse(admissionController.isAdmissible(client));
+        assertFalse(admissionController.tryAcquire(client));
+        assertEquals(admissionController.getActiveRequests(), 2);
+        assertEquals(admissionController.getRejectedRequests(), 1);
+
+        admissionController.release(client);
+        assertTrue(admissionController.isAdmissible(client));
+        assertEquals(admissionController.getActiveRequests(), 1);
+    }
+
+    @Test
+    public void testClientLimit() throws Exception {
+        AdmissionController admissionController = new AdmissionController(10, 1);
+        InetAddress client1 = InetAddress.getByName("192.168.1.1");
+        InetAddress client2 = InetAddress.getByName("192.168.1.2");
+        assertTrue(admissionController.tryAcquire(client1));
+        assertFalse(admissionController.tryAcquire(client1));
+        assertTrue(admissionController.tryAcquire(client2));
+
+        admissionController.release(client1);
+        assertTrue(admissionController.tryAcquire(client1));
+    }
+
+    @Test
+    public void testReject() throws Exception {
+        AdmissionController admissionController = new AdmissionController(0, 0);
+        assertFalse(admissionController.isAdmissible(InetAddress.getByName("192.168.1.1")));
+        admissionController.reject();
+        assertEquals(admissionController.getRejectedRequests(), 1);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+
+public class ChunkedOutputStreamTest {
+
+    @Test
+    public void testChunks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChunkedOutputStream chunkedOut = new ChunkedOutputStream(out);
+        chunkedOut.write("Hello".getBytes(StandardCharsets.US_ASCII));
+        chunkedOut.write(new byte[0]);
+        chunkedOut.write('!');
+        chunkedOut.write("0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+        chunkedOut.finish();
+        assertEquals(out.toString("US-ASCII"), "5\r\nHello\r\n1\r\n!\r\n10\r\n0123456789abcdef\r\n0\r\n\r\n");
+    }
+
+    @Test
+    public void testCloseFinishesOnce() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChunkedOutputStream chunkedOut = new ChunkedOutputStream(out);
+        chunkedOut.finish();
+        chunkedOut.close();
+        assertEquals(out.toString("US-ASCII"), "0\r\n\r\n");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testWriteAfterFinish() throws Exception {
+        ChunkedOutputStream chunkedOut = new ChunkedOutputStream(new ByteArrayOutputStream());
+        chunkedOut.finish();
+        chunkedOut.write('x');
+    }
+}
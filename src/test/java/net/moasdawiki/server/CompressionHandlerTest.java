@@ -0,0 +1,235 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.service.HttpResponse;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.testng.Assert.*;
+
+public class CompressionHandlerTest {
+
+    private static final String TEXT;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("line ").append(i).append(" of a compressible text\n");
+        }
+        TEXT = sb.toString();
+    }
+
+    private Path file;
+    private CompressionHandler compressionHandler;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        file = Files.createTempFile("compressionhandlertest", ".css");
+        Files.write(file, TEXT.getBytes(StandardCharsets.UTF_8));
+        compressionHandler = new CompressionHandler(100000);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        Files.delete(file);
+    }
+
+    @Test
+    public void testSelectEncoding() {
+        assertNull(CompressionHandler.selectEncoding(null));
+        assertNull(CompressionHandler.selectEncoding("identity"));
+        assertEquals(CompressionHandler.selectEncoding("gzip, deflate, br"), "gzip");
+        assertEquals(CompressionHandler.selectEncoding("deflate"), "deflate");
+        assertEquals(CompressionHandler.selectEncoding("gzip;q=0.5, deflate"), "deflate");
+        assertEquals(CompressionHandler.selectEncoding("gzip;q=0, deflate;q=0.1"), "deflate");
+        assertNull(CompressionHandler.selectEncoding("gzip;q=0"));
+        assertEquals(CompressionHandler.selectEncoding("*"), "gzip");
+        assertEquals(CompressionHandler.selectEncoding("*, gzip;q=0"), "deflate");
+    }
+
+    @Test
+    public void testIsCompressible() {
+        assertTrue(CompressionHandler.isCompressible(HttpResponse.CONTENT_TYPE_HTML));
+        assertTrue(CompressionHandler.isCompressible(HttpResponse.CONTENT_TYPE_XML));
+        assertTrue(CompressionHandler.isCompressible(HttpResponse.CONTENT_TYPE_JSON_UTF8));
+        assertTrue(CompressionHandler.isCompressible("application/javascript"));
+        assertTrue(CompressionHandler.isCompressible("image/svg+xml"));
+        assertFalse(CompressionHandler.isCompressible("image/png"));
+        assertFalse(CompressionHandler.isCompressible(HttpResponse.CONTENT_TYPE_BINARY));
+        assertFalse(CompressionHandler.isCompressible(null));
+    }
+
+    @Test
+    public void testCompressContent() throws Exception {
+        HttpResponse response = createPageResponse(TEXT);
+        response.etag = "\"abc\"";
+        HttpResponse result = compressionHandler.handleCompression(createRequest("gzip"), response);
+        assertEquals(result.httpHeader.get("Content-Encoding"), "gzip");
+        assertEquals(result.httpHeader.get("Vary"), "Accept-Encoding");
+        assertEquals(result.etag, "W/\"abc\"");
+        assertTrue(result.content.length < TEXT.length());
+        assertEquals(gunzip(result.content), TEXT);
+    }
+
+    @Test
+    public void testCompressDeflate() throws Exception {
+        HttpResponse result = compressionHandler.handleCompression(createRequest("deflate"), createPageResponse(TEXT));
+        assertEquals(result.httpHeader.get("Content-Encoding"), "deflate");
+        assertEquals(inflate(result.content), TEXT);
+    }
+
+    @Test
+    public void testNoCompression() throws Exception {
+        // client doesn't support compression
+        HttpResponse result = compressionHandler.handleCompression(createRequest(null), createPageResponse(TEXT));
+        assertFalse(result.httpHeader.containsKey("Content-Encoding"));
+        assertEquals(result.httpHeader.get("Vary"), "Accept-Encoding");
+
+        // too small
+        result = compressionHandler.handleCompression(createRequest("gzip"), createPageResponse("small"));
+        assertFalse(result.httpHeader.containsKey("Content-Encoding"));
+
+        // not compressible
+        HttpResponse imageResponse = createPageResponse(TEXT);
+        imageResponse.contentType = "image/png";
+        result = compressionHandler.handleCompression(createRequest("gzip"), imageResponse);
+        assertFalse(result.httpHeader.containsKey("Content-Encoding"));
+        assertFalse(result.httpHeader.containsKey("Vary"));
+
+        // error page
+        HttpResponse errorResponse = createPageResponse(TEXT);
+        errorResponse.statusCode = 206;
+        result = compressionHandler.handleCompression(createRequest("gzip"), errorResponse);
+        assertFalse(result.httpHeader.containsKey("Content-Encoding"));
+    }
+
+    @Test
+    public void testFileCache() throws Exception {
+        FileChannel fileChannel1 = FileChannel.open(file, StandardOpenOption.READ);
+        HttpResponse result1 = compressionHandler.handleCompression(createRequest("gzip"), createFileResponse(fileChannel1));
+        assertEquals(result1.httpHeader.get("Content-Encoding"), "gzip");
+        assertFalse(result1.httpHeader.containsKey("Accept-Ranges"));
+        assertFalse(fileChannel1.isOpen());
+        assertEquals(gunzip(readContent(result1)), TEXT);
+        long cachedBytes = compressionHandler.getCachedBytes();
+        assertEquals(cachedBytes, result1.contentLength);
+
+        // second request is served from the cache
+        FileChannel fileChannel2 = FileChannel.open(file, StandardOpenOption.READ);
+        HttpResponse result2 = compressionHandler.handleCompression(createRequest("gzip"), createFileResponse(fileChannel2));
+        assertFalse(fileChannel2.isOpen());
+        assertEquals(gunzip(readContent(result2)), TEXT);
+        assertEquals(compressionHandler.getCachedBytes(), cachedBytes);
+
+        // other encoding is cached separately
+        FileChannel fileChannel3 = FileChannel.open(file, StandardOpenOption.READ);
+        HttpResponse result3 = compressionHandler.handleCompression(createRequest("deflate"), createFileResponse(fileChannel3));
+        assertEquals(inflate(readContent(result3)), TEXT);
+        assertTrue(compressionHandler.getCachedBytes() > cachedBytes);
+    }
+
+    @Test
+    public void testFileCacheEviction() throws Exception {
+        compressionHandler = new CompressionHandler(1);
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        HttpResponse result = compressionHandler.handleCompression(createRequest("gzip"), createFileResponse(fileChannel));
+        assertEquals(gunzip(readContent(result)), TEXT);
+        assertEquals(compressionHandler.getCachedBytes(), 0);
+    }
+
+    @Test
+    public void testStreamingUnknownLength() throws Exception {
+        HttpResponse response = new HttpResponse();
+        response.contentType = HttpResponse.CONTENT_TYPE_XML;
+        response.setContent(out -> out.write(TEXT.getBytes(StandardCharsets.UTF_8)), -1);
+        HttpResponse result = compressionHandler.handleCompression(createRequest("gzip"), response);
+        assertEquals(result.httpHeader.get("Content-Encoding"), "gzip");
+        assertEquals(result.contentLength, -1);
+        assertEquals(gunzip(readContent(result)), TEXT);
+    }
+
+    private static HttpRequest createRequest(String acceptEncoding) {
+        HttpRequest httpRequest = new HttpRequest();
+        httpRequest.method = "GET";
+        httpRequest.urlPath = "/main.css";
+        if (acceptEncoding != null) {
+            httpRequest.httpHeader.put(CompressionHandler.HTTP_HEADER_ACCEPT_ENCODING, acceptEncoding);
+        }
+        return httpRequest;
+    }
+
+    private static HttpResponse createPageResponse(String content) {
+        HttpResponse response = new HttpResponse();
+        response.setContent(content);
+        return response;
+    }
+
+    private static HttpResponse createFileResponse(FileChannel fileChannel) throws IOException {
+        HttpResponse response = new HttpResponse();
+        response.contentType = "text/css";
+        response.setContent(fileChannel);
+        response.lastModified = new Date(1600000000000L);
+        response.httpHeader.put("Accept-Ranges", "bytes");
+        return response;
+    }
+
+    private static byte[] readContent(HttpResponse response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            response.contentWriter.writeTo(out);
+        } finally {
+            response.contentWriter.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static String gunzip(byte[] data) throws IOException {
+        return readFully(new GZIPInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static String inflate(byte[] data) throws IOException {
+        return readFully(new InflaterInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.service.HttpResponse;
+import net.moasdawiki.util.DateUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+import static org.testng.Assert.*;
+
+public class ConditionalRequestHandlerTest {
+
+    private Path file;
+    private FileChannel fileChannel;
+    private HttpResponse fileResponse;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        file = Files.createTempFile("conditionalrequesthandlertest", ".txt");
+        Files.write(file, "0123456789".getBytes(StandardCharsets.US_ASCII));
+        fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        fileResponse = new HttpResponse();
+        fileResponse.contentType = HttpResponse.CONTENT_TYPE_TEXT;
+        fileResponse.setContent(fileChannel);
+        fileResponse.lastModified = new Date(1600000000000L);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        fileChannel.close();
+        Files.delete(file);
+    }
+
+    @Test
+    public void testGetCacheControl() {
+        assertEquals(ConditionalRequestHandler.getCacheControl("/img/image.png", 60), "public, max-age=60");
+        assertEquals(ConditionalRequestHandler.getCacheControl("/", 60), "no-cache");
+        assertEquals(ConditionalRequestHandler.getCacheControl("/view/Page", 60), "no-cache");
+        assertEquals(ConditionalRequestHandler.getCacheControl("/file/doc.pdf", 60), "no-cache");
+        assertEquals(ConditionalRequestHandler.getCacheControl("/main.css", 60), "no-cache");
+        assertNull(ConditionalRequestHandler.getCacheControl("/status", 60));
+        assertNull(ConditionalRequestHandler.getCacheControl("/edit/Page", 60));
+        assertNull(ConditionalRequestHandler.getCacheControl("/search/", 60));
+        assertNull(ConditionalRequestHandler.getCacheControl("/sync/read-file", 60));
+    }
+
+    @Test
+    public void testGenerateEtag() {
+        assertEquals(ConditionalRequestHandler.generateEtag(fileResponse), "\"174876e8000-a\"");
+
+        HttpResponse pageResponse = createPageResponse("page");
+        String etag = ConditionalRequestHandler.generateEtag(pageResponse);
+        assertNotNull(etag);
+        assertEquals(etag, ConditionalRequestHandler.generateEtag(createPageResponse("page")));
+        assertNotEquals(etag, ConditionalRequestHandler.generateEtag(createPageResponse("other page")));
+    }
+
+    @Test
+    public void testMatchesEtag() {
+        assertTrue(ConditionalRequestHandler.matchesEtag("\"abc\"", "\"abc\""));
+        assertTrue(ConditionalRequestHandler.matchesEtag("\"xyz\", W/\"abc\"", "\"abc\""));
+        assertTrue(ConditionalRequestHandler.matchesEtag("*", "\"abc\""));
+        assertFalse(ConditionalRequestHandler.matchesEtag("\"xyz\"", "\"abc\""));
+    }
+
+    @Test
+    public void testUnconditional() {
+        HttpResponse result = ConditionalRequestHandler.handleConditional(createRequest("/file/doc.txt", null, null), fileResponse, 60);
+        assertEquals(result.statusCode, 200);
+        assertEquals(result.etag, "\"174876e8000-a\"");
+        assertEquals(result.cacheControl, "no-cache");
+        assertTrue(fileChannel.isOpen());
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        HttpResponse result = ConditionalRequestHandler.handleConditional(createRequest("/file/doc.txt", "\"174876e8000-a\"", null), fileResponse, 60);
+        assertEquals(result.statusCode, 304);
+        assertEquals(result.etag, "\"174876e8000-a\"");
+        assertEquals(result.lastModified, fileResponse.lastModified);
+        assertNull(result.contentWriter);
+        assertFalse(fileChannel.isOpen());
+    }
+
+    @Test
+    public void testIfNoneMatchChanged() {
+        HttpResponse result = ConditionalRequestHandler.handleConditional(createRequest("/file/doc.txt", "\"old\"", null), fileResponse, 60);
+        assertEquals(result.statusCode, 200);
+        assertTrue(fileChannel.isOpen());
+    }
+
+    @Test
+    public void testIfNoneMatchPrecedence() {
+        // If-Modified-Since must be ignored if If-None-Match is present
+        String ifModifiedSince = DateUtils.formatHttpDate(fileResponse.lastModified);
+        HttpResponse result = ConditionalRequestHandler.handleConditional(createRequest("/file/doc.txt", "\"old\"", ifModifiedSince), fileResponse, 60);
+        assertEquals(result.statusCode, 200);
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        String ifModifiedSince = DateUtils.formatHttpDate(new Date(1600000000500L));
+        HttpResponse result = ConditionalRequestHandler.handleConditional(createRequest("/img/image.png", null, ifModifiedSince), fileResponse, 60);
+        assertEquals(result.statusCode, 304);
+        assertEquals(result.cacheControl, "public, max-age=60");
+    }
+
+    @Test
+    public void testIfModifiedSinceChanged() {
+        String ifModifiedSince = DateUtils.formatHttpDate(new Date(1500000000000L));
+        HttpResponse result = ConditionalRequestHandler.handleConditional(createRequest("/img/image.png", null, ifModifiedSince), fileResponse, 60);
+        assertEquals(result.statusCode, 200);
+
+        result = ConditionalRequestHandler.handleConditional(createRequest("/img/image.png", null, "invalid date"), fileResponse, 60);
+        assertEquals(result.statusCode, 200);
+    }
+
+    @Test
+    public void testPage() {
+        HttpResponse pageResponse = createPageResponse("page");
+        String etag = ConditionalRequestHandler.generateEtag(pageResponse);
+        HttpResponse result = ConditionalRequestHandler.handleConditional(createRequest("/view/Page", etag, null), pageResponse, 60);
+        assertEquals(result.statusCode, 304);
+        assertEquals(result.etag, etag);
+    }
+
+    @Test
+    public void testNotCacheable() {
+        HttpResponse pageResponse = createPageResponse("status");
+        HttpResponse result = ConditionalRequestHandler.handleConditional(createRequest("/status", "*", null), pageResponse, 60);
+        assertEquals(result.statusCode, 200);
+        assertNull(result.etag);
+        assertNull(result.cacheControl);
+
+        HttpResponse errorResponse = createPageResponse("error");
+        errorResponse.statusCode = 404;
+        result = ConditionalRequestHandler.handleConditional(createRequest("/view/Unknown", "*", null), errorResponse, 60);
+        assertEquals(result.statusCode, 404);
+        assertNull(result.etag);
+    }
+
+    private static HttpResponse createPageResponse(String content) {
+        HttpResponse response = new HttpResponse();
+        response.setContent(content);
+        return response;
+    }
+
+    private static HttpRequest createRequest(String urlPath, String ifNoneMatch, String ifModifiedSince) {
+        HttpRequest httpRequest = new HttpRequest();
+        httpRequest.method = "GET";
+        httpRequest.urlPath = urlPath;
+        if (ifNoneMatch != null) {
+            httpRequest.httpHeader.put(ConditionalRequestHandler.HTTP_HEADER_IF_NONE_MATCH, ifNoneMatch);
+        }
+        if (ifModifiedSince != null) {
+            httpRequest.httpHeader.put(ConditionalRequestHandler.HTTP_HEADER_IF_MODIFIED_SINCE, ifModifiedSince);
+        }
+        return httpRequest;
+    }
+}
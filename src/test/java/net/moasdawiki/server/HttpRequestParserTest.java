@@ -0,0 +1,105 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.ServiceException;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.*;
+
+public class HttpRequestParserTest {
+
+    @Test
+    public void testParseHeader() throws Exception {
+        byte[] data = "GET /view/Start%20Page?param1=value1&param2=value2 HTTP/1.1\r\nHost: localhost\r\nContent-Type: text/plain\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        HttpRequest http = HttpRequestParser.parseHeader(data, 0, data.length);
+        assertEquals(http.method, "GET");
+        assertEquals(http.url, "/view/Start Page?param1=value1&param2=value2");
+        assertEquals(http.urlPath, "/view/Start Page");
+        assertEquals(http.urlParameters.get("param1"), "value1");
+        assertEquals(http.urlParameters.get("param2"), "value2");
+        assertEquals(http.protocolVersion, HttpRequest.HTTP_VERSION_1_1);
+        assertEquals(http.httpHeader.get("host"), "localhost");
+        assertEquals(http.httpHeader.get(HttpRequest.HTTP_HEADER_CONTENT_TYPE), "text/plain");
+    }
+
+    @Test
+    public void testParseHeaderWithOffset() throws Exception {
+        byte[] data = "xxxGET /path HTTP/1.0\n\nGET /next HTTP/1.1\n\n".getBytes(StandardCharsets.US_ASCII);
+        HttpRequest http = HttpRequestParser.parseHeader(data, 3, 20);
+        assertEquals(http.urlPath, "/path");
+        assertEquals(http.protocolVersion, HttpRequest.HTTP_VERSION_1_0);
+    }
+
+    @Test
+    public void testParseHeaderUtf8() throws Exception {
+        byte[] data = "GET /view/Übersicht HTTP/1.1\r\nX-Name: Müller\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+        HttpRequest http = HttpRequestParser.parseHeader(data, 0, data.length);
+        assertEquals(http.urlPath, "/view/Übersicht");
+        assertEquals(http.httpHeader.get("x-name"), "Müller");
+    }
+
+    @Test(expectedExceptions = ServiceException.class)
+    public void testParseHeaderEmpty() throws Exception {
+        byte[] data = "\r\n".getBytes(StandardCharsets.US_ASCII);
+        HttpRequestParser.parseHeader(data, 0, data.length);
+    }
+
+    @Test(expectedExceptions = ServiceException.class)
+    public void testParseHeaderInvalidRequestLine() throws Exception {
+        byte[] data = "INVALID\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        HttpRequestParser.parseHeader(data, 0, data.length);
+    }
+
+    @Test
+    public void testGetContentLength() throws Exception {
+        HttpRequest http = new HttpRequest();
+        assertEquals(HttpRequestParser.getContentLength(http), 0);
+        http.httpHeader.put(HttpRequest.HTTP_HEADER_CONTENT_LENGTH, "5000000000");
+        assertEquals(HttpRequestParser.getContentLength(http), 5000000000L);
+    }
+
+    @Test(expectedExceptions = ServiceException.class)
+    public void testGetContentLengthInvalid() throws Exception {
+        HttpRequest http = new HttpRequest();
+        http.httpHeader.put(HttpRequest.HTTP_HEADER_CONTENT_LENGTH, "abc");
+        HttpRequestParser.getContentLength(http);
+    }
+
+    @Test(expectedExceptions = ServiceException.class)
+    public void testGetContentLengthNegative() throws Exception {
+        HttpRequest http = new HttpRequest();
+        http.httpHeader.put(HttpRequest.HTTP_HEADER_CONTENT_LENGTH, "-1");
+        HttpRequestParser.getContentLength(http);
+    }
+
+    @Test
+    public void testParseBodyPostData() throws Exception {
+        byte[] data = "POST /edit/Page HTTP/1.1\r\nContent-Type: application/x-www-form-urlencoded\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        HttpRequest http = HttpRequestParser.parseHeader(data, 0, data.length);
+        byte[] body = "save=1&text=a%20b".getBytes(StandardCharsets.US_ASCII);
+        HttpRequestParser.parseBody(http, body);
+        assertSame(http.httpBody, body);
+        assertEquals(http.urlParameters.get("save"), "1");
+        assertEquals(http.urlParameters.get("text"), "a b");
+    }
+}
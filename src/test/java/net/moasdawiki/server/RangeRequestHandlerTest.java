@@ -0,0 +1,213 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.service.HttpResponse;
+import net.moasdawiki.util.DateUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class RangeRequestHandlerTest {
+
+    private static final String FILE_CONTENT = "0123456789abcdefghij";
+
+    private Path file;
+    private HttpResponse response;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        file = Files.createTempFile("rangerequesthandlertest", ".txt");
+        Files.write(file, FILE_CONTENT.getBytes(StandardCharsets.US_ASCII));
+        response = new HttpResponse();
+        response.contentType = HttpResponse.CONTENT_TYPE_TEXT;
+        response.setContent(FileChannel.open(file, StandardOpenOption.READ));
+        response.lastModified = new Date(1600000000000L);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        if (response.contentWriter != null) {
+            response.contentWriter.close();
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testParseRanges() {
+        List<long[]> ranges = RangeRequestHandler.parseRanges("bytes=0-4, 10-, -3", 20);
+        assertNotNull(ranges);
+        assertEquals(ranges.size(), 3);
+        assertEquals(ranges.get(0), new long[] { 0, 4 });
+        assertEquals(ranges.get(1), new long[] { 10, 19 });
+        assertEquals(ranges.get(2), new long[] { 17, 19 });
+    }
+
+    @Test
+    public void testParseRangesClipped() {
+        List<long[]> ranges = RangeRequestHandler.parseRanges("bytes=15-100,-50", 20);
+        assertNotNull(ranges);
+        assertEquals(ranges.get(0), new long[] { 15, 19 });
+        assertEquals(ranges.get(1), new long[] { 0, 19 });
+    }
+
+    @Test
+    public void testParseRangesNotSatisfiable() {
+        List<long[]> ranges = RangeRequestHandler.parseRanges("bytes=20-30,-0", 20);
+        assertNotNull(ranges);
+        assertTrue(ranges.isEmpty());
+    }
+
+    @Test
+    public void testParseRangesInvalid() {
+        assertNull(RangeRequestHandler.parseRanges("items=0-4", 20));
+        assertNull(RangeRequestHandler.parseRanges("bytes=5-4", 20));
+        assertNull(RangeRequestHandler.parseRanges("bytes=abc", 20));
+        assertNull(RangeRequestHandler.parseRanges("bytes=a-b", 20));
+        StringBuilder tooMany = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= RangeRequestHandler.MAX_RANGES; i++) {
+            tooMany.append(',').append(i).append('-').append(i);
+        }
+        assertNull(RangeRequestHandler.parseRanges(tooMany.toString(), 20));
+    }
+
+    @Test
+    public void testNoRange() throws Exception {
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest(null, null), response);
+        assertEquals(result.statusCode, 200);
+        assertEquals(result.httpHeader.get("Accept-Ranges"), "bytes");
+        assertEquals(readContent(result), FILE_CONTENT);
+    }
+
+    @Test
+    public void testNoFileContent() {
+        HttpResponse pageResponse = new HttpResponse();
+        pageResponse.setContent("page");
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest("bytes=0-1", null), pageResponse);
+        assertEquals(result.statusCode, 200);
+        assertFalse(result.httpHeader.containsKey("Accept-Ranges"));
+    }
+
+    @Test
+    public void testSingleRange() throws Exception {
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest("bytes=5-9", null), response);
+        assertEquals(result.statusCode, 206);
+        assertEquals(result.contentLength, 5);
+        assertEquals(result.httpHeader.get("Content-Range"), "bytes 5-9/20");
+        assertEquals(readContent(result), "56789");
+        assertEquals(readContentViaChannel(result), "56789");
+    }
+
+    @Test
+    public void testMultipleRanges() throws Exception {
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest("bytes=0-1,-2", null), response);
+        assertEquals(result.statusCode, 206);
+        assertTrue(result.contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = result.contentType.substring(result.contentType.indexOf('=') + 1);
+        String expected = "--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-1/20\r\n"
+                + "\r\n"
+                + "01\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 18-19/20\r\n"
+                + "\r\n"
+                + "ij\r\n"
+                + "--" + boundary + "--\r\n";
+        assertEquals(readContent(result), expected);
+        assertEquals(readContentViaChannel(result), expected);
+        assertEquals(result.contentLength, expected.length());
+    }
+
+    @Test
+    public void testNotSatisfiable() {
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest("bytes=50-60", null), response);
+        assertEquals(result.statusCode, 416);
+        assertEquals(result.httpHeader.get("Content-Range"), "bytes */20");
+        assertNull(result.contentWriter);
+    }
+
+    @Test
+    public void testIfRangeMatches() throws Exception {
+        String lastModified = DateUtils.formatHttpDate(response.lastModified);
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest("bytes=0-2", lastModified), response);
+        assertEquals(result.statusCode, 206);
+        assertEquals(readContent(result), "012");
+    }
+
+    @Test
+    public void testIfRangeChanged() throws Exception {
+        String lastModified = DateUtils.formatHttpDate(new Date(1500000000000L));
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest("bytes=0-2", lastModified), response);
+        assertEquals(result.statusCode, 200);
+        assertEquals(readContent(result), FILE_CONTENT);
+    }
+
+    @Test
+    public void testIfRangeUnknownEntityTag() {
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest("bytes=0-2", "\"abc\""), response);
+        assertEquals(result.statusCode, 200);
+    }
+
+    @Test
+    public void testIfRangeEntityTagMatches() throws Exception {
+        response.etag = "\"abc\"";
+        HttpResponse result = RangeRequestHandler.handleRange(createRequest("bytes=0-2", "\"abc\""), response);
+        assertEquals(result.statusCode, 206);
+        assertEquals(readContent(result), "012");
+    }
+
+    private static HttpRequest createRequest(String range, String ifRange) {
+        HttpRequest httpRequest = new HttpRequest();
+        httpRequest.method = "GET";
+        if (range != null) {
+            httpRequest.httpHeader.put(RangeRequestHandler.HTTP_HEADER_RANGE, range);
+        }
+        if (ifRange != null) {
+            httpRequest.httpHeader.put(RangeRequestHandler.HTTP_HEADER_IF_RANGE, ifRange);
+        }
+        return httpRequest;
+    }
+
+    private static String readContent(HttpResponse response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.contentWriter.writeTo(out);
+        return out.toString("US-ASCII");
+    }
+
+    private static String readContentViaChannel(HttpResponse response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.contentWriter.writeTo(Channels.newChannel(out));
+        return out.toString("US-ASCII");
+    }
+}
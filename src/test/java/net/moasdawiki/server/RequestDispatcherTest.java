@@ -0,0 +1,96 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.service.handler.EditorHandler;
+import net.moasdawiki.service.handler.FileDownloadHandler;
+import net.moasdawiki.service.handler.SearchHandler;
+import net.moasdawiki.service.handler.ViewPageHandler;
+import net.moasdawiki.service.render.HtmlService;
+import net.moasdawiki.service.sync.SynchronizationService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class RequestDispatcherTest {
+
+    private RequestDispatcher requestDispatcher;
+
+    @BeforeMethod
+    public void setUp() {
+        requestDispatcher = new RequestDispatcher(mock(HtmlService.class), mock(ViewPageHandler.class),
+                mock(SearchHandler.class), mock(EditorHandler.class), mock(FileDownloadHandler.class),
+                mock(SynchronizationService.class));
+    }
+
+    @Test
+    public void testReadOnlyRequests() {
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/")));
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/view/Home")));
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/search/")));
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/img/image.png")));
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/file/doc.pdf")));
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/favicon.ico")));
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/edit/Home")));
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/sync/check-session")));
+        assertTrue(requestDispatcher.isReadOnlyRequest(createRequest("/sync/read-file")));
+    }
+
+    @Test
+    public void testModifyingRequests() {
+        HttpRequest saveRequest = createRequest("/edit/Home");
+        saveRequest.urlParameters.put("save", "");
+        assertFalse(requestDispatcher.isReadOnlyRequest(saveRequest));
+        HttpRequest deleteRequest = createRequest("/edit/Home");
+        deleteRequest.urlParameters.put("delete", "");
+        assertFalse(requestDispatcher.isReadOnlyRequest(deleteRequest));
+        assertFalse(requestDispatcher.isReadOnlyRequest(createRequest("/upload/image.png")));
+        assertFalse(requestDispatcher.isReadOnlyRequest(createRequest("/sync/create-session")));
+        assertFalse(requestDispatcher.isReadOnlyRequest(createRequest("/sync/list-modified-files")));
+        assertFalse(requestDispatcher.isReadOnlyRequest(createRequest("/sync-gui/session-permit")));
+        assertFalse(requestDispatcher.isReadOnlyRequest(createRequest("/sync-gui/session-drop")));
+        assertFalse(requestDispatcher.isReadOnlyRequest(createRequest("/unknown/path")));
+    }
+
+    @Test
+    public void testGetRouteName() {
+        assertEquals(RequestDispatcher.getRouteName("/"), "root");
+        assertEquals(RequestDispatcher.getRouteName("/view/Home"), "view");
+        assertEquals(RequestDispatcher.getRouteName("/search/"), "search");
+        assertEquals(RequestDispatcher.getRouteName("/edit/Home"), "edit");
+        assertEquals(RequestDispatcher.getRouteName("/upload/image.png"), "upload");
+        assertEquals(RequestDispatcher.getRouteName("/sync/read-file"), "sync");
+        assertEquals(RequestDispatcher.getRouteName("/sync-gui/session-drop"), "sync");
+        assertEquals(RequestDispatcher.getRouteName("/img/image.png"), "img");
+        assertEquals(RequestDispatcher.getRouteName("/file/doc.pdf"), "file");
+        assertEquals(RequestDispatcher.getRouteName("/favicon.ico"), "rootfile");
+        assertEquals(RequestDispatcher.getRouteName("/unknown/path"), "other");
+    }
+
+    private static HttpRequest createRequest(String urlPath) {
+        HttpRequest httpRequest = new HttpRequest();
+        httpRequest.urlPath = urlPath;
+        return httpRequest;
+    }
+}
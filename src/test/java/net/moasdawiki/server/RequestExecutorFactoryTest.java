@@ -0,0 +1,98 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.Logger;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class RequestExecutorFactoryTest {
+
+    private final Logger log = new Logger(null);
+
+    @Test
+    public void testFixed() {
+        ExecutorService executor = RequestExecutorFactory.createExecutor(RequestExecutorFactory.EXECUTOR_FIXED, 3, log);
+        try {
+            assertTrue(executor instanceof ThreadPoolExecutor);
+            assertEquals(((ThreadPoolExecutor) executor).getMaximumPoolSize(), 3);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFixedDefaults() {
+        ExecutorService executor = RequestExecutorFactory.createExecutor(null, 0, log);
+        try {
+            assertTrue(executor instanceof ThreadPoolExecutor);
+            assertEquals(((ThreadPoolExecutor) executor).getMaximumPoolSize(), RequestExecutorFactory.DEFAULT_SIZE);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnknownType() {
+        ExecutorService executor = RequestExecutorFactory.createExecutor("unknown", 2, log);
+        try {
+            assertTrue(executor instanceof ThreadPoolExecutor);
+            assertEquals(((ThreadPoolExecutor) executor).getMaximumPoolSize(), 2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWorkStealing() {
+        ExecutorService executor = RequestExecutorFactory.createExecutor(RequestExecutorFactory.EXECUTOR_WORKSTEALING, 4, log);
+        try {
+            assertTrue(executor instanceof ForkJoinPool);
+            assertEquals(((ForkJoinPool) executor).getParallelism(), 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtual() throws Exception {
+        ExecutorService executor = RequestExecutorFactory.createExecutor(RequestExecutorFactory.EXECUTOR_VIRTUAL, 2, log);
+        try {
+            ExecutorService virtualExecutor = RequestExecutorFactory.createVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                virtualExecutor.shutdown();
+            } else {
+                // Java < 21 --> fallback
+                assertTrue(executor instanceof ThreadPoolExecutor);
+            }
+            boolean[] executed = new boolean[1];
+            executor.submit(() -> executed[0] = true).get(5, TimeUnit.SECONDS);
+            assertTrue(executed[0]);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.CacheStatistics;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static net.moasdawiki.AssertHelper.assertContains;
+import static org.testng.Assert.assertTrue;
+
+public class ServerMetricsTest {
+
+    @Test
+    public void testExportRequests() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.recordRequest("view", 200, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.recordRequest("view", 200, TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.recordRequest("view", 404, TimeUnit.SECONDS.toNanos(20));
+        metrics.recordRequest("unknown", 500, 0);
+
+        String export = metrics.export(0, 0);
+        assertContains(export, "# TYPE moasdawiki_http_request_duration_seconds histogram\n");
+        assertContains(export, "moasdawiki_http_requests_total{route=\"view\"} 3\n");
+        assertContains(export, "moasdawiki_http_requests_total{route=\"other\"} 1\n");
+        assertContains(export, "moasdawiki_http_requests_total{route=\"search\"} 0\n");
+        // buckets are cumulative
+        assertContains(export, "moasdawiki_http_request_duration_seconds_bucket{route=\"view\",le=\"0.005\"} 1\n");
+        assertContains(export, "moasdawiki_http_request_duration_seconds_bucket{route=\"view\",le=\"0.025\"} 1\n");
+        assertContains(export, "moasdawiki_http_request_duration_seconds_bucket{route=\"view\",le=\"0.05\"} 2\n");
+        assertContains(export, "moasdawiki_http_request_duration_seconds_bucket{route=\"view\",le=\"10.0\"} 2\n");
+        assertContains(export, "moasdawiki_http_request_duration_seconds_bucket{route=\"view\",le=\"+Inf\"} 3\n");
+        assertContains(export, "moasdawiki_http_request_duration_seconds_sum{route=\"view\"} 20.033\n");
+        assertContains(export, "moasdawiki_http_request_duration_seconds_count{route=\"view\"} 3\n");
+        assertContains(export, "moasdawiki_http_responses_total{code=\"2xx\"} 2\n");
+        assertContains(export, "moasdawiki_http_responses_total{code=\"4xx\"} 1\n");
+        assertContains(export, "moasdawiki_http_responses_total{code=\"5xx\"} 1\n");
+    }
+
+    @Test
+    public void testExportGauges() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.workerStarted();
+        metrics.workerStarted();
+        metrics.workerFinished();
+        metrics.recordBytesSent(100);
+        metrics.recordBytesSent(50);
+
+        String export = metrics.export(4, 7);
+        assertContains(export, "moasdawiki_http_requests_in_flight 4\n");
+        assertContains(export, "moasdawiki_http_requests_queued 3\n");
+        assertContains(export, "moasdawiki_http_requests_rejected_total 7\n");
+        assertContains(export, "moasdawiki_http_sent_bytes_total 150\n");
+    }
+
+    @Test
+    public void testExportCaches() {
+        ServerMetrics metrics = new ServerMetrics();
+        CacheStatistics cacheStatistics = new CacheStatistics();
+        cacheStatistics.recordHit();
+        cacheStatistics.recordHit();
+        cacheStatistics.recordMiss();
+        metrics.addCacheStatistics("repository", cacheStatistics);
+
+        String export = metrics.export(0, 0);
+        assertContains(export, "moasdawiki_cache_hits_total{cache=\"repository\"} 2\n");
+        assertContains(export, "moasdawiki_cache_misses_total{cache=\"repository\"} 1\n");
+    }
+
+    @Test
+    public void testExportFormat() {
+        String export = new ServerMetrics().export(0, 0);
+        for (String line : export.split("\n")) {
+            assertTrue(line.startsWith("# HELP moasdawiki_") || line.startsWith("# TYPE moasdawiki_")
+                    || line.matches("moasdawiki_[a-z_]+(\\{[^}]*})? [0-9.E+-]+"), line);
+        }
+    }
+}
@@ -0,0 +1,635 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.server;
+
+import net.moasdawiki.base.Logger;
+import net.moasdawiki.base.Settings;
+import net.moasdawiki.service.HttpResponse;
+import net.moasdawiki.service.render.HtmlService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import static net.moasdawiki.AssertHelper.assertContains;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class WebserverTest {
+
+    private static final int STREAM_REPEAT = 5000;
+    private static final int SLOW_REQUEST_DURATION = 200;
+
+    private Webserver webserver;
+    private Path downloadFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        startWebserver(createSettings());
+    }
+
+    private Settings createSettings() {
+        Settings settings = mock(Settings.class);
+        when(settings.getServerPort()).thenReturn(0); // any free port
+        when(settings.getServerExecutor()).thenReturn(RequestExecutorFactory.EXECUTOR_FIXED);
+        when(settings.getServerExecutorSize()).thenReturn(5);
+        when(settings.getServerRequestMaxBodySize()).thenReturn(1000);
+        when(settings.getServerCacheImgMaxAge()).thenReturn(3600);
+        when(settings.getServerCompressionCacheSize()).thenReturn(100000);
+        when(settings.getServerQueueSize()).thenReturn(50);
+        when(settings.isServerTimingHeader()).thenReturn(true);
+        return settings;
+    }
+
+    private void startWebserver(Settings settings) throws Exception {
+        RequestDispatcher requestDispatcher = mock(RequestDispatcher.class);
+        when(requestDispatcher.isReadOnlyRequest(any())).thenReturn(true);
+        when(requestDispatcher.handleRequest(any())).thenAnswer(invocation -> {
+            HttpRequest httpRequest = invocation.getArgument(0);
+            HttpResponse httpResponse = new HttpResponse();
+            httpResponse.contentType = HttpResponse.CONTENT_TYPE_TEXT;
+            byte[] content = ("path=" + httpRequest.urlPath).getBytes(StandardCharsets.UTF_8);
+            if (httpRequest.urlPath.startsWith("/stream-unknown")) {
+                httpResponse.setContent(out -> {
+                    for (int i = 0; i < STREAM_REPEAT; i++) {
+                        out.write(content);
+                    }
+                }, -1);
+            } else if (httpRequest.urlPath.equals("/download")) {
+                httpResponse.setContent(FileChannel.open(downloadFile, StandardOpenOption.READ));
+            } else if (httpRequest.urlPath.startsWith("/slow")) {
+                Thread.sleep(SLOW_REQUEST_DURATION);
+                httpResponse.content = content;
+            } else if (httpRequest.urlPath.startsWith("/stream")) {
+                httpResponse.setContent(out -> out.write(content), content.length);
+            } else {
+                httpResponse.content = content;
+            }
+            return httpResponse;
+        });
+        HtmlService htmlService = mock(HtmlService.class);
+        when(htmlService.generateErrorPage(anyInt(), any(Throwable.class), anyString())).thenAnswer(invocation -> {
+            HttpResponse httpResponse = new HttpResponse();
+            httpResponse.statusCode = invocation.getArgument(0);
+            httpResponse.contentType = HttpResponse.CONTENT_TYPE_TEXT;
+            httpResponse.setContent("error=" + invocation.getArgument(2));
+            return httpResponse;
+        });
+        webserver = new Webserver(new Logger(null), settings, htmlService, requestDispatcher);
+        Thread serverThread = new Thread(webserver::run);
+        serverThread.setDaemon(true);
+        serverThread.start();
+        while (webserver.getLocalPort() <= 0) {
+            //noinspection BusyWait
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        webserver.stop();
+        if (downloadFile != null) {
+            Files.delete(downloadFile);
+            downloadFile = null;
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testKeepAlive() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response1 = readResponse(in);
+            assertContains(response1, "Connection: keep-alive");
+            assertContains(response1, "path=/first");
+
+            out.write("GET /second HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response2 = readResponse(in);
+            assertContains(response2, "Connection: close");
+            assertContains(response2, "path=/second");
+
+            // server closes connection
+            assertEquals(in.read(), -1);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testPipelining() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "POST /second HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody"
+                    + "GET /third HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertContains(readResponse(in), "path=/first");
+            assertContains(readResponse(in), "path=/second");
+            assertContains(readResponse(in), "path=/third");
+            assertEquals(in.read(), -1);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testHttp10ClosesConnection() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /first HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertContains(readResponse(in), "Connection: close");
+            assertEquals(in.read(), -1);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testRequestInFragments() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            String request = "POST /fragments HTTP/1.1\r\nHost: localhost\r\nContent-Length: 10\r\nConnection: close\r\n\r\n0123456789";
+            byte[] data = request.getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < data.length; i += 7) {
+                out.write(data, i, Math.min(7, data.length - i));
+                out.flush();
+                Thread.sleep(5);
+            }
+            assertContains(readResponse(in), "path=/fragments");
+            assertEquals(in.read(), -1);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testStreamingWithLength() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /stream HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = readResponse(in);
+            assertContains(response, "Content-Length: 12");
+            assertContains(response, "path=/stream");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testFileDownload() throws Exception {
+        byte[] fileContent = new byte[3 * 1024 * 1024 + 17];
+        new Random(1).nextBytes(fileContent);
+        downloadFile = Files.createTempFile("webservertest", ".bin");
+        Files.write(downloadFile, fileContent);
+
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(("GET /download HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /after HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String header = readHeader(in);
+            assertContains(header, "Content-Length: " + fileContent.length);
+            assertEquals(readBytes(in, fileContent.length), fileContent);
+            assertContains(readResponse(in), "path=/after");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testFileDownloadRange() throws Exception {
+        downloadFile = Files.createTempFile("webservertest", ".txt");
+        Files.write(downloadFile, "0123456789".getBytes(StandardCharsets.US_ASCII));
+
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /download HTTP/1.1\r\nHost: localhost\r\nRange: bytes=-4\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = readResponse(in);
+            assertContains(response, "HTTP/1.1 206 Partial Content");
+            assertContains(response, "Content-Range: bytes 6-9/10");
+            assertContains(response, "Accept-Ranges: bytes");
+            assertTrue(response.endsWith("\r\n\r\n6789"));
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testConditionalRequest() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /view/Page HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response1 = readResponse(in);
+            assertContains(response1, "Cache-Control: no-cache");
+            assertFalse(response1.contains("Pragma:"));
+            int etagStart = response1.indexOf("ETag: ") + 6;
+            String etag = response1.substring(etagStart, response1.indexOf("\r\n", etagStart));
+
+            out.write(("GET /view/Page HTTP/1.1\r\nHost: localhost\r\nIf-None-Match: " + etag + "\r\n\r\n"
+                    + "GET /after HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String header = readHeader(in);
+            assertContains(header, "HTTP/1.1 304 Not Modified");
+            assertContains(header, "ETag: " + etag);
+            assertFalse(header.contains("Content-Length"));
+
+            // no body after 304
+            String response2 = readResponse(in);
+            assertContains(response2, "path=/after");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testStreamingChunked() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write(("GET /stream-unknown HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /after HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String header = readHeader(in);
+            assertContains(header, "Transfer-Encoding: chunked");
+            assertContains(header, "Connection: keep-alive");
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            while (true) {
+                String sizeLine = readLine(in);
+                int size = Integer.parseInt(sizeLine, 16);
+                body.write(readBytes(in, size));
+                assertEquals(readLine(in), "");
+                if (size == 0) {
+                    break;
+                }
+            }
+            assertEquals(body.size(), STREAM_REPEAT * "path=/stream-unknown".length());
+            assertTrue(body.toString("UTF-8").startsWith("path=/stream-unknownpath=/stream-unknown"));
+
+            // connection is still usable
+            assertContains(readResponse(in), "path=/after");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testStreamingUnknownLengthHttp10() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /stream-unknown HTTP/1.0\r\nConnection: keep-alive\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String header = readHeader(in);
+            assertContains(header, "Connection: close");
+            assertFalse(header.contains("Transfer-Encoding"));
+            assertFalse(header.contains("Content-Length"));
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) >= 0) {
+                body.write(b);
+            }
+            assertEquals(body.size(), STREAM_REPEAT * "path=/stream-unknown".length());
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testCompressedResponse() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /stream-unknown HTTP/1.0\r\nAccept-Encoding: gzip\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String header = readHeader(in);
+            assertContains(header, "Content-Encoding: gzip");
+            assertContains(header, "Vary: Accept-Encoding");
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream gzipIn = new GZIPInputStream(in)) {
+                int b;
+                while ((b = gzipIn.read()) >= 0) {
+                    body.write(b);
+                }
+            }
+            assertEquals(body.size(), STREAM_REPEAT * "path=/stream-unknown".length());
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testOverload() throws Exception {
+        webserver.stop();
+        Settings settings = createSettings();
+        when(settings.getServerExecutorSize()).thenReturn(2);
+        when(settings.getServerQueueSize()).thenReturn(4);
+        startWebserver(settings);
+
+        // without admission control the last request would wait
+        // 100 * 200 ms / 2 threads = 10 seconds
+        int clientCount = 100;
+        ExecutorService clients = Executors.newFixedThreadPool(clientCount);
+        try {
+            CountDownLatch startSignal = new CountDownLatch(1);
+            List<Future<String>> responses = new ArrayList<>();
+            List<Long> durations = Collections.synchronizedList(new ArrayList<>());
+            for (int i = 0; i < clientCount; i++) {
+                int requestNo = i;
+                responses.add(clients.submit(() -> {
+                    startSignal.await();
+                    long start = System.currentTimeMillis();
+                    try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+                        OutputStream out = socket.getOutputStream();
+                        out.write(("GET /slow" + requestNo + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                        return readResponse(socket.getInputStream());
+                    } finally {
+                        durations.add(System.currentTimeMillis() - start);
+                    }
+                }));
+            }
+            startSignal.countDown();
+
+            int accepted = 0;
+            int rejected = 0;
+            for (Future<String> response : responses) {
+                String responseStr = response.get();
+                if (responseStr.startsWith("HTTP/1.1 200")) {
+                    accepted++;
+                } else {
+                    assertContains(responseStr, "HTTP/1.1 503 Service Unavailable");
+                    assertContains(responseStr, "Retry-After: 1");
+                    rejected++;
+                }
+            }
+            assertTrue(accepted >= 6, "accepted: " + accepted);
+            assertTrue(rejected > 0, "rejected: " + rejected);
+
+            List<Long> sortedDurations = new ArrayList<>(durations);
+            Collections.sort(sortedDurations);
+            long p99 = sortedDurations.get(clientCount * 99 / 100 - 1);
+            assertTrue(p99 < 2000, "p99 latency: " + p99 + " ms");
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testClientLimit() throws Exception {
+        webserver.stop();
+        Settings settings = createSettings();
+        when(settings.getServerClientMaxRequests()).thenReturn(1);
+        startWebserver(settings);
+
+        try (Socket socket1 = new Socket("localhost", webserver.getLocalPort());
+             Socket socket2 = new Socket("localhost", webserver.getLocalPort())) {
+            socket1.getOutputStream().write("GET /slow1 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            socket1.getOutputStream().flush();
+            Thread.sleep(50);
+            socket2.getOutputStream().write("GET /slow2 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            socket2.getOutputStream().flush();
+
+            assertContains(readResponse(socket2.getInputStream()), "HTTP/1.1 503 Service Unavailable");
+            assertContains(readResponse(socket1.getInputStream()), "path=/slow1");
+        }
+
+        // slot is released after the response
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            socket.getOutputStream().write("GET /after HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            assertContains(readResponse(socket.getInputStream()), "path=/after");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testMetrics() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /view/Page HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response1 = readResponse(in);
+
+            out.write("GET /metrics HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response2 = readResponse(in);
+            assertContains(response2, "Content-Type: text/plain; version=0.0.4; charset=utf-8");
+            assertContains(response2, "moasdawiki_http_requests_total{route=\"view\"} 1\n");
+            assertContains(response2, "moasdawiki_http_request_duration_seconds_count{route=\"view\"} 1\n");
+            assertContains(response2, "moasdawiki_http_sent_bytes_total " + response1.length() + "\n");
+            // the metrics request itself is still in progress
+            assertContains(response2, "moasdawiki_http_requests_in_flight 1\n");
+            assertContains(response2, "moasdawiki_http_requests_queued 0\n");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testServerTiming() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /view/Page HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = readResponse(socket.getInputStream());
+            assertContains(response, "Server-Timing: parse;dur=");
+            assertContains(response, ", lock;dur=");
+            assertContains(response, ", total;dur=");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testInvalidRequest() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("INVALID\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = readResponse(in);
+            assertContains(response, "HTTP/1.1 400 Bad Request");
+            assertContains(response, "Connection: close");
+            assertContains(response, "error=wiki.server.request.invalid");
+            assertEquals(in.read(), -1);
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testHeaderTooLarge() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            // exactly the header limit, without terminating empty line
+            StringBuilder request = new StringBuilder("GET /large HTTP/1.1\r\nX-Padding: ");
+            while (request.length() < 16384) {
+                request.append('x');
+            }
+            out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = readResponse(in);
+            assertContains(response, "HTTP/1.1 400 Bad Request");
+            assertContains(response, "error=wiki.server.request.invalid");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testBodyTooLarge() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            // response is sent before the body is transferred
+            out.write("POST /upload HTTP/1.1\r\nContent-Length: 1000000\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = readResponse(in);
+            assertContains(response, "HTTP/1.1 413 Request Entity Too Large");
+            assertContains(response, "error=wiki.server.request.toolarge");
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testBodyWithinLimit() throws Exception {
+        try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            StringBuilder body = new StringBuilder();
+            while (body.length() < 1000) {
+                body.append('x');
+            }
+            out.write(("POST /upload HTTP/1.1\r\nContent-Length: 1000\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertContains(readResponse(in), "path=/upload");
+        }
+    }
+
+    @Test(timeOut = 30000)
+    public void testManyIdleConnections() throws Exception {
+        List<Socket> idleSockets = new ArrayList<>();
+        try {
+            // idle and slow clients must not block the worker threads
+            for (int i = 0; i < 300; i++) {
+                Socket idleSocket = new Socket("localhost", webserver.getLocalPort());
+                idleSockets.add(idleSocket);
+                if (i % 2 == 0) {
+                    idleSocket.getOutputStream().write("GET /idle HTTP/1.1\r\nHost: local".getBytes(StandardCharsets.US_ASCII));
+                    idleSocket.getOutputStream().flush();
+                }
+            }
+
+            for (int i = 0; i < 10; i++) {
+                long start = System.currentTimeMillis();
+                try (Socket socket = new Socket("localhost", webserver.getLocalPort())) {
+                    OutputStream out = socket.getOutputStream();
+                    out.write(("GET /real" + i + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    assertContains(readResponse(socket.getInputStream()), "path=/real" + i);
+                }
+                long duration = System.currentTimeMillis() - start;
+                assertTrue(duration < 2000, "Request took " + duration + " ms");
+            }
+        } finally {
+            for (Socket idleSocket : idleSockets) {
+                idleSocket.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a single response with Content-Length from the stream.
+     */
+    private static String readResponse(InputStream in) throws IOException {
+        String headerStr = readHeader(in);
+        int pos = headerStr.indexOf("Content-Length: ") + "Content-Length: ".length();
+        int contentLength = Integer.parseInt(headerStr.substring(pos, headerStr.indexOf("\r\n", pos)));
+        return headerStr + new String(readBytes(in, contentLength), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the response header including the terminating empty line.
+     */
+    private static String readHeader(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder();
+        String line;
+        do {
+            line = readLine(in);
+            header.append(line).append("\r\n");
+        } while (!line.isEmpty());
+        return header.toString();
+    }
+
+    /**
+     * Reads a line terminated by CRLF, without the line break.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString("US-ASCII");
+    }
+
+    private static byte[] readBytes(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int count = 0;
+        while (count < length) {
+            int read = in.read(data, count, length - count);
+            if (read < 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            count += read;
+        }
+        return data;
+    }
+}
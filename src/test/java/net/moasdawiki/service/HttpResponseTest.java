@@ -0,0 +1,96 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.testng.Assert.*;
+
+public class HttpResponseTest {
+
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        file = Files.createTempFile("httpresponsetest", ".txt");
+        Files.write(file, "0123456789".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        Files.delete(file);
+    }
+
+    @Test
+    public void testSetContentString() {
+        HttpResponse response = new HttpResponse();
+        response.setContent(out -> out.write('x'), 1);
+        response.setContent("text");
+        assertNull(response.contentWriter);
+        assertEquals(response.content, "text".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSetContentFileChannelStream() throws Exception {
+        HttpResponse response = new HttpResponse();
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+        fileChannel.position(3);
+        response.setContent(fileChannel);
+        assertEquals(response.contentLength, 7);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.contentWriter.writeTo(out);
+        response.contentWriter.close();
+        assertEquals(out.toString("US-ASCII"), "3456789");
+        assertFalse(fileChannel.isOpen());
+    }
+
+    @Test
+    public void testSetContentFileChannelTransfer() throws Exception {
+        HttpResponse response = new HttpResponse();
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            response.setContent(fileChannel);
+            assertEquals(response.contentLength, 10);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            response.contentWriter.writeTo(Channels.newChannel(out));
+            assertEquals(out.toString("US-ASCII"), "0123456789");
+        }
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testSetContentFileChannelTruncated() throws Exception {
+        HttpResponse response = new HttpResponse();
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            response.setContent(fileChannel);
+            fileChannel.truncate(5);
+            response.contentWriter.writeTo(Channels.newChannel(new ByteArrayOutputStream()));
+        }
+    }
+}
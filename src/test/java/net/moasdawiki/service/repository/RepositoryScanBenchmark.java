@@ -0,0 +1,134 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.repository;
+
+import net.moasdawiki.base.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Compares the parallel repository scan with the former sequential scan
+ * based on {@link File#listFiles()} and {@link File#lastModified()}.
+ *
+ * Not run as part of the test suite. Usage:
+ * <pre>
+ * java ... net.moasdawiki.service.repository.RepositoryScanBenchmark [repository folder] [rounds]
+ * </pre>
+ * Without a repository folder a synthetic repository with 20,000 files is
+ * created in a temporary folder. On a local SSD the difference is small,
+ * the parallel scan shows its advantage on network drives.
+ */
+public class RepositoryScanBenchmark {
+
+    private static final int SYNTHETIC_FOLDERS = 200;
+    private static final int SYNTHETIC_FILES_PER_FOLDER = 100;
+
+    public static void main(String[] args) throws IOException {
+        File repositoryBase;
+        boolean synthetic = args.length < 1;
+        if (synthetic) {
+            repositoryBase = createSyntheticRepository();
+        } else {
+            repositoryBase = new File(args[0]);
+        }
+        int rounds = args.length >= 2 ? Integer.parseInt(args[1]) : 5;
+
+        try {
+            RepositoryService repositoryService = new RepositoryService(new Logger(null), repositoryBase, null, false);
+            List<File> rootFolders = Collections.singletonList(repositoryBase);
+
+            // warm-up
+            Map<String, AnyFile> expected = scanWithFileApi(repositoryService, rootFolders);
+            Map<String, AnyFile> actual = repositoryService.scanFilesystem();
+            if (!expected.keySet().equals(actual.keySet())) {
+                throw new IllegalStateException("Scan results differ");
+            }
+            System.out.println("Repository: " + repositoryBase.getAbsolutePath() + ", " + expected.size() + " files");
+
+            long sequentialTotal = 0;
+            long parallelTotal = 0;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                scanWithFileApi(repositoryService, rootFolders);
+                sequentialTotal += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                repositoryService.scanFilesystem();
+                parallelTotal += System.nanoTime() - start;
+            }
+            System.out.println("Sequential File API scan: " + sequentialTotal / rounds / 1000000 + " ms");
+            System.out.println("Parallel NIO scan:        " + parallelTotal / rounds / 1000000 + " ms");
+        } finally {
+            if (synthetic) {
+                TempDirHelper.deleteRecursively(repositoryBase);
+            }
+        }
+    }
+
+    /**
+     * The former scan: one thread, one extra file system access per file to
+     * get the modification timestamp.
+     */
+    static Map<String, AnyFile> scanWithFileApi(RepositoryService repositoryService, List<File> rootFolders) {
+        List<File> files = new ArrayList<>();
+        for (File rootFolder : rootFolders) {
+            listFiles(rootFolder, files);
+        }
+        Map<String, AnyFile> result = new HashMap<>();
+        for (File file : files) {
+            String filePath = repositoryService.filesystem2RepositoryPath(file.getAbsolutePath());
+            if (filePath != null) {
+                result.put(filePath, new AnyFile(filePath, new Date(file.lastModified())));
+            }
+        }
+        return result;
+    }
+
+    private static void listFiles(File folder, List<File> fileList) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listFiles(file, fileList);
+            } else if (!RepositoryService.isTemporaryFile(file.getName())) {
+                fileList.add(file);
+            }
+        }
+    }
+
+    private static File createSyntheticRepository() throws IOException {
+        File repositoryBase = Files.createTempDirectory("moasdawiki-benchmark").toFile();
+        for (int i = 0; i < SYNTHETIC_FOLDERS; i++) {
+            File folder = new File(repositoryBase, "folder" + (i % 20) + "/sub" + i);
+            if (!folder.mkdirs()) {
+                throw new IOException("Cannot create folder " + folder);
+            }
+            for (int k = 0; k < SYNTHETIC_FILES_PER_FOLDER; k++) {
+                Files.write(new File(folder, "page" + k + ".txt").toPath(), new byte[0]);
+            }
+        }
+        return repositoryBase;
+    }
+}
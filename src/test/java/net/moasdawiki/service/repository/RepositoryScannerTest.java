@@ -0,0 +1,115 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.repository;
+
+import net.moasdawiki.base.Logger;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+@SuppressWarnings("ResultOfMethodCallIgnored")
+public class RepositoryScannerTest {
+
+    private File repositoryBase;
+    private File shadowRepositoryBase;
+    private RepositoryService repositoryService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        repositoryBase = Files.createTempDirectory("moasdawiki-scan").toFile();
+        shadowRepositoryBase = Files.createTempDirectory("moasdawiki-scan-shadow").toFile();
+        repositoryService = new RepositoryService(new Logger(null), repositoryBase, shadowRepositoryBase, false);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        TempDirHelper.deleteRecursively(repositoryBase);
+        TempDirHelper.deleteRecursively(shadowRepositoryBase);
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        createFile(repositoryBase, "a.txt", 1000000L);
+        createFile(repositoryBase, "folder1/b.txt", 2000000L);
+        createFile(repositoryBase, "folder1/folder2/c.txt", 3000000L);
+        createFile(repositoryBase, "folder1/.c.txt.123.tmp", 4000000L);
+        new File(repositoryBase, "empty-folder").mkdir();
+
+        RepositoryScanner scanner = new RepositoryScanner(new Logger(null), repositoryService);
+        Map<String, AnyFile> result = scanner.scan(Collections.singletonList(repositoryBase), 4);
+        assertEquals(result.size(), 3);
+        assertEquals(result.get("/a.txt").getContentTimestamp().getTime(), 1000000L);
+        assertEquals(result.get("/folder1/b.txt").getContentTimestamp().getTime(), 2000000L);
+        assertEquals(result.get("/folder1/folder2/c.txt").getContentTimestamp().getTime(), 3000000L);
+    }
+
+    @Test
+    public void testScanWithShadowRepository() throws Exception {
+        createFile(shadowRepositoryBase, "a.txt", 1000000L);
+        createFile(shadowRepositoryBase, "only-in-shadow.txt", 2000000L);
+        createFile(repositoryBase, "a.txt", 3000000L);
+
+        RepositoryScanner scanner = new RepositoryScanner(new Logger(null), repositoryService);
+        Map<String, AnyFile> result = scanner.scan(Arrays.asList(shadowRepositoryBase, repositoryBase), 4);
+        assertEquals(result.size(), 2);
+        // user repository has priority
+        assertEquals(result.get("/a.txt").getContentTimestamp().getTime(), 3000000L);
+        assertEquals(result.get("/only-in-shadow.txt").getContentTimestamp().getTime(), 2000000L);
+    }
+
+    @Test
+    public void testScanMissingFolder() {
+        RepositoryScanner scanner = new RepositoryScanner(new Logger(null), repositoryService);
+        Map<String, AnyFile> result = scanner.scan(Collections.singletonList(new File(repositoryBase, "not-existing")), 4);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testScanFilesystemMatchesFileApi() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            for (int k = 0; k < 10; k++) {
+                createFile(repositoryBase, "folder" + i + "/sub" + (k % 3) + "/file" + k + ".txt", 1000L * (i * 10 + k));
+            }
+        }
+        createFile(shadowRepositoryBase, "shadow.txt", 5000L);
+        Map<String, AnyFile> expected = RepositoryScanBenchmark.scanWithFileApi(repositoryService,
+                Arrays.asList(shadowRepositoryBase, repositoryBase));
+        Map<String, AnyFile> result = repositoryService.scanFilesystem();
+        assertEquals(result.keySet(), expected.keySet());
+        for (String filePath : expected.keySet()) {
+            assertEquals(result.get(filePath).getContentTimestamp(), expected.get(filePath).getContentTimestamp());
+        }
+    }
+
+    private static void createFile(File folder, String relativePath, long lastModified) throws Exception {
+        File file = new File(folder, relativePath);
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+        file.setLastModified(lastModified);
+    }
+}
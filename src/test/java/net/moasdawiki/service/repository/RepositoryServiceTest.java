@@ -22,22 +22,29 @@ package net.moasdawiki.service.repository;
 import net.moasdawiki.FileHelper;
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.ServiceException;
+import net.moasdawiki.util.DateUtils;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.Calendar;
-import java.util.List;
-import java.util.Set;
-import java.util.TimeZone;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static net.moasdawiki.AssertHelper.assertContains;
 import static net.moasdawiki.AssertHelper.assertContainsNot;
 import static net.moasdawiki.service.repository.RepositoryService.FILELIST_CACHE_FILEPATH;
+import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
 @SuppressWarnings({"ResultOfMethodCallIgnored", "ConstantConditions"})
@@ -125,6 +132,52 @@ public class RepositoryServiceTest {
                 files.get(0).getFilePath().equals("/filelist.cache"));
     }
 
+    @Test
+    public void testGetLastModifiedFilesAll() {
+        List<AnyFile> files = frs.getLastModifiedFiles(-1, anyFile -> anyFile.getFilePath().startsWith("/file-"));
+        List<String> filePaths = files.stream().map(AnyFile::getFilePath).collect(Collectors.toList());
+        assertEquals(filePaths, Arrays.asList("/file-2020-02-01.txt", "/file-2020-01-20.txt",
+                "/file-2020-01-01.txt", "/file-2019-11-01.txt"));
+    }
+
+    @Test
+    public void testModificationIndexUpdates() throws Exception {
+        File repositoryBase = Files.createTempDirectory("moasdawiki-index").toFile();
+        try {
+            RepositoryService rs = new RepositoryService(new Logger(null), repositoryBase, null, true);
+            Date date1 = DateUtils.parseUtcDate("2020-01-01T00:00:00.000Z");
+            Date date2 = DateUtils.parseUtcDate("2020-02-01T00:00:00.000Z");
+            Date date3 = DateUtils.parseUtcDate("2020-03-01T00:00:00.000Z");
+            rs.writeBinaryFile(new AnyFile("/a.txt"), new byte[0], date1);
+            rs.writeBinaryFile(new AnyFile("/b.txt"), new byte[0], date2);
+            rs.writeBinaryFile(new AnyFile("/c.txt"), new byte[0], date2);
+            Predicate<AnyFile> txtFilter = anyFile -> anyFile.getFilePath().endsWith(".txt");
+
+            // same timestamp is ordered by path
+            List<AnyFile> files = rs.getLastModifiedFiles(-1, txtFilter);
+            assertEquals(files.stream().map(AnyFile::getFilePath).collect(Collectors.toList()),
+                    Arrays.asList("/c.txt", "/b.txt", "/a.txt"));
+            assertEquals(rs.getModifiedAfter(date1).stream().filter(txtFilter).collect(Collectors.toSet()), new HashSet<>(Arrays.asList(new AnyFile("/b.txt"), new AnyFile("/c.txt"))));
+            assertTrue(rs.getModifiedAfter(date2).stream().noneMatch(txtFilter));
+
+            // overwrite moves the file, delete removes it
+            rs.writeBinaryFile(new AnyFile("/a.txt"), new byte[0], date3);
+            rs.deleteFile(new AnyFile("/c.txt"));
+            files = rs.getLastModifiedFiles(2, txtFilter);
+            assertEquals(files.stream().map(AnyFile::getFilePath).collect(Collectors.toList()),
+                    Arrays.asList("/a.txt", "/b.txt"));
+            assertEquals(files.get(0).getContentTimestamp(), date3);
+            assertEquals(rs.getModifiedAfter(date2).stream().filter(txtFilter).collect(Collectors.toSet()),
+                    Collections.singleton(new AnyFile("/a.txt")));
+
+            // index is rebuilt from the cache file
+            RepositoryService rs2 = new RepositoryService(new Logger(null), repositoryBase, null, false);
+            assertEquals(rs2.getLastModifiedFiles(-1, txtFilter), rs.getLastModifiedFiles(-1, txtFilter));
+        } finally {
+            TempDirHelper.deleteRecursively(repositoryBase);
+        }
+    }
+
     @Test
     public void testDeleteFile() throws Exception {
         File file = new File("src/test/resources/repository-with-cache/tmp-file.txt");
@@ -173,6 +226,8 @@ public class RepositoryServiceTest {
     public void testReadBinaryFileNotInCache() throws Exception {
         // Before readBinaryFile()
         assertNull(frs.getFile("/new-file.bin"));
+        long hits = frs.getCacheStatistics().getHits();
+        long misses = frs.getCacheStatistics().getMisses();
 
         // Create and read new file
         new FileWriter("src/test/resources/repository-with-cache/new-file.bin").append("testcontent").close();
@@ -181,6 +236,12 @@ public class RepositoryServiceTest {
 
         // After readBinaryFile()
         assertNotNull(frs.getFile("/new-file.bin"));
+        assertEquals(frs.getCacheStatistics().getHits(), hits);
+        assertEquals(frs.getCacheStatistics().getMisses(), misses + 1);
+
+        // Second access hits the cache
+        frs.readBinaryFile(new AnyFile("/new-file.bin"));
+        assertEquals(frs.getCacheStatistics().getHits(), hits + 1);
 
         // Restore repository
         frs.deleteFile(new AnyFile("/new-file.bin"));
@@ -191,6 +252,20 @@ public class RepositoryServiceTest {
         frs.readBinaryFile(new AnyFile("/not-existing.txt"));
     }
 
+    @Test
+    public void testOpenBinaryFile() throws Exception {
+        try (FileChannel fileChannel = frs.openBinaryFile(new AnyFile("/file-2020-01-01.txt"))) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) fileChannel.size());
+            assertEquals(fileChannel.read(buffer), buffer.capacity());
+            assertEquals(buffer.array(), "content in repository-with-cache".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(expectedExceptions = ServiceException.class)
+    public void testOpenBinaryFileNotExisting() throws Exception {
+        frs.openBinaryFile(new AnyFile("/not-existing.txt"));
+    }
+
     @Test
     public void testWriteBinaryFile() throws Exception {
         // Write file
@@ -207,6 +282,287 @@ public class RepositoryServiceTest {
         frs.deleteFile(anyFile);
     }
 
+    @Test
+    public void testAppendTextFile() throws Exception {
+        AnyFile anyFile = frs.appendTextFile(new AnyFile("/tmp-file.txt"), "line1");
+        frs.appendTextFile(anyFile, "\nline2");
+
+        // Check written content
+        String contentRead = FileHelper.readTextFile("src/test/resources/repository-with-cache/tmp-file.txt");
+        assertEquals(contentRead, "line1\nline2");
+
+        // Restore repository
+        frs.deleteFile(anyFile);
+    }
+
+    @Test
+    public void testListener() throws Exception {
+        RepositoryListener listener = mock(RepositoryListener.class);
+        frs.addListener(listener);
+
+        // write file
+        AnyFile anyFile = frs.writeTextFile(new AnyFile("/tmp-file.txt"), "content");
+        verify(listener, times(1)).fileModified(anyFile);
+
+        // delete file
+        frs.deleteFile(anyFile);
+        verify(listener, times(1)).fileDeleted(anyFile);
+
+        // detect new file
+        File file = new File(CHACHED_REPOSITORY_BASE_PATH + "/tmp-file.txt");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("content");
+        }
+        frs.readTextFile(new AnyFile("/tmp-file.txt"));
+        verify(listener, times(2)).fileModified(new AnyFile("/tmp-file.txt"));
+
+        // no more events after removal
+        frs.removeListener(listener);
+        frs.deleteFile(anyFile);
+        verify(listener, times(1)).fileDeleted(any());
+    }
+
+    @Test
+    public void testParseCacheContentWithJournal() throws Exception {
+        String cacheContent = "/a.txt\t2020-01-01T00:00:00.000Z\n"
+                + "/b.txt\t2020-01-01T00:00:00.000Z\n"
+                + "/a.txt\t2020-02-01T00:00:00.000Z\n"
+                + "-/b.txt\n"
+                + "/c.txt\t2020-03-01T00:00:00.000Z\n"
+                + "/d.txt\t2020-03-0"; // incomplete row after crash
+        Map<String, AnyFile> fileMap = frs.parseCacheContent(cacheContent);
+        assertEquals(fileMap.size(), 2);
+        assertEquals(fileMap.get("/a.txt").getContentTimestamp(), DateUtils.parseUtcDate("2020-02-01T00:00:00.000Z"));
+        assertNull(fileMap.get("/b.txt"));
+        assertNotNull(fileMap.get("/c.txt"));
+        assertNull(fileMap.get("/d.txt"));
+    }
+
+    @Test(expectedExceptions = ServiceException.class)
+    public void testParseCacheContentInvalidRow() throws Exception {
+        frs.parseCacheContent("/a.txt\n/b.txt\t2020-01-01T00:00:00.000Z\n");
+    }
+
+    @Test
+    public void testCacheJournal() throws Exception {
+        File repositoryBase = Files.createTempDirectory("moasdawiki-journal").toFile();
+        try {
+            RepositoryService rs = new RepositoryService(new Logger(null), repositoryBase, null, true);
+            String snapshot = rs.readTextFile(new AnyFile(FILELIST_CACHE_FILEPATH));
+
+            // changes are appended
+            AnyFile anyFile = rs.writeTextFile(new AnyFile("/a.txt"), "content");
+            rs.deleteFile(anyFile);
+            String cacheContent = rs.readTextFile(new AnyFile(FILELIST_CACHE_FILEPATH));
+            assertTrue(cacheContent.startsWith(snapshot));
+            assertEquals(cacheContent.substring(snapshot.length()), "/a.txt\t"
+                    + DateUtils.formatUtcDate(anyFile.getContentTimestamp()) + "\n-/a.txt\n");
+
+            // journal is replayed on startup
+            rs.writeTextFile(new AnyFile("/b.txt"), "content");
+            RepositoryService rs2 = new RepositoryService(new Logger(null), repositoryBase, null, false);
+            assertNull(rs2.getFile("/a.txt"));
+            assertNotNull(rs2.getFile("/b.txt"));
+
+            // incomplete row from a crash is removed by a new snapshot
+            try (FileWriter writer = new FileWriter(new File(repositoryBase, FILELIST_CACHE_FILEPATH), true)) {
+                writer.write("/c.txt\t2020-");
+            }
+            RepositoryService rs3 = new RepositoryService(new Logger(null), repositoryBase, null, false);
+            assertNull(rs3.getFile("/c.txt"));
+            assertTrue(rs3.readTextFile(new AnyFile(FILELIST_CACHE_FILEPATH)).endsWith("\n"));
+            assertEquals(rs3.getFiles(), rs.getFiles());
+        } finally {
+            TempDirHelper.deleteRecursively(repositoryBase);
+        }
+    }
+
+    @Test
+    public void testCacheJournalCompaction() throws Exception {
+        File repositoryBase = Files.createTempDirectory("moasdawiki-journal").toFile();
+        try {
+            RepositoryService rs = new RepositoryService(new Logger(null), repositoryBase, null, true);
+            AnyFile anyFile = new AnyFile("/a.txt");
+            for (int i = 0; i < 150; i++) {
+                rs.writeTextFile(anyFile, "content" + i);
+            }
+            String cacheContent = rs.readTextFile(new AnyFile(FILELIST_CACHE_FILEPATH));
+            assertTrue(cacheContent.split("\n").length < 100);
+            RepositoryService rs2 = new RepositoryService(new Logger(null), repositoryBase, null, false);
+            assertEquals(rs2.getFiles(), rs.getFiles());
+        } finally {
+            TempDirHelper.deleteRecursively(repositoryBase);
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        File repositoryBase = Files.createTempDirectory("moasdawiki-journal").toFile();
+        try {
+            RepositoryService rs = new RepositoryService(new Logger(null), repositoryBase, null, true);
+            String snapshot = rs.readTextFile(new AnyFile(FILELIST_CACHE_FILEPATH));
+
+            rs.startGroupCommit();
+            rs.writeTextFile(new AnyFile("/a.txt"), "content");
+            rs.startGroupCommit();
+            rs.writeTextFile(new AnyFile("/b.txt"), "content");
+            rs.finishGroupCommit();
+            rs.deleteFile(new AnyFile("/a.txt"));
+            // nothing written until the outer group commit is finished
+            assertEquals(rs.readTextFile(new AnyFile(FILELIST_CACHE_FILEPATH)), snapshot);
+            rs.finishGroupCommit();
+
+            String journal = rs.readTextFile(new AnyFile(FILELIST_CACHE_FILEPATH)).substring(snapshot.length());
+            assertEquals(journal.split("\n").length, 3);
+            assertTrue(journal.endsWith("-/a.txt\n"));
+            RepositoryService rs2 = new RepositoryService(new Logger(null), repositoryBase, null, false);
+            assertNull(rs2.getFile("/a.txt"));
+            assertNotNull(rs2.getFile("/b.txt"));
+        } finally {
+            TempDirHelper.deleteRecursively(repositoryBase);
+        }
+    }
+
+    @Test
+    public void testRefreshFile() throws Exception {
+        File repositoryBase = Files.createTempDirectory("moasdawiki-refresh").toFile();
+        try {
+            RepositoryService rs = new RepositoryService(new Logger(null), repositoryBase, null, true);
+            RepositoryListener listener = mock(RepositoryListener.class);
+            rs.addListener(listener);
+            File file = new File(repositoryBase, "a.txt");
+
+            // external create
+            try (FileWriter writer = new FileWriter(file)) {
+                writer.write("content");
+            }
+            rs.refreshFile("/a.txt");
+            assertEquals(rs.getFile("/a.txt").getContentTimestamp().getTime(), file.lastModified());
+            verify(listener, times(1)).fileModified(new AnyFile("/a.txt"));
+
+            // external modification
+            file.setLastModified(file.lastModified() - 60000);
+            rs.refreshFile("/a.txt");
+            assertEquals(rs.getFile("/a.txt").getContentTimestamp().getTime(), file.lastModified());
+            verify(listener, times(2)).fileModified(new AnyFile("/a.txt"));
+
+            // unchanged and own write are ignored
+            rs.refreshFile("/a.txt");
+            rs.writeBinaryFile(new AnyFile("/a.txt"), new byte[]{1}, DateUtils.parseUtcDate("2020-01-01T00:00:00.000Z"));
+            rs.refreshFile("/a.txt");
+            assertEquals(rs.getFile("/a.txt").getContentTimestamp(), DateUtils.parseUtcDate("2020-01-01T00:00:00.000Z"));
+            verify(listener, times(3)).fileModified(new AnyFile("/a.txt"));
+
+            // external delete
+            file.delete();
+            rs.refreshFile("/a.txt");
+            assertNull(rs.getFile("/a.txt"));
+            verify(listener, times(1)).fileDeleted(new AnyFile("/a.txt"));
+
+            // temporary files are ignored
+            new File(repositoryBase, ".b.txt.123.tmp").createNewFile();
+            rs.refreshFile("/.b.txt.123.tmp");
+            assertNull(rs.getFile("/.b.txt.123.tmp"));
+
+            // changes are persisted
+            RepositoryService rs2 = new RepositoryService(new Logger(null), repositoryBase, null, false);
+            assertNull(rs2.getFile("/a.txt"));
+            assertNull(rs2.getFile("/.b.txt.123.tmp"));
+        } finally {
+            TempDirHelper.deleteRecursively(repositoryBase);
+        }
+    }
+
+    @Test
+    public void testReconcile() throws Exception {
+        File repositoryBase = Files.createTempDirectory("moasdawiki-reconcile").toFile();
+        try {
+            RepositoryService rs = new RepositoryService(new Logger(null), repositoryBase, null, true);
+            AnyFile deletedFile = rs.writeTextFile(new AnyFile("/deleted.txt"), "content");
+            AnyFile unchangedFile = rs.writeTextFile(new AnyFile("/unchanged.txt"), "content");
+            new File(repositoryBase, "deleted.txt").delete();
+            new File(repositoryBase, "folder").mkdir();
+            new File(repositoryBase, "folder/new.txt").createNewFile();
+            RepositoryListener listener = mock(RepositoryListener.class);
+            rs.addListener(listener);
+
+            rs.reconcile();
+            assertNull(rs.getFile("/deleted.txt"));
+            assertNotNull(rs.getFile("/folder/new.txt"));
+            verify(listener, times(1)).fileDeleted(deletedFile);
+            verify(listener, times(1)).fileModified(new AnyFile("/folder/new.txt"));
+            verify(listener, never()).fileModified(unchangedFile);
+        } finally {
+            TempDirHelper.deleteRecursively(repositoryBase);
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        File repositoryBase = Files.createTempDirectory("moasdawiki-stress").toFile();
+        try {
+            RepositoryService rs = new RepositoryService(new Logger(null), repositoryBase, null, true);
+            String[] filePaths = {"/a.txt", "/b.txt", "/c.txt", "/folder/d.txt", "/folder/e.txt"};
+            int threadCount = 8;
+            int iterations = 300;
+            int contentLength = 2000;
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int threadId = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(threadId);
+                    for (int i = 0; i < iterations; i++) {
+                        AnyFile anyFile = new AnyFile(filePaths[random.nextInt(filePaths.length)]);
+                        int action = random.nextInt(10);
+                        try {
+                            if (action < 4) {
+                                char[] content = new char[contentLength];
+                                Arrays.fill(content, (char) ('a' + random.nextInt(26)));
+                                rs.writeTextFile(anyFile, new String(content));
+                            } else if (action < 5) {
+                                rs.deleteFile(anyFile);
+                            } else {
+                                String content = rs.readTextFile(anyFile);
+                                // never read a partially written file
+                                assertEquals(content.length(), contentLength);
+                                assertEquals(content.replace(content.substring(0, 1), ""), "");
+                            }
+                        } catch (ServiceException e) {
+                            // file doesn't exist (anymore)
+                        }
+                    }
+                    return null;
+                }));
+            }
+            executor.shutdown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            // metadata must match the file system
+            for (String filePath : filePaths) {
+                boolean exists = new File(repositoryBase, filePath).exists();
+                assertEquals(rs.getFile(filePath) != null, exists, filePath);
+            }
+            assertEquals(new File(repositoryBase, "folder").list().length, (int) rs.getFiles().stream()
+                    .filter(anyFile -> anyFile.getFilePath().startsWith("/folder/")).count());
+
+            // cache file must contain the same state
+            RepositoryService rs2 = new RepositoryService(new Logger(null), repositoryBase, null, false);
+            assertEquals(rs2.getFiles(), rs.getFiles());
+            // AnyFile.equals() only compares the path
+            for (String filePath : filePaths) {
+                AnyFile anyFile = rs.getFile(filePath);
+                if (anyFile != null) {
+                    assertEquals(rs2.getFile(filePath).getContentTimestamp(), anyFile.getContentTimestamp(), filePath);
+                }
+            }
+        } finally {
+            TempDirHelper.deleteRecursively(repositoryBase);
+        }
+    }
+
     @Test
     public void testCreateFolders() throws Exception {
         File file = new File("folder1/subfolder1/file.txt");
@@ -0,0 +1,133 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.repository;
+
+import net.moasdawiki.base.Logger;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.function.BooleanSupplier;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+@SuppressWarnings("ResultOfMethodCallIgnored")
+public class RepositoryWatcherTest {
+
+    private static final long TIMEOUT_MS = 10000;
+
+    private File repositoryBase;
+    private RepositoryService repositoryService;
+    private RepositoryWatcher watcher;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        repositoryBase = Files.createTempDirectory("moasdawiki-watcher").toFile();
+        repositoryService = new RepositoryService(new Logger(null), repositoryBase, null, true);
+        watcher = new RepositoryWatcher(new Logger(null), repositoryService, 50);
+        watcher.start();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        watcher.stop();
+        TempDirHelper.deleteRecursively(repositoryBase);
+    }
+
+    @Test
+    public void testExternalChanges() throws Exception {
+        RepositoryListener listener = mock(RepositoryListener.class);
+        repositoryService.addListener(listener);
+
+        // create
+        File file = new File(repositoryBase, "a.txt");
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("content");
+        }
+        waitFor(() -> repositoryService.getFile("/a.txt") != null);
+        verify(listener, timeout(TIMEOUT_MS)).fileModified(new AnyFile("/a.txt"));
+
+        // delete
+        file.delete();
+        waitFor(() -> repositoryService.getFile("/a.txt") == null);
+        verify(listener, timeout(TIMEOUT_MS)).fileDeleted(new AnyFile("/a.txt"));
+    }
+
+    @Test
+    public void testNewFolder() throws Exception {
+        File folder = new File(repositoryBase, "folder/subfolder");
+        folder.mkdirs();
+        new File(folder, "b.txt").createNewFile();
+        waitFor(() -> repositoryService.getFile("/folder/subfolder/b.txt") != null);
+
+        // the new folder is watched as well
+        new File(folder, "c.txt").createNewFile();
+        waitFor(() -> repositoryService.getFile("/folder/subfolder/c.txt") != null);
+
+        // deleting the folder removes all files inside
+        TempDirHelper.deleteRecursively(new File(repositoryBase, "folder"));
+        waitFor(() -> repositoryService.getFile("/folder/subfolder/b.txt") == null
+                && repositoryService.getFile("/folder/subfolder/c.txt") == null);
+    }
+
+    @Test
+    public void testOwnWritesIgnored() throws Exception {
+        RepositoryListener listener = mock(RepositoryListener.class);
+        repositoryService.addListener(listener);
+        AnyFile anyFile = repositoryService.writeTextFile(new AnyFile("/own.txt"), "content");
+        verify(listener, times(1)).fileModified(anyFile);
+        // the watcher calls refreshFile for the own write, which must not
+        // report the unchanged file again
+        repositoryService.refreshFile("/own.txt");
+        verify(listener, times(1)).fileModified(anyFile);
+    }
+
+    @Test
+    public void testApplyChanges() {
+        RepositoryService rs = mock(RepositoryService.class);
+        RepositoryWatcher repositoryWatcher = new RepositoryWatcher(new Logger(null), rs, 50);
+        repositoryWatcher.applyChanges(new HashSet<>(Arrays.asList("/a.txt", "/b.txt")), false);
+        verify(rs, times(1)).refreshFile("/a.txt");
+        verify(rs, times(1)).refreshFile("/b.txt");
+        verify(rs, times(1)).startGroupCommit();
+        verify(rs, times(1)).finishGroupCommit();
+        verify(rs, never()).reconcile();
+
+        // overflow
+        repositoryWatcher.applyChanges(Collections.singleton("/a.txt"), true);
+        verify(rs, times(1)).reconcile();
+        verify(rs, times(1)).refreshFile("/a.txt");
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timeout waiting for change detection");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -21,12 +21,14 @@ package net.moasdawiki.service.search;
 
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.service.repository.AnyFile;
+import net.moasdawiki.service.repository.RepositoryListener;
 import net.moasdawiki.service.repository.RepositoryService;
 import net.moasdawiki.service.wiki.WikiFile;
 import net.moasdawiki.service.wiki.WikiService;
 import net.moasdawiki.service.wiki.structure.TextOnly;
 import net.moasdawiki.service.wiki.structure.WikiPage;
 import net.moasdawiki.util.DateUtils;
+import org.mockito.ArgumentCaptor;
 import org.mockito.internal.util.collections.Sets;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Ignore;
@@ -42,8 +44,7 @@ import java.util.Set;
 
 import static net.moasdawiki.AssertHelper.*;
 import static org.mockito.Mockito.*;
-import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.assertNull;
+import static org.testng.Assert.*;
 
 public class SearchIndexTest {
 
@@ -256,6 +257,8 @@ public class SearchIndexTest {
         searchIndex.searchWikiFilePaths(Collections.emptySet());
         // check if readCacheFile() is called
         verify(repositoryService, times(1)).readTextFile(any());
+        assertEquals(searchIndex.getCacheStatistics().getMisses(), 1);
+        assertEquals(searchIndex.getCacheStatistics().getHits(), 0);
     }
 
     @Test
@@ -266,6 +269,8 @@ public class SearchIndexTest {
         searchIndex.searchWikiFilePaths(Collections.emptySet());
         // check that readCacheFile() is NOT called
         verify(repositoryService, never()).readTextFile(any());
+        assertEquals(searchIndex.getCacheStatistics().getHits(), 1);
+        assertEquals(searchIndex.getCacheStatistics().getMisses(), 0);
     }
 
     @Test
@@ -339,6 +344,72 @@ public class SearchIndexTest {
         }
     }
 
+    @Test
+    public void testIsRebuildRequired() throws Exception {
+        // repository scan not allowed
+        assertFalse(searchIndex.isRebuildRequired());
+        // cache file missing
+        searchIndex = new SearchIndex(mock(Logger.class), repositoryService, wikiService, searchIgnoreList, true);
+        assertTrue(searchIndex.isRebuildRequired());
+        // cache file available
+        searchIndex.setLastUpdate(new Date());
+        assertFalse(searchIndex.isRebuildRequired());
+    }
+
+    @Test
+    public void testRebuild() throws Exception {
+        searchIndex.indexWikiFile(buildWikiFile("/file/path1", "abcd efgh", new Date(2000L)));
+        searchIndex.indexWikiFile(buildWikiFile("/file/path2", "efgh ijkl", new Date(1000L)));
+        searchIndex.finishRebuild(new Date(3000L));
+        assertEquals(searchIndex.getLastUpdate().getTime(), 2000L);
+        assertEquals(searchIndex.getWord2WikiFilePathMap().get("efgh"), Sets.newSet("/file/path1", "/file/path2"));
+        verify(repositoryService, times(1)).writeTextFile(any(), anyString());
+    }
+
+    @Test
+    public void testUpdateChangedWikiFiles() throws Exception {
+        // set repositoryScanAllowed = true
+        searchIndex = new SearchIndex(mock(Logger.class), repositoryService, wikiService, searchIgnoreList, true);
+        ArgumentCaptor<RepositoryListener> listenerCaptor = ArgumentCaptor.forClass(RepositoryListener.class);
+        verify(repositoryService).addListener(listenerCaptor.capture());
+        RepositoryListener listener = listenerCaptor.getValue();
+        // full update on first access
+        searchIndex.searchWikiFilePaths(Collections.emptySet());
+        verify(wikiService, times(1)).getModifiedAfter(any());
+
+        // modified wiki page
+        when(wikiService.existsWikiFile("/file/path1")).thenReturn(true);
+        when(wikiService.getWikiFile("/file/path1")).thenReturn(buildWikiFile("/file/path1", "abcd", new Date(1000L)));
+        listener.fileModified(new AnyFile("/file/path1.txt"));
+        assertEquals(searchIndex.searchWikiFilePaths(Collections.singleton("abcd")), Collections.singleton("/file/path1"));
+
+        // changed content replaces the old words
+        when(wikiService.getWikiFile("/file/path1")).thenReturn(buildWikiFile("/file/path1", "efgh", new Date(2000L)));
+        listener.fileModified(new AnyFile("/file/path1.txt"));
+        assertIsEmpty(searchIndex.searchWikiFilePaths(Collections.singleton("abcd")));
+        assertEquals(searchIndex.searchWikiFilePaths(Collections.singleton("efgh")), Collections.singleton("/file/path1"));
+
+        // deleted wiki page
+        when(wikiService.existsWikiFile("/file/path1")).thenReturn(false);
+        listener.fileDeleted(new AnyFile("/file/path1.txt"));
+        assertIsEmpty(searchIndex.searchWikiFilePaths(Collections.singleton("efgh")));
+        assertIsEmpty(searchIndex.getWord2WikiFilePathMap());
+
+        // no more repository scans
+        verify(wikiService, times(1)).getModifiedAfter(any());
+        verify(repositoryService, times(3)).writeTextFile(any(), anyString());
+    }
+
+    @Test
+    public void testRemoveWordMappings() {
+        searchIndex.addWordMapping("a", "/file/path1");
+        searchIndex.addWordMapping("a", "/file/path2");
+        searchIndex.addWordMapping("b", "/file/path1");
+        searchIndex.removeWordMappings("/file/path1");
+        assertEquals(searchIndex.getWord2WikiFilePathMap().size(), 1);
+        assertEquals(searchIndex.getWord2WikiFilePathMap().get("a"), Collections.singleton("/file/path2"));
+    }
+
     private WikiFile buildWikiFile(String wikiFilePath, String content, Date contentTimestamp) {
         WikiPage wikiPage = new WikiPage(wikiFilePath, new TextOnly(""), 0, 0);
         AnyFile anyFile = new AnyFile(wikiFilePath + ".txt", contentTimestamp);
@@ -0,0 +1,82 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import net.moasdawiki.base.Logger;
+import net.moasdawiki.base.ServiceException;
+import net.moasdawiki.service.repository.AnyFile;
+import net.moasdawiki.service.wiki.structure.TextOnly;
+import net.moasdawiki.service.wiki.structure.WikiPage;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+public class IndexPipelineTest {
+
+    @Test
+    public void testRun() throws Exception {
+        List<String> wikiFilePaths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            wikiFilePaths.add("/page" + i);
+        }
+        WikiService wikiService = mock(WikiService.class);
+        when(wikiService.getWikiFile(anyString())).thenAnswer(invocation -> {
+            String wikiFilePath = invocation.getArgument(0);
+            if ("/page13".equals(wikiFilePath)) {
+                throw new ServiceException("Error reading file");
+            }
+            WikiPage wikiPage = new WikiPage(wikiFilePath, new TextOnly(""), 0, 0);
+            return new WikiFile(wikiFilePath, "", wikiPage, new AnyFile(wikiFilePath + ".txt"));
+        });
+        CollectingIndexer indexer1 = new CollectingIndexer();
+        CollectingIndexer indexer2 = new CollectingIndexer();
+
+        new IndexPipeline(new Logger(null), wikiService, Arrays.asList(indexer1, indexer2)).run(wikiFilePaths, 4);
+
+        Set<String> expected = new HashSet<>(wikiFilePaths);
+        expected.remove("/page13");
+        assertEquals(indexer1.wikiFilePaths, expected);
+        assertEquals(indexer2.wikiFilePaths, expected);
+        verify(wikiService, times(100)).getWikiFile(anyString());
+    }
+
+    private static class CollectingIndexer implements WikiFileIndexer {
+
+        private final Set<String> wikiFilePaths = new HashSet<>();
+
+        @Override
+        public boolean isRebuildRequired() {
+            return true;
+        }
+
+        @Override
+        public synchronized void indexWikiFile(@NotNull WikiFile wikiFile) {
+            wikiFilePaths.add(wikiFile.getWikiFilePath());
+        }
+
+        @Override
+        public void finishRebuild(@NotNull Date rebuildTimestamp) {
+        }
+    }
+}
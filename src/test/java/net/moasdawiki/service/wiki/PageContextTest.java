@@ -0,0 +1,56 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import net.moasdawiki.service.wiki.structure.WikiPage;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class PageContextTest {
+
+    @Test
+    public void testEmpty() {
+        PageContext context = new PageContext();
+        assertNull(context.getContextWikiPage(false));
+        assertNull(context.getContextWikiPage(true));
+    }
+
+    @Test
+    public void testSingleWikiPage() {
+        WikiPage wikiPage = new WikiPage("/a", null, null, null);
+        PageContext context = new PageContext(wikiPage);
+        assertSame(context.getContextWikiPage(false), wikiPage);
+        assertSame(context.getContextWikiPage(true), wikiPage);
+    }
+
+    @Test
+    public void testNestedWikiPages() {
+        WikiPage wikiPageGlobal = new WikiPage("/global", null, null, null);
+        WikiPage wikiPageLocal = new WikiPage("/local", null, null, null);
+        PageContext context = new PageContext();
+        context.enter(wikiPageGlobal);
+        context.enter(wikiPageLocal);
+        assertSame(context.getContextWikiPage(false), wikiPageLocal);
+        assertSame(context.getContextWikiPage(true), wikiPageGlobal);
+        context.leave();
+        assertSame(context.getContextWikiPage(false), wikiPageGlobal);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static net.moasdawiki.AssertHelper.*;
+import static org.testng.Assert.*;
+
+public class RelationIndexTest {
+
+    @Test
+    public void testSetTargets() {
+        RelationIndex index = new RelationIndex();
+        assertTrue(index.setTargets("/source", new HashSet<>(Arrays.asList("/target1", "/target2"))));
+        assertEquals(index.size(), 1);
+        assertEquals(index.getTargets("/source"), new HashSet<>(Arrays.asList("/target1", "/target2")));
+        assertEquals(index.getSources("/target1"), Collections.singleton("/source"));
+        assertEquals(index.getSources("/target2"), Collections.singleton("/source"));
+        assertIsEmpty(index.getSources("/source"));
+        assertNull(index.getTargets("/target1"));
+
+        // unchanged
+        assertFalse(index.setTargets("/source", new HashSet<>(Arrays.asList("/target1", "/target2"))));
+
+        // target replaced
+        assertTrue(index.setTargets("/source", new HashSet<>(Arrays.asList("/target2", "/target3"))));
+        assertIsEmpty(index.getSources("/target1"));
+        assertEquals(index.getSources("/target2"), Collections.singleton("/source"));
+        assertEquals(index.getSources("/target3"), Collections.singleton("/source"));
+    }
+
+    @Test
+    public void testRemoveSource() {
+        RelationIndex index = new RelationIndex();
+        index.setTargets("/source1", Collections.singleton("/target"));
+        index.setTargets("/source2", Collections.singleton("/target"));
+        assertTrue(index.removeSource("/source1"));
+        assertFalse(index.removeSource("/source1"));
+        assertFalse(index.containsSource("/source1"));
+        assertEquals(index.getSources("/target"), Collections.singleton("/source2"));
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        String content = "/a\t/target\n"
+                + "/b\t/target\n"
+                + "/c\n"
+                + "\n"
+                + "/a\t/other\n"
+                + "-/b\n";
+        RelationIndex index = new RelationIndex();
+        assertTrue(index.read(content));
+        assertEquals(index.size(), 2);
+        assertEquals(index.getJournalLength(), 3);
+        assertEquals(index.getTargets("/a"), Collections.singleton("/other"));
+        assertIsEmpty(index.getTargets("/c"));
+        assertFalse(index.containsSource("/b"));
+        assertIsEmpty(index.getSources("/target"));
+        assertEquals(index.getSources("/other"), Collections.singleton("/a"));
+    }
+
+    @Test
+    public void testReadTruncatedJournal() throws Exception {
+        String content = "/a\t/target\n"
+                + "/b\t/target\n"
+                + "/a\t/other\n"
+                + "/b\t/par";
+        RelationIndex index = new RelationIndex();
+        assertFalse(index.read(content));
+        assertEquals(index.size(), 2);
+        assertEquals(index.getJournalLength(), 1);
+        assertEquals(index.getTargets("/a"), Collections.singleton("/other"));
+        assertEquals(index.getTargets("/b"), Collections.singleton("/target"));
+        assertIsEmpty(index.getSources("/par"));
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        RelationIndex index = new RelationIndex();
+        index.setTargets("/b", new HashSet<>(Arrays.asList("/p2", "/p1")));
+        index.setTargets("/a", Collections.emptySet());
+        assertEquals(index.serialize(), "/a\n/b\t/p1\t/p2\n");
+        assertEquals(index.serializeJournalEntry("/b"), "/b\t/p1\t/p2\n");
+        assertEquals(index.serializeJournalEntry("/unknown"), "-/unknown\n");
+        // only successfully written lines are counted
+        assertEquals(index.getJournalLength(), 0);
+        index.journalEntryAppended();
+        assertEquals(index.getJournalLength(), 1);
+        assertEquals(index.getAllTargets(), new HashSet<>(Arrays.asList("/p1", "/p2")));
+
+        // round trip
+        RelationIndex index2 = new RelationIndex();
+        assertTrue(index2.read(index.serialize()));
+        assertEquals(index2.serialize(), index.serialize());
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * MoasdaWiki Server
+ *
+ * Copyright (C) 2008 - 2021 Herbert Reiter (herbert@moasdawiki.net)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License version 3 as
+ * published by the Free Software Foundation (AGPL-3.0-only).
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see
+ * <https://www.gnu.org/licenses/agpl-3.0.html>.
+ */
+
+package net.moasdawiki.service.wiki;
+
+import net.moasdawiki.service.repository.AnyFile;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static net.moasdawiki.AssertHelper.assertIsEmpty;
+import static org.testng.Assert.assertEquals;
+
+public class WikiFileChangeTrackerTest {
+
+    @Test
+    public void testFetchChanges() {
+        WikiFileChangeTracker changeTracker = new WikiFileChangeTracker();
+        changeTracker.fileModified(new AnyFile("/page1.txt"));
+        changeTracker.fileModified(new AnyFile("/page1.txt"));
+        changeTracker.fileDeleted(new AnyFile("/folder/page2.txt"));
+        changeTracker.fileModified(new AnyFile("/image.png"));
+        assertEquals(changeTracker.fetchChanges(), new HashSet<>(Arrays.asList("/page1", "/folder/page2")));
+        assertIsEmpty(changeTracker.fetchChanges());
+    }
+
+    @Test
+    public void testClear() {
+        WikiFileChangeTracker changeTracker = new WikiFileChangeTracker();
+        changeTracker.fileModified(new AnyFile("/page1.txt"));
+        changeTracker.clear();
+        assertIsEmpty(changeTracker.fetchChanges());
+    }
+}
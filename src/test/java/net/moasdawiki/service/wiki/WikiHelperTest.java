@@ -28,6 +28,9 @@ import net.moasdawiki.service.wiki.structure.*;
 import org.mockito.invocation.InvocationOnMock;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.*;
@@ -135,17 +138,17 @@ public class WikiHelperTest {
     public void testTransformPageElementsWikiPage() {
         {
             PageElementTransformer unchangedTrans = mock(PageElementTransformer.class);
-            when(unchangedTrans.transformPageElement(any())).thenAnswer(invocation -> invocation.getArgument(0));
+            when(unchangedTrans.transformPageElement(any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
             WikiPage wikiPage = TransformerHelper.transformPageElements(new WikiPage("/a", null, null, null), unchangedTrans);
             assertEquals(wikiPage.getPagePath(), "/a");
-            verify(unchangedTrans, times(1)).transformPageElement(any());
+            verify(unchangedTrans, times(1)).transformPageElement(any(), any());
         }
         {
             PageElementTransformer nullTrans = mock(PageElementTransformer.class);
-            when(nullTrans.transformPageElement(any())).thenReturn(null);
+            when(nullTrans.transformPageElement(any(), any())).thenReturn(null);
             WikiPage wikiPage = TransformerHelper.transformPageElements(new WikiPage("/a", null, null, null), nullTrans);
             assertEquals(wikiPage.getPagePath(), "/a");
-            verify(nullTrans, times(1)).transformPageElement(any());
+            verify(nullTrans, times(1)).transformPageElement(any(), any());
         }
     }
 
@@ -156,7 +159,7 @@ public class WikiHelperTest {
         pel.add(new TextOnly("b"));
         pel.add(new TextOnly("c"));
         PageElementTransformer transformer = mock(PageElementTransformer.class);
-        when(transformer.transformPageElement(any())).thenAnswer(invocation -> {
+        when(transformer.transformPageElement(any(), any())).thenAnswer(invocation -> {
             PageElement pageElement = invocation.getArgument(0);
             if (pageElement instanceof TextOnly && ((TextOnly) pageElement).getText().equals("b")) {
                 // remove list element "b"
@@ -167,10 +170,47 @@ public class WikiHelperTest {
         });
         // test method
         WikiPage wikiPage = TransformerHelper.transformPageElements(new WikiPage(null, pel, null, null), transformer);
-        assertSame(wikiPage.getChild(), pel);
-        assertEquals(pel.size(), 2);
-        assertEquals(((TextOnly) pel.get(0)).getText(), "a");
-        assertEquals(((TextOnly) pel.get(1)).getText(), "c");
+        PageElementList newPel = (PageElementList) wikiPage.getChild();
+        assertEquals(newPel.size(), 2);
+        assertEquals(((TextOnly) newPel.get(0)).getText(), "a");
+        assertEquals(((TextOnly) newPel.get(1)).getText(), "c");
+        // original list is unchanged, unchanged elements are shared
+        assertEquals(pel.size(), 3);
+        assertSame(newPel.get(0), pel.get(0));
+    }
+
+    @Test
+    public void testTransformPageElementsUnchanged() {
+        PageElementList pel = new PageElementList();
+        pel.add(new Bold(new TextOnly("a"), null, null));
+        TableRow tableRow = new TableRow(null);
+        tableRow.addCell(new TableCell(new TextOnly("b"), false, null));
+        Table table = new Table(null, null, null);
+        table.addRow(tableRow);
+        pel.add(table);
+        WikiPage wikiPage = new WikiPage("/a", pel, null, null);
+        PageElementTransformer transformer = mock(PageElementTransformer.class);
+        when(transformer.transformPageElement(any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+        // test method
+        assertSame(TransformerHelper.transformPageElements(wikiPage, transformer), wikiPage);
+    }
+
+    @Test
+    public void testTransformPageElementsContext() {
+        TextOnly textOnly = new TextOnly("content");
+        WikiPage wikiPageLocal = new WikiPage("/local", textOnly, null, null);
+        WikiPage wikiPageGlobal = new WikiPage("/global", new Bold(wikiPageLocal, null, null), null, null);
+        List<String> contexts = new ArrayList<>();
+        PageElementTransformer transformer = (pageElement, context) -> {
+            if (pageElement instanceof TextOnly) {
+                contexts.add(context.getContextWikiPage(false).getPagePath());
+                contexts.add(context.getContextWikiPage(true).getPagePath());
+            }
+            return pageElement;
+        };
+        // test method
+        TransformerHelper.transformPageElements(wikiPageGlobal, transformer);
+        assertEquals(contexts, Arrays.asList("/local", "/global"));
     }
 
     @Test
@@ -178,7 +218,7 @@ public class WikiHelperTest {
         TextOnly textOnly = new TextOnly("content");
         Bold bold = new Bold(textOnly, null, null);
         PageElementTransformer transformer = mock(PageElementTransformer.class);
-        when(transformer.transformPageElement(any())).thenAnswer(invocation -> {
+        when(transformer.transformPageElement(any(), any())).thenAnswer(invocation -> {
             PageElement pageElement = invocation.getArgument(0);
             if (pageElement instanceof Bold) {
                 // replace element Bold -> Italic
@@ -202,7 +242,7 @@ public class WikiHelperTest {
         Table table = new Table(null, null, null);
         table.addRow(tableRow);
         PageElementTransformer transformer = mock(PageElementTransformer.class);
-        when(transformer.transformPageElement(any())).thenAnswer(invocation -> {
+        when(transformer.transformPageElement(any(), any())).thenAnswer(invocation -> {
             PageElement pageElement = invocation.getArgument(0);
             if (pageElement instanceof TextOnly) {
                 // replace element
@@ -217,42 +257,7 @@ public class WikiHelperTest {
         PageElement pe = ((Table) wikiPage.getChild()).getRows().get(0).getCells().get(0).getContent();
         assertTrue(pe instanceof TextOnly);
         assertEquals(((TextOnly) pe).getText(), "newcontent");
-    }
-
-    @SuppressWarnings("ConstantConditions")
-    @Test
-    public void testGetContextWikiPage() {
-        // no WikiPage in hierarchy
-        assertNull(WikiHelper.getContextWikiPage(null, false));
-        assertNull(WikiHelper.getContextWikiPage(new TextOnly("a"), false));
-        {
-            // simple WikiPage
-            WikiPage wikiPage = WikiHelper.getContextWikiPage(new WikiPage("/a", null, null, null), false);
-            assertEquals(wikiPage.getPagePath(), "/a");
-        }
-        {
-            // single WikiPage in hierarchy
-            TextOnly textOnly = new TextOnly("content");
-            new WikiPage("/a", textOnly, null, null);
-            WikiPage result = WikiHelper.getContextWikiPage(textOnly, false);
-            assertEquals(result.getPagePath(), "/a");
-        }
-        {
-            // multiple WikiPages in hierarchy; find local context
-            TextOnly textOnly = new TextOnly("content");
-            WikiPage wikiPageLocal = new WikiPage("/local", textOnly, null, null);
-            new WikiPage("/global", wikiPageLocal, null, null);
-            WikiPage result = WikiHelper.getContextWikiPage(textOnly, false);
-            assertEquals(result.getPagePath(), "/local");
-        }
-        {
-            // multiple WikiPages in hierarchy; find global context (= tree root)
-            TextOnly textOnly = new TextOnly("content");
-            WikiPage wikiPageLocal = new WikiPage("/local", textOnly, null, null);
-            new WikiPage("/global", wikiPageLocal, null, null);
-            WikiPage result = WikiHelper.getContextWikiPage(textOnly, true);
-            assertEquals(result.getPagePath(), "/global");
-        }
+        assertSame(tableCell.getContent(), textOnly);
     }
 
     @Test
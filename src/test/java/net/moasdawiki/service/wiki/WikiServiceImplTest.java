@@ -22,7 +22,9 @@ package net.moasdawiki.service.wiki;
 import net.moasdawiki.base.Logger;
 import net.moasdawiki.base.ServiceException;
 import net.moasdawiki.service.repository.AnyFile;
+import net.moasdawiki.service.repository.RepositoryListener;
 import net.moasdawiki.service.repository.RepositoryService;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -49,6 +51,7 @@ public class WikiServiceImplTest {
         when(repositoryServiceMock.getFiles()).thenAnswer(this::getFilesMock);
         when(repositoryServiceMock.readTextFile(any())).thenAnswer(this::readTextFileMockWithCacheFile);
         when(repositoryServiceMock.writeTextFile(any(), anyString())).thenAnswer(this::writeTextFileMock);
+        when(repositoryServiceMock.appendTextFile(any(), anyString())).thenAnswer(this::writeTextFileMock);
         wikiService = new WikiService(new Logger(null), repositoryServiceMock, true);
     }
 
@@ -70,7 +73,14 @@ public class WikiServiceImplTest {
         if ("/parentrelations.cache".equals(anyFile.getFilePath())) {
             return "\n"
                     + "/page\n"
-                    + "/page-with-parent\t/parent-page\n";
+                    + "/page-with-parent\t/parent-page\n"
+                    + "/deleted-page\t/parent-page\n"
+                    + "-/deleted-page\n";
+        } else if ("/pagelinks.cache".equals(anyFile.getFilePath())) {
+            return "\n"
+                    + "/page\t/page-with-parent\t/folder/\n"
+                    + "/page-with-parent\t/missing-page\n"
+                    + "/deleted-page\t/page\n";
         } else {
             return readTextFileMockNoCacheFile(invocationOnMock);
         }
@@ -94,12 +104,28 @@ public class WikiServiceImplTest {
         wikiService.viewHistory.add("/a");
         // test method
         wikiService.reset();
-        assertEquals(wikiService.childParentMap.size(), 2);
-        assertIsEmpty(wikiService.childParentMap.get("/page"));
-        assertContains(wikiService.childParentMap.get("/page-with-parent"), "/parent-page");
+        assertEquals(wikiService.parentRelationIndex.size(), 2);
+        assertIsEmpty(wikiService.parentRelationIndex.getTargets("/page"));
+        assertContains(wikiService.parentRelationIndex.getTargets("/page-with-parent"), "/parent-page");
+        assertEquals(wikiService.parentRelationIndex.getSources("/parent-page"), Collections.singleton("/page-with-parent"));
         assertIsEmpty(wikiService.viewHistory);
     }
 
+    @Test
+    public void testResetTruncatedCacheFile() throws Exception {
+        when(repositoryServiceMock.readTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH))).thenReturn("\n"
+                + "/page\n"
+                + "/page-with-parent\t/parent-page\n"
+                + "/page-with-parent\t/par");
+        // test method
+        wikiService.reset();
+        assertEquals(wikiService.parentRelationIndex.getTargets("/page-with-parent"), Collections.singleton("/parent-page"));
+        assertIsEmpty(wikiService.parentRelationIndex.getSources("/par"));
+        // a new snapshot is written, so the next journal line doesn't continue the incomplete line
+        verify(repositoryServiceMock, times(1)).writeTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH), anyString());
+        verify(repositoryServiceMock, never()).writeTextFile(isCacheFile(WikiService.PAGE_LINKS_CACHE_FILEPATH), anyString());
+    }
+
     @Test
     public void testResetNoCacheFile() throws Exception {
         reset(repositoryServiceMock);
@@ -109,8 +135,45 @@ public class WikiServiceImplTest {
         when(repositoryServiceMock.writeTextFile(any(), anyString())).thenAnswer(this::writeTextFileMock);
         // test method
         wikiService.reset();
-        assertEquals(wikiService.childParentMap.size(), 1);
-        assertIsEmpty(wikiService.childParentMap.get("/page"));
+        assertEquals(wikiService.parentRelationIndex.size(), 1);
+        assertIsEmpty(wikiService.parentRelationIndex.getTargets("/page"));
+        assertEquals(wikiService.pageLinkIndex.size(), 1);
+        assertIsEmpty(wikiService.pageLinkIndex.getTargets("/page"));
+    }
+
+    @Test
+    public void testRebuildIndexes() throws Exception {
+        reset(repositoryServiceMock);
+        when(repositoryServiceMock.getFile(anyString())).thenAnswer(this::getFileMock);
+        when(repositoryServiceMock.getFiles()).thenAnswer(this::getFilesMock);
+        when(repositoryServiceMock.readTextFile(any())).thenAnswer(this::readTextFileMockNoCacheFile);
+        wikiService = new WikiService(new Logger(null), repositoryServiceMock, true);
+        // relation indexes are not rebuilt in the constructor
+        assertEquals(wikiService.parentRelationIndex.size(), 0);
+
+        WikiFileIndexer indexer = mock(WikiFileIndexer.class);
+        when(indexer.isRebuildRequired()).thenReturn(true);
+        WikiFileIndexer upToDateIndexer = mock(WikiFileIndexer.class);
+        wikiService.addIndexer(indexer);
+        wikiService.addIndexer(upToDateIndexer);
+        wikiService.rebuildIndexes();
+
+        // "/page-with-parent" cannot be read
+        assertEquals(wikiService.parentRelationIndex.size(), 1);
+        assertEquals(wikiService.pageLinkIndex.size(), 1);
+        verify(repositoryServiceMock, times(1)).readTextFile(new AnyFile("/page.txt"));
+        verify(indexer, times(1)).indexWikiFile(argThat(wikiFile -> "/page".equals(wikiFile.getWikiFilePath())));
+        verify(indexer, times(1)).finishRebuild(any());
+        verify(upToDateIndexer, never()).indexWikiFile(any());
+        verify(upToDateIndexer, never()).finishRebuild(any());
+        verify(repositoryServiceMock, times(1)).writeTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH), anyString());
+        verify(repositoryServiceMock, times(1)).writeTextFile(isCacheFile(WikiService.PAGE_LINKS_CACHE_FILEPATH), anyString());
+        verify(repositoryServiceMock, never()).appendTextFile(any(), anyString());
+
+        // second call does nothing
+        when(indexer.isRebuildRequired()).thenReturn(false);
+        wikiService.rebuildIndexes();
+        verify(repositoryServiceMock, times(1)).readTextFile(new AnyFile("/page.txt"));
     }
 
     @Test
@@ -137,16 +200,139 @@ public class WikiServiceImplTest {
         assertEquals(wikiFile.getRepositoryFile().getFilePath(), "/page.txt");
     }
 
+    @Test
+    public void testGetWikiFileCached() throws Exception {
+        wikiService = new WikiService(new Logger(null), repositoryServiceMock, true, 1000);
+        AnyFile anyFile = new AnyFile("/page.txt", new Date(1000));
+        when(repositoryServiceMock.getFile("/page.txt")).thenReturn(anyFile);
+        WikiFile wikiFile1 = wikiService.getWikiFile("/page");
+        WikiFile wikiFile2 = wikiService.getWikiFile("/page");
+        assertNotSame(wikiFile2, wikiFile1);
+        assertSame(wikiFile2.getWikiPage(), wikiFile1.getWikiPage());
+        assertEquals(wikiFile2.getWikiText(), "testcontent");
+        verify(repositoryServiceMock, times(1)).readTextFile(anyFile);
+        assertEquals(wikiService.getCacheStatistics().getHits(), 1);
+        assertEquals(wikiService.getCacheStatistics().getMisses(), 1);
+        assertEquals(wikiService.getWikiFileCacheBytes(), 110);
+
+        // relations of a cached page are taken from the index
+        wikiService.parentRelationIndex.setTargets("/child-page", Collections.singleton("/page"));
+        WikiFile wikiFile3 = wikiService.getWikiFile("/page");
+        assertEquals(wikiFile3.getChildren(), Collections.singleton("/child-page"));
+        assertIsEmpty(wikiFile3.getParents());
+        assertEquals(wikiService.getCacheStatistics().getHits(), 2);
+
+        // modified file
+        when(repositoryServiceMock.getFile("/page.txt")).thenReturn(new AnyFile("/page.txt", new Date(2000)));
+        wikiService.getWikiFile("/page");
+        verify(repositoryServiceMock, times(2)).readTextFile(anyFile);
+        assertEquals(wikiService.getCacheStatistics().getMisses(), 2);
+
+        // invalidation
+        wikiService.deleteWikiFile("/page");
+        assertEquals(wikiService.getWikiFileCacheBytes(), 0);
+    }
+
+    @Test
+    public void testGetWikiFileCacheTooSmall() throws Exception {
+        wikiService = new WikiService(new Logger(null), repositoryServiceMock, true, 100);
+        when(repositoryServiceMock.getFile("/page.txt")).thenReturn(new AnyFile("/page.txt", new Date(1000)));
+        wikiService.getWikiFile("/page");
+        wikiService.getWikiFile("/page");
+        assertEquals(wikiService.getWikiFileCacheBytes(), 0);
+        assertEquals(wikiService.getCacheStatistics().getHits(), 0);
+        assertEquals(wikiService.getCacheStatistics().getMisses(), 2);
+    }
+
+    @Test
+    public void testWriteWikiTextInvalidatesCache() throws Exception {
+        wikiService = new WikiService(new Logger(null), repositoryServiceMock, true, 1000);
+        when(repositoryServiceMock.getFile("/page.txt")).thenReturn(new AnyFile("/page.txt", new Date(1000)));
+        wikiService.getWikiFile("/page");
+        assertEquals(wikiService.getWikiFileCacheBytes(), 110);
+        wikiService.writeWikiText("/page", new WikiText("new content"));
+        assertEquals(wikiService.getWikiFileCacheBytes(), 0);
+    }
+
     @Test
     public void testDeleteWikiFile() throws Exception {
         wikiService.viewHistory.add("/page-in-cache");
-        wikiService.childParentMap.put("/page-in-cache", Collections.singleton("/parent-page"));
+        wikiService.parentRelationIndex.setTargets("/page-in-cache", Collections.singleton("/other-parent-page"));
         // test method
         wikiService.deleteWikiFile("/page-in-cache");
         // check cache updates
         assertContainsNot(wikiService.viewHistory, "/page-in-cache");
-        assertContainsKeyNot(wikiService.childParentMap, "/page-in-cache");
+        assertFalse(wikiService.parentRelationIndex.containsSource("/page-in-cache"));
+        assertIsEmpty(wikiService.parentRelationIndex.getSources("/other-parent-page"));
         verify(repositoryServiceMock, times(1)).deleteFile(any());
+        verify(repositoryServiceMock, times(1)).appendTextFile(any(), eq("-/page-in-cache\n"));
+        verify(repositoryServiceMock, times(1)).appendTextFile(any(), anyString());
+    }
+
+    @Test
+    public void testGetWikiFileChildren() throws Exception {
+        wikiService.writeWikiText("/child-page", new WikiText("{{parent:page}}"));
+        WikiFile wikiFile = wikiService.getWikiFile("/page");
+        assertEquals(wikiFile.getChildren(), Collections.singleton("/child-page"));
+        assertEquals(wikiService.getChildren("/page"), Collections.singleton("/child-page"));
+        assertEquals(wikiService.getParents("/child-page"), Collections.singleton("/page"));
+        verify(repositoryServiceMock, times(1)).appendTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH), eq("/child-page\t/page\n"));
+
+        // unchanged relations are not written again
+        wikiService.writeWikiText("/child-page", new WikiText("{{parent:page}} new content"));
+        verify(repositoryServiceMock, times(1)).appendTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH), anyString());
+        verify(repositoryServiceMock, never()).writeTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH), anyString());
+
+        // removed relation
+        wikiService.writeWikiText("/child-page", new WikiText("no parent"));
+        assertIsEmpty(wikiService.getWikiFile("/page").getChildren());
+        verify(repositoryServiceMock, times(1)).appendTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH), eq("/child-page\n"));
+    }
+
+    @Test
+    public void testPageLinks() throws Exception {
+        assertEquals(wikiService.getBacklinks("/page-with-parent"), Collections.singleton("/page"));
+        assertEquals(wikiService.getWantedPages(), Collections.singleton("/missing-page"));
+        // "/page" is only linked by a page that doesn't exist any more
+        assertEquals(wikiService.getOrphans(), Collections.singleton("/page"));
+
+        // new link
+        wikiService.writeWikiText("/page-with-parent", new WikiText("[[page]] [[other-missing-page]]"));
+        assertIsEmpty(wikiService.getOrphans());
+        assertEquals(wikiService.getWantedPages(), Collections.singleton("/other-missing-page"));
+        assertEquals(wikiService.getBacklinks("/page"), new HashSet<>(Arrays.asList("/page-with-parent", "/deleted-page")));
+        verify(repositoryServiceMock, times(1)).appendTextFile(isCacheFile(WikiService.PAGE_LINKS_CACHE_FILEPATH), eq("/page-with-parent\t/other-missing-page\t/page\n"));
+
+        // deleted page
+        wikiService.deleteWikiFile("/page");
+        assertIsEmpty(wikiService.getBacklinks("/page-with-parent"));
+        verify(repositoryServiceMock, times(1)).appendTextFile(isCacheFile(WikiService.PAGE_LINKS_CACHE_FILEPATH), eq("-/page\n"));
+    }
+
+    @Test
+    public void testExternalChanges() throws Exception {
+        ArgumentCaptor<RepositoryListener> listenerCaptor = ArgumentCaptor.forClass(RepositoryListener.class);
+        verify(repositoryServiceMock).addListener(listenerCaptor.capture());
+        RepositoryListener listener = listenerCaptor.getValue();
+        assertEquals(wikiService.getChildren("/parent-page"), Collections.singleton("/page-with-parent"));
+
+        // external edit
+        when(repositoryServiceMock.readTextFile(new AnyFile("/page.txt"))).thenReturn("{{parent:parent-page}}");
+        listener.fileModified(new AnyFile("/page.txt"));
+        assertEquals(wikiService.getChildren("/parent-page"), new HashSet<>(Arrays.asList("/page", "/page-with-parent")));
+        verify(repositoryServiceMock, times(1)).appendTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH), eq("/page\t/parent-page\n"));
+
+        // external delete
+        when(repositoryServiceMock.getFile("/page-with-parent.txt")).thenReturn(null);
+        listener.fileDeleted(new AnyFile("/page-with-parent.txt"));
+        assertEquals(wikiService.getChildren("/parent-page"), Collections.singleton("/page"));
+        assertIsEmpty(wikiService.getBacklinks("/missing-page"));
+        verify(repositoryServiceMock, times(1)).appendTextFile(isCacheFile(WikiService.CHILD_PARENT_CACHE_FILEPATH), eq("-/page-with-parent\n"));
+        verify(repositoryServiceMock, times(1)).appendTextFile(isCacheFile(WikiService.PAGE_LINKS_CACHE_FILEPATH), eq("-/page-with-parent\n"));
+    }
+
+    private static AnyFile isCacheFile(String cacheFilePath) {
+        return argThat(anyFile -> anyFile != null && cacheFilePath.equals(anyFile.getFilePath()));
     }
 
     @Test
@@ -78,6 +78,34 @@ public class DateUtilsTest {
         assertNull(dateStr);
     }
 
+    @Test
+    public void testParseHttpDate() throws Exception {
+        Date date = DateUtils.parseHttpDate("Mon, 20 May 2019 14:30:45 GMT");
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.setTime(date);
+        assertEquals(cal.get(Calendar.YEAR), 2019);
+        assertEquals(cal.get(Calendar.MONTH), 4); // 0 = January
+        assertEquals(cal.get(Calendar.DAY_OF_MONTH), 20);
+        assertEquals(cal.get(Calendar.HOUR_OF_DAY), 14);
+        assertEquals(cal.get(Calendar.MINUTE), 30);
+        assertEquals(cal.get(Calendar.SECOND), 45);
+    }
+
+    @Test(expectedExceptions = ServiceException.class)
+    public void testParseHttpDateError() throws Exception {
+        DateUtils.parseHttpDate("2019-05-20");
+    }
+
+    @Test
+    public void testFormatHttpDate() {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        //noinspection MagicConstant
+        cal.set(2019, 4, 20,14, 30,45);
+        cal.set(Calendar.MILLISECOND, 123);
+        String dateStr = DateUtils.formatHttpDate(cal.getTime());
+        assertEquals(dateStr, "Mon, 20 May 2019 14:30:45 GMT");
+    }
+
     @Test
     public void testFormatDate() {
         Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));